@@ -44,6 +44,7 @@ import org.apache.felix.configurator.impl.model.ConfigPolicy;
 import org.apache.felix.configurator.impl.model.ConfigState;
 import org.apache.felix.configurator.impl.model.ConfigurationFile;
 import org.apache.felix.configurator.impl.model.State;
+import org.apache.felix.configurator.impl.model.StateJournal;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
@@ -66,6 +67,8 @@ public class Configurator {
 
     private final State state;
 
+    private final StateJournal journal;
+
     private final org.osgi.util.tracker.BundleTracker<Bundle> tracker;
 
     private volatile boolean active = true;
@@ -86,11 +89,13 @@ public class Configurator {
         this.queue = new WorkerQueue();
         this.bundleContext = bc;
         this.configAdminReferences = configAdminReferences;
+        this.journal = new StateJournal(bundleContext.getDataFile(StateJournal.FILE_NAME),
+                bundleContext.getDataFile(State.FILE_NAME));
         State s = null;
         try {
-            s = State.createOrReadState(bundleContext.getDataFile(State.FILE_NAME));
+            s = this.journal.read();
         } catch ( final ClassNotFoundException | IOException e ) {
-            SystemLogger.error("Unable to read persisted state from " + State.FILE_NAME, e);
+            SystemLogger.error("Unable to read persisted state from " + StateJournal.FILE_NAME, e);
             s = new State();
         }
         this.state = s;
@@ -308,11 +313,11 @@ public class Configurator {
         }
 
         BundleState config = null;
+        String hash = null;
         try {
             final Set<String> paths = Util.isConfigurerBundle(bundle, this.bundleContext.getBundle().getBundleId());
             if ( paths != null ) {
-                final JSONUtil.Report report = new JSONUtil.Report();
-                config = JSONUtil.readConfigurationsFromBundle(new BinUtil.ResourceProvider() {
+                final BinUtil.ResourceProvider provider = new BinUtil.ResourceProvider() {
 
                     @Override
                     public String getIdentifier() {
@@ -333,7 +338,18 @@ public class Configurator {
                     public Enumeration<URL> findEntries(String path, String filePattern) {
                         return bundle.findEntries(path, filePattern, false);
                     }
-                }, paths, report);
+                };
+                // if the bundle has been updated without changing its configurations
+                // (and the configurations have no binaries) we can keep the current ones
+                hash = JSONUtil.getConfigurationsHash(provider, paths);
+                if ( lastModified != null && hash != null
+                     && hash.equals(state.getBundleHash(bundleId))
+                     && !state.hasBinaries(bundleId) ) {
+                    state.setLastModified(bundleId, bundleLastModified);
+                    return true;
+                }
+                final JSONUtil.Report report = new JSONUtil.Report();
+                config = JSONUtil.readConfigurationsFromBundle(provider, paths, report);
                 for(final String w : report.warnings) {
                     SystemLogger.warning(w);
                 }
@@ -352,6 +368,9 @@ public class Configurator {
                 state.addAll(pid, config.getConfigurations(pid));
             }
             state.setLastModified(bundleId, bundleLastModified);
+            if ( hash != null ) {
+                state.setBundleHash(bundleId, hash);
+            }
             return true;
         }
         return lastModified != null;
@@ -360,6 +379,7 @@ public class Configurator {
     public boolean processRemoveBundle(final long bundleId) {
         if ( state.getLastModified(bundleId) != null ) {
             state.removeLastModified(bundleId);
+            state.removeBundleHash(bundleId);
             for(final String pid : state.getPids()) {
                 final ConfigList configList = state.getConfigurations(pid);
                 configList.uninstall(bundleId);
@@ -388,18 +408,14 @@ public class Configurator {
         }
 
         boolean retry = false;
+        final List<String> changedPids = new ArrayList<>();
         try {
             for(final String pid : state.getPids()) {
                 final ConfigList configList = state.getConfigurations(pid);
 
                 if ( configList.hasChanges() ) {
-                    if ( process(configList) ) {
-                        try {
-                            State.writeState(this.bundleContext.getDataFile(State.FILE_NAME), state);
-                        } catch ( final IOException ioe) {
-                            SystemLogger.error("Unable to persist state to " + State.FILE_NAME, ioe);
-                        }
-                    } else {
+                    changedPids.add(pid);
+                    if ( !process(configList) ) {
                         retry = true;
                     }
                 }
@@ -412,21 +428,18 @@ public class Configurator {
         }
         if ( !retry ) {
             // check whether there is a stale config admin bundle id
-            boolean changed = false;
             for(final Long bundleId : this.state.getBundleIdsUsingConfigAdmin()) {
                 if ( this.state.getLastModified(bundleId) == null ) {
                     this.state.removeConfigAdminBundleId(bundleId);
-                    changed = true;
-                }
-            }
-            if ( changed ) {
-                try {
-                    State.writeState(this.bundleContext.getDataFile(State.FILE_NAME), state);
-                } catch ( final IOException ioe) {
-                    SystemLogger.error("Unable to persist state to " + State.FILE_NAME, ioe);
                 }
             }
         }
+        // persist all changes of this pass at once
+        try {
+            this.journal.write(this.state, changedPids);
+        } catch ( final IOException ioe) {
+            SystemLogger.error("Unable to persist state to " + StateJournal.FILE_NAME, ioe);
+        }
     }
 
     /**
@@ -35,6 +35,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
@@ -47,6 +49,7 @@ import javax.json.JsonStructure;
 import javax.json.JsonValue;
 import javax.json.JsonValue.ValueType;
 
+import org.apache.felix.configurator.impl.Util;
 import org.apache.felix.configurator.impl.model.BundleState;
 import org.apache.felix.configurator.impl.model.Config;
 import org.apache.felix.configurator.impl.model.ConfigPolicy;
@@ -93,6 +96,38 @@ public class JSONUtil {
         return config;
     }
 
+    /**
+     * Calculate a hash over all json files from the given paths in the bundle.
+     * The files are read but not parsed.
+     *
+     * @param provider The bundle provider
+     * @param paths The paths
+     * @return The hash or {@code null} if a file can't be read
+     */
+    public static String getConfigurationsHash(final BinUtil.ResourceProvider provider,
+            final Set<String> paths) {
+        final StringBuilder sb = new StringBuilder();
+        for(final String path : new TreeSet<>(paths)) {
+            final Enumeration<URL> urls = provider.findEntries(path, "*.json");
+            if ( urls != null ) {
+                final Map<String, URL> sorted = new TreeMap<>();
+                while ( urls.hasMoreElements() ) {
+                    final URL url = urls.nextElement();
+                    sorted.put(url.getPath(), url);
+                }
+                for(final Map.Entry<String, URL> entry : sorted.entrySet()) {
+                    try {
+                        sb.append(entry.getKey()).append('\n');
+                        sb.append(getResource(entry.getKey(), entry.getValue()));
+                    } catch ( final IOException ioe ) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return Util.getSHA256(sb.toString());
+    }
+
     /**
      * Read all json files from a given path in the bundle
      *
@@ -18,6 +18,8 @@
  */
 package org.apache.felix.configurator.impl.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -35,7 +37,7 @@ public class State extends AbstractState implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /** Serialization version. */
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
 
     public static final String FILE_NAME = "state.ser";
 
@@ -43,8 +45,13 @@ public class State extends AbstractState implements Serializable {
 
     private final Map<Long, Long> bundlesConfigAdminBundleId = new HashMap<>();
 
+    private final Map<Long, String> bundlesHashes = new HashMap<>();
+
     private volatile Set<String> initialHashes;
 
+    /** Flag to indicate whether the bundle information changed since it was last persisted. */
+    private transient volatile boolean bundleInfoChanged;
+
     /**
      * Serialize the object
      * - write version id
@@ -58,6 +65,7 @@ public class State extends AbstractState implements Serializable {
         out.writeObject(bundlesLastModified);
         out.writeObject(bundlesConfigAdminBundleId);
         out.writeObject(initialHashes);
+        out.writeObject(bundlesHashes);
     }
 
     /**
@@ -75,6 +83,79 @@ public class State extends AbstractState implements Serializable {
         ReflectionUtil.setField(this, "bundlesLastModified", in.readObject());
         ReflectionUtil.setField(this, "bundlesConfigAdminBundleId", in.readObject());
         initialHashes = (Set<String>) in.readObject();
+        ReflectionUtil.setField(this, "bundlesHashes", version > 1 ? in.readObject() : new HashMap<Long, String>());
+    }
+
+    /**
+     * Write the bundle information (everything except the configurations)
+     * @param out The data output
+     * @throws IOException
+     */
+    void writeBundleInfo(final DataOutput out)
+    throws IOException {
+        out.writeInt(bundlesLastModified.size());
+        for(final Map.Entry<Long, Long> entry : bundlesLastModified.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        out.writeInt(bundlesConfigAdminBundleId.size());
+        for(final Map.Entry<Long, Long> entry : bundlesConfigAdminBundleId.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        out.writeInt(bundlesHashes.size());
+        for(final Map.Entry<Long, String> entry : bundlesHashes.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+        final Set<String> hashes = initialHashes;
+        if ( hashes == null ) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(hashes.size());
+            for(final String hash : hashes) {
+                out.writeUTF(hash);
+            }
+        }
+    }
+
+    /**
+     * Read the bundle information, replacing the current bundle information
+     * @param in The data input
+     * @throws IOException
+     */
+    void readBundleInfo(final DataInput in)
+    throws IOException {
+        bundlesLastModified.clear();
+        for(int i = in.readInt(); i > 0; i--) {
+            bundlesLastModified.put(in.readLong(), in.readLong());
+        }
+        bundlesConfigAdminBundleId.clear();
+        for(int i = in.readInt(); i > 0; i--) {
+            bundlesConfigAdminBundleId.put(in.readLong(), in.readLong());
+        }
+        bundlesHashes.clear();
+        for(int i = in.readInt(); i > 0; i--) {
+            bundlesHashes.put(in.readLong(), in.readUTF());
+        }
+        final int count = in.readInt();
+        if ( count == -1 ) {
+            initialHashes = null;
+        } else {
+            final Set<String> hashes = new HashSet<>();
+            for(int i = 0; i < count; i++) {
+                hashes.add(in.readUTF());
+            }
+            initialHashes = hashes;
+        }
+    }
+
+    boolean isBundleInfoChanged() {
+        return this.bundleInfoChanged;
+    }
+
+    void setBundleInfoChanged(final boolean value) {
+        this.bundleInfoChanged = value;
     }
 
     public static State createOrReadState(final File f)
@@ -105,10 +186,13 @@ public class State extends AbstractState implements Serializable {
 
     public void setLastModified(final long bundleId, final long lastModified) {
         this.bundlesLastModified.put(bundleId, lastModified);
+        this.bundleInfoChanged = true;
     }
 
     public void removeLastModified(final long bundleId) {
-        this.bundlesLastModified.remove(bundleId);
+        if ( this.bundlesLastModified.remove(bundleId) != null ) {
+            this.bundleInfoChanged = true;
+        }
     }
 
     public Long getConfigAdminBundleId(final long bundleId) {
@@ -116,11 +200,52 @@ public class State extends AbstractState implements Serializable {
     }
 
     public void setConfigAdminBundleId(final long bundleId, final long lastModified) {
-        this.bundlesConfigAdminBundleId.put(bundleId, lastModified);
+        final Long old = this.bundlesConfigAdminBundleId.put(bundleId, lastModified);
+        if ( old == null || old.longValue() != lastModified ) {
+            this.bundleInfoChanged = true;
+        }
     }
 
     public void removeConfigAdminBundleId(final long bundleId) {
-        this.bundlesConfigAdminBundleId.remove(bundleId);
+        if ( this.bundlesConfigAdminBundleId.remove(bundleId) != null ) {
+            this.bundleInfoChanged = true;
+        }
+    }
+
+    /**
+     * Get the hash of the configuration resources of a bundle
+     * @param bundleId The bundle id
+     * @return The hash or {@code null}
+     */
+    public String getBundleHash(final long bundleId) {
+        return this.bundlesHashes.get(bundleId);
+    }
+
+    public void setBundleHash(final long bundleId, final String hash) {
+        this.bundlesHashes.put(bundleId, hash);
+        this.bundleInfoChanged = true;
+    }
+
+    public void removeBundleHash(final long bundleId) {
+        if ( this.bundlesHashes.remove(bundleId) != null ) {
+            this.bundleInfoChanged = true;
+        }
+    }
+
+    /**
+     * Check whether a bundle provides configurations with binaries
+     * @param bundleId The bundle id
+     * @return {@code true} if at least one configuration of the bundle has binaries
+     */
+    public boolean hasBinaries(final long bundleId) {
+        for(final ConfigList configList : this.getConfigurations().values()) {
+            for(final Config cfg : configList) {
+                if ( cfg.getBundleId() == bundleId && cfg.getFiles() != null && !cfg.getFiles().isEmpty() ) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     public Set<Long> getKnownBundleIds() {
@@ -133,6 +258,7 @@ public class State extends AbstractState implements Serializable {
 
     public void setInitialHashes(final Set<String> value) {
         this.initialHashes = value;
+        this.bundleInfoChanged = true;
     }
 
     /**
@@ -172,6 +298,7 @@ public class State extends AbstractState implements Serializable {
     public String toString() {
         return "State [bundlesLastModified=" + bundlesLastModified +
                 ", initialHashes=" + initialHashes +
+                ", bundlesHashes=" + bundlesHashes +
                 ", bundlesConfigAdminBundleId=" + bundlesConfigAdminBundleId + "]";
     }
 
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.configurator.impl.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The state journal persists the {@link State} in an append-only file.
+ * Instead of rewriting the whole state, only the changed configuration
+ * lists and - if changed - the bundle information are appended as records.
+ * When the state is read, the records are replayed, later records replacing
+ * earlier ones. Once the journal contains considerably more records than
+ * the state, it is compacted by writing a new journal containing a single
+ * record per configuration list.
+ *
+ * The journal starts with a magic number and a version, followed by the
+ * records. Each record consists of its type, its length and its data.
+ * A truncated record at the end of the journal (for example caused by a
+ * crash while appending) is ignored and the journal is compacted with the
+ * next write.
+ */
+public class StateJournal {
+
+    public static final String FILE_NAME = "state.journal";
+
+    private static final int MAGIC = 0x46434a4c;
+
+    /** Journal version. */
+    private static final int VERSION = 1;
+
+    /** Record containing the bundle information. */
+    private static final int RECORD_BUNDLE_INFO = 1;
+
+    /** Record containing the configuration list for a pid. */
+    private static final int RECORD_CONFIG_LIST = 2;
+
+    /** The journal is not compacted as long as it has less records. */
+    private static final int MIN_COMPACTION_RECORDS = 256;
+
+    private final File file;
+
+    private final File legacyFile;
+
+    /** The number of records in the journal. */
+    private int records;
+
+    private boolean compactionRequired;
+
+    /**
+     * Create a new journal
+     * @param file The journal file or {@code null} if there is no file system support
+     * @param legacyFile The file of a serialized state, read if the journal does not exist yet.
+     *                   The file is removed once the journal has been written.
+     */
+    public StateJournal(final File file, final File legacyFile) {
+        this.file = file;
+        this.legacyFile = legacyFile;
+    }
+
+    /**
+     * Read the state by replaying the journal.
+     * @return The state, if there is no journal a new state is returned.
+     * @throws ClassNotFoundException
+     * @throws IOException
+     */
+    public State read()
+    throws ClassNotFoundException, IOException {
+        this.records = 0;
+        this.compactionRequired = true;
+        if ( file == null ) {
+            return new State();
+        }
+        if ( !file.exists() ) {
+            return State.createOrReadState(legacyFile);
+        }
+        final State state = new State();
+        try ( final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))) ) {
+            if ( in.readInt() != MAGIC ) {
+                throw new IOException("Invalid state journal " + file);
+            }
+            final int version = in.readInt();
+            if ( version < 1 || version > VERSION ) {
+                throw new IOException("Unsupported state journal version " + version);
+            }
+            boolean truncated = false;
+            int type;
+            while ( (type = in.read()) != -1 ) {
+                final byte[] data;
+                try {
+                    data = new byte[in.readInt()];
+                    in.readFully(data);
+                } catch ( final EOFException eof ) {
+                    truncated = true;
+                    break;
+                }
+                this.apply(state, type, data);
+                this.records++;
+            }
+            this.compactionRequired = truncated;
+        }
+        state.setBundleInfoChanged(false);
+        return state;
+    }
+
+    private void apply(final State state, final int type, final byte[] data)
+    throws ClassNotFoundException, IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        switch ( type ) {
+            case RECORD_BUNDLE_INFO : state.readBundleInfo(in);
+                                      break;
+
+            case RECORD_CONFIG_LIST : final String pid = in.readUTF();
+                                      try ( final ObjectInputStream ois = new ObjectInputStream(in) ) {
+                                          state.getConfigurations().put(pid, (ConfigList) ois.readObject());
+                                      }
+                                      break;
+
+            default : throw new IOException("Unknown record type " + type + " in state journal " + file);
+        }
+    }
+
+    /**
+     * Write the changes of the state to the journal.
+     * @param state The state
+     * @param changedPids The pids of the changed configuration lists
+     * @throws IOException
+     */
+    public void write(final State state, final Collection<String> changedPids)
+    throws IOException {
+        if ( file == null ) {
+            // do nothing, no file system support
+            return;
+        }
+        final boolean bundleInfoChanged = state.isBundleInfoChanged();
+        final int count = changedPids.size() + (bundleInfoChanged ? 1 : 0);
+        if ( count == 0 && !this.compactionRequired ) {
+            return;
+        }
+        final int liveRecords = state.getPids().size() + 1;
+        if ( this.compactionRequired
+             || this.records + count > Math.max(MIN_COMPACTION_RECORDS, 2 * liveRecords) ) {
+            this.compact(state);
+            return;
+        }
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if ( bundleInfoChanged ) {
+            writeBundleInfo(buffer, state);
+        }
+        for(final String pid : changedPids) {
+            writeConfigList(buffer, pid, state.getConfigurations(pid));
+        }
+
+        // if appending fails, the journal might be corrupt: rewrite it next time
+        this.compactionRequired = true;
+        try ( final OutputStream out = new FileOutputStream(file, true) ) {
+            buffer.writeTo(out);
+        }
+        this.records += count;
+        this.compactionRequired = false;
+        state.setBundleInfoChanged(false);
+    }
+
+    /**
+     * Write a new journal containing the complete state.
+     * @param state The state
+     * @throws IOException
+     */
+    private void compact(final State state)
+    throws IOException {
+        final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try ( final OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile)) ) {
+            final DataOutputStream dos = new DataOutputStream(out);
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.flush();
+            writeBundleInfo(out, state);
+            for(final Map.Entry<String, ConfigList> entry : state.getConfigurations().entrySet()) {
+                writeConfigList(out, entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch ( final AtomicMoveNotSupportedException amnse ) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.records = state.getPids().size() + 1;
+        this.compactionRequired = false;
+        state.setBundleInfoChanged(false);
+        if ( legacyFile != null && legacyFile.exists() ) {
+            legacyFile.delete();
+        }
+    }
+
+    private static void writeBundleInfo(final OutputStream out, final State state)
+    throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(data);
+        state.writeBundleInfo(dos);
+        dos.flush();
+        writeRecord(out, RECORD_BUNDLE_INFO, data);
+    }
+
+    private static void writeConfigList(final OutputStream out, final String pid, final ConfigList configList)
+    throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(data);
+        dos.writeUTF(pid);
+        try ( final ObjectOutputStream oos = new ObjectOutputStream(dos) ) {
+            oos.writeObject(configList != null ? configList : new ConfigList());
+        }
+        writeRecord(out, RECORD_CONFIG_LIST, data);
+    }
+
+    private static void writeRecord(final OutputStream out, final int type, final ByteArrayOutputStream data)
+    throws IOException {
+        final DataOutputStream dos = new DataOutputStream(out);
+        dos.writeByte(type);
+        dos.writeInt(data.size());
+        dos.flush();
+        data.writeTo(out);
+    }
+
+    /**
+     * Get the number of records in the journal
+     * @return The number of records
+     */
+    int getRecords() {
+        return this.records;
+    }
+}
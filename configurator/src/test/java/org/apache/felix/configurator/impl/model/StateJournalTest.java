@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.configurator.impl.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateJournalTest {
+
+    private File dir;
+
+    @Before public void setup() throws Exception {
+        dir = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After public void cleanup() {
+        for(final File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private StateJournal createJournal() {
+        return new StateJournal(new File(dir, StateJournal.FILE_NAME), new File(dir, State.FILE_NAME));
+    }
+
+    @Test public void testReplay() throws Exception {
+        final StateJournal journal = createJournal();
+        final State state = journal.read();
+
+        state.add(new Config("a", null, 1,  0, ConfigPolicy.DEFAULT));
+        state.add(new Config("b", null, 1, 10, ConfigPolicy.DEFAULT));
+        state.setLastModified(1, 5);
+        journal.write(state, state.getPids());
+
+        // append changes for a single pid
+        state.add(new Config("a", null, 2,  0, ConfigPolicy.DEFAULT));
+        state.setLastModified(2, 15);
+        state.setBundleHash(2, "hash");
+        journal.write(state, Collections.singletonList("a"));
+        assertEquals(5, journal.getRecords());
+
+        final StateJournal readJournal = createJournal();
+        final State s = readJournal.read();
+        assertEquals(2, s.getConfigurations("a").size());
+        assertEquals(1, s.getConfigurations("b").size());
+        assertEquals(5L, (Object)s.getLastModified(1));
+        assertEquals(15L, (Object)s.getLastModified(2));
+        assertEquals("hash", s.getBundleHash(2));
+        assertNull(s.getInitialHashes());
+        assertFalse(s.isBundleInfoChanged());
+    }
+
+    @Test public void testCompaction() throws Exception {
+        final StateJournal journal = createJournal();
+        final State state = journal.read();
+        state.add(new Config("a", null, 1,  0, ConfigPolicy.DEFAULT));
+        journal.write(state, state.getPids());
+        assertEquals(2, journal.getRecords());
+
+        for(int i = 0; i < 1000; i++) {
+            state.setLastModified(1, i);
+            journal.write(state, Collections.singletonList("a"));
+            assertTrue(journal.getRecords() <= 256);
+        }
+
+        final State s = createJournal().read();
+        assertEquals(999L, (Object)s.getLastModified(1));
+        assertEquals(1, s.getConfigurations("a").size());
+    }
+
+    @Test public void testTruncatedRecord() throws Exception {
+        final StateJournal journal = createJournal();
+        final State state = journal.read();
+        state.add(new Config("a", null, 1,  0, ConfigPolicy.DEFAULT));
+        journal.write(state, state.getPids());
+        state.setLastModified(1, 5);
+        journal.write(state, Collections.<String>emptyList());
+
+        final File f = new File(dir, StateJournal.FILE_NAME);
+        try ( final RandomAccessFile raf = new RandomAccessFile(f, "rw") ) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        final StateJournal readJournal = createJournal();
+        final State s = readJournal.read();
+        assertEquals(1, s.getConfigurations("a").size());
+        assertNull(s.getLastModified(1));
+        assertEquals(2, readJournal.getRecords());
+    }
+
+    @Test public void testLegacyState() throws Exception {
+        final State legacy = new State();
+        legacy.add(new Config("a", null, 1,  0, ConfigPolicy.DEFAULT));
+        legacy.setLastModified(1, 5);
+        State.writeState(new File(dir, State.FILE_NAME), legacy);
+
+        final StateJournal journal = createJournal();
+        final State state = journal.read();
+        assertEquals(1, state.getConfigurations("a").size());
+        journal.write(state, Collections.<String>emptyList());
+
+        assertFalse(new File(dir, State.FILE_NAME).exists());
+        final State s = createJournal().read();
+        assertEquals(1, s.getConfigurations("a").size());
+        assertEquals(5L, (Object)s.getLastModified(1));
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.connect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+
+import org.apache.felix.connect.felix.framework.util.manifestparser.ManifestParser;
+import org.apache.felix.connect.felix.framework.util.manifestparser.ParsedHeaderClause;
+
+/**
+ * Starts bundles in parallel, ordered by the services they provide and require.
+ * <p>
+ * The services are taken from the <code>osgi.service</code> capabilities and
+ * requirements and from the legacy <code>Export-Service</code> and
+ * <code>Import-Service</code> headers. The bundles are grouped into levels: a
+ * bundle is placed in the level after the last level containing a provider of a
+ * service it requires. The bundles of a level are started in parallel, and a
+ * level is only started once all bundles of the previous level are started.
+ * A cycle of dependencies is broken by starting the first bundle of the cycle,
+ * in start order, on its own level.
+ */
+class BundleStarter
+{
+    private static final String SERVICE_NAMESPACE = "osgi.service";
+    private static final String EXPORT_SERVICE = "Export-Service";
+    private static final String IMPORT_SERVICE = "Import-Service";
+    private static final String OBJECTCLASS_FILTER = "(" + Constants.OBJECTCLASS + "=";
+
+    private BundleStarter()
+    {
+    }
+
+    /**
+     * Groups the bundles into start levels.
+     *
+     * @param bundles the bundles to start mapped to their raw manifest headers, in start order
+     * @return the levels, each level only depends on the levels before it
+     */
+    static List<List<Bundle>> getStartLevels(Map<Bundle, Map<String, String>> bundles)
+    {
+        Map<String, List<Bundle>> providers = new HashMap<String, List<Bundle>>();
+        for (Map.Entry<Bundle, Map<String, String>> entry : bundles.entrySet())
+        {
+            for (String service : getProvidedServices(entry.getValue()))
+            {
+                List<Bundle> list = providers.get(service);
+                if (list == null)
+                {
+                    list = new ArrayList<Bundle>();
+                    providers.put(service, list);
+                }
+                list.add(entry.getKey());
+            }
+        }
+
+        Map<Bundle, Set<Bundle>> dependencies = new LinkedHashMap<Bundle, Set<Bundle>>();
+        for (Map.Entry<Bundle, Map<String, String>> entry : bundles.entrySet())
+        {
+            Set<Bundle> deps = new HashSet<Bundle>();
+            for (String service : getRequiredServices(entry.getValue()))
+            {
+                List<Bundle> list = providers.get(service);
+                if (list != null)
+                {
+                    deps.addAll(list);
+                }
+            }
+            deps.remove(entry.getKey());
+            dependencies.put(entry.getKey(), deps);
+        }
+
+        List<List<Bundle>> levels = new ArrayList<List<Bundle>>();
+        Set<Bundle> started = new HashSet<Bundle>();
+        while (!dependencies.isEmpty())
+        {
+            List<Bundle> level = new ArrayList<Bundle>();
+            for (Map.Entry<Bundle, Set<Bundle>> entry : dependencies.entrySet())
+            {
+                if (started.containsAll(entry.getValue()))
+                {
+                    level.add(entry.getKey());
+                }
+            }
+            if (level.isEmpty())
+            {
+                // cyclic dependencies, release the first bundle of a cycle
+                // and go on with the bundles depending on it
+                for (Bundle bundle : dependencies.keySet())
+                {
+                    if (isInCycle(bundle, dependencies))
+                    {
+                        level.add(bundle);
+                        break;
+                    }
+                }
+            }
+            for (Bundle bundle : level)
+            {
+                dependencies.remove(bundle);
+            }
+            started.addAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    /**
+     * Checks whether the bundle transitively depends on itself, only following
+     * the dependencies on bundles which are not started yet.
+     */
+    private static boolean isInCycle(Bundle bundle, Map<Bundle, Set<Bundle>> dependencies)
+    {
+        Set<Bundle> visited = new HashSet<Bundle>();
+        List<Bundle> pending = new ArrayList<Bundle>(dependencies.get(bundle));
+        while (!pending.isEmpty())
+        {
+            Bundle dependency = pending.remove(pending.size() - 1);
+            if (dependency == bundle)
+            {
+                return true;
+            }
+            Set<Bundle> next = dependencies.get(dependency);
+            if (next != null && visited.add(dependency))
+            {
+                pending.addAll(next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts the bundles level by level using the executor.
+     * Failures are reported and do not prevent the other bundles from being started.
+     */
+    static void start(List<List<Bundle>> levels, ExecutorService executor) throws InterruptedException
+    {
+        for (List<Bundle> level : levels)
+        {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(level.size());
+            for (final Bundle bundle : level)
+            {
+                tasks.add(new Callable<Void>()
+                {
+                    public Void call()
+                    {
+                        try
+                        {
+                            bundle.start();
+                        }
+                        catch (Throwable e)
+                        {
+                            System.out.println("Unable to start bundle: " + bundle);
+                            e.printStackTrace();
+                        }
+                        return null;
+                    }
+                });
+            }
+            // returns once all tasks of the level completed
+            executor.invokeAll(tasks);
+        }
+    }
+
+    static Set<String> getProvidedServices(Map<String, String> headers)
+    {
+        Set<String> result = new LinkedHashSet<String>();
+        for (ParsedHeaderClause clause : parseHeader(headers.get(Constants.PROVIDE_CAPABILITY)))
+        {
+            if (clause.m_paths.contains(SERVICE_NAMESPACE))
+            {
+                for (Map.Entry<String, Object> attr : clause.m_attrs.entrySet())
+                {
+                    if (Constants.OBJECTCLASS.equalsIgnoreCase(attr.getKey()))
+                    {
+                        for (String value : attr.getValue().toString().split(","))
+                        {
+                            if (value.trim().length() > 0)
+                            {
+                                result.add(value.trim());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (ParsedHeaderClause clause : parseHeader(headers.get(EXPORT_SERVICE)))
+        {
+            result.addAll(clause.m_paths);
+        }
+        return result;
+    }
+
+    static Set<String> getRequiredServices(Map<String, String> headers)
+    {
+        Set<String> result = new LinkedHashSet<String>();
+        for (ParsedHeaderClause clause : parseHeader(headers.get(Constants.REQUIRE_CAPABILITY)))
+        {
+            String filter = clause.m_dirs.get(Constants.FILTER_DIRECTIVE);
+            if (clause.m_paths.contains(SERVICE_NAMESPACE) && (filter != null))
+            {
+                for (int start = filter.indexOf(OBJECTCLASS_FILTER); start != -1;
+                     start = filter.indexOf(OBJECTCLASS_FILTER, start + 1))
+                {
+                    int end = filter.indexOf(')', start);
+                    if (end != -1)
+                    {
+                        result.add(filter.substring(start + OBJECTCLASS_FILTER.length(), end).trim());
+                    }
+                }
+            }
+        }
+        for (ParsedHeaderClause clause : parseHeader(headers.get(IMPORT_SERVICE)))
+        {
+            result.addAll(clause.m_paths);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the header, a malformed header declares no services since
+     * the bundle can still be started.
+     */
+    private static List<ParsedHeaderClause> parseHeader(String header)
+    {
+        try
+        {
+            return ManifestParser.parseStandardHeader(header);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return Collections.emptyList();
+        }
+    }
+}
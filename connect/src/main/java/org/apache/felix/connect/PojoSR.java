@@ -31,9 +31,17 @@ import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -63,6 +71,7 @@ import org.osgi.service.startlevel.StartLevel;
 import org.apache.felix.connect.felix.framework.ServiceRegistry;
 import org.apache.felix.connect.felix.framework.util.EventDispatcher;
 import org.apache.felix.connect.launch.BundleDescriptor;
+import org.apache.felix.connect.launch.BundleIndex;
 import org.apache.felix.connect.launch.ClasspathScanner;
 import org.apache.felix.connect.launch.PojoServiceRegistry;
 import org.apache.felix.connect.launch.PojoServiceRegistryFactory;
@@ -261,6 +270,12 @@ public class PojoSR implements PojoServiceRegistry
 
     public void startBundles(Collection<BundleDescriptor> scan) throws Exception
     {
+        int threads = getStartThreads();
+        if (threads > 1)
+        {
+            startBundlesParallel(scan, threads);
+            return;
+        }
         for (BundleDescriptor desc : scan)
         {
             Revision revision = desc.getRevision();
@@ -268,58 +283,137 @@ public class PojoSR implements PojoServiceRegistry
             {
                 revision = buildRevision(desc);
             }
-            Map<String, String> bundleHeaders = desc.getHeaders();
-            Version osgiVersion;
+            installBundle(desc, revision);
+        }
+
+
+        for (Bundle bundle : m_bundles.values())
+        {
             try
             {
-                osgiVersion = Version.parseVersion(bundleHeaders.get(Constants.BUNDLE_VERSION));
+                bundle.start();
             }
-            catch (Exception ex)
+            catch (Throwable e)
+            {
+                System.out.println("Unable to start bundle: " + bundle);
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+    private int getStartThreads()
+    {
+        Object threads = bundleConfig.get(PojoServiceRegistryFactory.BUNDLE_START_THREADS);
+        if (threads instanceof Number)
+        {
+            return ((Number) threads).intValue();
+        }
+        else if (threads != null)
+        {
+            try
             {
-                ex.printStackTrace();
-                osgiVersion = Version.emptyVersion;
+                return Integer.parseInt(threads.toString().trim());
             }
-            String sym = bundleHeaders.get(Constants.BUNDLE_SYMBOLICNAME);
-            if (sym != null)
+            catch (NumberFormatException ex)
             {
-                int idx = sym.indexOf(';');
-                if (idx > 0)
-                {
-                    sym = sym.substring(0, idx);
-                }
-                sym = sym.trim();
+                System.out.println("Invalid number of start threads: " + threads);
             }
-
-            Bundle bundle = new PojoSRBundle(
-                    m_registry,
-                    m_dispatcher,
-                    m_bundles,
-                    desc.getUrl(),
-                    m_bundles.size(),
-                    sym,
-                    osgiVersion,
-                    revision,
-                    desc.getClassLoader(),
-                    bundleHeaders,
-                    desc.getServices(),
-                    bundleConfig);
-            m_bundles.put(bundle.getBundleId(), bundle);
         }
+        return 1;
+    }
 
+    private void startBundlesParallel(Collection<BundleDescriptor> scan, int threads) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger m_count = new AtomicInteger();
 
-        for (Bundle bundle : m_bundles.values())
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "PojoSR bundle starter " + m_count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try
         {
-            try
+            // building a revision opens the jar file, do that in parallel
+            // but install the bundles in order to keep the bundle ids stable
+            List<Future<Revision>> revisions = new ArrayList<Future<Revision>>(scan.size());
+            for (final BundleDescriptor desc : scan)
             {
-                bundle.start();
+                revisions.add(executor.submit(new Callable<Revision>()
+                {
+                    public Revision call() throws Exception
+                    {
+                        return (desc.getRevision() != null) ? desc.getRevision() : buildRevision(desc);
+                    }
+                }));
             }
-            catch (Throwable e)
+            Map<Bundle, Map<String, String>> installed = new LinkedHashMap<Bundle, Map<String, String>>();
+            int i = 0;
+            for (BundleDescriptor desc : scan)
             {
-                System.out.println("Unable to start bundle: " + bundle);
-                e.printStackTrace();
+                Revision revision;
+                try
+                {
+                    revision = revisions.get(i++).get();
+                }
+                catch (ExecutionException ex)
+                {
+                    throw (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+                }
+                installed.put(installBundle(desc, revision), desc.getHeaders());
+            }
+
+            BundleStarter.start(BundleStarter.getStartLevels(installed), executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private Bundle installBundle(BundleDescriptor desc, Revision revision)
+    {
+        Map<String, String> bundleHeaders = desc.getHeaders();
+        Version osgiVersion;
+        try
+        {
+            osgiVersion = Version.parseVersion(bundleHeaders.get(Constants.BUNDLE_VERSION));
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+            osgiVersion = Version.emptyVersion;
+        }
+        String sym = bundleHeaders.get(Constants.BUNDLE_SYMBOLICNAME);
+        if (sym != null)
+        {
+            int idx = sym.indexOf(';');
+            if (idx > 0)
+            {
+                sym = sym.substring(0, idx);
             }
+            sym = sym.trim();
         }
 
+        Bundle bundle = new PojoSRBundle(
+                m_registry,
+                m_dispatcher,
+                m_bundles,
+                desc.getUrl(),
+                m_bundles.size(),
+                sym,
+                osgiVersion,
+                revision,
+                desc.getClassLoader(),
+                bundleHeaders,
+                desc.getServices(),
+                bundleConfig);
+        m_bundles.put(bundle.getBundleId(), bundle);
+        return bundle;
     }
 
     private Revision buildRevision(BundleDescriptor desc) throws IOException
@@ -386,11 +480,27 @@ public class PojoSR implements PojoServiceRegistry
             }
         }
         Map<String, Object> config = new HashMap<String, Object>();
-        config.put(
-                PojoServiceRegistryFactory.BUNDLE_DESCRIPTORS,
-                (filter != null) ? new ClasspathScanner()
-                        .scanForBundles(filter.toString()) : new ClasspathScanner()
-                        .scanForBundles());
+        String index = System.getProperty("org.apache.felix.connect.index");
+        if (index != null)
+        {
+            config.put(
+                    PojoServiceRegistryFactory.BUNDLE_DESCRIPTORS,
+                    BundleIndex.load(new File(index),
+                            (filter != null) ? filter.toString() : null, null));
+        }
+        else
+        {
+            config.put(
+                    PojoServiceRegistryFactory.BUNDLE_DESCRIPTORS,
+                    (filter != null) ? new ClasspathScanner()
+                            .scanForBundles(filter.toString()) : new ClasspathScanner()
+                            .scanForBundles());
+        }
+        String threads = System.getProperty(PojoServiceRegistryFactory.BUNDLE_START_THREADS);
+        if (threads != null)
+        {
+            config.put(PojoServiceRegistryFactory.BUNDLE_START_THREADS, threads);
+        }
         new PojoServiceRegistryFactoryImpl().newPojoServiceRegistry(config);
         if (main != null)
         {
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.connect.felix.framework.util.manifestparser;
+
+import java.util.List;
+import java.util.Map;
+
+public class ParsedHeaderClause
+{
+    public final List<String> m_paths;
+    public final Map<String, String> m_dirs;
+    public final Map<String, Object> m_attrs;
+    public final Map<String, String> m_types;
+
+    public ParsedHeaderClause(
+        List<String> paths, Map<String, String> dirs, Map<String, Object> attrs,
+        Map<String, String> types)
+    {
+        m_paths = paths;
+        m_dirs = dirs;
+        m_attrs = attrs;
+        m_types = types;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.connect.launch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+
+import org.apache.felix.connect.felix.framework.util.MapToDictionary;
+
+/**
+ * A precomputed index of bundle descriptors.
+ * <p>
+ * Scanning the classpath for manifests with the {@link ClasspathScanner}
+ * opens every jar on the classpath. The index stores the url and the main
+ * manifest attributes of each bundle found by a scan, so that it can be
+ * generated once (e.g., at build time) and loaded at startup instead:
+ * <pre>
+ * java -cp &lt;application classpath&gt; org.apache.felix.connect.launch.BundleIndex &lt;index file&gt; [filter]
+ * </pre>
+ * The index contains absolute urls, therefore it is only valid for the
+ * classpath layout it was generated from. It records a fingerprint of the
+ * location, size and modification time of the jars and manifest files
+ * of the classpath; {@link #load(File, String, ClassLoader)} rebuilds
+ * an index whose fingerprint does not match the classpath.
+ */
+public class BundleIndex
+{
+    private static final int MAGIC = 0x46434249; // "FCBI"
+
+    /**
+     * The version of the index format, an index with a different version is rejected.
+     */
+    public static final int VERSION = 2;
+
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    /**
+     * Writes the url and headers of the given descriptors to the stream,
+     * without a fingerprint.
+     * Revisions and services of the descriptors are not part of the index.
+     * The stream is not closed.
+     */
+    public static void write(Collection<BundleDescriptor> bundles, OutputStream out) throws IOException
+    {
+        write(bundles, "", out);
+    }
+
+    /**
+     * Writes the fingerprint of the classpath and the url and headers of the
+     * given descriptors to the stream.
+     * Revisions and services of the descriptors are not part of the index.
+     * The stream is not closed.
+     *
+     * @param fingerprint the fingerprint as returned by {@link #fingerprint(ClassLoader)}
+     */
+    public static void write(Collection<BundleDescriptor> bundles, String fingerprint, OutputStream out)
+            throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        writeString(data, fingerprint);
+        data.writeInt(bundles.size());
+        for (BundleDescriptor desc : bundles)
+        {
+            writeString(data, desc.getUrl());
+            Map<String, String> headers = desc.getHeaders();
+            data.writeInt(headers.size());
+            for (Map.Entry<String, String> entry : headers.entrySet())
+            {
+                writeString(data, entry.getKey());
+                writeString(data, entry.getValue());
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads the descriptors of all bundles in the index.
+     * The stream is not closed.
+     *
+     * @param loader the class loader of the bundles
+     */
+    public static List<BundleDescriptor> read(InputStream in, ClassLoader loader) throws Exception
+    {
+        return read(in, null, loader);
+    }
+
+    /**
+     * Reads the descriptors of the bundles in the index whose headers match the filter.
+     * The stream is not closed.
+     *
+     * @param filterString the filter to apply to the headers or <code>null</code> for all bundles
+     * @param loader the class loader of the bundles
+     */
+    public static List<BundleDescriptor> read(InputStream in, String filterString, ClassLoader loader) throws Exception
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        readFingerprint(data);
+        return readBundles(data, filterString, loader);
+    }
+
+    private static String readFingerprint(DataInputStream data) throws IOException
+    {
+        if (data.readInt() != MAGIC)
+        {
+            throw new IOException("Not a bundle index");
+        }
+        int version = data.readInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported bundle index version: " + version);
+        }
+        return readString(data);
+    }
+
+    private static List<BundleDescriptor> readBundles(DataInputStream data, String filterString, ClassLoader loader)
+            throws Exception
+    {
+        Filter filter = (filterString != null) ? FrameworkUtil
+                .createFilter(filterString) : null;
+
+        loader = (loader != null) ? loader : BundleIndex.class.getClassLoader();
+
+        int count = data.readInt();
+        List<BundleDescriptor> bundles = new ArrayList<BundleDescriptor>(count);
+        for (int i = 0; i < count; i++)
+        {
+            String url = readString(data);
+            int size = data.readInt();
+            Map<String, String> headers = new LinkedHashMap<String, String>(size * 2);
+            for (int j = 0; j < size; j++)
+            {
+                String key = readString(data);
+                headers.put(key, readString(data));
+            }
+            if ((filter == null)
+                    || filter.match(new MapToDictionary<String, String>(headers)))
+            {
+                bundles.add(new BundleDescriptor(loader, url, headers));
+            }
+        }
+        return bundles;
+    }
+
+    /**
+     * Reads the descriptors from the index file if it exists and matches the
+     * fingerprint of the classpath, otherwise scans the classpath and writes
+     * the result to the index file.
+     *
+     * @param index the index file
+     * @param filterString the filter to apply to the headers or <code>null</code> for all bundles
+     * @param loader the class loader to scan or <code>null</code> for the default class loader
+     */
+    public static List<BundleDescriptor> load(File index, String filterString, ClassLoader loader) throws Exception
+    {
+        String fingerprint = fingerprint(loader);
+        if (index.isFile())
+        {
+            InputStream in = new FileInputStream(index);
+            try
+            {
+                DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+                if (fingerprint.equals(readFingerprint(data)))
+                {
+                    return readBundles(data, filterString, loader);
+                }
+            }
+            catch (IOException ex)
+            {
+                // an unreadable index or one of another version is rebuilt
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        // the filter is applied after the scan, so that the index is valid for any filter
+        List<BundleDescriptor> bundles = new ClasspathScanner().scanForBundles(loader);
+        File parent = index.getAbsoluteFile().getParentFile();
+        if (parent != null)
+        {
+            parent.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(index);
+        try
+        {
+            write(bundles, fingerprint, out);
+        }
+        finally
+        {
+            out.close();
+        }
+        if (filterString == null)
+        {
+            return bundles;
+        }
+        Filter filter = FrameworkUtil.createFilter(filterString);
+        List<BundleDescriptor> result = new ArrayList<BundleDescriptor>();
+        for (BundleDescriptor desc : bundles)
+        {
+            if (filter.match(new MapToDictionary<String, String>(desc.getHeaders())))
+            {
+                result.add(desc);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes a fingerprint of the location, size and modification time of
+     * the jars and directories containing the manifests visible to the class
+     * loader, without reading the manifests.
+     *
+     * @param loader the class loader to scan or <code>null</code> for the default class loader
+     */
+    public static String fingerprint(ClassLoader loader) throws IOException
+    {
+        loader = (loader != null) ? loader : ClasspathScanner.class.getClassLoader();
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (Exception ex)
+        {
+            throw new IOException("Unable to compute the classpath fingerprint: " + ex);
+        }
+        for (Enumeration<URL> e = loader.getResources(MANIFEST); e.hasMoreElements(); )
+        {
+            URL manifestURL = e.nextElement();
+            digest.update(manifestURL.toExternalForm().getBytes("UTF-8"));
+            File file = getFile(manifestURL);
+            if (file != null)
+            {
+                digest.update((":" + file.length() + ":" + file.lastModified()).getBytes("UTF-8"));
+            }
+            else
+            {
+                // no file to check, compare the manifest itself
+                URLConnection conn = manifestURL.openConnection();
+                InputStream in = conn.getInputStream();
+                try
+                {
+                    byte[] buffer = new byte[4096];
+                    for (int i = in.read(buffer); i != -1; i = in.read(buffer))
+                    {
+                        digest.update(buffer, 0, i);
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            result.append(Integer.toHexString((b >> 4) & 0xf)).append(Integer.toHexString(b & 0xf));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the jar file or the manifest file of a manifest url, or
+     * <code>null</code> if it is not on the file system.
+     */
+    private static File getFile(URL manifestURL) throws IOException
+    {
+        URL url = manifestURL;
+        if ("jar".equals(url.getProtocol()))
+        {
+            URLConnection conn = url.openConnection();
+            url = ((JarURLConnection) conn).getJarFileURL();
+        }
+        if (!"file".equals(url.getProtocol()))
+        {
+            return null;
+        }
+        try
+        {
+            return new File(url.toURI());
+        }
+        catch (Exception ex)
+        {
+            return new File(url.getPath());
+        }
+    }
+
+    // Header values can exceed the 64k limit of DataOutput.writeUTF
+    private static void writeString(DataOutputStream data, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes("UTF-8");
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException
+    {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Scans the classpath and writes the index to the file given as the first argument,
+     * optionally restricted to the bundles matching the filter given as the second argument.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if ((args == null) || (args.length < 1) || (args.length > 2))
+        {
+            System.err.println("Usage: BundleIndex <index file> [filter]");
+            System.exit(1);
+        }
+        List<BundleDescriptor> bundles = (args.length == 2)
+                ? new ClasspathScanner().scanForBundles(args[1])
+                : new ClasspathScanner().scanForBundles();
+        OutputStream out = new FileOutputStream(args[0]);
+        try
+        {
+            write(bundles, fingerprint(null), out);
+        }
+        finally
+        {
+            out.close();
+        }
+        System.out.println("Indexed " + bundles.size() + " bundles in " + args[0]);
+    }
+}
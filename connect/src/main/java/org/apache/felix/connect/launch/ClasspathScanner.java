@@ -58,7 +58,8 @@ public class ClasspathScanner
         loader = (loader != null) ? loader : getClass().getClassLoader();
 
         List<BundleDescriptor> bundles = new ArrayList<BundleDescriptor>();
-        byte[] bytes = new byte[1024 * 1024 * 2];
+        // manifests are usually small, the buffer grows if needed and is reused for all of them
+        byte[] bytes = new byte[1024 * 64];
         for (Enumeration<URL> e = loader.getResources(
                 "META-INF/MANIFEST.MF"); e.hasMoreElements(); )
         {
@@ -25,5 +25,14 @@ public interface PojoServiceRegistryFactory
     public static final String BUNDLE_DESCRIPTORS =
             PojoServiceRegistry.class.getName().toLowerCase() + ".bundles";
 
+    /**
+     * The number of threads used to start the bundle descriptors (an Integer or a String).
+     * If greater than one, the revisions are built in parallel and the bundles are started
+     * in parallel, ordered by the services they provide and require according to their
+     * manifest headers. Bundles are started one after another by default.
+     */
+    public static final String BUNDLE_START_THREADS =
+            PojoServiceRegistry.class.getName().toLowerCase() + ".startthreads";
+
     public PojoServiceRegistry newPojoServiceRegistry(Map<String, Object> configuration) throws Exception;
 }
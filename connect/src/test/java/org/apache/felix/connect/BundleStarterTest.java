@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+public class BundleStarterTest
+{
+    @Test
+    public void testServices()
+    {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Provide-Capability",
+                "osgi.service;objectClass:List<String>=\"a.Foo,a.Bar\";uses:=\"a\","
+                        + "osgi.extender;osgi.extender=\"osgi.component\"");
+        headers.put("Export-Service", "b.Baz;b.Qux");
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("a.Foo", "a.Bar", "b.Baz", "b.Qux")),
+                BundleStarter.getProvidedServices(headers));
+
+        headers = new HashMap<String, String>();
+        headers.put("Require-Capability",
+                "osgi.service;filter:=\"(&(objectClass=a.Foo)(name=x,y))\";effective:=active,"
+                        + "osgi.ee;filter:=\"(objectClass=ignored)\"");
+        headers.put("Import-Service", "b.Baz");
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("a.Foo", "b.Baz")),
+                BundleStarter.getRequiredServices(headers));
+
+        // a malformed header declares no services
+        headers = new HashMap<String, String>();
+        headers.put("Provide-Capability", "osgi.service;objectClass=\"a.Foo\";objectClass=\"a.Bar\"");
+        assertTrue(BundleStarter.getProvidedServices(headers).isEmpty());
+    }
+
+    @Test
+    public void testStartLevels()
+    {
+        Bundle a = bundle("a");
+        Bundle b = bundle("b");
+        Bundle c = bundle("c");
+        Map<Bundle, Map<String, String>> bundles = new LinkedHashMap<Bundle, Map<String, String>>();
+        bundles.put(c, headers(null, "a.Foo"));
+        bundles.put(b, headers("b.Bar", "a.Foo"));
+        bundles.put(a, headers("a.Foo", null));
+
+        List<List<Bundle>> levels = BundleStarter.getStartLevels(bundles);
+        assertEquals(Arrays.asList(Arrays.asList(a), Arrays.asList(c, b)), levels);
+    }
+
+    @Test
+    public void testStartLevelsBreakCycles()
+    {
+        Bundle a = bundle("a");
+        Bundle b = bundle("b");
+        Bundle c = bundle("c");
+        Bundle d = bundle("d");
+        Map<Bundle, Map<String, String>> bundles = new LinkedHashMap<Bundle, Map<String, String>>();
+        // d depends on the cycle of a and b, but is not part of it
+        bundles.put(d, headers(null, "a.Foo"));
+        bundles.put(a, headers("a.Foo", "b.Bar"));
+        bundles.put(b, headers("b.Bar", "a.Foo"));
+        bundles.put(c, headers(null, null));
+
+        List<List<Bundle>> levels = BundleStarter.getStartLevels(bundles);
+        assertEquals(Arrays.asList(Arrays.asList(c), Arrays.asList(a), Arrays.asList(d, b)), levels);
+    }
+
+    private static Map<String, String> headers(String provided, String required)
+    {
+        Map<String, String> headers = new HashMap<String, String>();
+        if (provided != null)
+        {
+            headers.put("Export-Service", provided);
+        }
+        if (required != null)
+        {
+            headers.put("Import-Service", required);
+        }
+        return headers;
+    }
+
+    private static Bundle bundle(final String name)
+    {
+        return (Bundle) Proxy.newProxyInstance(Bundle.class.getClassLoader(), new Class[] { Bundle.class },
+                new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        if (method.getName().equals("equals"))
+                        {
+                            return proxy == args[0];
+                        }
+                        if (method.getName().equals("hashCode"))
+                        {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (method.getName().equals("toString"))
+                        {
+                            return name;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
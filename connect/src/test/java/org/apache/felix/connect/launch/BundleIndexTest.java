@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.connect.launch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BundleIndexTest
+{
+    private File m_dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        m_dir = File.createTempFile("bundleindex", ".dir");
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : m_dir.listFiles())
+        {
+            file.delete();
+        }
+        m_dir.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put("Bundle-SymbolicName", "foo");
+        headers.put("Bundle-Description", "f\u00fc\u00df");
+        headers.put("Import-Package", new String(chars));
+        List<BundleDescriptor> bundles = new ArrayList<BundleDescriptor>();
+        bundles.add(new BundleDescriptor(null, "file:/foo.jar!/", headers));
+        bundles.add(new BundleDescriptor(null, "file:/bar.jar!/",
+                Collections.singletonMap("Bundle-SymbolicName", "bar")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BundleIndex.write(bundles, "fingerprint", out);
+
+        List<BundleDescriptor> read = BundleIndex.read(new ByteArrayInputStream(out.toByteArray()), null);
+        assertEquals(2, read.size());
+        assertEquals("file:/foo.jar!/", read.get(0).getUrl());
+        assertEquals(headers, read.get(0).getHeaders());
+        assertEquals("file:/bar.jar!/", read.get(1).getUrl());
+
+        read = BundleIndex.read(new ByteArrayInputStream(out.toByteArray()), "(Bundle-SymbolicName=bar)", null);
+        assertEquals(1, read.size());
+        assertEquals("file:/bar.jar!/", read.get(0).getUrl());
+    }
+
+    @Test
+    public void testLoadUsesIndexOfSameClasspath() throws Exception
+    {
+        File jar = createJar("foo", "1.0.0");
+        ClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        File index = new File(m_dir, "index");
+
+        List<BundleDescriptor> bundles = BundleIndex.load(index, null, loader);
+        assertEquals(1, bundles.size());
+        assertEquals("foo", bundles.get(0).getHeaders().get("Bundle-SymbolicName"));
+
+        // replace the index content, it is read as long as the classpath is the same
+        OutputStream out = new FileOutputStream(index);
+        try
+        {
+            BundleIndex.write(Collections.singletonList(new BundleDescriptor(null, "file:/bar.jar!/",
+                    Collections.singletonMap("Bundle-SymbolicName", "bar"))), BundleIndex.fingerprint(loader), out);
+        }
+        finally
+        {
+            out.close();
+        }
+        bundles = BundleIndex.load(index, null, loader);
+        assertEquals(1, bundles.size());
+        assertEquals("bar", bundles.get(0).getHeaders().get("Bundle-SymbolicName"));
+    }
+
+    @Test
+    public void testLoadRebuildsStaleIndex() throws Exception
+    {
+        File jar = createJar("foo", "1.0.0");
+        File index = new File(m_dir, "index");
+        List<BundleDescriptor> bundles = BundleIndex.load(index, null,
+                new URLClassLoader(new URL[] { jar.toURI().toURL() }, null));
+        assertEquals("1.0.0", bundles.get(0).getHeaders().get("Bundle-Version"));
+
+        // upgrade the jar in place
+        long lastModified = jar.lastModified();
+        createJar("foo", "1.1.0");
+        jar.setLastModified(lastModified + 10000);
+
+        bundles = BundleIndex.load(index, null,
+                new URLClassLoader(new URL[] { jar.toURI().toURL() }, null));
+        assertEquals(1, bundles.size());
+        assertEquals("1.1.0", bundles.get(0).getHeaders().get("Bundle-Version"));
+
+        // the rebuilt index is used from now on
+        bundles = BundleIndex.load(index, "(Bundle-Version=1.1.0)",
+                new URLClassLoader(new URL[] { jar.toURI().toURL() }, null));
+        assertEquals(1, bundles.size());
+    }
+
+    @Test
+    public void testLoadRebuildsUnreadableIndex() throws Exception
+    {
+        File jar = createJar("foo", "1.0.0");
+        File index = new File(m_dir, "index");
+        OutputStream out = new FileOutputStream(index);
+        out.write("garbage".getBytes("UTF-8"));
+        out.close();
+
+        List<BundleDescriptor> bundles = BundleIndex.load(index, null,
+                new URLClassLoader(new URL[] { jar.toURI().toURL() }, null));
+        assertEquals(1, bundles.size());
+        assertEquals("foo", bundles.get(0).getHeaders().get("Bundle-SymbolicName"));
+    }
+
+    private File createJar(String bsn, String version) throws IOException
+    {
+        File jar = new File(m_dir, bsn + ".jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Bundle-SymbolicName", bsn);
+        manifest.getMainAttributes().putValue("Bundle-Version", version);
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+        out.close();
+        return jar;
+    }
+}
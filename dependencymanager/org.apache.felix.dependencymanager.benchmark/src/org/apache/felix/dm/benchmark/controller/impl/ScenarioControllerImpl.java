@@ -63,6 +63,16 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel"
     );
     
+    /**
+     * Number of components added/removed by each tested bundle.
+     */
+    final static int COMPONENTS = ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)));
+    
+    /**
+     * Seconds to wait for all components to be started or stopped (more than one minute for large graphs).
+     */
+    final static long TIMEOUT = Math.max(60, COMPONENTS / 100);
+    
     /**
      * Our injected bundle context, used to lookup the bundles to benchmark.
      */
@@ -96,7 +106,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         // wait a bit in order to let the gogo banner be displayed before we start the bench.
         Unchecked.run(() -> Thread.sleep(500)); 
         
-        out.println("Starting benchmarks (each tested bundle will add/remove " + (ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)))) 
+        out.println("Starting benchmarks (each tested bundle will add/remove " + COMPONENTS 
            + " components during bundle activation).");
        
         // Stop all tested bundles.
@@ -246,13 +256,12 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void start(Bundle b) {
         try {
-            m_startLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_startLatch = new CountDownLatch(COMPONENTS);
             
             debug(() -> "starting bundle " + b.getSymbolicName());
             b.start();
                                     
-            if (! m_startLatch.await(60, TimeUnit.SECONDS)) {
+            if (! m_startLatch.await(TIMEOUT, TimeUnit.SECONDS)) {
                 out.println("Could not start components timely: current start latch=" + m_startLatch.getCount() + ", stop latch=" + m_stopLatch.getCount());
                 Unchecked.run(() -> Thread.sleep(Integer.MAX_VALUE)); // FIXME
             }
@@ -274,8 +283,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void stop(Bundle b) {
         try {
-            m_stopLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_stopLatch = new CountDownLatch(COMPONENTS);
                         
             debug(() -> "stopping bundle " + b.getSymbolicName());
             b.stop();
@@ -287,7 +295,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
             }
             
             // Wait for all component deactivations
-            if (! m_stopLatch.await(60, TimeUnit.SECONDS)) {
+            if (! m_stopLatch.await(TIMEOUT, TimeUnit.SECONDS)) {
                 out.println("Could not stop components timely: current start latch=" + m_startLatch.getCount() + ", stop latch=" + m_stopLatch.getCount());
                 Unchecked.run(() -> Thread.sleep(Integer.MAX_VALUE));
             }            
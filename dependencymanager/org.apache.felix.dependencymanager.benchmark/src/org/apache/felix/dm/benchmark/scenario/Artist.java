@@ -28,9 +28,9 @@ import java.util.List;
 public interface Artist {
     /**
      * When a scenario bundles starts, it creates the following number of Artists (service)
-     * (you have to regenerate the SCR xml descriptor if you modify this, see README)
+     * (can be overridden with the "dm.benchmark.artists" system property, see README)
      */
-    public final int ARTISTS = 30;
+    public final int ARTISTS = Integer.getInteger("dm.benchmark.artists", 30);
     
     /**
      * Each Artist creates the following number of musical Albums.
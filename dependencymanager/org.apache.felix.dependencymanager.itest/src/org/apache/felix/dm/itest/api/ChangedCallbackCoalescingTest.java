@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.itest.api;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.felix.dm.Component;
+import org.apache.felix.dm.DependencyManager;
+import org.apache.felix.dm.itest.util.Ensure;
+import org.apache.felix.dm.itest.util.TestBase;
+import org.junit.Assert;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Use case:
+ * 
+ * - A depends on B, and has a "change" callback on B. A also has an optional dependency on C.
+ * - A is started, then C is registered and A.add(C) blocks, so A's queue stays busy.
+ * - Meanwhile, the service properties of B are changed three times.
+ * 
+ * If B is optional, the pending changed events are coalesced and A.change(B) is only called once,
+ * with the latest properties. If B is required, every changed event is delivered.
+ */
+public class ChangedCallbackCoalescingTest extends TestBase {
+
+	final Ensure m_ensure = new Ensure();
+
+	public void testOptionalChangesAreCoalesced() throws Exception {
+		List<Object> changes = changeWhileBusy(false);
+		Assert.assertEquals(1, changes.size());
+		Assert.assertEquals(3, changes.get(0));
+	}
+
+	public void testRequiredChangesAreNotCoalesced() throws Exception {
+		List<Object> changes = changeWhileBusy(true);
+		Assert.assertEquals(3, changes.size());
+		Assert.assertEquals(3, changes.get(2));
+	}
+
+	private List<Object> changeWhileBusy(boolean required) throws Exception {
+		DependencyManager m = getDM();
+
+		A aObject = new A();
+		Component a = m.createComponent()
+				.setImplementation(aObject)
+				.add(m.createServiceDependency().setService(B.class).setRequired(required).setCallbacks(null, "change", null))
+				.add(m.createServiceDependency().setService(C.class).setRequired(false).setCallbacks("add", null));
+
+		ServiceRegistration b = context.registerService(B.class.getName(), new B(), properties(0));
+		m.add(a);
+		m_ensure.waitForStep(1, 5000); // A started
+
+		// register C from another thread: A.add(C) blocks, and A's queue is busy until it is released.
+		AtomicReference<ServiceRegistration> c = new AtomicReference<>();
+		Thread registerC = new Thread(() -> c.set(context.registerService(C.class.getName(), new C(), null)));
+		registerC.start();
+		m_ensure.waitForStep(2, 5000);
+
+		for (int i = 1; i <= 3; i ++) {
+			b.setProperties(properties(i));
+		}
+
+		aObject.release();
+		registerC.join(5000); // the thread which registered C runs the pending A callbacks before returning
+
+		m.remove(a);
+		b.unregister();
+		c.get().unregister();
+		return aObject.changes();
+	}
+
+	private Dictionary<String, Object> properties(int value) {
+		Dictionary<String, Object> properties = new Hashtable<>();
+		properties.put("value", value);
+		return properties;
+	}
+
+	class A {
+		final CountDownLatch m_busy = new CountDownLatch(1);
+		final List<Object> m_changes = new ArrayList<>();
+
+		void start() {
+			m_ensure.step(1);
+		}
+
+		void add(C c) throws InterruptedException {
+			m_ensure.step(2);
+			m_busy.await(5, TimeUnit.SECONDS);
+		}
+
+		void change(B b, Dictionary<String, Object> properties) {
+			synchronized (m_changes) {
+				m_changes.add(properties.get("value"));
+			}
+		}
+
+		void release() {
+			m_busy.countDown();
+		}
+
+		List<Object> changes() {
+			synchronized (m_changes) {
+				return new ArrayList<>(m_changes);
+			}
+		}
+	}
+
+	class B {
+	}
+
+	class C {
+	}
+
+}
@@ -100,6 +100,13 @@ public class ComponentImpl implements Component, ComponentContext, ComponentDecl
      */
 	private volatile Executor m_executor = new SerialExecutor(new Logger(null));
 	
+	/**
+	 * Changed events which are currently scheduled in our executor, per optional dependency. 
+	 * A "changed" event does not modify the component state: if a change is already pending for a given dependency 
+	 * event, then a subsequent change is coalesced with it, and only the latest event will be handled.
+	 */
+	private final Map<DependencyContext, Map<Event, Event>> m_pendingChanges = new ConcurrentHashMap<>();
+	
 	/**
 	 * The current state of the component state machine.
 	 */
@@ -413,6 +420,7 @@ public class ComponentImpl implements Component, ComponentContext, ComponentDecl
 		    }
 		    // Finally, cleanup the dependency events.
 		    m_dependencyEvents.remove(d);
+		    m_pendingChanges.remove(d);
 		    handleChange();
 		});
 		return this;
@@ -470,6 +478,11 @@ public class ComponentImpl implements Component, ComponentContext, ComponentDecl
 		// This is just a best effort, and the removed event will be handled asynchronosly if our 
 		// queue is currently being run by another thread, or by the threadpool.
 		
+		if (type == EventType.CHANGED && !dc.isRequired()) {
+			scheduleChanged(dc, event[0]);
+			return;
+		}
+		
 		boolean bypassThreadPoolIfPossible = (type == EventType.REMOVED);
 		schedule(bypassThreadPoolIfPossible, () ->  {
 			try {
@@ -495,6 +508,25 @@ public class ComponentImpl implements Component, ComponentContext, ComponentDecl
 		});
 	}
 
+    /**
+     * Schedules a changed event for an optional dependency. If a change for the same dependency event is already pending
+     * in our executor, the new event replaces the pending one, and no additional task is scheduled.
+     */
+    private void scheduleChanged(final DependencyContext dc, final Event event) {
+        final Map<Event, Event> pending = m_pendingChanges.computeIfAbsent(dc, k -> new ConcurrentHashMap<>());
+        if (pending.put(event, event) != null) {
+            return; // coalesced with the change which is already scheduled.
+        }
+        schedule(false, () -> {
+            try {
+                Event latest = pending.remove(event);
+                handleChanged(dc, latest != null ? latest : event);
+            } finally {
+                clearInvokeCallbackCache();
+            }
+        });
+    }
+
     @Override
     public Event getDependencyEvent(DependencyContext dc) {
         ConcurrentSkipListSet<Event> events = m_dependencyEvents.get(dc);
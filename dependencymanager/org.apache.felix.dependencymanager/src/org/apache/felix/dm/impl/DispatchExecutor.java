@@ -20,6 +20,9 @@ package org.apache.felix.dm.impl;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -138,7 +141,7 @@ public class DispatchExecutor implements Executor, Runnable {
         if (m_scheduled.compareAndSet(false, true)) { // schedules our run method in the tpool.
             try {
                 if (threadpool) {
-                    m_threadPool.execute(this);
+                    submit();
                 } else {
                     run(); // run all queue tasks from the caller thread
                 }
@@ -150,6 +153,25 @@ public class DispatchExecutor implements Executor, Runnable {
         }
     }
 
+    /**
+     * Hands this queue over to the threadpool. If the threadpool is a ForkJoinPool and we are currently running
+     * in one of its worker threads (typically because a component running in the pool is notifying another component), 
+     * then the queue is forked in the current worker's local deque: it will be either run by the current worker once 
+     * it is done with its current queue, or stolen by an idle worker. This avoids contention on the pool's shared 
+     * submission queue when many components are notifying each other.
+     */
+    private void submit() {
+        Executor threadPool = m_threadPool;
+        if (threadPool instanceof ForkJoinPool) {
+            Thread currThread = Thread.currentThread();
+            if (currThread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) currThread).getPool() == threadPool) {
+                ForkJoinTask.adapt(this).fork();
+                return;
+            }
+        }
+        threadPool.execute(this);
+    }
+
 	/**
 	 * Run all tasks scheduled in this queue, in FIFO order. This method may be executed either in the threadpool, or from
 	 * the caller thread.
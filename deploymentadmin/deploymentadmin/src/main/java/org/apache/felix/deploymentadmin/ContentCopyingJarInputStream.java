@@ -30,6 +30,7 @@ import java.io.PrintWriter;
 import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 
@@ -46,6 +47,7 @@ import java.util.zip.ZipEntry;
  */
 class ContentCopyingJarInputStream extends JarInputStream {
     private static final String MANIFEST_FILE = JarFile.MANIFEST_NAME;
+    private static final int BUFFER_SIZE = 8192;
 
     private final File m_contentDir;
 
@@ -146,6 +148,12 @@ class ContentCopyingJarInputStream extends JarInputStream {
         if (!file.createNewFile()) {
             throw new IOException("Attempt to overwrite file: " + file);
         }
-        return new GZIPOutputStream(new FileOutputStream(file));
+        return new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE) {
+            {
+                // Most entries are bundles, which are already compressed, so only store them. This keeps the files
+                // in the GZIP format that is expected when reading them...
+                def.setLevel(Deflater.NO_COMPRESSION);
+            }
+        };
     }
 }
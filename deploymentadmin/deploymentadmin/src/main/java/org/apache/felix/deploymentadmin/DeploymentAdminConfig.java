@@ -36,12 +36,16 @@ public class DeploymentAdminConfig {
     static final String KEY_STOP_UNAFFECTED_BUNDLES = PREFIX.concat("stopUnaffectedBundles");
     /** Configuration key used to allow usage of customizers outside a DP. */
     static final String KEY_ALLOW_FOREIGN_CUSTOMIZERS = PREFIX.concat("allowForeignCustomizers");
+    /** Configuration key used to hard link instead of copy the files of storage areas in snapshots. */
+    static final String KEY_USE_HARD_LINKS_FOR_SNAPSHOTS = PREFIX.concat("useHardLinksForSnapshots");
 
     static final boolean DEFAULT_STOP_UNAFFECTED_BUNDLES = true;
     static final boolean DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS = false;
+    static final boolean DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS = false;
 
     private final boolean m_stopUnaffectedBundles;
     private final boolean m_allowForeignCustomizers;
+    private final boolean m_useHardLinksForSnapshots;
 
     /**
      * Creates a new {@link DeploymentAdminConfig} instance with the default settings.
@@ -56,6 +60,9 @@ public class DeploymentAdminConfig {
 
         value = getFrameworkProperty(context, KEY_ALLOW_FOREIGN_CUSTOMIZERS);
         m_allowForeignCustomizers = parseBoolean(value, DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS);
+
+        value = getFrameworkProperty(context, KEY_USE_HARD_LINKS_FOR_SNAPSHOTS);
+        m_useHardLinksForSnapshots = parseBoolean(value, DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS);
     }
 
     /**
@@ -74,6 +81,15 @@ public class DeploymentAdminConfig {
         return m_stopUnaffectedBundles;
     }
 
+    /**
+     * @return <code>true</code> if the files of storage areas should be hard linked in snapshots, which is only safe
+     *         if bundles replace their files instead of modifying them in place, <code>false</code> if they should be
+     *         copied.
+     */
+    public boolean isUseHardLinksForSnapshots() {
+        return m_useHardLinksForSnapshots;
+    }
+
     private static boolean parseBoolean(String value, boolean dflt) {
         if (value == null || "".equals(value.trim())) {
             return dflt;
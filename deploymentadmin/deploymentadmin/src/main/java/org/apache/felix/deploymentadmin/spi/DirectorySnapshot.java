@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.deploymentadmin.spi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Creates snapshots of a storage area as a plain directory tree, which is restored by moving it back in place.
+ * <p>
+ * Files are either hard linked or copied with {@link Files#copy}, which lets the JVM use in-kernel copying or
+ * copy-on-write cloning of files where the file system supports it. Hard links are only a valid snapshot as long as
+ * the files in the storage area are replaced rather than modified in place, hence they must be enabled explicitly.
+ * If a hard link cannot be created (for example, because the snapshot is on another file system), the remaining
+ * files are copied.
+ * </p>
+ * <p>
+ * This class uses the <tt>java.nio.file</tt> API and is only to be used when this API is available, see
+ * {@link SnapshotCommand}.
+ * </p>
+ */
+final class DirectorySnapshot {
+
+    private DirectorySnapshot() {
+        // Nop
+    }
+
+    /**
+     * Creates a snapshot of the given directory.
+     *
+     * @param sourceDir the directory to create a snapshot of, cannot be <code>null</code>;
+     * @param snapshotDir the (non-existing) directory to create the snapshot in, cannot be <code>null</code>;
+     * @param useHardLinks <code>true</code> if files should be hard linked instead of copied.
+     * @throws IOException in case the snapshot could not be created.
+     */
+    static void store(File sourceDir, File snapshotDir, boolean useHardLinks) throws IOException {
+        copyTree(sourceDir.toPath(), snapshotDir.toPath(), useHardLinks);
+    }
+
+    /**
+     * Restores a snapshot by moving its contents into the given (empty) directory.
+     *
+     * @param snapshotDir the snapshot to restore, cannot be <code>null</code>;
+     * @param targetDir the directory to restore the snapshot in, cannot be <code>null</code>.
+     * @throws IOException in case the snapshot could not be restored.
+     */
+    static void restore(File snapshotDir, File targetDir) throws IOException {
+        Path target = targetDir.toPath();
+        Files.createDirectories(target);
+
+        File[] entries = snapshotDir.listFiles();
+        if (entries == null) {
+            throw new IOException("Failed to list snapshot " + snapshotDir + "!");
+        }
+        for (int i = 0; i < entries.length; i++) {
+            Path source = entries[i].toPath();
+            Path dest = target.resolve(source.getFileName().toString());
+            try {
+                Files.move(source, dest);
+            }
+            catch (IOException e) {
+                // Most likely, the snapshot is on another file system...
+                copyTree(source, dest, false /* useHardLinks */);
+            }
+        }
+    }
+
+    private static void copyTree(final Path source, final Path target, final boolean useHardLinks) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            private boolean m_link = useHardLinks;
+
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(resolve(dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path dest = resolve(file);
+                if (m_link) {
+                    try {
+                        Files.createLink(dest, file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    catch (UnsupportedOperationException e) {
+                        m_link = false;
+                    }
+                    catch (FileSystemException e) {
+                        m_link = false;
+                    }
+                }
+                Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+
+            private Path resolve(Path path) {
+                return target.resolve(source.relativize(path).toString());
+            }
+        });
+    }
+}
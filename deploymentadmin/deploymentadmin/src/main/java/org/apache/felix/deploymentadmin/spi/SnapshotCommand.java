@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Map;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -37,10 +38,22 @@ import org.osgi.service.deploymentadmin.BundleInfo;
 import org.osgi.service.deploymentadmin.DeploymentException;
 import org.osgi.service.log.LogService;
 
+/**
+ * Creates a snapshot of the storage area of all bundles of the target deployment package, which is restored upon
+ * rollback.
+ * <p>
+ * If the <tt>java.nio.file</tt> API is available, the snapshot is a copy of the storage area that is moved back in
+ * place upon rollback (see {@link DirectorySnapshot}). Otherwise, or if such a copy cannot be made, the storage area
+ * is stored in an uncompressed ZIP archive.
+ * </p>
+ */
 public class SnapshotCommand extends Command {
     /** The ZIP specification mandates that directory-entries end with a forward slash (on all platforms). */
     static final String FORWARD_SLASH = "/";
 
+    /** Whether or not snapshots can be stored as directories, which requires Java 7 or later. */
+    private static final boolean DIRECTORY_SNAPSHOTS = isDirectorySnapshotSupported();
+
     private final GetStorageAreaCommand m_getStorageAreaCommand;
 
     public SnapshotCommand(GetStorageAreaCommand getStorageAreaCommand) {
@@ -51,6 +64,8 @@ public class SnapshotCommand extends Command {
         AbstractDeploymentPackage target = session.getTargetAbstractDeploymentPackage();
         BundleContext context = session.getBundleContext();
 
+        boolean useHardLinks = session.getConfiguration().isUseHardLinksForSnapshots();
+
         BundleInfo[] infos = target.getBundleInfos();
         Map storageAreas = m_getStorageAreaCommand.getStorageAreas();
         for (int i = 0; i < infos.length; i++) {
@@ -67,14 +82,15 @@ public class SnapshotCommand extends Command {
                     snapshot.mkdirs();
                     snapshot = new File(snapshot, infos[i].getSymbolicName());
                     try {
-                        snapshot.createNewFile();
-                        store(root, snapshot);
+                        // Remove any left-overs of an earlier session...
+                        Utils.delete(snapshot, true /* deleteRoot */);
+                        snapshot(root, snapshot, useHardLinks);
                         addRollback(new RestoreSnapshotRunnable(session, snapshot, root));
                         addCommit(new DeleteSnapshotRunnable(session, snapshot));
                     }
                     catch (Exception e) {
                         session.getLog().log(LogService.LOG_WARNING, "Could not access storage area of bundle '" + symbolicName + "'!", e);
-                        snapshot.delete();
+                        Utils.delete(snapshot, true /* deleteRoot */);
                     }
                 }
                 else {
@@ -84,6 +100,44 @@ public class SnapshotCommand extends Command {
         }
     }
 
+    /**
+     * Creates a snapshot of the given directory, as a directory if possible, or as ZIP archive otherwise.
+     * 
+     * @param sourceDir the directory to create a snapshot of, cannot be <code>null</code>;
+     * @param snapshot the (non-existing) snapshot file to create, cannot be <code>null</code>;
+     * @param useHardLinks <code>true</code> if files are allowed to be hard linked instead of copied.
+     * @throws IOException in case the snapshot could not be created.
+     */
+    protected static void snapshot(File sourceDir, File snapshot, boolean useHardLinks) throws IOException {
+        if (DIRECTORY_SNAPSHOTS) {
+            try {
+                DirectorySnapshot.store(sourceDir, snapshot, useHardLinks);
+                return;
+            }
+            catch (IOException e) {
+                // Fall back to an archive...
+                Utils.delete(snapshot, true /* deleteRoot */);
+            }
+        }
+        store(sourceDir, snapshot);
+    }
+
+    /**
+     * Restores a snapshot created by {@link #snapshot(File, File, boolean)} in the given directory.
+     * 
+     * @param snapshot the snapshot to restore, cannot be <code>null</code>;
+     * @param targetDir the (empty) directory to restore the snapshot in, cannot be <code>null</code>.
+     * @throws IOException in case the snapshot could not be restored.
+     */
+    protected static void restoreSnapshot(File snapshot, File targetDir) throws IOException {
+        if (snapshot.isDirectory()) {
+            DirectorySnapshot.restore(snapshot, targetDir);
+        }
+        else {
+            restore(snapshot, targetDir);
+        }
+    }
+
     protected static void restore(File archiveFile, File targetDir) throws IOException {
         ZipInputStream input = null;
         try {
@@ -121,6 +175,8 @@ public class SnapshotCommand extends Command {
         ZipOutputStream output = null;
         try {
             output = new ZipOutputStream(new FileOutputStream(archiveFile));
+            // Storage areas are restored locally, compressing them only costs time...
+            output.setLevel(Deflater.NO_COMPRESSION);
             // Traverse source directory recursively, and store all entries...
             store(output, sourceDir, "");
         }
@@ -142,6 +198,16 @@ public class SnapshotCommand extends Command {
         }
     }
 
+    private static boolean isDirectorySnapshotSupported() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
     private static void store(ZipOutputStream output, File sourceDir, String entryName) throws IOException {
         File entry = new File(sourceDir, entryName);
 
@@ -192,7 +258,7 @@ public class SnapshotCommand extends Command {
         }
 
         protected void doRun() {
-            if (!m_snapshot.delete()) {
+            if (!Utils.delete(m_snapshot, true /* deleteRoot */)) {
                 m_session.getLog().log(LogService.LOG_WARNING, "Failed to delete snapshot in " + m_snapshot + "!");
             }
         }
@@ -212,10 +278,10 @@ public class SnapshotCommand extends Command {
         protected void doRun() throws Exception {
             try {
                 Utils.delete(m_root, false /* deleteRoot */);
-                restore(m_snapshot, m_root);
+                restoreSnapshot(m_snapshot, m_root);
             }
             finally {
-                m_snapshot.delete();
+                Utils.delete(m_snapshot, true /* deleteRoot */);
             }
         }
 
@@ -37,9 +37,11 @@ public class DeploymentAdminConfigTest extends TestCase {
     private static final String KEY_STOP_UNAFFECTED_BUNDLE = DeploymentAdminConfig.KEY_STOP_UNAFFECTED_BUNDLE;
     private static final String KEY_STOP_UNAFFECTED_BUNDLES = DeploymentAdminConfig.KEY_STOP_UNAFFECTED_BUNDLES;
     private static final String KEY_ALLOW_FOREIGN_CUSTOMIZERS = DeploymentAdminConfig.KEY_ALLOW_FOREIGN_CUSTOMIZERS;
+    private static final String KEY_USE_HARD_LINKS_FOR_SNAPSHOTS = DeploymentAdminConfig.KEY_USE_HARD_LINKS_FOR_SNAPSHOTS;
 
     private static final boolean DEFAULT_STOP_UNAFFECTED_BUNDLES = DeploymentAdminConfig.DEFAULT_STOP_UNAFFECTED_BUNDLES;
     private static final boolean DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS = DeploymentAdminConfig.DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS;
+    private static final boolean DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS = DeploymentAdminConfig.DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS;
 
     private final Map m_fwProperties = new HashMap();
 
@@ -51,6 +53,7 @@ public class DeploymentAdminConfigTest extends TestCase {
 
         assertEquals(DEFAULT_STOP_UNAFFECTED_BUNDLES, config.isStopUnaffectedBundles());
         assertEquals(DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS, config.isAllowForeignCustomizers());
+        assertEquals(DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS, config.isUseHardLinksForSnapshots());
     }
 
     /**
@@ -59,11 +62,13 @@ public class DeploymentAdminConfigTest extends TestCase {
     public void testFrameworkConfigurationOk() throws ConfigurationException {
         m_fwProperties.put(KEY_STOP_UNAFFECTED_BUNDLES, Boolean.toString(!DEFAULT_STOP_UNAFFECTED_BUNDLES));
         m_fwProperties.put(KEY_ALLOW_FOREIGN_CUSTOMIZERS, Boolean.toString(!DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS));
+        m_fwProperties.put(KEY_USE_HARD_LINKS_FOR_SNAPSHOTS, Boolean.toString(!DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS));
 
         DeploymentAdminConfig config = createDeploymentAdminConfig();
 
         assertEquals(!DEFAULT_STOP_UNAFFECTED_BUNDLES, config.isStopUnaffectedBundles());
         assertEquals(!DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS, config.isAllowForeignCustomizers());
+        assertEquals(!DEFAULT_USE_HARD_LINKS_FOR_SNAPSHOTS, config.isUseHardLinksForSnapshots());
     }
 
     /**
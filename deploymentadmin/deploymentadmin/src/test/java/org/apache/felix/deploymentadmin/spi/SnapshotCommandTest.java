@@ -83,6 +83,20 @@ public class SnapshotCommandTest extends TestCase {
         verifyArchiveContents(archiveFile, 3 /* dirs */, 6 /* files */);
     }
 
+    /**
+     * Tests that a directory snapshot is restored as it was, regardless of the changes made after taking it.
+     */
+    public void testRestoreDirectorySnapshotOk() throws Exception {
+        verifyRestoreDirectorySnapshot(false /* useHardLinks */);
+    }
+
+    /**
+     * Tests that a directory snapshot with hard links is restored as it was, when files are replaced after taking it.
+     */
+    public void testRestoreHardLinkedDirectorySnapshotOk() throws Exception {
+        verifyRestoreDirectorySnapshot(true /* useHardLinks */);
+    }
+
     protected void tearDown() throws Exception {
         Iterator iter = m_cleanup.iterator();
         while (iter.hasNext()) {
@@ -155,6 +169,30 @@ public class SnapshotCommandTest extends TestCase {
         return dir;
     }
 
+    private void verifyRestoreDirectorySnapshot(boolean useHardLinks) throws IOException {
+        File baseDir = createFileHierarchy();
+
+        File expectedDir = new File(createTempDir(), "expected");
+        assertTrue(Utils.copy(baseDir, expectedDir));
+
+        File snapshot = new File(createTempDir(), "snapshot");
+        SnapshotCommand.snapshot(baseDir, snapshot, useHardLinks);
+        assertTrue("Snapshot not created?!", snapshot.isDirectory());
+
+        // Replace, remove and add some files...
+        File file1 = new File(baseDir, "file1");
+        assertTrue(file1.delete());
+        createFile(file1, 512);
+        assertTrue(new File(baseDir, "dir1/file2").delete());
+        createFile(new File(baseDir, "dir1/file7"), 128);
+
+        assertTrue(Utils.delete(baseDir, false /* deleteRoot */));
+        SnapshotCommand.restoreSnapshot(snapshot, baseDir);
+
+        verifyDirContents(expectedDir, baseDir);
+        verifyDirContents(baseDir, expectedDir);
+    }
+
     private void verifyArchiveContents(File archive, int expectedDirCount, int expectedFileCount) throws IOException {
         FileInputStream fis = null;
         ZipInputStream zis = null;
@@ -49,6 +49,7 @@ import java.security.AccessControlContext;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -58,6 +59,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.StringTokenizer;
 
 class BundleImpl implements Bundle, BundleRevisions
@@ -71,9 +73,11 @@ class BundleImpl implements Bundle, BundleRevisions
     private boolean m_useDeclaredActivationPolicy;
     private BundleActivator m_activator = null;
     private volatile BundleContext m_context = null;
-    private final Map m_cachedHeaders = new HashMap();
-    private Map m_uninstalledHeaders = null;
-    private long m_cachedHeadersTimestamp;
+    // Localized headers of the current revision and wiring, replaced as a
+    // whole whenever the headers of another locale are added.
+    private final AtomicReference<LocalizedHeaders> m_cachedHeaders =
+        new AtomicReference<LocalizedHeaders>();
+    private volatile Map m_uninstalledHeaders = null;
     private final Bundle m_installingBundle;
 
     // Indicates whether the bundle is stale, meaning that it has
@@ -100,6 +104,18 @@ class BundleImpl implements Bundle, BundleRevisions
     }
 
     BundleImpl(Felix felix, Bundle installingBundle, BundleArchive archive) throws Exception
+    {
+        this(felix, installingBundle, archive, true);
+    }
+
+    /**
+     * Creates a bundle and parses the headers of its revision. Unless
+     * <tt>register</tt> is true, the revision is only checked for collisions
+     * and added to the resolver state by {@link #registerRevision()}, so that
+     * a batch of bundles can be parsed in parallel without the global lock.
+    **/
+    BundleImpl(Felix felix, Bundle installingBundle, BundleArchive archive, boolean register)
+        throws Exception
     {
         __m_felix = felix;
         m_archive = archive;
@@ -110,8 +126,15 @@ class BundleImpl implements Bundle, BundleRevisions
         m_context = null;
         m_installingBundle = installingBundle;
 
-        BundleRevisionImpl revision = createRevision(false);
-        addRevision(revision);
+        if (register)
+        {
+            BundleRevisionImpl revision = createRevision(false);
+            addRevision(revision);
+        }
+        else
+        {
+            m_revisions.add(parseRevision());
+        }
     }
 
     // This method exists because the system bundle extends BundleImpl
@@ -205,11 +228,8 @@ class BundleImpl implements Bundle, BundleRevisions
             m_state = Bundle.INSTALLED;
             m_stale = false;
 
-            synchronized (m_cachedHeaders)
-            {
-                m_cachedHeaders.clear();
-                m_cachedHeadersTimestamp = 0;
-            }
+            // The revision is reused, but its content may differ.
+            m_cachedHeaders.set(null);
         }
     }
 
@@ -361,153 +381,211 @@ class BundleImpl implements Bundle, BundleRevisions
 
     Map getCurrentLocalizedHeader(String locale)
     {
-        Map result = null;
-
         // Spec says empty local returns raw headers.
         if (locale.length() == 0)
         {
-            result = new StringMap(adapt(BundleRevisionImpl.class).getHeaders());
+            return new StringMap(adapt(BundleRevisionImpl.class).getHeaders());
         }
 
-        // If we have no result, try to get it from the cached headers.
-        if (result == null)
+        // If the bundle is uninstalled, then we should always return
+        // the uninstalled headers, which are the default locale as per
+        // the spec.
+        Map result = m_uninstalledHeaders;
+        if (result != null)
         {
-            synchronized (m_cachedHeaders)
-            {
-                // If the bundle is uninstalled, then we should always return
-                // the uninstalled headers, which are the default locale as per
-                // the spec.
-                if (m_uninstalledHeaders != null)
-                {
-                    result = m_uninstalledHeaders;
-                }
-                // If the bundle has been updated, clear the cached headers.
-                else if (getLastModified() > m_cachedHeadersTimestamp)
-                {
-                    m_cachedHeaders.clear();
-                }
-                // Otherwise, returned the cached headers if they exist.
-                else
-                {
-                    // Check if headers for this locale have already been resolved
-                    if (m_cachedHeaders.containsKey(locale))
-                    {
-                        result = (Map) m_cachedHeaders.get(locale);
-                    }
-                }
-            }
+            return result;
         }
 
-        // If the requested locale is not cached, then try to create it.
-        if (result == null)
+        // Return the cached headers if they exist for the current revision
+        // and wiring; if the bundle has been updated, they belong to an old
+        // revision, and if it has been resolved since, they lack the entries
+        // of its fragments.
+        BundleRevisionImpl revision = adapt(BundleRevisionImpl.class);
+        BundleWiring wiring = revision.getWiring();
+        LocalizedHeaders cached = m_cachedHeaders.get();
+        if ((cached != null) && cached.isFor(revision, wiring))
         {
-            // Get a modifiable copy of the raw headers.
-            Map headers = new StringMap(adapt(BundleRevisionImpl.class).getHeaders());
-            // Assume for now that this will be the result.
-            result = headers;
-
-            // Check to see if we actually need to localize anything
-            boolean localize = false;
-            for (Iterator it = headers.values().iterator(); !localize && it.hasNext(); )
+            result = cached.m_headers.get(locale);
+            if (result != null)
             {
-                if (((String) it.next()).startsWith("%"))
-                {
-                    localize = true;
-                }
+                return result;
             }
+        }
+
+        // The requested locale is not cached, so create it.
+        result = localizeHeaders(revision, wiring, locale);
+        updateHeaderCache(revision, wiring, locale, result);
+        return result;
+    }
+
+    /**
+     * Creates the headers of the given revision for the given locale
+     * and, if it has to fall back to the default locale, caches the
+     * headers for the default locale.
+    **/
+    private Map localizeHeaders(BundleRevisionImpl revision, BundleWiring wiring, String locale)
+    {
+        // Get a modifiable copy of the raw headers.
+        Map headers = new StringMap(revision.getHeaders());
 
-            if (!localize)
+        // Check to see if we actually need to localize anything
+        boolean localize = false;
+        for (Iterator it = headers.values().iterator(); !localize && it.hasNext(); )
+        {
+            if (((String) it.next()).startsWith("%"))
             {
-                // If localization is not needed, just cache the headers and return
-                // them as-is. Not sure if this is useful
-                updateHeaderCache(locale, headers);
+                localize = true;
             }
-            else
-            {
-                // Do localization here and return the localized headers
-                String basename = (String) headers.get(Constants.BUNDLE_LOCALIZATION);
-                if (basename == null)
-                {
-                    basename = Constants.BUNDLE_LOCALIZATION_DEFAULT_BASENAME;
-                }
+        }
+
+        if (!localize)
+        {
+            // If localization is not needed, just return the headers as-is.
+            return Collections.unmodifiableMap(headers);
+        }
 
-                // Create ordered list of revisions to search for localization
-                // property resources.
-                List<BundleRevision> revisionList = createLocalizationRevisionList(
-                    adapt(BundleRevisionImpl.class));
+        // Do localization here and return the localized headers
+        String basename = (String) headers.get(Constants.BUNDLE_LOCALIZATION);
+        if (basename == null)
+        {
+            basename = Constants.BUNDLE_LOCALIZATION_DEFAULT_BASENAME;
+        }
 
-                // Create ordered list of files to load properties from
-                List<String> resourceList = createLocalizationResourceList(basename, locale);
+        // Create ordered list of revisions to search for localization
+        // property resources.
+        List<BundleRevision> revisionList = createLocalizationRevisionList(revision);
 
-                // Create a merged props file with all available props for this locale
-                boolean found = false;
-                Properties mergedProperties = new Properties();
-                for (BundleRevision br : revisionList)
+        // Create ordered list of files to load properties from
+        List<String> resourceList = createLocalizationResourceList(basename, locale);
+
+        // Create a merged props file with all available props for this locale
+        boolean found = false;
+        Properties mergedProperties = new Properties();
+        for (BundleRevision br : revisionList)
+        {
+            for (String res : resourceList)
+            {
+                URL temp = ((BundleRevisionImpl) br).getEntry(res + ".properties");
+                if (temp != null)
                 {
-                    for (String res : resourceList)
+                    found = true;
+                    try
                     {
-                        URL temp = ((BundleRevisionImpl) br).getEntry(res + ".properties");
-                        if (temp != null)
-                        {
-                            found = true;
-                            try
-                            {
-                                mergedProperties.load(
-                                    temp.openConnection().getInputStream());
-                            }
-                            catch (IOException ex)
-                            {
-                                // File doesn't exist, just continue loop
-                            }
-                        }
+                        mergedProperties.load(
+                            temp.openConnection().getInputStream());
                     }
-                }
-
-                // If the specified locale was not found, then the spec says we should
-                // return the default localization.
-                if (!found && !locale.equals(Locale.getDefault().toString()))
-                {
-                    result = getCurrentLocalizedHeader(Locale.getDefault().toString());
-                }
-                // Otherwise, perform the localization based on the discovered
-                // properties and cache the result.
-                else
-                {
-                    // Resolve all localized header entries
-                    for (Iterator it = headers.entrySet().iterator(); it.hasNext(); )
+                    catch (IOException ex)
                     {
-                        Map.Entry entry = (Map.Entry) it.next();
-                        String value = (String) entry.getValue();
-                        if (value.startsWith("%"))
-                        {
-                            String newvalue;
-                            String key = value.substring(value.indexOf("%") + 1);
-                            newvalue = mergedProperties.getProperty(key);
-                            if (newvalue==null)
-                            {
-                                newvalue = key;
-                            }
-                            entry.setValue(newvalue);
-                        }
+                        // File doesn't exist, just continue loop
                     }
+                }
+            }
+        }
+
+        // If the specified locale was not found, then the spec says we should
+        // return the default localization.
+        String defaultLocale = Locale.getDefault().toString();
+        if (!found && !locale.equals(defaultLocale))
+        {
+            Map result = localizeHeaders(revision, wiring, defaultLocale);
+            updateHeaderCache(revision, wiring, defaultLocale, result);
+            return result;
+        }
 
-                    updateHeaderCache(locale, headers);
+        // Otherwise, perform the localization based on the discovered
+        // properties.
+        for (Iterator it = headers.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            String value = (String) entry.getValue();
+            if (value.startsWith("%"))
+            {
+                String newvalue;
+                String key = value.substring(value.indexOf("%") + 1);
+                newvalue = mergedProperties.getProperty(key);
+                if (newvalue==null)
+                {
+                    newvalue = key;
                 }
+                entry.setValue(newvalue);
             }
         }
 
-        return result;
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Localizes the headers of the given revision for the default locale
+     * once it is resolved, since only then the localization entries of its
+     * fragments are available. Must be called without holding any lock,
+     * since the localization entries of all the fragments are read.
+    **/
+    void preloadLocalizedHeaders(BundleRevisionImpl revision)
+    {
+        BundleWiring wiring = revision.getWiring();
+        if ((wiring == null) || (m_uninstalledHeaders != null)
+            || (adapt(BundleRevisionImpl.class) != revision))
+        {
+            return;
+        }
+
+        String locale = Locale.getDefault().toString();
+        LocalizedHeaders cached = m_cachedHeaders.get();
+        if ((cached != null) && cached.isFor(revision, wiring)
+            && cached.m_headers.containsKey(locale))
+        {
+            return;
+        }
+        updateHeaderCache(revision, wiring, locale, localizeHeaders(revision, wiring, locale));
     }
 
-    private void updateHeaderCache(String locale, Map localizedHeaders)
+    private void updateHeaderCache(
+        BundleRevisionImpl revision, BundleWiring wiring, String locale, Map localizedHeaders)
     {
-        synchronized (m_cachedHeaders)
+        // Replace the cached headers by a copy containing the new locale;
+        // retry if another thread replaced them in the meantime. Headers
+        // computed for a revision or wiring which is no longer the current
+        // one are dropped, since they may lack the entries of fragments.
+        LocalizedHeaders cached;
+        LocalizedHeaders updated;
+        do
         {
-            if (m_uninstalledHeaders == null)
+            if ((m_uninstalledHeaders != null) || (adapt(BundleRevisionImpl.class) != revision)
+                || (revision.getWiring() != wiring))
             {
-                m_cachedHeaders.put(locale, localizedHeaders);
-                m_cachedHeadersTimestamp = System.currentTimeMillis();
+                return;
             }
+            cached = m_cachedHeaders.get();
+            Map<String, Map> headers = ((cached != null) && cached.isFor(revision, wiring))
+                ? new HashMap<String, Map>(cached.m_headers)
+                : new HashMap<String, Map>();
+            headers.put(locale, localizedHeaders);
+            updated = new LocalizedHeaders(revision, wiring, headers);
+        }
+        while (!m_cachedHeaders.compareAndSet(cached, updated));
+    }
+
+    /**
+     * Immutable snapshot of the localized headers of a revision, tied to
+     * the wiring which determines the fragments they were read from.
+    **/
+    private static final class LocalizedHeaders
+    {
+        final BundleRevisionImpl m_revision;
+        final BundleWiring m_wiring;
+        final Map<String, Map> m_headers;
+
+        LocalizedHeaders(
+            BundleRevisionImpl revision, BundleWiring wiring, Map<String, Map> headers)
+        {
+            m_revision = revision;
+            m_wiring = wiring;
+            m_headers = headers;
+        }
+
+        boolean isFor(BundleRevisionImpl revision, BundleWiring wiring)
+        {
+            return (m_revision == revision) && (m_wiring == wiring);
         }
     }
 
@@ -1062,13 +1140,10 @@ class BundleImpl implements Bundle, BundleRevisions
         // and if the default locale is not cached. If this method is called
         // more than once, then subsequent calls will do nothing here since
         // only the default locale will be left in the header cache.
-        synchronized (m_cachedHeaders)
+        if (m_uninstalledHeaders == null)
         {
-            if (m_uninstalledHeaders == null)
-            {
-                m_uninstalledHeaders = headers;
-                m_cachedHeaders.clear();
-            }
+            m_uninstalledHeaders = headers;
+            m_cachedHeaders.set(null);
         }
     }
 
@@ -1259,7 +1334,26 @@ class BundleImpl implements Bundle, BundleRevisions
         getFramework().getResolver().addRevision(revision);
     }
 
+    /**
+     * Checks the revision parsed by the constructor for collisions and adds
+     * it to the resolver state. The caller must hold the global lock.
+    **/
+    synchronized void registerRevision() throws Exception
+    {
+        BundleRevisionImpl revision = m_revisions.get(0);
+        checkCollisions(revision, false);
+        m_revisions.remove(0);
+        addRevision(revision);
+    }
+
     private BundleRevisionImpl createRevision(boolean isUpdate) throws Exception
+    {
+        BundleRevisionImpl revision = parseRevision();
+        checkCollisions(revision, isUpdate);
+        return revision;
+    }
+
+    private BundleRevisionImpl parseRevision() throws Exception
     {
         // Get and parse the manifest from the most recent revision and
         // create an associated revision object for it.
@@ -1267,13 +1361,17 @@ class BundleImpl implements Bundle, BundleRevisions
             getFramework()._getProperty("java.specification.version"), m_archive.getCurrentRevision());
 
         // Create the bundle revision instance.
-        BundleRevisionImpl revision = new BundleRevisionImpl(
+        return new BundleRevisionImpl(
             this,
             Long.toString(getBundleId())
                 + "." + m_archive.getCurrentRevisionNumber().toString(),
             headerMap,
             m_archive.getCurrentRevision().getContent());
+    }
 
+    private void checkCollisions(BundleRevisionImpl revision, boolean isUpdate)
+        throws Exception
+    {
         // For R4 bundles, verify that the bundle symbolic name + version
         // is unique unless this check has been disabled.
         String allowMultiple =
@@ -1339,8 +1437,6 @@ class BundleImpl implements Bundle, BundleRevisions
                     + symName + ':' + bundleVersion, BundleException.DUPLICATE_BUNDLE_ERROR);
             }
         }
-
-        return revision;
     }
 
     synchronized ProtectionDomain getProtectionDomain()
@@ -296,6 +296,7 @@ public class BundleRevisionImpl implements BundleRevision, Resource
         if (m_wiring != null)
         {
             m_wiring.dispose();
+            ((BundleImpl) m_bundle).getFramework().wiringChanged(m_wiring);
             m_wiring = null;
         }
 
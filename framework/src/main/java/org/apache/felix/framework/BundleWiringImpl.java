@@ -172,6 +172,9 @@ public class BundleWiringImpl implements BundleWiring
 
     private volatile ConcurrentHashMap<String, ClassLoader> m_accessorLookupCache;
 
+    // Framework core metrics, null for wirings created without a resolver.
+    private final FrameworkMetrics m_metrics;
+
     BundleWiringImpl(
         Logger logger, Map configMap, StatefulResolver resolver,
         BundleRevisionImpl revision, List<BundleRevision> fragments,
@@ -182,6 +185,7 @@ public class BundleWiringImpl implements BundleWiring
         m_logger = logger;
         m_configMap = configMap;
         m_resolver = resolver;
+        m_metrics = (resolver != null) ? resolver.getMetrics() : null;
         m_revision = revision;
         m_importedPkgs = importedPkgs;
         m_requiredPkgs = requiredPkgs;
@@ -1443,6 +1447,9 @@ public class BundleWiringImpl implements BundleWiring
         }
         if (requestSet.add(name))
         {
+            FrameworkMetrics metrics = m_metrics;
+            long start = (metrics != null) ? metrics.begin() : 0L;
+            int outcome = FrameworkMetrics.DELEGATION_BOOT;
             try
             {
                 // Get the package of the target class/resource.
@@ -1460,7 +1467,9 @@ public class BundleWiringImpl implements BundleWiring
                     ClassLoader loader = m_accessorLookupCache.get(name);
                     if (loader != null)
                     {
-                        return loader.loadClass(name);
+                        outcome = FrameworkMetrics.DELEGATION_IMPORT;
+                        result = loader.loadClass(name);
+                        return result;
                     }
                 }
 
@@ -1498,6 +1507,7 @@ public class BundleWiringImpl implements BundleWiring
 
                 if (accessor)
                 {
+                    outcome = FrameworkMetrics.DELEGATION_IMPORT;
                     List<Collection<BundleRevision>> allRevisions = new ArrayList<Collection<BundleRevision>>( 1 + m_requiredPkgs.size());
                     allRevisions.add(m_importedPkgs.values());
                     allRevisions.addAll(m_requiredPkgs.values());
@@ -1520,6 +1530,7 @@ public class BundleWiringImpl implements BundleWiring
                         }
                     }
 
+                    outcome = FrameworkMetrics.DELEGATION_DYNAMIC;
                     try
                     {
                         result = tryImplicitBootDelegation(name, isClass);
@@ -1545,11 +1556,13 @@ public class BundleWiringImpl implements BundleWiring
                 // Look in the revision's imports. Note that the search may
                 // be aborted if this method throws an exception, otherwise
                 // it continues if a null is returned.
+                outcome = FrameworkMetrics.DELEGATION_IMPORT;
                 result = searchImports(pkgName, name, isClass);
 
                 // If not found, try the revision's own class path.
                 if (result == null)
                 {
+                    outcome = FrameworkMetrics.DELEGATION_LOCAL;
                     if (isClass)
                     {
                         ClassLoader cl = getClassLoaderInternal();
@@ -1572,6 +1585,7 @@ public class BundleWiringImpl implements BundleWiring
                     // If still not found, then try the revision's dynamic imports.
                     if (result == null)
                     {
+                        outcome = FrameworkMetrics.DELEGATION_DYNAMIC;
                         result = searchDynamicImports(pkgName, name, isClass);
                     }
                 }
@@ -1579,6 +1593,11 @@ public class BundleWiringImpl implements BundleWiring
             finally
             {
                 requestSet.remove(name);
+                if (start != 0L)
+                {
+                    metrics.classOrResourceLoaded(getBundle(), isClass,
+                        (result != null) ? outcome : FrameworkMetrics.DELEGATION_NOT_FOUND, start);
+                }
             }
         }
         else
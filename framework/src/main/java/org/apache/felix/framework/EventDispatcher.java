@@ -55,6 +55,7 @@ public class EventDispatcher
 {
     private final Logger m_logger;
     private final ServiceRegistry m_registry;
+    private final FrameworkMetrics m_metrics;
 
     private Map<BundleContext, List<ListenerInfo>>
         m_fwkListeners = Collections.EMPTY_MAP;
@@ -79,9 +80,15 @@ public class EventDispatcher
     private static final SecureAction m_secureAction = new SecureAction();
 
     public EventDispatcher(Logger logger, ServiceRegistry registry)
+    {
+        this(logger, registry, new FrameworkMetrics());
+    }
+
+    EventDispatcher(Logger logger, ServiceRegistry registry, FrameworkMetrics metrics)
     {
         m_logger = logger;
         m_registry = registry;
+        m_metrics = metrics;
     }
 
     public void startDispatching()
@@ -823,20 +830,24 @@ public class EventDispatcher
                     Filter filter = info.getParsedFilter();
                     Object acc = info.getSecurityContext();
 
+                    long start = dispatcher.m_metrics.begin();
                     try
                     {
                         if (type == Request.FRAMEWORK_EVENT)
                         {
                             invokeFrameworkListenerCallback(bundle, l, event);
+                            dispatcher.m_metrics.frameworkListenerCalled(bundle, start);
                         }
                         else if (type == Request.BUNDLE_EVENT)
                         {
                             invokeBundleListenerCallback(bundle, l, event);
+                            dispatcher.m_metrics.bundleListenerCalled(bundle, start);
                         }
                         else if (type == Request.SERVICE_EVENT)
                         {
                             invokeServiceListenerCallback(
                                 bundle, l, filter, acc, event, oldProps);
+                            dispatcher.m_metrics.serviceListenerCalled(bundle, start);
                         }
                     }
                     catch (Throwable th)
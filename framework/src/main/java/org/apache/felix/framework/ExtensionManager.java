@@ -60,6 +60,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.lang.reflect.Constructor;
 import java.net.URI;
 import java.net.URL;
 import java.security.AccessController;
@@ -84,7 +85,14 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The ExtensionManager class is used as content loader of the systembundle. Added extension
@@ -249,90 +257,51 @@ class ExtensionManager implements Content
 
         if (exports != null && (sysprops == null || "true".equalsIgnoreCase(felix._getProperty(FelixConstants.USE_PROPERTY_SUBSTITUTION_IN_SYSTEMPACKAGES))))
         {
-            java.nio.file.FileSystem fs = java.nio.file.FileSystems.getFileSystem(URI.create("jrt:/"));
-            final ClassParser classParser = new ClassParser();
-            final Set<String> imports = new HashSet<String>();
-            for (Set<String> moduleImport : exports.values())
+            Set<String> moduleKeys = new TreeSet<String>();
+            for (String moduleKey : exports.keySet())
             {
-                for (String pkg : moduleImport)
+                int idx = moduleKey.indexOf("@");
+                String module = idx == -1 ? moduleKey : moduleKey.substring(0, idx);
+                if (felix._getProperty(module) == null && !exports.get(moduleKey).isEmpty() && defaultProperties.getProperty(module) == null)
                 {
-                    if (!pkg.startsWith("java."))
-                    {
-                        imports.add(pkg);
-                    }
+                    moduleKeys.add(moduleKey);
                 }
             }
-            for (final String moduleKey : exports.keySet())
+
+            Map<String, SortedMap<String, SortedSet<String>>> modulesUses =
+                new HashMap<String, SortedMap<String, SortedSet<String>>>();
+            if ("true".equalsIgnoreCase(felix._getProperty(FelixConstants.CALCULATE_SYSTEMPACKAGES_USES)))
+            {
+                calculateUses(felix, moduleKeys, exports, modulesUses);
+            }
+
+            for (String moduleKey : moduleKeys)
             {
                 int idx = moduleKey.indexOf("@");
                 String module = idx == -1 ? moduleKey : moduleKey.substring(0, idx);
-                if (felix._getProperty(module) == null && !exports.get(moduleKey).isEmpty() && defaultProperties.getProperty(module) == null)
-                {
-                    final SortedMap<String, SortedSet<String>> referred = new TreeMap<String, SortedSet<String>>();
-                    if ("true".equalsIgnoreCase(felix._getProperty(FelixConstants.CALCULATE_SYSTEMPACKAGES_USES)))
-                    {
-                        try
-                        {
-                            Properties cachedProps = new Properties();
-                            File modulesDir = felix.getDataFile(felix, "modules");
-                            modulesDir.mkdirs();
-                            File cached = new File(modulesDir, moduleKey + ".properties");
-                            if (cached.isFile())
-                            {
-                                FileInputStream input = new FileInputStream(cached);
-                                cachedProps.load(new InputStreamReader(input, "UTF-8"));
-                                input.close();
-                                for (Enumeration<?> keys = cachedProps.propertyNames(); keys.hasMoreElements();)
-                                {
-                                    String pkg = (String) keys.nextElement();
-                                    referred.put(pkg, new TreeSet<String>(Arrays.asList(cachedProps.getProperty(pkg).split(","))));
-                                }
-                            }
-                            else
-                            {
-                                java.nio.file.Path path = fs.getPath("modules", module.substring("felix.jpms.".length()));
-                                java.nio.file.Files.walkFileTree(path, (java.nio.file.FileVisitor) Felix.class.getClassLoader().loadClass("org.apache.felix.framework.util.ClassFileVisitor")
-                                    .getConstructor(Set.class, Set.class, ClassParser.class, SortedMap.class).newInstance(imports, exports.get(moduleKey), classParser, referred));
-                                for (String pkg : referred.keySet())
-                                {
-                                    SortedSet<String> uses = referred.get(pkg);
-                                    if (uses != null && !uses.isEmpty())
-                                    {
-                                        cachedProps.setProperty(pkg, String.join(",", uses));
-                                    }
-                                }
-                                OutputStream output = new FileOutputStream(cached);
-                                cachedProps.store(new OutputStreamWriter(output, "UTF-8"), null);
-                                output.close();
-                            }
-                        }
-                        catch (Throwable e)
-                        {
-                            m_logger.log(Logger.LOG_WARNING, "Exception calculating JPMS module exports", e);
-                        }
-                    }
+                SortedMap<String, SortedSet<String>> referred = modulesUses.get(moduleKey);
+                referred = (referred == null) ? new TreeMap<String, SortedSet<String>>() : referred;
 
-                    String pkgs = "";
+                String pkgs = "";
 
-                    for (String pkg : exports.get(moduleKey))
+                for (String pkg : exports.get(moduleKey))
+                {
+                    pkgs += "," + pkg;
+                    SortedSet<String> uses = referred.get(pkg);
+                    if (uses != null && !uses.isEmpty())
                     {
-                        pkgs += "," + pkg;
-                        SortedSet<String> uses = referred.get(pkg);
-                        if (uses != null && !uses.isEmpty())
+                        pkgs += ";uses:=\"";
+                        String sep = "";
+                        for (String u : uses)
                         {
-                            pkgs += ";uses:=\"";
-                            String sep = "";
-                            for (String u : uses)
-                            {
-                                pkgs += sep + u;
-                                sep = ",";
-                            }
-                            pkgs += "\"";
+                            pkgs += sep + u;
+                            sep = ",";
                         }
-                        pkgs += ";version=\"" + defaultProperties.getProperty("felix.detect.java.version") + "\"";
+                        pkgs += "\"";
                     }
-                    defaultProperties.put(module, pkgs);
+                    pkgs += ";version=\"" + defaultProperties.getProperty("felix.detect.java.version") + "\"";
                 }
+                defaultProperties.put(module, pkgs);
             }
         }
 
@@ -378,6 +347,245 @@ class ExtensionManager implements Content
         m_systemBundleRevision.update(config);
     }
 
+    /**
+     * Calculates the uses of the packages exported by the given JPMS modules.
+     * The uses are kept in a single index for the running
+     * <tt>java.runtime.version</tt>, so that only the modules missing from the
+     * index are scanned, in parallel. The index is stored in the system bundle
+     * data area. An index named by <tt>felix.systempackages.calculate.uses.index</tt>,
+     * e.g. one built ahead of time for a container image, takes precedence
+     * over it and is only read.
+     */
+    @IgnoreJRERequirement
+    private void calculateUses(Felix felix, Set<String> moduleKeys, Map<String, Set<String>> exports,
+        Map<String, SortedMap<String, SortedSet<String>>> result)
+    {
+        try
+        {
+            deleteLegacyUsesCache(felix.getDataFile(felix, "modules"));
+
+            String version = felix._getProperty("java.runtime.version");
+            File index = felix.getDataFile(felix, "modules.index");
+            if ((index != null) && index.isFile() && !readUsesIndex(index, version, result))
+            {
+                // Rebuilt from a scan of all modules below.
+                index.delete();
+            }
+
+            String indexPath = felix._getProperty(FelixConstants.CALCULATE_SYSTEMPACKAGES_USES_INDEX);
+            if ((indexPath != null) && new File(indexPath).isFile())
+            {
+                readUsesIndex(new File(indexPath), version, result);
+            }
+
+            Set<String> missing = new TreeSet<String>(moduleKeys);
+            missing.removeAll(result.keySet());
+            if (!missing.isEmpty())
+            {
+                scanModules(missing, exports, result);
+                if (index != null)
+                {
+                    writeUsesIndex(index, version, result);
+                }
+            }
+        }
+        catch (Throwable e)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Exception calculating JPMS module exports", e);
+        }
+    }
+
+    // The per-module caches were replaced by the index.
+    static void deleteLegacyUsesCache(File modulesDir)
+    {
+        File[] cached = (modulesDir != null) ? modulesDir.listFiles() : null;
+        if (cached != null)
+        {
+            for (File file : cached)
+            {
+                if (file.getName().endsWith(".properties"))
+                {
+                    file.delete();
+                }
+            }
+            // Only removed if nothing else is left in it.
+            modulesDir.delete();
+        }
+    }
+
+    // The index maps every module to its packages which use other packages,
+    // and every such package, as "<module>/<package>", to the packages it uses.
+    // Returns false if the index could not be read, the result is unchanged then.
+    boolean readUsesIndex(File index, String version,
+        Map<String, SortedMap<String, SortedSet<String>>> result)
+    {
+        Properties props = new Properties();
+        try
+        {
+            InputStream input = new FileInputStream(index);
+            try
+            {
+                props.load(new InputStreamReader(input, "UTF-8"));
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+        catch (Exception ex)
+        {
+            // Also thrown by load() for malformed escapes.
+            m_logger.log(Logger.LOG_WARNING,
+                "Ignoring unreadable JPMS module uses index " + index, ex);
+            return false;
+        }
+
+        // An index of another runtime is stale and ignored as a whole.
+        if ((version == null) || !version.equals(props.getProperty("java.runtime.version")))
+        {
+            return true;
+        }
+        props.remove("java.runtime.version");
+
+        for (Enumeration<?> keys = props.propertyNames(); keys.hasMoreElements();)
+        {
+            String moduleKey = (String) keys.nextElement();
+            if (moduleKey.indexOf('/') != -1)
+            {
+                continue;
+            }
+            SortedMap<String, SortedSet<String>> referred = new TreeMap<String, SortedSet<String>>();
+            for (String pkg : props.getProperty(moduleKey).split(","))
+            {
+                String uses = props.getProperty(moduleKey + "/" + pkg);
+                if (uses != null)
+                {
+                    referred.put(pkg, new TreeSet<String>(Arrays.asList(uses.split(","))));
+                }
+            }
+            result.put(moduleKey, referred);
+        }
+        return true;
+    }
+
+    @IgnoreJRERequirement
+    private static void writeUsesIndex(File index, String version,
+        Map<String, SortedMap<String, SortedSet<String>>> modulesUses) throws IOException
+    {
+        if (version == null)
+        {
+            return;
+        }
+
+        Properties props = new Properties();
+        props.setProperty("java.runtime.version", version);
+        for (Map.Entry<String, SortedMap<String, SortedSet<String>>> entry : modulesUses.entrySet())
+        {
+            List<String> pkgs = new ArrayList<String>();
+            for (Map.Entry<String, SortedSet<String>> uses : entry.getValue().entrySet())
+            {
+                if (!uses.getValue().isEmpty())
+                {
+                    pkgs.add(uses.getKey());
+                    props.setProperty(entry.getKey() + "/" + uses.getKey(), String.join(",", uses.getValue()));
+                }
+            }
+            props.setProperty(entry.getKey(), String.join(",", pkgs));
+        }
+
+        index.getParentFile().mkdirs();
+        OutputStream output = new FileOutputStream(index);
+        try
+        {
+            props.store(new OutputStreamWriter(output, "UTF-8"), null);
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+     * Scans the classes of the given JPMS modules for the packages their
+     * exported packages refer to. Every module is walked on its own thread
+     * with its own <tt>ClassParser</tt>, since the parser is not thread safe.
+     */
+    @IgnoreJRERequirement
+    private void scanModules(Set<String> moduleKeys, final Map<String, Set<String>> exports,
+        Map<String, SortedMap<String, SortedSet<String>>> result) throws Exception
+    {
+        final java.nio.file.FileSystem fs = java.nio.file.FileSystems.getFileSystem(URI.create("jrt:/"));
+        final Set<String> imports = new HashSet<String>();
+        for (Set<String> moduleImport : exports.values())
+        {
+            for (String pkg : moduleImport)
+            {
+                if (!pkg.startsWith("java."))
+                {
+                    imports.add(pkg);
+                }
+            }
+        }
+        final Constructor<?> visitorConstructor = Felix.class.getClassLoader()
+            .loadClass("org.apache.felix.framework.util.ClassFileVisitor")
+            .getConstructor(Set.class, Set.class, ClassParser.class, SortedMap.class);
+
+        int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), moduleKeys.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(parallelism, 1),
+            new ThreadFactory()
+            {
+                final AtomicInteger counter = new AtomicInteger();
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "FelixModuleScanner-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        try
+        {
+            Map<String, Future<SortedMap<String, SortedSet<String>>>> futures =
+                new LinkedHashMap<String, Future<SortedMap<String, SortedSet<String>>>>();
+            for (final String moduleKey : moduleKeys)
+            {
+                futures.put(moduleKey, executor.submit(new Callable<SortedMap<String, SortedSet<String>>>()
+                {
+                    public SortedMap<String, SortedSet<String>> call() throws Exception
+                    {
+                        int idx = moduleKey.indexOf("@");
+                        String module = idx == -1 ? moduleKey : moduleKey.substring(0, idx);
+                        SortedMap<String, SortedSet<String>> referred = new TreeMap<String, SortedSet<String>>();
+                        java.nio.file.Path path = fs.getPath("modules", module.substring("felix.jpms.".length()));
+                        java.nio.file.Files.walkFileTree(path, (java.nio.file.FileVisitor) visitorConstructor
+                            .newInstance(imports, exports.get(moduleKey), new ClassParser(), referred));
+                        return referred;
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<SortedMap<String, SortedSet<String>>>> entry : futures.entrySet())
+            {
+                try
+                {
+                    result.put(entry.getKey(), entry.getValue().get());
+                }
+                catch (ExecutionException e)
+                {
+                    m_logger.log(Logger.LOG_WARNING, "Exception calculating JPMS module exports", e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    // Keep the modules scanned so far.
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     public BundleRevisionImpl getRevision()
     {
         return m_systemBundleRevision;
@@ -549,6 +757,7 @@ class ExtensionManager implements Content
                     !w.getRequirement().getNamespace().equals(BundleRevision.PACKAGE_NAMESPACE))
                 {
                     ((BundleWiringImpl) w.getRequirer().getWiring()).addDynamicWire(w);
+                    felix.wiringChanged(w.getRequirer().getWiring());
                     felix.getDependencies().addDependent(w);
                 }
             }
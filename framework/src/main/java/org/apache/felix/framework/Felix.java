@@ -95,6 +95,7 @@ import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -106,6 +107,14 @@ import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.DynamicMBean;
 
 public class Felix extends BundleImpl implements Framework
 {
@@ -193,6 +202,9 @@ public class Felix extends BundleImpl implements Framework
     // List of event listeners.
     private final EventDispatcher m_dispatcher;
 
+    // Framework core metrics.
+    private final FrameworkMetrics m_metrics;
+
     // Reusable bundle URL stream handler.
     private final URLStreamHandler m_bundleStreamHandler;
 
@@ -422,6 +434,11 @@ public class Felix extends BundleImpl implements Framework
         // Create default bundle stream handler.
         m_bundleStreamHandler = new URLHandlersBundleStreamHandler(this, m_secureAction);
 
+        // Create the metrics, which are only collected if enabled.
+        m_metrics = new FrameworkMetrics();
+        m_metrics.setEnabled("true".equals(getProperty(FelixConstants.METRICS_PROP)));
+        m_logger.setMetrics(m_metrics);
+
         // Create service registry.
         m_registry = new ServiceRegistry(m_logger, new ServiceRegistryCallbacks() {
             @Override
@@ -429,7 +446,7 @@ public class Felix extends BundleImpl implements Framework
             {
                 fireServiceEvent(event, oldProps);
             }
-        });
+        }, m_metrics);
 
         // Create a resolver and its state.
         m_resolver = new StatefulResolver(this, m_registry);
@@ -450,7 +467,7 @@ public class Felix extends BundleImpl implements Framework
         }
 
         // Create event dispatcher.
-        m_dispatcher = new EventDispatcher(m_logger, m_registry);
+        m_dispatcher = new EventDispatcher(m_logger, m_registry, m_metrics);
 
         // Create framework wiring object.
         m_fwkWiring = new FrameworkWiringImpl(this, m_registry);
@@ -463,6 +480,11 @@ public class Felix extends BundleImpl implements Framework
         return m_logger;
     }
 
+    FrameworkMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
     Map<String, Object> getConfig()
     {
         return m_configMap;
@@ -872,6 +894,7 @@ public class Felix extends BundleImpl implements Framework
                 m_resolver.start();
                 m_fwkWiring.start();
                 m_fwkStartLevel.start();
+                startMetricsService();
 
                 try
                 {
@@ -1349,6 +1372,36 @@ public class Felix extends BundleImpl implements Framework
         }).start();
     }
 
+    /**
+     * Installs the bundles at the specified locations as a single batch.
+     * The bundle archives are created in parallel, using up to
+     * <tt>felix.install.parallelism</tt> threads, the new bundles are added
+     * to the framework together and an <tt>INSTALLED</tt> event is then fired
+     * for each of them, in the order of the locations. As with
+     * <tt>BundleContext.installBundle()</tt>, the bundle already installed
+     * from a location is returned instead of installing it again.
+     * @param locations The locations of the bundles to install.
+     * @param exceptions An array of the same length as the locations, which
+     *        receives the exception of each bundle that could not be installed.
+     * @return The installed bundles, with <tt>null</tt> for each bundle that
+     *         could not be installed.
+     * @throws BundleException If the framework has been shutdown.
+    **/
+    public Bundle[] installBundles(String[] locations, Exception[] exceptions)
+        throws BundleException
+    {
+        if ((exceptions == null) || (exceptions.length != locations.length))
+        {
+            throw new IllegalArgumentException(
+                "There must be one exception slot for each location.");
+        }
+        if ((getState() & (Bundle.INSTALLED | Bundle.RESOLVED)) != 0)
+        {
+            throw new IllegalStateException("The framework has not been initialized.");
+        }
+        return installBundles(this, locations, exceptions);
+    }
+
     @Override
     public String toString()
     {
@@ -2085,10 +2138,40 @@ public class Felix extends BundleImpl implements Framework
             bundle.adapt(BundleWiring.class)).getClassLoader().loadClass(name);
     }
 
+    /**
+     * Registers the metrics service if the metrics property is set; if it
+     * is <tt>false</tt> metrics can still be enabled through the service.
+    **/
+    private void startMetricsService()
+    {
+        if (getProperty(FelixConstants.METRICS_PROP) != null)
+        {
+            Hashtable<String, Object> props = new Hashtable<String, Object>();
+            props.put("jmx.objectname", FrameworkMetricsService.OBJECT_NAME);
+            m_registry.registerService(this,
+                new String[] { DynamicMBean.class.getName() },
+                new FrameworkMetricsService(m_metrics),
+                props);
+        }
+    }
+
     /**
      * Implementation for Bundle.start().
     **/
     void startBundle(BundleImpl bundle, int options) throws BundleException
+    {
+        long start = m_metrics.begin();
+        try
+        {
+            _startBundle(bundle, options);
+        }
+        finally
+        {
+            m_metrics.bundleStarted(start);
+        }
+    }
+
+    private void _startBundle(BundleImpl bundle, int options) throws BundleException
     {
         // CONCURRENCY NOTE:
         // We will first acquire the bundle lock for the specific bundle
@@ -2395,8 +2478,16 @@ public class Felix extends BundleImpl implements Framework
                 // Activate the bundle if it has an activator.
                 if (bundle.getActivator() != null)
                 {
-                    m_secureAction.startActivator(
-                        bundle.getActivator(), bundle._getBundleContext());
+                    long start = m_metrics.begin();
+                    try
+                    {
+                        m_secureAction.startActivator(
+                            bundle.getActivator(), bundle._getBundleContext());
+                    }
+                    finally
+                    {
+                        m_metrics.activatorStarted(bundle, start);
+                    }
                 }
 
                 setBundleStateAndNotify(bundle, Bundle.ACTIVE);
@@ -2702,6 +2793,20 @@ public class Felix extends BundleImpl implements Framework
 
     void stopBundle(BundleImpl bundle, boolean record)
         throws BundleException
+    {
+        long start = m_metrics.begin();
+        try
+        {
+            _stopBundle(bundle, record);
+        }
+        finally
+        {
+            m_metrics.bundleStopped(start);
+        }
+    }
+
+    private void _stopBundle(BundleImpl bundle, boolean record)
+        throws BundleException
     {
         // Acquire bundle lock.
         try
@@ -2788,7 +2893,15 @@ public class Felix extends BundleImpl implements Framework
                 {
                     if (bundle.getActivator() != null)
                     {
-                        m_secureAction.stopActivator(bundle.getActivator(), bundle._getBundleContext());
+                        long start = m_metrics.begin();
+                        try
+                        {
+                            m_secureAction.stopActivator(bundle.getActivator(), bundle._getBundleContext());
+                        }
+                        finally
+                        {
+                            m_metrics.activatorStopped(bundle, start);
+                        }
                     }
                 }
                 catch (Throwable th)
@@ -2972,6 +3085,8 @@ public class Felix extends BundleImpl implements Framework
         // Fire UNINSTALLED event without holding the lock.
         fireBundleEvent(BundleEvent.UNINSTALLED, bundle);
 
+        m_metrics.bundleUninstalled(bundle);
+
         // Acquire global lock to check if we should auto-refresh.
         boolean locked = acquireGlobalLock();
         if (locked)
@@ -3416,6 +3531,411 @@ public class Felix extends BundleImpl implements Framework
         return (existing != null) ? existing : bundle;
     }
 
+    /**
+     * Installs a batch of bundles for {@link #installBundles(String[], Exception[])}.
+     * Since the install locks of all locations are held while the new bundles
+     * are installed, the locations that are already installed or repeated in
+     * the batch, as well as the bundles that collide with a bundle of the
+     * batch, are installed one at a time afterwards.
+    **/
+    Bundle[] installBundles(
+        Bundle origin, String[] locations, Exception[] exceptions)
+        throws BundleException
+    {
+        Bundle[] result = new Bundle[locations.length];
+        BundleImpl[] bundles = new BundleImpl[locations.length];
+        List<Integer> deferred = new ArrayList<Integer>();
+
+        // Acquire the install locks in order, so that two threads
+        // installing overlapping batches cannot deadlock.
+        SortedSet<String> sorted = new TreeSet<String>();
+        for (String location : locations)
+        {
+            if (location != null)
+            {
+                sorted.add(location);
+            }
+        }
+        List<String> lockedLocations = new ArrayList<String>(sorted.size());
+
+        try
+        {
+            for (String location : sorted)
+            {
+                acquireInstallLock(location);
+                lockedLocations.add(location);
+            }
+
+            // Check to see if the framework is still running;
+            if ((getState() == Bundle.STOPPING) ||
+                (getState() == Bundle.UNINSTALLED))
+            {
+                throw new BundleException("The framework has been shutdown.");
+            }
+
+            // Generate an identifier for the first occurrence of
+            // every location that is not installed yet.
+            long[] ids = new long[locations.length];
+            Set<String> pending = new HashSet<String>();
+            for (int i = 0; i < locations.length; i++)
+            {
+                if ((locations[i] != null)
+                    && (getBundle(locations[i]) == null)
+                    && pending.add(locations[i]))
+                {
+                    ids[i] = getNextId();
+                }
+                else
+                {
+                    ids[i] = -1;
+                    deferred.add(i);
+                }
+            }
+
+            createBundles(origin, locations, ids, bundles, exceptions);
+            registerBundles(bundles, deferred, exceptions);
+
+            // Acquire global lock.
+            boolean locked = acquireGlobalLock();
+            if (!locked)
+            {
+                for (BundleImpl bundle : bundles)
+                {
+                    deleteBundle(bundle, null);
+                }
+                // If the calling thread holds bundle locks, then we might not
+                // be able to get the global lock.
+                throw new IllegalStateException(
+                    "Unable to acquire global lock to add bundles.");
+            }
+            boolean added = false;
+            try
+            {
+                // Use a copy-on-write approach to add all the bundles
+                // to the installed maps at once.
+                Map[] maps = new Map[] {
+                    new HashMap<String, BundleImpl>(m_installedBundles[LOCATION_MAP_IDX]),
+                    new TreeMap<Long, BundleImpl>(m_installedBundles[IDENTIFIER_MAP_IDX])
+                };
+                for (BundleImpl bundle : bundles)
+                {
+                    if (bundle != null)
+                    {
+                        maps[LOCATION_MAP_IDX].put(bundle._getLocation(), bundle);
+                        maps[IDENTIFIER_MAP_IDX].put(new Long(bundle.getBundleId()), bundle);
+                        added = true;
+                    }
+                }
+                m_installedBundles = maps;
+            }
+            finally
+            {
+                releaseGlobalLock();
+            }
+
+            if (added)
+            {
+                for (Bundle extension : m_extensionManager.resolveExtensionBundles(this))
+                {
+                    m_extensionManager.startExtensionBundle(this, (BundleImpl) extension);
+                }
+            }
+        }
+        finally
+        {
+            // Always release install locks.
+            for (String location : lockedLocations)
+            {
+                releaseInstallLock(location);
+            }
+        }
+
+        // Fire bundle events.
+        for (int i = 0; i < bundles.length; i++)
+        {
+            if (bundles[i] != null)
+            {
+                fireBundleEvent(BundleEvent.INSTALLED, bundles[i], origin);
+                result[i] = bundles[i];
+            }
+        }
+
+        Collections.sort(deferred);
+        for (int i : deferred)
+        {
+            try
+            {
+                result[i] = installBundle(origin, locations[i], null);
+            }
+            catch (Exception ex)
+            {
+                exceptions[i] = ex;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the archives of the bundles that have an identifier and parses
+     * their headers, in parallel unless a security manager is installed, since
+     * the worker threads would not run with the access control context of the
+     * caller. The revisions are not registered yet, see {@link #registerBundles}.
+    **/
+    private void createBundles(
+        final Bundle origin, final String[] locations, final long[] ids,
+        final BundleImpl[] bundles, final Exception[] exceptions)
+    {
+        final int startLevel = getInitialBundleStartLevel();
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int i = 0; i < locations.length; i++)
+        {
+            if (ids[i] < 0)
+            {
+                continue;
+            }
+            final int index = i;
+            tasks.add(new Runnable()
+            {
+                public void run()
+                {
+                    BundleArchive ba;
+                    try
+                    {
+                        // Add the bundle to the cache.
+                        ba = m_cache.create(
+                            ids[index], startLevel, locations[index], null);
+                    }
+                    catch (Throwable ex)
+                    {
+                        exceptions[index] = new BundleException(
+                            "Unable to cache bundle: " + locations[index], ex);
+                        return;
+                    }
+                    try
+                    {
+                        bundles[index] = new BundleImpl(Felix.this, origin, ba, false);
+                    }
+                    catch (Throwable ex)
+                    {
+                        deleteBundle(null, ba);
+                        exceptions[index] = getInstallException(ex);
+                    }
+                }
+            });
+        }
+
+        int parallelism = Math.min(getInstallParallelism(), tasks.size());
+        if ((parallelism <= 1) || (System.getSecurityManager() != null))
+        {
+            for (Runnable task : tasks)
+            {
+                task.run();
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            parallelism,
+            new ThreadFactory()
+            {
+                final AtomicInteger counter = new AtomicInteger();
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "FelixInstaller-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+            for (Runnable task : tasks)
+            {
+                futures.add(executor.submit(task));
+            }
+            // The bundles must all be created or deleted before going on,
+            // so wait for them even if the calling thread is interrupted.
+            boolean interrupted = false;
+            for (Future<?> future : futures)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        future.get();
+                        break;
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        interrupted = true;
+                    }
+                    catch (ExecutionException ex)
+                    {
+                        // Cannot happen, since the tasks catch everything.
+                        break;
+                    }
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private int getInstallParallelism()
+    {
+        String str = (String) m_configMap.get(FelixConstants.INSTALL_PARALLELISM);
+        if (str != null)
+        {
+            try
+            {
+                return Integer.parseInt(str);
+            }
+            catch (NumberFormatException ex)
+            {
+                // Ignore and return the default value.
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Checks the parsed bundles for collisions and adds their revisions to
+     * the resolver state under a single acquisition of the global lock, then
+     * checks that the caller may install them.
+    **/
+    private void registerBundles(
+        BundleImpl[] bundles, List<Integer> deferred, Exception[] exceptions)
+        throws BundleException
+    {
+        // Acquire the global lock to register the revisions,
+        // since this impacts the global state.
+        boolean locked = acquireGlobalLock();
+        if (!locked)
+        {
+            for (BundleImpl bundle : bundles)
+            {
+                deleteBundle(bundle, null);
+            }
+            throw new BundleException(
+                "Unable to acquire the global lock to install the bundles.");
+        }
+        try
+        {
+            String allowMultiple = (String) m_configMap.get(Constants.FRAMEWORK_BSNVERSION);
+            Set<String> names = new HashSet<String>();
+            for (int i = 0; i < bundles.length; i++)
+            {
+                if (bundles[i] == null)
+                {
+                    continue;
+                }
+
+                // The bundles of the batch are not installed yet, so the
+                // revisions are not checked against each other. Install a
+                // colliding bundle on its own afterwards, which fails or
+                // lets the collision hooks decide as usual.
+                BundleRevisionImpl revision = bundles[i].adapt(BundleRevisionImpl.class);
+                if (revision.getManifestVersion().equals("2")
+                    && !Constants.FRAMEWORK_BSNVERSION_MULTIPLE.equals(allowMultiple))
+                {
+                    Version bundleVersion = revision.getVersion();
+                    bundleVersion = (bundleVersion == null) ? Version.emptyVersion : bundleVersion;
+                    if (!names.add(revision.getSymbolicName() + ':' + bundleVersion))
+                    {
+                        deleteBundle(bundles[i], null);
+                        bundles[i] = null;
+                        deferred.add(i);
+                        continue;
+                    }
+                }
+
+                try
+                {
+                    bundles[i].registerRevision();
+                }
+                catch (Throwable ex)
+                {
+                    deleteBundle(bundles[i], null);
+                    bundles[i] = null;
+                    exceptions[i] = getInstallException(ex);
+                }
+            }
+        }
+        finally
+        {
+            // Always release the global lock.
+            releaseGlobalLock();
+        }
+
+        for (int i = 0; i < bundles.length; i++)
+        {
+            if (bundles[i] == null)
+            {
+                continue;
+            }
+            try
+            {
+                if (!bundles[i].isExtension())
+                {
+                    Object sm = System.getSecurityManager();
+                    if (sm != null)
+                    {
+                        ((SecurityManager) sm).checkPermission(
+                            new AdminPermission(bundles[i], AdminPermission.LIFECYCLE));
+                    }
+                }
+                else
+                {
+                    m_extensionManager.addExtensionBundle(bundles[i]);
+                }
+            }
+            catch (Throwable ex)
+            {
+                deleteBundle(bundles[i], null);
+                bundles[i] = null;
+                exceptions[i] = getInstallException(ex);
+            }
+        }
+    }
+
+    // Removes a bundle that failed to install, or its archive, from the cache.
+    private void deleteBundle(BundleImpl bundle, BundleArchive ba)
+    {
+        try
+        {
+            if (bundle != null)
+            {
+                bundle.closeAndDelete();
+            }
+            else if (ba != null)
+            {
+                ba.closeAndDelete();
+            }
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(bundle,
+                Logger.LOG_ERROR,
+                "Could not remove from cache.", ex);
+        }
+    }
+
+    private static Exception getInstallException(Throwable ex)
+    {
+        if ((ex instanceof BundleException) || (ex instanceof AccessControlException))
+        {
+            return (Exception) ex;
+        }
+        return new BundleException("Could not create bundle object.", ex);
+    }
+
     /**
      * Retrieves a bundle from its location.
      *
@@ -3997,6 +4517,15 @@ public class Felix extends BundleImpl implements Framework
         return m_registry.getHookRegistry();
     }
 
+    /**
+     * Called when a wiring gains wires or is disposed, see
+     * {@link ServiceRegistry#wiringChanged(BundleWiring)}.
+    **/
+    void wiringChanged(BundleWiring wiring)
+    {
+        m_registry.wiringChanged(wiring);
+    }
+
     //
     // PackageAdmin related methods.
     //
@@ -4502,6 +5031,9 @@ public class Felix extends BundleImpl implements Framework
                         }
                     }
 
+                    // The refreshed bundles have new wirings now.
+                    m_registry.wiringsChanged();
+
                     // Restart all refreshed bundles that were previously running.
                     for (RefreshHelper helper : helpers)
                     {
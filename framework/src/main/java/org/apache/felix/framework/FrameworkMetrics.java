@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * Collects counters and timings of the framework core: resolves, class and
+ * resource loads, service registrations and lookups, listener dispatch, and
+ * bundle start and stop. Collecting is switched off by default; while it is
+ * off, the instrumented code only reads a volatile flag.
+ * <p>
+ * Instrumented code calls {@link #begin()} and hands the returned value to
+ * one of the recording methods, which ignore it if it is zero. This way a
+ * measurement that started while collecting was off is never recorded.
+ */
+final class FrameworkMetrics
+{
+    // Delegation outcomes of class and resource loads.
+    static final int DELEGATION_BOOT = 0;
+    static final int DELEGATION_IMPORT = 1;
+    static final int DELEGATION_LOCAL = 2;
+    static final int DELEGATION_DYNAMIC = 3;
+    static final int DELEGATION_NOT_FOUND = 4;
+
+    private static final String[] DELEGATION_NAMES =
+        { "Boot", "Import", "Local", "Dynamic", "NotFound" };
+
+    private volatile boolean m_enabled;
+
+    private final Statistic m_resolve = new Statistic();
+    private final Statistic m_resolveFailure = new Statistic();
+    private final Statistic m_resolveResources = new Statistic();
+    private final Statistic m_resolvePermutations = new Statistic();
+    private final Statistic m_resolvePackageSpaces = new Statistic();
+    private final Statistic[] m_classLoads = new Statistic[DELEGATION_NAMES.length];
+    private final Statistic[] m_resourceLoads = new Statistic[DELEGATION_NAMES.length];
+    private final Statistic m_serviceRegistration = new Statistic();
+    private final Statistic m_serviceLookup = new Statistic();
+    private final Statistic m_frameworkListener = new Statistic();
+    private final Statistic m_bundleListener = new Statistic();
+    private final Statistic m_serviceListener = new Statistic();
+    private final Statistic m_bundleStart = new Statistic();
+    private final Statistic m_bundleStop = new Statistic();
+    private final Statistic m_activatorStart = new Statistic();
+    private final Statistic m_activatorStop = new Statistic();
+
+    // Maps the statistic names to the statistics, in a stable order.
+    private final Map<String, Statistic> m_statistics;
+
+    // Maps bundle identifiers to the statistics of the bundle.
+    private final ConcurrentMap<Long, BundleStatistics> m_bundleStatistics =
+        new ConcurrentHashMap<Long, BundleStatistics>();
+
+    FrameworkMetrics()
+    {
+        Map<String, Statistic> statistics = new LinkedHashMap<String, Statistic>();
+        statistics.put("Resolve", m_resolve);
+        statistics.put("ResolveFailure", m_resolveFailure);
+        statistics.put("ResolveResources", m_resolveResources);
+        statistics.put("ResolvePermutations", m_resolvePermutations);
+        statistics.put("ResolvePackageSpaces", m_resolvePackageSpaces);
+        for (int i = 0; i < DELEGATION_NAMES.length; i++)
+        {
+            m_classLoads[i] = new Statistic();
+            statistics.put("ClassLoad" + DELEGATION_NAMES[i], m_classLoads[i]);
+        }
+        for (int i = 0; i < DELEGATION_NAMES.length; i++)
+        {
+            m_resourceLoads[i] = new Statistic();
+            statistics.put("ResourceLoad" + DELEGATION_NAMES[i], m_resourceLoads[i]);
+        }
+        statistics.put("ServiceRegistration", m_serviceRegistration);
+        statistics.put("ServiceLookup", m_serviceLookup);
+        statistics.put("FrameworkListener", m_frameworkListener);
+        statistics.put("BundleListener", m_bundleListener);
+        statistics.put("ServiceListener", m_serviceListener);
+        statistics.put("BundleStart", m_bundleStart);
+        statistics.put("BundleStop", m_bundleStop);
+        statistics.put("ActivatorStart", m_activatorStart);
+        statistics.put("ActivatorStop", m_activatorStop);
+        m_statistics = Collections.unmodifiableMap(statistics);
+    }
+
+    boolean isEnabled()
+    {
+        return m_enabled;
+    }
+
+    void setEnabled(boolean enabled)
+    {
+        m_enabled = enabled;
+    }
+
+    /**
+     * Starts a measurement.
+     *
+     * @return the current time in nanoseconds, or zero if collecting is off.
+     */
+    long begin()
+    {
+        return m_enabled ? System.nanoTime() : 0L;
+    }
+
+    void resolved(long start, boolean succeeded)
+    {
+        if (start != 0L)
+        {
+            (succeeded ? m_resolve : m_resolveFailure).record(System.nanoTime() - start);
+        }
+    }
+
+    void resolveStatistics(int resources, int permutations)
+    {
+        if (m_enabled)
+        {
+            m_resolveResources.record(resources);
+            m_resolvePermutations.record(permutations);
+        }
+    }
+
+    /**
+     * Records the number of package spaces recomputed for a checked permutation.
+     */
+    void packageSpacesCalculated(int recomputed)
+    {
+        if (m_enabled)
+        {
+            m_resolvePackageSpaces.record(recomputed);
+        }
+    }
+
+    void classOrResourceLoaded(Bundle bundle, boolean isClass, int outcome, long start)
+    {
+        if (start != 0L)
+        {
+            long nanos = System.nanoTime() - start;
+            if (isClass)
+            {
+                m_classLoads[outcome].record(nanos);
+                getBundleStatistics(bundle).m_classLoad.record(nanos);
+            }
+            else
+            {
+                m_resourceLoads[outcome].record(nanos);
+                getBundleStatistics(bundle).m_resourceLoad.record(nanos);
+            }
+        }
+    }
+
+    void serviceRegistered(long start)
+    {
+        if (start != 0L)
+        {
+            m_serviceRegistration.record(System.nanoTime() - start);
+        }
+    }
+
+    void servicesLookedUp(long start)
+    {
+        if (start != 0L)
+        {
+            m_serviceLookup.record(System.nanoTime() - start);
+        }
+    }
+
+    void frameworkListenerCalled(Bundle bundle, long start)
+    {
+        listenerCalled(m_frameworkListener, bundle, start);
+    }
+
+    void bundleListenerCalled(Bundle bundle, long start)
+    {
+        listenerCalled(m_bundleListener, bundle, start);
+    }
+
+    void serviceListenerCalled(Bundle bundle, long start)
+    {
+        listenerCalled(m_serviceListener, bundle, start);
+    }
+
+    private void listenerCalled(Statistic statistic, Bundle bundle, long start)
+    {
+        if (start != 0L)
+        {
+            long nanos = System.nanoTime() - start;
+            statistic.record(nanos);
+            getBundleStatistics(bundle).m_listener.record(nanos);
+        }
+    }
+
+    void bundleStarted(long start)
+    {
+        if (start != 0L)
+        {
+            m_bundleStart.record(System.nanoTime() - start);
+        }
+    }
+
+    void bundleStopped(long start)
+    {
+        if (start != 0L)
+        {
+            m_bundleStop.record(System.nanoTime() - start);
+        }
+    }
+
+    void activatorStarted(Bundle bundle, long start)
+    {
+        if (start != 0L)
+        {
+            long nanos = System.nanoTime() - start;
+            m_activatorStart.record(nanos);
+            getBundleStatistics(bundle).m_activatorStart.record(nanos);
+        }
+    }
+
+    void activatorStopped(Bundle bundle, long start)
+    {
+        if (start != 0L)
+        {
+            long nanos = System.nanoTime() - start;
+            m_activatorStop.record(nanos);
+            getBundleStatistics(bundle).m_activatorStop.record(nanos);
+        }
+    }
+
+    /**
+     * Drops the statistics of an uninstalled bundle.
+     */
+    void bundleUninstalled(Bundle bundle)
+    {
+        m_bundleStatistics.remove(bundle.getBundleId());
+    }
+
+    Map<String, Statistic> getStatistics()
+    {
+        return m_statistics;
+    }
+
+    /**
+     * Returns the statistics of a bundle by name, or {@code null} if nothing
+     * was recorded for the bundle.
+     */
+    Map<String, Statistic> getStatistics(long bundleId)
+    {
+        BundleStatistics statistics = m_bundleStatistics.get(bundleId);
+        return (statistics == null) ? null : statistics.m_statistics;
+    }
+
+    void reset()
+    {
+        for (Statistic statistic : m_statistics.values())
+        {
+            statistic.reset();
+        }
+        m_bundleStatistics.clear();
+    }
+
+    private BundleStatistics getBundleStatistics(Bundle bundle)
+    {
+        Long id = (bundle == null) ? Long.valueOf(-1) : Long.valueOf(bundle.getBundleId());
+        BundleStatistics statistics = m_bundleStatistics.get(id);
+        if (statistics == null)
+        {
+            statistics = new BundleStatistics();
+            BundleStatistics existing = m_bundleStatistics.putIfAbsent(id, statistics);
+            if (existing != null)
+            {
+                statistics = existing;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Counts recorded values and keeps their total and maximum. Values are
+     * nanoseconds for timings.
+     */
+    static final class Statistic
+    {
+        private final AtomicLong m_count = new AtomicLong();
+        private final AtomicLong m_total = new AtomicLong();
+        private final AtomicLong m_max = new AtomicLong();
+
+        void record(long value)
+        {
+            m_count.incrementAndGet();
+            m_total.addAndGet(value);
+            long max = m_max.get();
+            while ((value > max) && !m_max.compareAndSet(max, value))
+            {
+                max = m_max.get();
+            }
+        }
+
+        long getCount()
+        {
+            return m_count.get();
+        }
+
+        long getTotal()
+        {
+            return m_total.get();
+        }
+
+        long getMax()
+        {
+            return m_max.get();
+        }
+
+        void reset()
+        {
+            m_count.set(0);
+            m_total.set(0);
+            m_max.set(0);
+        }
+    }
+
+    private static final class BundleStatistics
+    {
+        final Statistic m_classLoad = new Statistic();
+        final Statistic m_resourceLoad = new Statistic();
+        final Statistic m_listener = new Statistic();
+        final Statistic m_activatorStart = new Statistic();
+        final Statistic m_activatorStop = new Statistic();
+        final Map<String, Statistic> m_statistics;
+
+        BundleStatistics()
+        {
+            Map<String, Statistic> statistics = new LinkedHashMap<String, Statistic>();
+            statistics.put("ClassLoad", m_classLoad);
+            statistics.put("ResourceLoad", m_resourceLoad);
+            statistics.put("Listener", m_listener);
+            statistics.put("ActivatorStart", m_activatorStart);
+            statistics.put("ActivatorStop", m_activatorStop);
+            m_statistics = Collections.unmodifiableMap(statistics);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+import org.apache.felix.framework.FrameworkMetrics.Statistic;
+
+/**
+ * Exposes the {@link FrameworkMetrics} as a {@link DynamicMBean} service of
+ * the system bundle. The service carries a <tt>jmx.objectname</tt> property,
+ * so JMX whiteboard implementations register it with the platform MBean
+ * server; other management agents can use the service directly, as it only
+ * depends on <tt>javax.management</tt>.
+ * <p>
+ * Every statistic <tt>X</tt> has the attributes <tt>XCount</tt>,
+ * <tt>XTotal</tt> and <tt>XMax</tt>, timings are in nanoseconds. The
+ * <tt>Enabled</tt> attribute switches collecting on and off.
+ */
+class FrameworkMetricsService implements DynamicMBean
+{
+    static final String OBJECT_NAME = "org.apache.felix.framework:type=Metrics";
+
+    private static final String ENABLED = "Enabled";
+    private static final String COUNT = "Count";
+    private static final String TOTAL = "Total";
+    private static final String MAX = "Max";
+    private static final String RESET = "reset";
+    private static final String GET_BUNDLE_STATISTICS = "getBundleStatistics";
+
+    private final FrameworkMetrics m_metrics;
+    private final MBeanInfo m_info;
+
+    FrameworkMetricsService(FrameworkMetrics metrics)
+    {
+        m_metrics = metrics;
+
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        attributes.add(new MBeanAttributeInfo(ENABLED, boolean.class.getName(),
+            "Whether metrics are collected", true, true, true));
+        for (String name : metrics.getStatistics().keySet())
+        {
+            attributes.add(new MBeanAttributeInfo(name + COUNT, long.class.getName(),
+                "Number of " + name + " measurements", true, false, false));
+            attributes.add(new MBeanAttributeInfo(name + TOTAL, long.class.getName(),
+                "Sum of the " + name + " measurements", true, false, false));
+            attributes.add(new MBeanAttributeInfo(name + MAX, long.class.getName(),
+                "Largest " + name + " measurement", true, false, false));
+        }
+        MBeanOperationInfo[] operations = new MBeanOperationInfo[] {
+            new MBeanOperationInfo(RESET, "Resets all statistics",
+                new MBeanParameterInfo[0], void.class.getName(),
+                MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo(GET_BUNDLE_STATISTICS,
+                "Returns the statistics of a bundle, or null if none were recorded",
+                new MBeanParameterInfo[] {
+                    new MBeanParameterInfo("bundleId", long.class.getName(), "The bundle identifier") },
+                Map.class.getName(), MBeanOperationInfo.INFO)
+        };
+        m_info = new MBeanInfo(getClass().getName(), "Apache Felix framework metrics",
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+            null, operations, null);
+    }
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        if (ENABLED.equals(attribute))
+        {
+            return Boolean.valueOf(m_metrics.isEnabled());
+        }
+        for (Entry<String, Statistic> entry : m_metrics.getStatistics().entrySet())
+        {
+            if ((attribute != null) && attribute.startsWith(entry.getKey()))
+            {
+                String suffix = attribute.substring(entry.getKey().length());
+                if (COUNT.equals(suffix))
+                {
+                    return Long.valueOf(entry.getValue().getCount());
+                }
+                else if (TOTAL.equals(suffix))
+                {
+                    return Long.valueOf(entry.getValue().getTotal());
+                }
+                else if (MAX.equals(suffix))
+                {
+                    return Long.valueOf(entry.getValue().getMax());
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    public void setAttribute(Attribute attribute)
+        throws AttributeNotFoundException, InvalidAttributeValueException
+    {
+        if (!ENABLED.equals(attribute.getName()))
+        {
+            throw new AttributeNotFoundException(attribute.getName());
+        }
+        if (!(attribute.getValue() instanceof Boolean))
+        {
+            throw new InvalidAttributeValueException(
+                "Enabled must be a boolean: " + attribute.getValue());
+        }
+        m_metrics.setEnabled(((Boolean) attribute.getValue()).booleanValue());
+    }
+
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (String name : attributes)
+        {
+            try
+            {
+                list.add(new Attribute(name, getAttribute(name)));
+            }
+            catch (AttributeNotFoundException ex)
+            {
+                // Unknown attributes are left out, as required by DynamicMBean.
+            }
+        }
+        return list;
+    }
+
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (Object attribute : attributes)
+        {
+            try
+            {
+                setAttribute((Attribute) attribute);
+                list.add(attribute);
+            }
+            catch (Exception ex)
+            {
+                // Attributes that cannot be set are left out, as required by DynamicMBean.
+            }
+        }
+        return list;
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature)
+        throws MBeanException, ReflectionException
+    {
+        if (RESET.equals(actionName))
+        {
+            m_metrics.reset();
+            return null;
+        }
+        else if (GET_BUNDLE_STATISTICS.equals(actionName)
+            && (params != null) && (params.length == 1) && (params[0] instanceof Long))
+        {
+            return getBundleStatistics(((Long) params[0]).longValue());
+        }
+        throw new ReflectionException(
+            new NoSuchMethodException(actionName), "Unknown operation: " + actionName);
+    }
+
+    public MBeanInfo getMBeanInfo()
+    {
+        return m_info;
+    }
+
+    private Map<String, Long> getBundleStatistics(long bundleId)
+    {
+        Map<String, Statistic> statistics = m_metrics.getStatistics(bundleId);
+        if (statistics == null)
+        {
+            return null;
+        }
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Entry<String, Statistic> entry : statistics.entrySet())
+        {
+            result.put(entry.getKey() + COUNT, Long.valueOf(entry.getValue().getCount()));
+            result.put(entry.getKey() + TOTAL, Long.valueOf(entry.getValue().getTotal()));
+            result.put(entry.getKey() + MAX, Long.valueOf(entry.getValue().getMax()));
+        }
+        return result;
+    }
+}
@@ -41,6 +41,8 @@ public class Logger extends org.apache.felix.resolver.Logger
 {
     private Object[] m_logger;
 
+    private volatile FrameworkMetrics m_metrics;
+
     public Logger()
     {
         super(LOG_ERROR);
@@ -69,6 +71,31 @@ public class Logger extends org.apache.felix.resolver.Logger
         }
     }
 
+    void setMetrics(FrameworkMetrics metrics)
+    {
+        m_metrics = metrics;
+    }
+
+    @Override
+    public void logResolveStatistics(int resources, int permutations)
+    {
+        FrameworkMetrics metrics = m_metrics;
+        if (metrics != null)
+        {
+            metrics.resolveStatistics(resources, permutations);
+        }
+    }
+
+    @Override
+    public void logPackageSpaces(int resources, int recomputed)
+    {
+        FrameworkMetrics metrics = m_metrics;
+        if (metrics != null)
+        {
+            metrics.packageSpacesCalculated(recomputed);
+        }
+    }
+
     public final void log(ServiceReference sr, int level, String msg)
     {
         _log(null, sr, level, msg, null);
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * This cache remembers whether the services of a provider wiring are
+ * assignable to a class name as seen by a requester wiring, so that
+ * {@link org.osgi.framework.ServiceReference#isAssignableTo(org.osgi.framework.Bundle, String)}
+ * does not have to inspect the wires and load classes on every call.
+ * <p>
+ * The cache is cleared when bundles are refreshed, and the entries of a
+ * wiring are removed when it gains a dynamic wire or is disposed, so that
+ * no wiring or class is kept beyond its lifetime. Entries computed while
+ * wirings change are discarded. The number of entries is bounded; the
+ * cache is simply cleared when the bound is reached.
+ */
+class ServiceAssignabilityCache
+{
+    /** result of a class space check not depending on the service object */
+    static final Entry ALLOW = new Entry(null, true);
+    static final Entry DENY = new Entry(null, false);
+
+    /** maximum number of entries, reaching it clears the cache */
+    static final int MAX_ENTRIES = 4096;
+
+    private final ConcurrentMap<Key, Entry> m_entries = new ConcurrentHashMap<Key, Entry>();
+
+    /** incremented on every clear, to detect entries computed concurrently to a refresh */
+    private final AtomicLong m_generation = new AtomicLong();
+
+    long getGeneration()
+    {
+        return m_generation.get();
+    }
+
+    Entry get(BundleWiring requester, BundleWiring provider, String className)
+    {
+        return m_entries.get(new Key(requester, provider, className));
+    }
+
+    void put(BundleWiring requester, BundleWiring provider, String className,
+        Entry entry, long generation)
+    {
+        if (m_entries.size() >= MAX_ENTRIES)
+        {
+            clear();
+            return;
+        }
+
+        Key key = new Key(requester, provider, className);
+        m_entries.put(key, entry);
+
+        // Don't keep the entry if the wirings might have been replaced meanwhile.
+        if (m_generation.get() != generation)
+        {
+            m_entries.remove(key, entry);
+        }
+    }
+
+    void clear()
+    {
+        m_generation.incrementAndGet();
+        m_entries.clear();
+    }
+
+    /**
+     * Removes the entries computed for the given wiring, either as
+     * requester or as provider.
+     */
+    void remove(BundleWiring wiring)
+    {
+        m_generation.incrementAndGet();
+        for (Iterator<Key> it = m_entries.keySet().iterator(); it.hasNext(); )
+        {
+            Key key = it.next();
+            if ((key.m_requester == wiring) || (key.m_provider == wiring))
+            {
+                it.remove();
+            }
+        }
+    }
+
+    int size()
+    {
+        return m_entries.size();
+    }
+
+    /**
+     * The cached outcome of a check. If the requester's class is set, the
+     * outcome depends on the service object, which must be checked for
+     * access to the class; the flag is the outcome if that check fails.
+     * Otherwise the flag is the outcome.
+     */
+    static final class Entry
+    {
+        private final Class m_requesterClass;
+        private final boolean m_allow;
+
+        Entry(Class requesterClass, boolean allow)
+        {
+            m_requesterClass = requesterClass;
+            m_allow = allow;
+        }
+
+        Class getRequesterClass()
+        {
+            return m_requesterClass;
+        }
+
+        boolean isAllowed()
+        {
+            return m_allow;
+        }
+    }
+
+    private static final class Key
+    {
+        private final BundleWiring m_requester;
+        private final BundleWiring m_provider;
+        private final String m_className;
+        private final int m_hashCode;
+
+        Key(BundleWiring requester, BundleWiring provider, String className)
+        {
+            m_requester = requester;
+            m_provider = provider;
+            m_className = className;
+            m_hashCode = (31 * (31 * System.identityHashCode(requester)
+                + System.identityHashCode(provider))) + className.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return m_hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (m_requester == other.m_requester)
+                && (m_provider == other.m_provider)
+                && m_className.equals(other.m_className);
+        }
+    }
+}
@@ -31,7 +31,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.felix.framework.util.MapToDictionary;
-import org.apache.felix.framework.util.StringMap;
+import org.apache.felix.framework.util.ImmutableStringMap;
 import org.apache.felix.framework.util.Util;
 import org.apache.felix.framework.wiring.BundleCapabilityImpl;
 import org.osgi.framework.Bundle;
@@ -45,6 +45,7 @@ import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRevision;
 import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
 
 class ServiceRegistrationImpl implements ServiceRegistration
 {
@@ -61,7 +62,7 @@ class ServiceRegistrationImpl implements ServiceRegistration
     // Service factory interface.
     private volatile ServiceFactory m_factory;
     // Associated property dictionary.
-    private volatile Map<String, Object> m_propMap = new StringMap();
+    private volatile ImmutableStringMap m_propMap = new ImmutableStringMap.Builder().build();
     // Re-usable service reference.
     private final ServiceReferenceImpl m_ref;
     // Flag indicating that we are unregistering.
@@ -209,8 +210,7 @@ class ServiceRegistrationImpl implements ServiceRegistration
 
     private String[] getPropertyKeys()
     {
-        Set s = m_propMap.keySet();
-        return (String[]) s.toArray(new String[s.size()]);
+        return m_propMap.getKeys();
     }
 
     private Bundle[] getUsingBundles()
@@ -300,8 +300,8 @@ class ServiceRegistrationImpl implements ServiceRegistration
 
     private void initializeProperties(Dictionary<String, Object> dict)
     {
-        // Create a case-insensitive map for the properties.
-        Map<String, Object> props = new StringMap();
+        // Collect the properties for a case-insensitive map.
+        ImmutableStringMap.Builder props = new ImmutableStringMap.Builder();
 
         if (dict != null)
         {
@@ -310,7 +310,7 @@ class ServiceRegistrationImpl implements ServiceRegistration
             while (keys.hasMoreElements())
             {
                 String key = keys.nextElement();
-                if (props.get(key) == null)
+                if (!props.containsKey(key))
                 {
                     props.put(key, dict.get(key));
                 }
@@ -337,7 +337,7 @@ class ServiceRegistrationImpl implements ServiceRegistration
         }
 
         // Update the service property map.
-        m_propMap = props;
+        m_propMap = props.build();
     }
 
     private Object getFactoryUnchecked(Bundle bundle)
@@ -521,17 +521,61 @@ class ServiceRegistrationImpl implements ServiceRegistration
                 return true;
             }
 
-            // Boolean flag.
-            boolean allow = true;
-            // Get the package.
-            String pkgName =
-                Util.getClassPackage(className);
-            // Get package wiring from service requester.
             BundleRevision requesterRevision = requester.adapt(BundleRevision.class);
-            BundleWire requesterWire = Util.getWire(requesterRevision, pkgName);
+            BundleRevision providerRevision = m_bundle.adapt(BundleRevision.class);
+
+            // The outcome only depends on the wirings of the requester and the
+            // provider, unless the service object itself has to be checked, so
+            // it is cached per wirings and class name.
+            ServiceAssignabilityCache cache = (m_registry != null)
+                ? m_registry.getAssignabilityCache() : null;
+            BundleWiring requesterWiring = requesterRevision.getWiring();
+            BundleWiring providerWiring = providerRevision.getWiring();
+            boolean cacheable = (cache != null)
+                && (requesterWiring != null) && (providerWiring != null);
+
+            ServiceAssignabilityCache.Entry entry = cacheable
+                ? cache.get(requesterWiring, providerWiring, className) : null;
+            if (entry == null)
+            {
+                long generation = cacheable ? cache.getGeneration() : 0;
+                String pkgName = Util.getClassPackage(className);
+                BundleWire requesterWire = Util.getWire(requesterRevision, pkgName);
+
+                entry = checkAssignability(
+                    requesterRevision, requesterWire, providerRevision, pkgName, className);
+
+                // Loading the class may have dynamically imported the package
+                // into the requester, which changes the outcome of later checks.
+                if (cacheable
+                    && ((requesterWire != null) || (Util.getWire(requesterRevision, pkgName) == null)))
+                {
+                    cache.put(requesterWiring, providerWiring, className, entry, generation);
+                }
+            }
+
+            if (entry.getRequesterClass() == null)
+            {
+                return entry.isAllowed();
+            }
+
+            try
+            {
+                return getRegistration().isClassAccessible(entry.getRequesterClass());
+            }
+            catch (Exception ex)
+            {
+                return entry.isAllowed();
+            }
+        }
+
+        private ServiceAssignabilityCache.Entry checkAssignability(
+            BundleRevision requesterRevision, BundleWire requesterWire,
+            BundleRevision providerRevision, String pkgName, String className)
+        {
+            // Get package wiring from service requester.
             BundleCapability requesterCap = Util.getPackageCapability(requesterRevision, pkgName);
             // Get package wiring from service provider.
-            BundleRevision providerRevision = m_bundle.adapt(BundleRevision.class);
             BundleWire providerWire = Util.getWire(providerRevision, pkgName);
             BundleCapability providerCap = Util.getPackageCapability(providerRevision, pkgName);
 
@@ -553,6 +597,9 @@ class ServiceRegistrationImpl implements ServiceRegistration
             // is wired to it or somehow using the same class. For case 4, we
             // simply compare the exporting revisions from the package wiring to
             // determine if we need to filter the service reference.
+            // Where the service registration has to check whether the requester's
+            // class is accessible, the requester's class is returned together
+            // with the outcome to use if that check fails.
 
             // Case 1: Both requester and provider have no wire.
             if ((requesterWire == null) && (providerWire == null))
@@ -564,13 +611,13 @@ class ServiceRegistrationImpl implements ServiceRegistration
                     Class requestClass =
                         ((BundleWiringImpl) requesterRevision.getWiring())
                             .getClassByDelegation(className);
-                    allow = getRegistration().isClassAccessible(requestClass);
+                    return new ServiceAssignabilityCache.Entry(requestClass, true);
                 }
                 catch (Exception ex)
                 {
                     // Requester has no access to the class, so allow it, since
                     // we assume the requester is using reflection.
-                    allow = true;
+                    return ServiceAssignabilityCache.ALLOW;
                 }
             }
             // Case 2: Requester has no wire, but provider does.
@@ -580,7 +627,7 @@ class ServiceRegistrationImpl implements ServiceRegistration
                 // be wired to it.
                 if (requesterCap != null)
                 {
-                    allow = providerWire.getProviderWiring().getRevision().equals(requesterRevision);
+                    return toEntry(providerWire.getProviderWiring().getRevision().equals(requesterRevision));
                 }
                 // Otherwise, check if the requester has access to the class and,
                 // if so, if it is the same class as the provider.
@@ -595,20 +642,20 @@ class ServiceRegistrationImpl implements ServiceRegistration
                         {
                             // If requester has access to the class, verify it is the
                             // same class as the provider.
-                            allow = (((BundleWiringImpl)
+                            return toEntry(((BundleWiringImpl)
                                 providerRevision.getWiring())
                                     .getClassByDelegation(className) == requestClass);
                         }
                         catch (Exception ex)
                         {
-                            allow = false;
+                            return ServiceAssignabilityCache.DENY;
                         }
                     }
                     catch (Exception ex)
                     {
                         // Requester has no access to the class, so allow it, since
                         // we assume the requester is using reflection.
-                        allow = true;
+                        return ServiceAssignabilityCache.ALLOW;
                     }
                 }
             }
@@ -619,7 +666,7 @@ class ServiceRegistrationImpl implements ServiceRegistration
                 // be wired to it.
                 if (providerCap != null)
                 {
-                    allow = requesterWire.getProviderWiring().getRevision().equals(providerRevision);
+                    return toEntry(requesterWire.getProviderWiring().getRevision().equals(providerRevision));
                 }
                 // If the provider is not the exporter of the requester's package,
                 // then try to use the service registration to see if the requester's
@@ -632,15 +679,14 @@ class ServiceRegistrationImpl implements ServiceRegistration
                         Class requestClass = ((BundleWiringImpl)
                             requesterRevision.getWiring())
                                 .getClassByDelegation(className);
-                        // Get the service registration and ask it to check
-                        // if the service object is assignable to the requesting
-                        // bundle's class.
-                        allow = getRegistration().isClassAccessible(requestClass);
+                        // The service registration has to check if the service
+                        // object is assignable to the requesting bundle's class.
+                        return new ServiceAssignabilityCache.Entry(requestClass, false);
                     }
                     catch (Exception ex)
                     {
                         // Filter to be safe.
-                        allow = false;
+                        return ServiceAssignabilityCache.DENY;
                     }
                 }
             }
@@ -649,11 +695,14 @@ class ServiceRegistrationImpl implements ServiceRegistration
             {
                 // Include service reference if the wires have the
                 // same source revision.
-                allow = providerWire.getProviderWiring().getRevision()
-                    .equals(requesterWire.getProviderWiring().getRevision());
+                return toEntry(providerWire.getProviderWiring().getRevision()
+                    .equals(requesterWire.getProviderWiring().getRevision()));
             }
+        }
 
-            return allow;
+        private ServiceAssignabilityCache.Entry toEntry(boolean allow)
+        {
+            return allow ? ServiceAssignabilityCache.ALLOW : ServiceAssignabilityCache.DENY;
         }
 
         public int compareTo(Object reference)
@@ -40,6 +40,7 @@ import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.resource.Capability;
 
 public class ServiceRegistry
@@ -62,10 +63,22 @@ public class ServiceRegistry
 
     private final HookRegistry hookRegistry = new HookRegistry();
 
+    // Caches the outcome of ServiceReference.isAssignableTo() per wirings.
+    private final ServiceAssignabilityCache m_assignabilityCache = new ServiceAssignabilityCache();
+
+    // Framework core metrics.
+    private final FrameworkMetrics m_metrics;
+
     public ServiceRegistry(final Logger logger, final ServiceRegistryCallbacks callbacks)
+    {
+        this(logger, callbacks, new FrameworkMetrics());
+    }
+
+    ServiceRegistry(final Logger logger, final ServiceRegistryCallbacks callbacks, final FrameworkMetrics metrics)
     {
         m_logger = logger;
         m_callbacks = callbacks;
+        m_metrics = metrics;
     }
 
     /**
@@ -116,6 +129,8 @@ public class ServiceRegistry
         final Object svcObj,
         final Dictionary<?,?> dict)
     {
+        final long start = m_metrics.begin();
+
         // Create the service registration.
         final ServiceRegistrationImpl reg = new ServiceRegistrationImpl(
             this, bundle, classNames, m_currentServiceId.getAndIncrement(), svcObj, dict);
@@ -137,6 +152,8 @@ public class ServiceRegistry
         }
         m_regCapSet.addCapability((BundleCapabilityImpl) reg.getReference());
 
+        m_metrics.serviceRegistered(start);
+
         return reg;
     }
 
@@ -251,6 +268,8 @@ public class ServiceRegistry
 
     public Collection<Capability> getServiceReferences(final String className, SimpleFilter filter)
     {
+        final long start = m_metrics.begin();
+
         if ((className == null) && (filter == null))
         {
             // Return all services.
@@ -271,7 +290,9 @@ public class ServiceRegistry
         }
         // else just use the specified filter.
 
-        return m_regCapSet.match(filter, false);
+        final Collection<Capability> matches = m_regCapSet.match(filter, false);
+        m_metrics.servicesLookedUp(start);
+        return matches;
     }
 
     public ServiceReference<?>[] getServicesInUse(final Bundle bundle)
@@ -737,6 +758,30 @@ public class ServiceRegistry
         return this.hookRegistry;
     }
 
+    ServiceAssignabilityCache getAssignabilityCache()
+    {
+        return m_assignabilityCache;
+    }
+
+    /**
+     * Forgets the cached outcomes of {@link ServiceReference#isAssignableTo(Bundle, String)},
+     * must be called whenever bundle wirings are replaced.
+     */
+    public void wiringsChanged()
+    {
+        m_assignabilityCache.clear();
+    }
+
+    /**
+     * Forgets the cached outcomes of {@link ServiceReference#isAssignableTo(Bundle, String)}
+     * involving the given wiring, must be called whenever it gains wires or
+     * is disposed.
+     */
+    public void wiringChanged(BundleWiring wiring)
+    {
+        m_assignabilityCache.remove(wiring);
+    }
+
     static class UsageCount
     {
         final ServiceReference<?> m_ref;
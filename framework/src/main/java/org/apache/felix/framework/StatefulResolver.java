@@ -98,7 +98,7 @@ class StatefulResolver
         m_registry = registry;
         m_logger = m_felix.getLogger();
         m_executor = getExecutor();
-        m_resolver = new ResolverImpl(m_logger, m_executor);
+        m_resolver = new ResolverImpl(m_logger, m_executor, getPermutationLimit());
 
         m_revisions = new HashSet<BundleRevision>();
         m_fragments = new HashSet<BundleRevision>();
@@ -166,6 +166,28 @@ class StatefulResolver
         }
     }
 
+    private int getPermutationLimit()
+    {
+        String str = m_felix.getProperty(FelixConstants.RESOLVER_PERMUTATION_LIMIT);
+        if (str != null)
+        {
+            try
+            {
+                return Math.max(0, Integer.parseInt(str));
+            }
+            catch (NumberFormatException e)
+            {
+                // Ignore
+            }
+        }
+        return 0;
+    }
+
+    FrameworkMetrics getMetrics()
+    {
+        return m_felix.getMetrics();
+    }
+
     void start()
     {
         m_registry.registerService(m_felix,
@@ -472,6 +494,7 @@ class StatefulResolver
             // Catch any resolve exception to rethrow later because
             // we may need to call end() on resolver hooks.
             ResolutionException rethrow = null;
+            long start = m_felix.getMetrics().begin();
             try
             {
                 // Resolve the revision.
@@ -488,6 +511,7 @@ class StatefulResolver
             {
                 rethrow = ex;
             }
+            m_felix.getMetrics().resolved(start, rethrow == null);
 
             // Release resolver hooks, if any.
             releaseResolverHooks(record);
@@ -563,6 +587,7 @@ class StatefulResolver
                     // Catch any resolve exception to rethrow later because
                     // we may need to call end() on resolver hooks.
                     ResolutionException rethrow = null;
+                    long start = m_felix.getMetrics().begin();
                     try
                     {
                         List<BundleRequirement> dynamics =
@@ -626,6 +651,7 @@ class StatefulResolver
                     {
                         rethrow = ex;
                     }
+                    m_felix.getMetrics().resolved(start, rethrow == null);
 
                     // Release resolver hooks, if any.
                     releaseResolverHooks(record);
@@ -668,6 +694,7 @@ class StatefulResolver
                                 m_felix.getDependencies().addDependent(bw);
 
                                 ((BundleWiringImpl) revision.getWiring()).addDynamicWire(bw);
+                                m_registry.wiringChanged(revision.getWiring());
 
                                 m_felix.getLogger().log(
                                     Logger.LOG_DEBUG,
@@ -1289,6 +1316,14 @@ class StatefulResolver
 
                 BundleRevision revision = (BundleRevision) resource;
 
+                // Localize the headers now that the fragments are attached;
+                // this reads bundle entries, so it is done without locks.
+                if (revision instanceof BundleRevisionImpl)
+                {
+                    ((BundleImpl) revision.getBundle()).preloadLocalizedHeaders(
+                        (BundleRevisionImpl) revision);
+                }
+
                 // Fire RESOLVED events for all fragments.
                 List<BundleRevision> fragments =
                     Util.getFragments(revision.getWiring());
@@ -18,6 +18,8 @@
  */
 package org.apache.felix.framework;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.ContentHandler;
 import java.net.ContentHandlerFactory;
 import java.net.URL;
@@ -31,9 +33,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.apache.felix.framework.util.Util.putIfAbsentAndReturn;
 
+import org.apache.felix.framework.util.CallStackWalker;
 import org.apache.felix.framework.util.FelixConstants;
 import org.apache.felix.framework.util.SecureAction;
-import org.apache.felix.framework.util.SecurityManagerEx;
 import org.osgi.framework.Constants;
 import org.osgi.service.url.URLStreamHandlerService;
 
@@ -84,13 +86,18 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
 
     private static final SecureAction m_secureAction = new SecureAction();
 
-    private static volatile SecurityManagerEx m_sm = null;
+    private static volatile CallStackWalker m_stackWalker = null;
     private static volatile URLHandlers m_handler = null;
 
     // This maps classloaders of URLHandlers in other classloaders to lists of
     // their frameworks.
     private final static ConcurrentHashMap<ClassLoader, List<Object>> m_classloaderToFrameworkLists = new ConcurrentHashMap<ClassLoader, List<Object>>();
 
+    // This caches the framework owning a bundle class loader. Both are only
+    // weakly referenced, since the framework references its class loaders.
+    private static final ConcurrentHashMap<ClassLoaderKey, WeakReference<Object>> m_classloaderToFramework = new ConcurrentHashMap<ClassLoaderKey, WeakReference<Object>>();
+    private static final ReferenceQueue<ClassLoader> m_classloaderQueue = new ReferenceQueue<ClassLoader>();
+
     // The list to hold all enabled frameworks registered with this handlers
     private static final CopyOnWriteArrayList<Felix> m_frameworks = new CopyOnWriteArrayList<Felix>();
     private static volatile int m_counter = 0;
@@ -146,7 +153,13 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
     **/
     private URLHandlers()
     {
-        m_sm = new SecurityManagerEx();
+        m_stackWalker = new CallStackWalker(new CallStackWalker.ClassFilter()
+        {
+            public boolean accept(Class clazz)
+            {
+                return isBundleClass(clazz);
+            }
+        });
         synchronized (URL.class)
         {
             URLStreamHandlerFactory currentFactory = null;
@@ -285,7 +298,7 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
         if (!((m_streamHandlerFactory == this) || !URLHANDLERS_CLASS.getName().equals(
             m_streamHandlerFactory.getClass().getName())))
         {
-            m_sm = null;
+            m_stackWalker = null;
             m_protocolToURL.clear();
             m_builtIn.clear();
         }
@@ -310,6 +323,7 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
             synchronized (m_classloaderToFrameworkLists)
             {
                 m_classloaderToFrameworkLists.remove(index);
+                m_classloaderToFramework.clear();
                 if (m_classloaderToFrameworkLists.isEmpty() )
                 {
                     synchronized (m_frameworks)
@@ -616,6 +630,7 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
             {
                 m_counter--;
             }
+            m_classloaderToFramework.clear();
         }
         if (unregister)
         {
@@ -627,6 +642,7 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
                     {
                         m_frameworks.remove(framework);
                         m_counter--;
+                        m_classloaderToFramework.clear();
                         if (m_frameworks.isEmpty() && m_handler != null)
                         {
 
@@ -681,31 +697,22 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
             }
         }
 
-        // get the current class call stack.
-        Class[] stack = m_sm.getClassContext();
-        // Find the first class that is loaded from a bundle.
-        Class targetClass = null;
-        for (int i = 0; i < stack.length; i++)
-        {
-            if (stack[i].getClassLoader() != null)
-            {
-                String name = stack[i].getClassLoader().getClass().getName();
-                if (name.startsWith("org.apache.felix.framework.ModuleImpl$ModuleClassLoader")
-                    || name.equals("org.apache.felix.framework.searchpolicy.ContentClassLoader")
-                    || name.startsWith("org.apache.felix.framework.BundleWiringImpl$BundleClassLoader"))
-                {
-                    targetClass = stack[i];
-                    break;
-                }
-            }
-        }
+        // Find the first class on the call stack that is loaded from a bundle.
+        Class targetClass = m_stackWalker.findFirst();
 
         // If we found a class loaded from a bundle, then iterate
         // over the framework instances and see which framework owns
         // the bundle that loaded the class.
         if (targetClass != null)
         {
-            ClassLoader index = targetClass.getClassLoader().getClass().getClassLoader();
+            ClassLoader loader = targetClass.getClassLoader();
+            Object framework = getCachedFramework(loader);
+            if (framework != null)
+            {
+                return framework;
+            }
+
+            ClassLoader index = loader.getClass().getClassLoader();
 
             List frameworks = (List) m_classloaderToFrameworkLists.get(index);
 
@@ -716,16 +723,17 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
             if (frameworks != null)
             {
                 // Check the registry of framework instances
-                for (Object framework : frameworks)
+                for (Object candidate : frameworks)
                 {
                     try
                     {
                         if (m_secureAction.invoke(
-                            m_secureAction.getDeclaredMethod(framework.getClass(),
+                            m_secureAction.getDeclaredMethod(candidate.getClass(),
                             "getBundle", CLASS_TYPE),
-                            framework, new Object[]{targetClass}) != null)
+                            candidate, new Object[]{targetClass}) != null)
                         {
-                            return framework;
+                            cacheFramework(loader, candidate, frameworks);
+                            return candidate;
                         }
                     }
                     catch (Exception ex)
@@ -741,6 +749,42 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
         return null;
     }
 
+    private static boolean isBundleClass(Class clazz)
+    {
+        ClassLoader loader = clazz.getClassLoader();
+        if (loader != null)
+        {
+            String name = loader.getClass().getName();
+            return name.startsWith("org.apache.felix.framework.ModuleImpl$ModuleClassLoader")
+                || name.equals("org.apache.felix.framework.searchpolicy.ContentClassLoader")
+                || name.startsWith("org.apache.felix.framework.BundleWiringImpl$BundleClassLoader");
+        }
+        return false;
+    }
+
+    private static Object getCachedFramework(ClassLoader loader)
+    {
+        WeakReference<Object> ref = m_classloaderToFramework.get(new ClassLoaderKey(loader, null));
+        return (ref != null) ? ref.get() : null;
+    }
+
+    private static void cacheFramework(ClassLoader loader, Object framework, List frameworks)
+    {
+        // Purge the entries of collected class loaders.
+        for (Object key; (key = m_classloaderQueue.poll()) != null; )
+        {
+            m_classloaderToFramework.remove(key);
+        }
+        m_classloaderToFramework.put(
+            new ClassLoaderKey(loader, m_classloaderQueue), new WeakReference<Object>(framework));
+        // Don't keep the entry if the framework was unregistered meanwhile,
+        // since the cache is cleared when a framework is unregistered.
+        if (!frameworks.contains(framework))
+        {
+            m_classloaderToFramework.clear();
+        }
+    }
+
     public static Object getFrameworkFromContext(String uuid)
     {
         if (uuid != null)
@@ -778,4 +822,39 @@ class URLHandlers implements URLStreamHandlerFactory, ContentHandlerFactory
         }
         return getFrameworkFromContext();
     }
+
+    /**
+     * Weakly references a class loader and compares by identity.
+    **/
+    private static final class ClassLoaderKey extends WeakReference<ClassLoader>
+    {
+        private final int m_hashCode;
+
+        ClassLoaderKey(ClassLoader loader, ReferenceQueue<ClassLoader> queue)
+        {
+            super(loader, queue);
+            m_hashCode = System.identityHashCode(loader);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return m_hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+            {
+                return true;
+            }
+            if (!(obj instanceof ClassLoaderKey))
+            {
+                return false;
+            }
+            ClassLoader loader = get();
+            return (loader != null) && (loader == ((ClassLoaderKey) obj).get());
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A <tt>DataInput</tt> reading straight from a <tt>ByteBuffer</tt>, so that
+ * class files which are already in memory can be parsed without copying
+ * them through an input stream.
+ */
+class ByteBufferDataInput implements DataInput
+{
+    private final ByteBuffer m_buffer;
+
+    ByteBufferDataInput(ByteBuffer buffer)
+    {
+        m_buffer = buffer;
+    }
+
+    public void readFully(byte[] b) throws IOException
+    {
+        readFully(b, 0, b.length);
+    }
+
+    public void readFully(byte[] b, int off, int len) throws IOException
+    {
+        if (len > m_buffer.remaining())
+        {
+            throw new EOFException();
+        }
+        m_buffer.get(b, off, len);
+    }
+
+    public int skipBytes(int n)
+    {
+        int skipped = Math.min(Math.max(n, 0), m_buffer.remaining());
+        m_buffer.position(m_buffer.position() + skipped);
+        return skipped;
+    }
+
+    public boolean readBoolean() throws IOException
+    {
+        return readByte() != 0;
+    }
+
+    public byte readByte() throws IOException
+    {
+        try
+        {
+            return m_buffer.get();
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new EOFException();
+        }
+    }
+
+    public int readUnsignedByte() throws IOException
+    {
+        return readByte() & 0xFF;
+    }
+
+    public short readShort() throws IOException
+    {
+        try
+        {
+            return m_buffer.getShort();
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new EOFException();
+        }
+    }
+
+    public int readUnsignedShort() throws IOException
+    {
+        return readShort() & 0xFFFF;
+    }
+
+    public char readChar() throws IOException
+    {
+        return (char) readShort();
+    }
+
+    public int readInt() throws IOException
+    {
+        try
+        {
+            return m_buffer.getInt();
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new EOFException();
+        }
+    }
+
+    public long readLong() throws IOException
+    {
+        try
+        {
+            return m_buffer.getLong();
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw new EOFException();
+        }
+    }
+
+    public float readFloat() throws IOException
+    {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException
+    {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads a line the same way as <tt>DataInputStream.readLine()</tt>, every
+     * byte is converted to a character and the line ends with <tt>\n</tt>,
+     * <tt>\r</tt> or <tt>\r\n</tt>.
+     */
+    public String readLine()
+    {
+        if (!m_buffer.hasRemaining())
+        {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (m_buffer.hasRemaining())
+        {
+            int c = m_buffer.get() & 0xFF;
+            if (c == '\n')
+            {
+                break;
+            }
+            if (c == '\r')
+            {
+                if (m_buffer.hasRemaining() && (m_buffer.get(m_buffer.position()) == '\n'))
+                {
+                    m_buffer.get();
+                }
+                break;
+            }
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    public String readUTF() throws IOException
+    {
+        return DataInputStream.readUTF(this);
+    }
+}
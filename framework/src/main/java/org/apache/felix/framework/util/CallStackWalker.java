@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * Finds the first class on the call stack that is accepted by a filter.
+ * On Java 9 and later the stack is walked lazily with
+ * <tt>java.lang.StackWalker</tt>, which stops at the first accepted frame
+ * instead of capturing the whole call stack. The walker is accessed
+ * reflectively, since the framework still runs on older Java versions,
+ * where the class context of a {@link SecurityManagerEx} is searched instead.
+ * </p>
+**/
+public class CallStackWalker
+{
+    /**
+     * A filter for the classes on the call stack.
+    **/
+    public interface ClassFilter
+    {
+        boolean accept(Class clazz);
+    }
+
+    private final ClassFilter m_filter;
+    private final SecurityManagerEx m_sm = new SecurityManagerEx();
+
+    // The StackWalker, its walk() method and the function passed to it,
+    // or null if StackWalker is not available.
+    private final Object m_walker;
+    private final Method m_walkMethod;
+    private final Object m_walkFunction;
+    private final Method m_iteratorMethod;
+    private final Method m_declaringClassMethod;
+
+    public CallStackWalker(ClassFilter filter)
+    {
+        m_filter = filter;
+
+        Object walker = null;
+        Method walkMethod = null;
+        Object walkFunction = null;
+        Method iteratorMethod = null;
+        Method declaringClassMethod = null;
+        try
+        {
+            final Class walkerClass = Class.forName("java.lang.StackWalker");
+            final Class optionClass = Class.forName("java.lang.StackWalker$Option");
+            Class functionClass = Class.forName("java.util.function.Function");
+            walkMethod = walkerClass.getMethod("walk", functionClass);
+            iteratorMethod = Class.forName("java.util.stream.BaseStream").getMethod("iterator");
+            declaringClassMethod = Class.forName("java.lang.StackWalker$StackFrame")
+                .getMethod("getDeclaringClass");
+            walkFunction = Proxy.newProxyInstance(
+                CallStackWalker.class.getClassLoader(),
+                new Class[] { functionClass },
+                new WalkFunction());
+            // Retaining class references requires a permission, which
+            // the framework has, but not necessarily its callers.
+            walker = AccessController.doPrivileged(new PrivilegedExceptionAction()
+            {
+                public Object run() throws Exception
+                {
+                    Object retainClassReference = optionClass.getField("RETAIN_CLASS_REFERENCE").get(null);
+                    return walkerClass.getMethod("getInstance", optionClass)
+                        .invoke(null, retainClassReference);
+                }
+            });
+        }
+        catch (Throwable ex)
+        {
+            // StackWalker is not available or not accessible, so we
+            // fall back to the class context.
+            walker = null;
+        }
+        m_walker = walker;
+        m_walkMethod = walkMethod;
+        m_walkFunction = walkFunction;
+        m_iteratorMethod = iteratorMethod;
+        m_declaringClassMethod = declaringClassMethod;
+    }
+
+    /**
+     * Returns the first class on the call stack accepted by the filter.
+     *
+     * @return the class or <tt>null</tt> if no class was accepted.
+    **/
+    public Class findFirst()
+    {
+        if (m_walker != null)
+        {
+            try
+            {
+                return (Class) m_walkMethod.invoke(m_walker, m_walkFunction);
+            }
+            catch (InvocationTargetException ex)
+            {
+                // Walking the stack should not fail, but if it does,
+                // we fall back to the class context.
+            }
+            catch (IllegalAccessException ex)
+            {
+                // Cannot happen, the methods are public.
+            }
+        }
+
+        Class[] stack = m_sm.getClassContext();
+        for (int i = 0; i < stack.length; i++)
+        {
+            if (m_filter.accept(stack[i]))
+            {
+                return stack[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Implements the function passed to <tt>StackWalker.walk()</tt>, which
+     * iterates over the stream of stack frames until a frame is accepted.
+    **/
+    private class WalkFunction implements InvocationHandler
+    {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if ("apply".equals(method.getName()) && (args != null) && (args.length == 1))
+            {
+                Iterator frames = (Iterator) m_iteratorMethod.invoke(args[0]);
+                while (frames.hasNext())
+                {
+                    Class clazz = (Class) m_declaringClassMethod.invoke(frames.next());
+                    if (m_filter.accept(clazz))
+                    {
+                        return clazz;
+                    }
+                }
+                return null;
+            }
+            else if ("equals".equals(method.getName()))
+            {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            else if ("hashCode".equals(method.getName()))
+            {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            }
+            else if ("toString".equals(method.getName()))
+            {
+                return "CallStackWalker$WalkFunction";
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.felix.framework.util;
 import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -56,7 +57,7 @@ public class ClassFileVisitor extends java.nio.file.SimpleFileVisitor<java.nio.f
                 {
                     try
                     {
-                        Set<String> refs = m_classParser.parseClassFileUses(file.toString(), java.nio.file.Files.newInputStream(file));
+                        Set<String> refs = m_classParser.parseClassFileUses(file.toString(), ByteBuffer.wrap(java.nio.file.Files.readAllBytes(file)));
                         refs.retainAll(m_imports);
                         refs.remove(name);
                         if (strings == null)
@@ -627,6 +627,11 @@ public class ClassParser
         }
     }
 
+    public Set<String> parseClassFileUses(String path, ByteBuffer buffer) throws Exception
+    {
+        return new Clazz(this, path).parseClassFileData(new ByteBufferDataInput(buffer));
+    }
+
     private static class Clazz
     {
 
@@ -55,6 +55,9 @@ public interface FelixConstants extends org.osgi.framework.Constants
     String NATIVE_PROC_NAME_ALIAS_PREFIX = "felix.native.processor.alias";
     String USE_CACHEDURLS_PROPS = "felix.bundlecodesource.usecachedurls";
     String RESOLVER_PARALLELISM = "felix.resolver.parallelism";
+    String RESOLVER_PERMUTATION_LIMIT = "felix.resolver.permutation.limit";
+    String INSTALL_PARALLELISM = "felix.install.parallelism";
+    String METRICS_PROP = "felix.metrics";
     String USE_PROPERTY_SUBSTITUTION_IN_SYSTEMPACKAGES = "felix.systempackages.substitution";
 
     // Missing OSGi constant for resolution directive.
@@ -73,4 +76,5 @@ public interface FelixConstants extends org.osgi.framework.Constants
     String FELIX_EXTENSIONS_DISABLE = "felix.extensions.disable";
     String FRAMEWORK_UUID_SECURE = "felix.uuid.secure";
     String CALCULATE_SYSTEMPACKAGES_USES = "felix.systempackages.calculate.uses";
+    String CALCULATE_SYSTEMPACKAGES_USES_INDEX = "felix.systempackages.calculate.uses.index";
 }
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable map for string-based keys, which are compared case-insensitively
+ * like in a {@link StringMap}. It is meant for the properties of service
+ * registrations, which are read far more often than they are changed.
+ * <p>
+ * The keys are folded to lower case once when the map is built and are
+ * kept in an open-addressed hash table, so a lookup hashes the requested
+ * key once and usually compares it to a single key. The folded keys are
+ * interned, so looking up a constant which already is in lower case, like
+ * <tt>service.pid</tt>, matches by identity.
+ * <p>
+ * The keys and the hash table form a schema, which is shared by all maps
+ * with the same set of keys. A map itself only holds the schema and an
+ * array of values. Like a {@link StringMap}, the map iterates over its keys
+ * in case-insensitive order.
+ **/
+public class ImmutableStringMap extends AbstractMap<String, Object>
+{
+    // Schemas are only held weakly, so they go away with the last map using them.
+    private static final Map<List<String>, WeakReference<Schema>> SCHEMAS =
+        new WeakHashMap<List<String>, WeakReference<Schema>>();
+
+    private final Schema m_schema;
+    private final Object[] m_values;
+
+    private ImmutableStringMap(Schema schema, Object[] values)
+    {
+        m_schema = schema;
+        m_values = values;
+    }
+
+    /**
+     * Returns a map with the entries of the given map. Of keys which are
+     * equal when ignoring case, the value of the last one is kept.
+     **/
+    public static ImmutableStringMap create(Map<String, ?> map)
+    {
+        Builder builder = new Builder();
+        for (Map.Entry<String, ?> entry : map.entrySet())
+        {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int size()
+    {
+        return m_values.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return (key instanceof String) && (m_schema.indexOf((String) key) >= 0);
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        if (key instanceof String)
+        {
+            int idx = m_schema.indexOf((String) key);
+            if (idx >= 0)
+            {
+                return m_values[idx];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the given key, comparing the key case-sensitively.
+     **/
+    public Object getExact(String key)
+    {
+        int idx = m_schema.indexOf(key);
+        if ((idx >= 0) && m_schema.m_keys[idx].equals(key))
+        {
+            return m_values[idx];
+        }
+        return null;
+    }
+
+    /**
+     * Returns a new array holding the keys of this map.
+     **/
+    public String[] getKeys()
+    {
+        return m_schema.m_keys.clone();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, Object>>()
+        {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return m_values.length;
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, Object>>
+    {
+        private int m_idx = 0;
+
+        public boolean hasNext()
+        {
+            return m_idx < m_values.length;
+        }
+
+        public Map.Entry<String, Object> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, Object> entry = new SimpleImmutableEntry<String, Object>(
+                m_schema.m_keys[m_idx], m_values[m_idx]);
+            m_idx++;
+            return entry;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Folds a character like the {@link StringComparator} does when
+     * comparing characters, so two strings are equal for the comparator
+     * if their folded characters are equal.
+     **/
+    static char fold(char c)
+    {
+        if (c <= 128)
+        {
+            return ((c >= 'A') && (c <= 'Z')) ? (char) (c + 'a' - 'A') : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static String fold(String s)
+    {
+        char[] chars = null;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            char f = fold(c);
+            if (f != c)
+            {
+                if (chars == null)
+                {
+                    chars = s.toCharArray();
+                }
+                chars[i] = f;
+            }
+        }
+        return (chars == null) ? s : new String(chars);
+    }
+
+    private static Schema getSchema(String[] keys)
+    {
+        synchronized (SCHEMAS)
+        {
+            WeakReference<Schema> ref = SCHEMAS.get(Arrays.asList(keys));
+            Schema schema = (ref != null) ? ref.get() : null;
+            if (schema == null)
+            {
+                schema = new Schema(keys);
+                // The key is held by the schema, so the entry stays as long as the schema.
+                SCHEMAS.put(schema.m_id, new WeakReference<Schema>(schema));
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * The keys of a map in case-insensitive order together with the hash
+     * table indexing their folded form.
+     **/
+    private static final class Schema
+    {
+        private final String[] m_keys;
+        private final List<String> m_id;
+        private final String[] m_foldedKeys;
+        // Slots of the hash table, holding the index of the key plus one.
+        private final int[] m_table;
+
+        Schema(String[] keys)
+        {
+            m_keys = keys;
+            m_id = Arrays.asList(keys);
+            m_foldedKeys = new String[keys.length];
+
+            int capacity = 4;
+            while (capacity < keys.length * 2)
+            {
+                capacity <<= 1;
+            }
+            m_table = new int[capacity];
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                m_foldedKeys[i] = fold(keys[i]).intern();
+                int slot = spread(m_foldedKeys[i].hashCode()) & (capacity - 1);
+                while (m_table[slot] != 0)
+                {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                m_table[slot] = i + 1;
+            }
+        }
+
+        int indexOf(String key)
+        {
+            // Hash the folded key without creating it.
+            int hash = 0;
+            for (int i = 0; i < key.length(); i++)
+            {
+                hash = 31 * hash + fold(key.charAt(i));
+            }
+
+            int mask = m_table.length - 1;
+            for (int slot = spread(hash) & mask; m_table[slot] != 0; slot = (slot + 1) & mask)
+            {
+                int idx = m_table[slot] - 1;
+                String folded = m_foldedKeys[idx];
+                if ((folded == key) || equalsFolded(folded, key))
+                {
+                    return idx;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean equalsFolded(String folded, String key)
+        {
+            if (folded.length() != key.length())
+            {
+                return false;
+            }
+            for (int i = 0; i < folded.length(); i++)
+            {
+                if (folded.charAt(i) != fold(key.charAt(i)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int spread(int hash)
+        {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * Collects the entries of an {@link ImmutableStringMap}.
+     **/
+    public static class Builder
+    {
+        private final Map<String, Integer> m_indices = new HashMap<String, Integer>();
+        private final List<String> m_keys = new ArrayList<String>();
+        private final List<Object> m_values = new ArrayList<Object>();
+
+        /**
+         * Returns whether the key is present already when ignoring case.
+         **/
+        public boolean containsKey(String key)
+        {
+            return m_indices.containsKey(fold(key));
+        }
+
+        /**
+         * Adds an entry or replaces the value of the key if it is present
+         * already when ignoring case. The key keeps the case it was added with.
+         **/
+        public Builder put(String key, Object value)
+        {
+            String folded = fold(key);
+            Integer idx = m_indices.get(folded);
+            if (idx != null)
+            {
+                m_values.set(idx, value);
+            }
+            else
+            {
+                m_indices.put(folded, m_keys.size());
+                m_keys.add(key);
+                m_values.add(value);
+            }
+            return this;
+        }
+
+        public ImmutableStringMap build()
+        {
+            int size = m_keys.size();
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                public int compare(Integer i1, Integer i2)
+                {
+                    return StringComparator.COMPARATOR.compare(m_keys.get(i1), m_keys.get(i2));
+                }
+            });
+
+            String[] keys = new String[size];
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++)
+            {
+                keys[i] = m_keys.get(order[i]);
+                values[i] = m_values.get(order[i]);
+            }
+            return new ImmutableStringMap(getSchema(keys), values);
+        }
+    }
+}
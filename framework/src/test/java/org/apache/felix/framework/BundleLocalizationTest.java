@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+public class BundleLocalizationTest extends TestCase
+{
+    private static final int DELAY = 1000;
+
+    private Locale m_defaultLocale;
+    private File m_cacheDir;
+    private Felix m_felix;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        m_defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.ENGLISH);
+
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+        String cache = m_cacheDir.getPath();
+
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("felix.cache.profiledir", cache);
+        params.put("felix.cache.dir", cache);
+        params.put(Constants.FRAMEWORK_STORAGE, cache);
+
+        m_felix = new Felix(params);
+        m_felix.init();
+        m_felix.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        m_felix.stop();
+        Thread.sleep(DELAY);
+        deleteDir(m_cacheDir);
+        Locale.setDefault(m_defaultLocale);
+    }
+
+    public void testLocalizedHeaders() throws Exception
+    {
+        Bundle bundle = m_felix.getBundleContext().installBundle(
+            createBundle("Name", "Name (de)").toURI().toString());
+
+        assertEquals("Name", bundle.getHeaders().get(Constants.BUNDLE_NAME));
+        assertEquals("Name (de)", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+        // not available, falls back to the default locale
+        assertEquals("Name", bundle.getHeaders("fr").get(Constants.BUNDLE_NAME));
+        assertEquals("%name", bundle.getHeaders("").get(Constants.BUNDLE_NAME));
+
+        // headers are shared across calls
+        assertSame(((BundleImpl) bundle).getCurrentLocalizedHeader("de"),
+            ((BundleImpl) bundle).getCurrentLocalizedHeader("de"));
+
+        try
+        {
+            bundle.getHeaders().put(Constants.BUNDLE_NAME, "Other");
+            fail("Headers must not be modifiable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // expected
+        }
+    }
+
+    public void testLocalizedHeadersAfterUpdate() throws Exception
+    {
+        Bundle bundle = m_felix.getBundleContext().installBundle(
+            createBundle("Name", "Name (de)").toURI().toString());
+        bundle.start();
+        assertEquals("Name (de)", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+
+        bundle.update(new FileInputStream(createBundle("New Name", "Neuer Name")));
+        assertEquals("New Name", bundle.getHeaders().get(Constants.BUNDLE_NAME));
+        assertEquals("Neuer Name", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+
+        m_felix.adapt(FrameworkWiring.class).refreshBundles(null);
+        Thread.sleep(DELAY);
+        assertEquals("Neuer Name", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+    }
+
+    public void testLocalizedHeadersAfterUninstall() throws Exception
+    {
+        Bundle bundle = m_felix.getBundleContext().installBundle(
+            createBundle("Name", "Name (de)").toURI().toString());
+        assertEquals("Name (de)", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+
+        bundle.uninstall();
+
+        // the default locale at the time of uninstall
+        assertEquals("Name", bundle.getHeaders().get(Constants.BUNDLE_NAME));
+        assertEquals("Name", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+    }
+
+    public void testLocalizedHeadersAfterResolve() throws Exception
+    {
+        Bundle bundle = m_felix.getBundleContext().installBundle(
+            createBundle("Name", null).toURI().toString());
+        // not available, falls back to the default locale
+        assertEquals("Name", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+
+        m_felix.getBundleContext().installBundle(
+            createFragment("Name (de)").toURI().toString());
+        assertTrue(m_felix.adapt(FrameworkWiring.class).resolveBundles(null));
+
+        // the fragment is attached, so the headers localized before are stale
+        assertEquals("Name (de)", bundle.getHeaders("de").get(Constants.BUNDLE_NAME));
+        assertEquals("Name", bundle.getHeaders().get(Constants.BUNDLE_NAME));
+    }
+
+    private File createFragment(String germanName) throws IOException
+    {
+        File f = File.createTempFile("felix-fragment", ".jar", m_cacheDir);
+
+        String manifest = "Bundle-SymbolicName: localized.de\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Fragment-Host: localized\n";
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.putNextEntry(new ZipEntry("OSGI-INF/l10n/bundle_de.properties"));
+        os.write(("name=" + germanName + "\n").getBytes("ISO-8859-1"));
+        os.closeEntry();
+        os.close();
+        return f;
+    }
+
+    private File createBundle(String name, String germanName) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", m_cacheDir);
+
+        String manifest = "Bundle-SymbolicName: localized\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Bundle-Name: %name\n";
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.putNextEntry(new ZipEntry("OSGI-INF/l10n/bundle.properties"));
+        os.write(("name=" + name + "\n").getBytes("ISO-8859-1"));
+        os.closeEntry();
+        if (germanName != null)
+        {
+            os.putNextEntry(new ZipEntry("OSGI-INF/l10n/bundle_de.properties"));
+            os.write(("name=" + germanName + "\n").getBytes("ISO-8859-1"));
+            os.closeEntry();
+        }
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+}
@@ -40,11 +40,15 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -128,6 +132,63 @@ public class ExtensionManagerTest {
                         NativeNamespace.CAPABILITY_OSVERSION_ATTRIBUTE));
     }
 
+    @Test
+    public void testUsesIndex() throws Exception {
+        Map<String, String> configMap = new HashMap<String, String>();
+        configMap.put(FelixConstants.FELIX_VERSION_PROPERTY, "1.0");
+        configMap.put(FelixConstants.FRAMEWORK_SYSTEMPACKAGES, "foo");
+        ExtensionManager extensionManager = new ExtensionManager(new Logger(), configMap, null);
+        Map<String, SortedMap<String, SortedSet<String>>> result =
+            new HashMap<String, SortedMap<String, SortedSet<String>>>();
+
+        File index = new File(testDir, "modules.index");
+        writeFile(index, "java.runtime.version=1\nfelix.jpms.java.sql=java.sql\n"
+            + "felix.jpms.java.sql/java.sql=java.util.logging,javax.sql\n");
+        assertTrue(extensionManager.readUsesIndex(index, "1", result));
+        assertEquals(new TreeSet<String>(Arrays.asList("java.util.logging", "javax.sql")),
+            result.get("felix.jpms.java.sql").get("java.sql"));
+
+        // An index of another runtime is ignored.
+        result.clear();
+        assertTrue(extensionManager.readUsesIndex(index, "2", result));
+        assertTrue(result.isEmpty());
+
+        // A corrupt index is reported, so that it is rebuilt.
+        writeFile(index, "java.runtime.version=1\\uZZZZ\n");
+        assertFalse(extensionManager.readUsesIndex(index, "1", result));
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testDeleteLegacyUsesCache() throws Exception {
+        File modulesDir = new File(testDir, "modules");
+        modulesDir.mkdirs();
+        writeFile(new File(modulesDir, "felix.jpms.java.base.properties"), "");
+        writeFile(new File(modulesDir, "felix.jpms.java.sql.properties"), "");
+
+        ExtensionManager.deleteLegacyUsesCache(modulesDir);
+        assertFalse(modulesDir.exists());
+
+        // Other files are kept.
+        modulesDir.mkdirs();
+        writeFile(new File(modulesDir, "felix.jpms.java.base.properties"), "");
+        writeFile(new File(modulesDir, "other"), "");
+
+        ExtensionManager.deleteLegacyUsesCache(modulesDir);
+        assertEquals(Arrays.asList("other"), Arrays.asList(modulesDir.list()));
+
+        ExtensionManager.deleteLegacyUsesCache(new File(testDir, "missing"));
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+    }
+
     @Test
     public void testExtensionBundleActivator() throws Exception {
         File cacheDir = new File(testDir, "cache");
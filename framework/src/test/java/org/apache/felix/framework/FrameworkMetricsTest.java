@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javax.management.Attribute;
+import javax.management.DynamicMBean;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+public class FrameworkMetricsTest extends TestCase
+{
+    private File m_cacheDir;
+    private Felix m_felix;
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        if (m_felix != null)
+        {
+            m_felix.stop();
+            m_felix.waitForStop(1000);
+        }
+        if (m_cacheDir != null)
+        {
+            delete(m_cacheDir);
+        }
+    }
+
+    public void testNothingRecordedWhileDisabled() throws Exception
+    {
+        FrameworkMetrics metrics = new FrameworkMetrics();
+        assertEquals(0L, metrics.begin());
+
+        metrics.serviceRegistered(metrics.begin());
+        assertEquals(0L, metrics.getStatistics().get("ServiceRegistration").getCount());
+
+        metrics.setEnabled(true);
+        long start = metrics.begin();
+        metrics.setEnabled(false);
+        metrics.serviceRegistered(start);
+        assertEquals(1L, metrics.getStatistics().get("ServiceRegistration").getCount());
+    }
+
+    public void testNoServiceWithoutProperty() throws Exception
+    {
+        BundleContext context = startFramework(null);
+
+        assertNull(context.getServiceReference(DynamicMBean.class.getName()));
+        assertFalse(m_felix.getMetrics().isEnabled());
+    }
+
+    public void testMetricsService() throws Exception
+    {
+        BundleContext context = startFramework("true");
+
+        ServiceReference ref = context.getServiceReference(DynamicMBean.class.getName());
+        assertNotNull(ref);
+        assertEquals(FrameworkMetricsService.OBJECT_NAME, ref.getProperty("jmx.objectname"));
+        DynamicMBean mbean = (DynamicMBean) context.getService(ref);
+        assertEquals(Boolean.TRUE, mbean.getAttribute("Enabled"));
+
+        Bundle bundle = context.installBundle("test", createBundle("test.bundle"));
+        bundle.start();
+        bundle.getResource("missing.txt");
+        context.getServiceReferences(Runnable.class.getName(), null);
+
+        assertTrue(((Long) mbean.getAttribute("ResolveCount")).longValue() > 0);
+        assertTrue(((Long) mbean.getAttribute("ResolveResourcesTotal")).longValue() > 0);
+        assertTrue(((Long) mbean.getAttribute("ResolvePermutationsCount")).longValue() > 0);
+        assertEquals(Long.valueOf(1), mbean.getAttribute("BundleStartCount"));
+        assertTrue(((Long) mbean.getAttribute("ResourceLoadNotFoundCount")).longValue() > 0);
+        assertTrue(((Long) mbean.getAttribute("ServiceLookupCount")).longValue() > 0);
+        assertTrue(((Long) mbean.getAttribute("ServiceRegistrationCount")).longValue() > 0);
+
+        Map<String, Long> stats = (Map<String, Long>) mbean.invoke("getBundleStatistics",
+            new Object[] { Long.valueOf(bundle.getBundleId()) }, new String[] { long.class.getName() });
+        assertTrue(stats.get("ResourceLoadCount").longValue() > 0);
+
+        mbean.setAttribute(new Attribute("Enabled", Boolean.FALSE));
+        mbean.invoke("reset", null, null);
+        bundle.stop();
+        assertEquals(Long.valueOf(0), mbean.getAttribute("BundleStopCount"));
+        assertNull(mbean.invoke("getBundleStatistics",
+            new Object[] { Long.valueOf(bundle.getBundleId()) }, new String[] { long.class.getName() }));
+    }
+
+    private BundleContext startFramework(String metrics) throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        params.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        if (metrics != null)
+        {
+            params.put("felix.metrics", metrics);
+        }
+        m_felix = new Felix(params);
+        m_felix.init();
+        m_felix.start();
+        return m_felix.getBundleContext();
+    }
+
+    private static ByteArrayInputStream createBundle(String symbolicName) throws Exception
+    {
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        mf.getMainAttributes().putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        mf.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new JarOutputStream(bytes, mf).close();
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
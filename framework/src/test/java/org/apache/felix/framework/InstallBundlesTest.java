@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.SynchronousBundleListener;
+
+import junit.framework.TestCase;
+
+public class InstallBundlesTest extends TestCase
+{
+    private File m_cacheDir;
+    private Felix m_felix;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+        String cache = m_cacheDir.getPath();
+
+        Map params = new HashMap();
+        params.put("felix.cache.profiledir", cache);
+        params.put("felix.cache.dir", cache);
+        params.put(Constants.FRAMEWORK_STORAGE, cache);
+        params.put(FelixConstants.INSTALL_PARALLELISM, "4");
+
+        m_felix = new Felix(params);
+        m_felix.init();
+        m_felix.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        try
+        {
+            m_felix.stop();
+            m_felix.waitForStop(1000);
+        }
+        finally
+        {
+            delete(m_cacheDir);
+        }
+        super.tearDown();
+    }
+
+    public void testInstallBundles() throws Exception
+    {
+        String existing = createBundle("test.install.existing").toURI().toString();
+        Bundle existingBundle = m_felix.getBundleContext().installBundle(existing);
+
+        final List<BundleEvent> events = new ArrayList<BundleEvent>();
+        m_felix.getBundleContext().addBundleListener(new SynchronousBundleListener()
+        {
+            public void bundleChanged(BundleEvent event)
+            {
+                events.add(event);
+            }
+        });
+
+        String[] locations = new String[12];
+        for (int i = 0; i < 8; i++)
+        {
+            locations[i] = createBundle("test.install." + i).toURI().toString();
+        }
+        // Same symbolic name and version as the first bundle
+        locations[8] = createBundle("test.install.0").toURI().toString();
+        locations[9] = locations[3];
+        locations[10] = existing;
+        locations[11] = new File(m_cacheDir, "missing.jar").toURI().toString();
+
+        Exception[] exceptions = new Exception[locations.length];
+        Bundle[] bundles = m_felix.installBundles(locations, exceptions);
+
+        for (int i = 0; i < 8; i++)
+        {
+            assertNull(exceptions[i]);
+            assertEquals("test.install." + i, bundles[i].getSymbolicName());
+            assertEquals(Bundle.INSTALLED, bundles[i].getState());
+            assertSame(bundles[i], m_felix.getBundleContext().getBundle(locations[i]));
+        }
+
+        assertNull(bundles[8]);
+        assertTrue(exceptions[8] instanceof BundleException);
+        assertEquals(BundleException.DUPLICATE_BUNDLE_ERROR,
+            ((BundleException) exceptions[8]).getType());
+
+        assertSame(bundles[3], bundles[9]);
+        assertNull(exceptions[9]);
+        assertSame(existingBundle, bundles[10]);
+        assertNull(exceptions[10]);
+
+        assertNull(bundles[11]);
+        assertTrue(exceptions[11] instanceof BundleException);
+
+        // One event per new bundle, in the order of the locations
+        assertEquals(8, events.size());
+        for (int i = 0; i < 8; i++)
+        {
+            assertEquals(BundleEvent.INSTALLED, events.get(i).getType());
+            assertSame(bundles[i], events.get(i).getBundle());
+        }
+        assertEquals(10, m_felix.getBundleContext().getBundles().length);
+    }
+
+    private static File createBundle(String symbolicName) throws IOException
+    {
+        String manifest = "Bundle-SymbolicName: " + symbolicName + "\n"
+            + "Bundle-Version: 1.0.0\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Manifest-Version: 1.0\n\n";
+        File f = File.createTempFile("felix-bundle", ".jar");
+        f.deleteOnExit();
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.close();
+        return f;
+    }
+
+    private static void delete(File file) throws IOException
+    {
+        if (file.isDirectory())
+        {
+            for (File child : file.listFiles())
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -19,12 +19,17 @@
 package org.apache.felix.framework;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
 
 public class ServiceRegistrationImplTest extends TestCase
 {
@@ -71,6 +76,75 @@ public class ServiceRegistrationImplTest extends TestCase
         assertEquals("There should be no exceptions: " + exceptions, 0, exceptions.size());
     }
 
+    public void testIsAssignableToCachedPerWiring() throws Exception
+    {
+        Bundle provider = Mockito.mock(Bundle.class);
+        BundleWiringImpl providerWiring = mockWiring(provider);
+        Bundle requester = Mockito.mock(Bundle.class);
+        BundleWiringImpl requesterWiring = mockWiring(requester);
+
+        // The requester has no access to the class, so the reference is not filtered.
+        Mockito.when(requesterWiring.getClassByDelegation("org.foo.Service"))
+            .thenThrow(new ClassNotFoundException("org.foo.Service"));
+
+        ServiceRegistry registry = new ServiceRegistry(null, null);
+        ServiceRegistrationImpl sri = new ServiceRegistrationImpl(
+            registry, provider, new String [] {"org.foo.Service"}, 1L, "foo", null);
+        ServiceReference ref = sri.getReference();
+
+        assertTrue(ref.isAssignableTo(requester, "org.foo.Service"));
+        assertTrue(ref.isAssignableTo(requester, "org.foo.Service"));
+        Mockito.verify(requesterWiring, Mockito.times(1)).getClassByDelegation("org.foo.Service");
+
+        // The outcome is shared by all registrations of the provider.
+        ServiceRegistrationImpl sri2 = new ServiceRegistrationImpl(
+            registry, provider, new String [] {"org.foo.Service"}, 2L, "bar", null);
+        assertTrue(sri2.getReference().isAssignableTo(requester, "org.foo.Service"));
+        Mockito.verify(requesterWiring, Mockito.times(1)).getClassByDelegation("org.foo.Service");
+
+        registry.wiringsChanged();
+        assertTrue(ref.isAssignableTo(requester, "org.foo.Service"));
+        Mockito.verify(requesterWiring, Mockito.times(2)).getClassByDelegation("org.foo.Service");
+
+        // A dynamic wire or the disposal of a wiring only drops its own entries.
+        registry.wiringChanged(Mockito.mock(BundleWiringImpl.class));
+        assertTrue(ref.isAssignableTo(requester, "org.foo.Service"));
+        Mockito.verify(requesterWiring, Mockito.times(2)).getClassByDelegation("org.foo.Service");
+
+        registry.wiringChanged(requesterWiring);
+        assertTrue(ref.isAssignableTo(requester, "org.foo.Service"));
+        Mockito.verify(requesterWiring, Mockito.times(3)).getClassByDelegation("org.foo.Service");
+    }
+
+    public void testAssignabilityCacheBounded() throws Exception
+    {
+        ServiceAssignabilityCache cache = new ServiceAssignabilityCache();
+        BundleWiringImpl requester = Mockito.mock(BundleWiringImpl.class);
+        BundleWiringImpl provider = Mockito.mock(BundleWiringImpl.class);
+
+        for (int i = 0; i < ServiceAssignabilityCache.MAX_ENTRIES; i++)
+        {
+            cache.put(requester, provider, "org.foo.Service" + i,
+                ServiceAssignabilityCache.ALLOW, cache.getGeneration());
+        }
+        assertEquals(ServiceAssignabilityCache.MAX_ENTRIES, cache.size());
+
+        cache.put(requester, provider, "org.foo.Other",
+            ServiceAssignabilityCache.ALLOW, cache.getGeneration());
+        assertTrue(cache.size() < ServiceAssignabilityCache.MAX_ENTRIES);
+    }
+
+    private BundleWiringImpl mockWiring(Bundle bundle)
+    {
+        BundleRevision revision = Mockito.mock(BundleRevision.class);
+        BundleWiringImpl wiring = Mockito.mock(BundleWiringImpl.class);
+        Mockito.when(wiring.getRequiredWires(null)).thenReturn(Collections.<BundleWire>emptyList());
+        Mockito.when(wiring.getCapabilities(null)).thenReturn(Collections.<BundleCapability>emptyList());
+        Mockito.when(revision.getWiring()).thenReturn(wiring);
+        Mockito.when(bundle.adapt(BundleRevision.class)).thenReturn(revision);
+        return wiring;
+    }
+
     static class TestThread extends Thread {
         private final Runnable runnable;
         private final List<Throwable> exceptions;
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+public class ByteBufferDataInputTest extends TestCase
+{
+    public void testReadLineLikeDataInputStream() throws Exception
+    {
+        byte[] bytes = "first\nsecond\r\nthird\rfourth\n\n\u00e9\r".getBytes("ISO-8859-1");
+        ByteBufferDataInput input = new ByteBufferDataInput(ByteBuffer.wrap(bytes));
+        DataInputStream expected = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        String line;
+        do
+        {
+            line = expected.readLine();
+            assertEquals(line, input.readLine());
+        }
+        while (line != null);
+    }
+
+    public void testReadPrimitives() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.putInt(42).putShort((short) -2).put((byte) 0xF0).putLong(Long.MIN_VALUE);
+        buffer.put((byte) 0).put((byte) 3).put("abc".getBytes("UTF-8"));
+        buffer.flip();
+
+        ByteBufferDataInput input = new ByteBufferDataInput(buffer);
+        assertEquals(42, input.readInt());
+        assertEquals(65534, input.readUnsignedShort());
+        assertEquals(0xF0, input.readUnsignedByte());
+        assertEquals(Long.MIN_VALUE, input.readLong());
+        assertEquals("abc", input.readUTF());
+
+        try
+        {
+            input.readInt();
+            fail("Expected EOFException");
+        }
+        catch (EOFException ex)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class CallStackWalkerTest extends TestCase
+{
+    public void testFindsFirstAcceptedClass()
+    {
+        final List<Class> visited = new ArrayList<Class>();
+        CallStackWalker walker = new CallStackWalker(new CallStackWalker.ClassFilter()
+        {
+            public boolean accept(Class clazz)
+            {
+                visited.add(clazz);
+                return clazz == Caller.class;
+            }
+        });
+
+        assertSame(Caller.class, new Caller().call(walker));
+        // The walk stops at the caller, the test class is never visited.
+        assertSame(Caller.class, visited.get(visited.size() - 1));
+        assertFalse(visited.contains(CallStackWalkerTest.class));
+    }
+
+    public void testReturnsNullIfNoClassIsAccepted()
+    {
+        CallStackWalker walker = new CallStackWalker(new CallStackWalker.ClassFilter()
+        {
+            public boolean accept(Class clazz)
+            {
+                return false;
+            }
+        });
+
+        assertNull(new Caller().call(walker));
+    }
+
+    private static class Caller
+    {
+        Class call(CallStackWalker walker)
+        {
+            return walker.findFirst();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ImmutableStringMapTest extends TestCase
+{
+    public void testCaseInsensitiveLookup()
+    {
+        ImmutableStringMap map = new ImmutableStringMap.Builder()
+            .put("service.pid", "pid")
+            .put("objectClass", "oc")
+            .put("Component.Name", "name")
+            .put("\u00c4rger", "umlaut")
+            .build();
+
+        assertEquals(4, map.size());
+        assertEquals("pid", map.get("service.pid"));
+        assertEquals("pid", map.get("SERVICE.PID"));
+        assertEquals("oc", map.get("objectclass"));
+        assertEquals("oc", map.get("OBJECTCLASS"));
+        assertEquals("name", map.get("component.name"));
+        assertEquals("umlaut", map.get("\u00e4RGER"));
+        assertTrue(map.containsKey("ObjectClass"));
+        assertNull(map.get("service.pi"));
+        assertNull(map.get("service.pidx"));
+        assertNull(map.get(Integer.valueOf(1)));
+
+        // Same order as a StringMap.
+        StringMap stringMap = new StringMap(map);
+        assertEquals(Arrays.asList(stringMap.keySet().toArray()), Arrays.asList(map.getKeys()));
+        assertEquals(stringMap, map);
+    }
+
+    public void testBuilderKeepsFirstCase()
+    {
+        ImmutableStringMap.Builder builder = new ImmutableStringMap.Builder();
+        builder.put("OBJECTCLASS", "user");
+        assertTrue(builder.containsKey("objectClass"));
+        builder.put("objectClass", "framework");
+        ImmutableStringMap map = builder.build();
+
+        assertEquals(1, map.size());
+        assertEquals("OBJECTCLASS", map.getKeys()[0]);
+        assertEquals("framework", map.get("objectClass"));
+        assertEquals("framework", map.getExact("OBJECTCLASS"));
+        assertNull(map.getExact("objectClass"));
+    }
+
+    public void testLargeMap()
+    {
+        ImmutableStringMap.Builder builder = new ImmutableStringMap.Builder();
+        for (int i = 0; i < 100; i++)
+        {
+            builder.put("Key" + i, i);
+        }
+        ImmutableStringMap map = builder.build();
+        assertEquals(100, map.size());
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i, map.get("key" + i));
+        }
+    }
+
+    public void testImmutable()
+    {
+        ImmutableStringMap map = new ImmutableStringMap.Builder().put("a", "1").build();
+        try
+        {
+            map.put("b", "2");
+            fail("Map must be immutable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected
+        }
+        try
+        {
+            map.entrySet().iterator().remove();
+            fail("Map must be immutable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected
+        }
+        catch (IllegalStateException ex)
+        {
+            // Also acceptable
+        }
+    }
+}
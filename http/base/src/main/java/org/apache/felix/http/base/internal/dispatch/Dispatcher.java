@@ -61,6 +61,32 @@ public final class Dispatcher
         this.whiteboardManager = service;
     }
 
+    /**
+     * The preprocessor which is invoked as the last element of the preprocessor chain.
+     * It is stateless and therefore shared by all requests.
+     */
+    private final Preprocessor dispatchingPreprocessor = new Preprocessor()
+    {
+        @Override
+        public void init(final FilterConfig filterConfig) throws ServletException
+        {
+            // nothing to do
+        }
+
+        @Override
+        public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+        throws IOException, ServletException
+        {
+            doDispatch((HttpServletRequest)request, (HttpServletResponse)response);
+        }
+
+        @Override
+        public void destroy()
+        {
+            // nothing to do
+        }
+    };
+
     /**
      * Responsible for dispatching a given request to the actual applicable servlet and/or filters in the local registry.
      *
@@ -80,94 +106,93 @@ public final class Dispatcher
         }
 
         // check for invalidating session(s) first
-        final HttpSession session = req.getSession(false);
-        if ( session != null )
+        // a request without a session id can't refer to a session with expired contexts
+        if ( req.getRequestedSessionId() != null )
         {
-            final Set<String> names = HttpSessionWrapper.getExpiredSessionContextNames(session);
-            mgr.sessionDestroyed(session, names);
+            final HttpSession session = req.getSession(false);
+            if ( session != null )
+            {
+                final Set<String> names = HttpSessionWrapper.getExpiredSessionContextNames(session);
+                if ( !names.isEmpty() )
+                {
+                    mgr.sessionDestroyed(session, names);
+                }
+            }
         }
 
         // invoke preprocessors and then dispatching
-        mgr.invokePreprocessors(req, res, new Preprocessor() {
-
-			@Override
-			public void init(final FilterConfig filterConfig) throws ServletException
-			{
-				// nothing to do
-		    }
-
-			@Override
-			public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
-			throws IOException, ServletException
-			{
-				final HttpServletRequest req = (HttpServletRequest)request;
-				final HttpServletResponse res = (HttpServletResponse)response;
-		        // get full decoded path for dispatching
-		        // we can't use req.getRequestURI() or req.getRequestURL() as these are returning the encoded path
-		        String path = req.getServletPath();
-		        if ( path == null )
-		        {
-		            path = "";
-		        }
-		        if ( req.getPathInfo() != null )
-		        {
-		            path = path.concat(req.getPathInfo());
-		        }
-		        final String requestURI = path;
-
-		        // Determine which servlet we should forward the request to...
-		        final PathResolution pr = handlerRegistry.resolveServlet(requestURI);
-
-		        final PerContextHandlerRegistry errorRegistry = (pr != null ? pr.handlerRegistry : handlerRegistry.getBestMatchingRegistry(requestURI));
-		        final String servletName = (pr != null ? pr.handler.getName() : null);
-		        final HttpServletResponse wrappedResponse = new ServletResponseWrapper(req, res, servletName, errorRegistry);
-		        if ( pr == null )
-		        {
-		            wrappedResponse.sendError(404);
-		            return;
-		        }
-
-		        final ExtServletContext servletContext = pr.handler.getContext();
-		        final RequestInfo requestInfo = new RequestInfo(pr.servletPath, pr.pathInfo, null, req.getRequestURI());
-
-		        final HttpServletRequest wrappedRequest = new ServletRequestWrapper(req, servletContext, requestInfo, null,
-		                pr.handler.getServletInfo().isAsyncSupported(),
-		                pr.handler.getMultipartConfig(),
-		                pr.handler.getMultipartSecurityContext());
-		        final FilterHandler[] filterHandlers = handlerRegistry.getFilters(pr, req.getDispatcherType(), pr.requestURI);
-
-		        try
-		        {
-		            if ( servletContext.getServletRequestListener() != null )
-		            {
-		                servletContext.getServletRequestListener().requestInitialized(new ServletRequestEvent(servletContext, wrappedRequest));
-		            }
-		            final FilterChain filterChain = new InvocationChain(pr.handler, filterHandlers);
-		            filterChain.doFilter(wrappedRequest, wrappedResponse);
-
-		        }
-		        catch ( final Exception e)
-		        {
-		            SystemLogger.error("Exception while processing request to " + requestURI, e);
-		            req.setAttribute(RequestDispatcher.ERROR_EXCEPTION, e);
-		            req.setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, e.getClass().getName());
-
-		            wrappedResponse.sendError(500);
-		        }
-		        finally
-		        {
-		            if ( servletContext.getServletRequestListener() != null )
-		            {
-		                servletContext.getServletRequestListener().requestDestroyed(new ServletRequestEvent(servletContext, wrappedRequest));
-		            }
-		        }			}
-
-			@Override
-			public void destroy()
-			{
-				// nothing to do
-			}
-		});
+        mgr.invokePreprocessors(req, res, this.dispatchingPreprocessor);
+    }
+
+    /**
+     * Dispatch the request after all preprocessors have been invoked.
+     * @param req The request
+     * @param res The response
+     * @throws ServletException in case of exceptions during the actual dispatching;
+     * @throws IOException in case of I/O problems.
+     */
+    private void doDispatch(final HttpServletRequest req, final HttpServletResponse res)
+    throws ServletException, IOException
+    {
+        // get full decoded path for dispatching
+        // we can't use req.getRequestURI() or req.getRequestURL() as these are returning the encoded path
+        final String servletPath = req.getServletPath();
+        final String pathInfo = req.getPathInfo();
+        final String requestURI;
+        if ( servletPath == null || servletPath.isEmpty() )
+        {
+            requestURI = pathInfo == null ? "" : pathInfo;
+        }
+        else
+        {
+            requestURI = pathInfo == null ? servletPath : servletPath.concat(pathInfo);
+        }
+
+        // Determine which servlet we should forward the request to...
+        final PathResolution pr = handlerRegistry.resolveServlet(requestURI);
+
+        final PerContextHandlerRegistry errorRegistry = (pr != null ? pr.handlerRegistry : handlerRegistry.getBestMatchingRegistry(requestURI));
+        final String servletName = (pr != null ? pr.handler.getName() : null);
+        final HttpServletResponse wrappedResponse = new ServletResponseWrapper(req, res, servletName, errorRegistry);
+        if ( pr == null )
+        {
+            wrappedResponse.sendError(404);
+            return;
+        }
+
+        final ExtServletContext servletContext = pr.handler.getContext();
+        final RequestInfo requestInfo = new RequestInfo(pr.servletPath, pr.pathInfo, null, req.getRequestURI());
 
+        final HttpServletRequest wrappedRequest = new ServletRequestWrapper(req, servletContext, requestInfo, null,
+                pr.handler.getServletInfo().isAsyncSupported(),
+                pr.handler.getMultipartConfig(),
+                pr.handler.getMultipartSecurityContext());
+        final FilterHandler[] filterHandlers = handlerRegistry.getFilters(pr, req.getDispatcherType(), pr.requestURI);
+
+        try
+        {
+            if ( servletContext.getServletRequestListener() != null )
+            {
+                servletContext.getServletRequestListener().requestInitialized(new ServletRequestEvent(servletContext, wrappedRequest));
+            }
+            final FilterChain filterChain = new InvocationChain(pr.handler, filterHandlers);
+            filterChain.doFilter(wrappedRequest, wrappedResponse);
+
+        }
+        catch ( final Exception e)
+        {
+            SystemLogger.error("Exception while processing request to " + requestURI, e);
+            req.setAttribute(RequestDispatcher.ERROR_EXCEPTION, e);
+            req.setAttribute(RequestDispatcher.ERROR_EXCEPTION_TYPE, e.getClass().getName());
+
+            wrappedResponse.sendError(500);
+        }
+        finally
+        {
+            if ( servletContext.getServletRequestListener() != null )
+            {
+                servletContext.getServletRequestListener().requestDestroyed(new ServletRequestEvent(servletContext, wrappedRequest));
+            }
+        }
     }
 }
@@ -21,6 +21,7 @@ package org.apache.felix.http.base.internal.handler;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -96,7 +97,8 @@ public class HttpSessionWrapper implements HttpSession
     {
         final long now = System.currentTimeMillis();
 
-        final Set<String> names = new HashSet<>();
+        // the set is only created if a context expired, as this is called for every request
+        Set<String> names = null;
         final Enumeration<String> attrNames = session.getAttributeNames();
         while (attrNames.hasMoreElements())
         {
@@ -110,11 +112,15 @@ public class HttpSessionWrapper implements HttpSession
 
                 if ((maxTimeout > 0) && (lastAccess + maxTimeout) < now)
                 {
+                    if (names == null)
+                    {
+                        names = new HashSet<>();
+                    }
                     names.add(id);
                 }
             }
         }
-        return names;
+        return names == null ? Collections.<String> emptySet() : names;
     }
 
     /**
@@ -21,6 +21,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +45,118 @@ public final class FilterRegistry
     /** List of all filter registrations. These are sorted by the status objects. */
     private volatile List<FilterRegistrationStatus> filters = Collections.emptyList();
 
+    /**
+     * The filter chains per servlet handler and dispatcher type. The map is replaced whenever
+     * the filters or the servlets change, lookups do not lock.
+     */
+    private volatile ConcurrentMap<ChainKey, FilterChain> chains = new ConcurrentHashMap<ChainKey, FilterChain>();
+
+    /**
+     * Key for a filter chain: the servlet handler and the dispatcher type.
+     */
+    private static final class ChainKey
+    {
+        private final ServletHandler handler;
+        private final DispatcherType dispatcherType;
+        private final int hashCode;
+
+        public ChainKey(@Nullable final ServletHandler handler,
+                @NotNull final DispatcherType dispatcherType)
+        {
+            this.handler = handler;
+            this.dispatcherType = dispatcherType;
+            this.hashCode = 31 * System.identityHashCode(handler) + dispatcherType.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !(obj instanceof ChainKey) )
+            {
+                return false;
+            }
+            final ChainKey other = (ChainKey) obj;
+            return this.handler == other.handler
+                    && this.dispatcherType == other.dispatcherType;
+        }
+    }
+
+    /**
+     * The filters which might apply to a servlet handler and dispatcher type.
+     * Filters mapped to the servlet name or to {@code /*} apply to every request,
+     * the patterns of the other filters are matched against the request uri.
+     * If all filters apply to every request, the chain is the same for all uris.
+     */
+    private static final class FilterChain
+    {
+        private final FilterRegistrationStatus[] candidates;
+        private final boolean[] matchesAll;
+        private final FilterHandler[] staticChain;
+
+        public FilterChain(@NotNull final List<FilterRegistrationStatus> candidates, @NotNull final List<Boolean> matchesAll)
+        {
+            this.candidates = candidates.toArray(new FilterRegistrationStatus[candidates.size()]);
+            this.matchesAll = new boolean[this.candidates.length];
+            boolean isStatic = true;
+            for(int i = 0; i < this.matchesAll.length; i++)
+            {
+                this.matchesAll[i] = matchesAll.get(i);
+                isStatic &= this.matchesAll[i];
+            }
+            if ( isStatic )
+            {
+                this.staticChain = new FilterHandler[this.candidates.length];
+                for(int i = 0; i < this.candidates.length; i++)
+                {
+                    this.staticChain[i] = this.candidates[i].getHandler();
+                }
+            }
+            else
+            {
+                this.staticChain = null;
+            }
+        }
+
+        public @NotNull FilterHandler[] getFilterHandlers(@NotNull final String requestURI)
+        {
+            if ( this.staticChain != null )
+            {
+                return this.staticChain;
+            }
+            final List<FilterHandler> result = new ArrayList<FilterHandler>(this.candidates.length);
+            for(int i = 0; i < this.candidates.length; i++)
+            {
+                if ( this.matchesAll[i] || matches(this.candidates[i], requestURI) )
+                {
+                    result.add(this.candidates[i].getHandler());
+                }
+            }
+            return result.toArray(new FilterHandler[result.size()]);
+        }
+
+        private static boolean matches(@NotNull final FilterRegistrationStatus status, @NotNull final String requestURI)
+        {
+            for(final PathResolver resolver : status.getResolvers())
+            {
+                if ( resolver.resolve(requestURI) != null )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * The status object keeps track of the registration status of a filter and holds
      * the resolvers to match against a uri.
@@ -126,6 +240,7 @@ public final class FilterRegistry
         Collections.sort(newList);
 
         this.filters = newList;
+        this.chains = new ConcurrentHashMap<ChainKey, FilterChain>();
     }
 
     /**
@@ -151,6 +266,7 @@ public final class FilterRegistry
         if ( found != null )
         {
             this.filters = newList;
+            this.chains = new ConcurrentHashMap<ChainKey, FilterChain>();
 
             if ( found.getResult() == -1 && destroy )
             {
@@ -162,6 +278,16 @@ public final class FilterRegistry
     public synchronized void cleanup()
     {
         this.filters = Collections.emptyList();
+        this.chains = new ConcurrentHashMap<ChainKey, FilterChain>();
+    }
+
+    /**
+     * Drop all filter chains. This must be called whenever a servlet is
+     * added or removed, as the chains are kept per servlet handler.
+     */
+    public synchronized void servletsChanged()
+    {
+        this.chains = new ConcurrentHashMap<ChainKey, FilterChain>();
     }
 
     /**
@@ -176,9 +302,32 @@ public final class FilterRegistry
             @NotNull final DispatcherType dispatcherType,
             @NotNull final String requestURI)
     {
-        final List<FilterHandler> result = new ArrayList<FilterHandler>();
-        final List<FilterRegistrationStatus> allFilters = this.filters;
+        // get the chains first, the filters might change concurrently in which case
+        // the chain is put into the outdated map
+        final ConcurrentMap<ChainKey, FilterChain> current = this.chains;
+        final ChainKey key = new ChainKey(handler, dispatcherType);
+        FilterChain chain = current.get(key);
+        if ( chain == null )
+        {
+            chain = this.createFilterChain(this.filters, handler, dispatcherType);
+            final FilterChain existing = current.putIfAbsent(key, chain);
+            if ( existing != null )
+            {
+                chain = existing;
+            }
+        }
+        return chain.getFilterHandlers(requestURI);
+    }
+
+    private @NotNull FilterChain createFilterChain(@NotNull final List<FilterRegistrationStatus> allFilters,
+            @Nullable final ServletHandler handler,
+            @NotNull final DispatcherType dispatcherType)
+    {
+        final List<FilterRegistrationStatus> candidates = new ArrayList<FilterRegistrationStatus>();
+        final List<Boolean> matchesAll = new ArrayList<Boolean>();
 
+        // check for servlet name if it's not a resource
+        final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
         for(final FilterRegistrationStatus status : allFilters)
         {
             // as soon as we encounter a failing filter, we can stop
@@ -188,35 +337,58 @@ public final class FilterRegistry
             }
             if (referencesDispatcherType(status.getHandler(), dispatcherType) )
             {
-                boolean added = false;
-                for(final PathResolver resolver : status.getResolvers())
+                if ( referencesServletName(status.getHandler(), servletName) || matchesAllPaths(status) )
                 {
-                    if ( resolver.resolve(requestURI) != null )
-                    {
-                        result.add(status.getHandler());
-                        added = true;
-                        break;
-                    }
+                    candidates.add(status);
+                    matchesAll.add(Boolean.TRUE);
                 }
-                // check for servlet name if it's not a resource
-                final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
-                if ( !added && servletName != null && status.getHandler().getFilterInfo().getServletNames() != null )
+                else if ( status.getResolvers().length > 0 )
                 {
-                    for(final String name : status.getHandler().getFilterInfo().getServletNames())
-                    {
-                        if ( servletName.equals(name) )
-                        {
-                            result.add(status.getHandler());
-                            added = true;
-                            break;
-                        }
-                    }
+                    candidates.add(status);
+                    matchesAll.add(Boolean.FALSE);
                 }
+            }
+        }
+
+        return new FilterChain(candidates, matchesAll);
+    }
 
+    /**
+     * Check if the filter is registered for the servlet name
+     * @param handler The filter handler
+     * @param servletName The servlet name, might be {@code null}
+     * @return {@code true} if the filter is mapped to the servlet.
+     */
+    private boolean referencesServletName(final FilterHandler handler, final String servletName)
+    {
+        if ( servletName != null && handler.getFilterInfo().getServletNames() != null )
+        {
+            for(final String name : handler.getFilterInfo().getServletNames())
+            {
+                if ( servletName.equals(name) )
+                {
+                    return true;
+                }
             }
         }
+        return false;
+    }
 
-        return result.toArray(new FilterHandler[result.size()]);
+    /**
+     * Check if the filter is registered for all paths
+     * @param status The filter registration status
+     * @return {@code true} if one of the patterns is {@code /*}.
+     */
+    private boolean matchesAllPaths(final FilterRegistrationStatus status)
+    {
+        for(final PathResolver resolver : status.getResolvers())
+        {
+            if ( resolver instanceof PathResolverFactory.PathMatcher && "/*".equals(resolver.getPattern()) )
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
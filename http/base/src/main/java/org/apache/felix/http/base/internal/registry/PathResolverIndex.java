@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.DefaultMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactAndPathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExtensionMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.PathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.RootMatcher;
+
+/**
+ * Immutable index over a set of active path resolvers.
+ * The index is created whenever the set of active resolvers changes and
+ * finds the resolver for a request uri without testing each resolver:
+ * - exact matches are looked up in a hash map
+ * - path mappings are looked up in a segment trie, the deepest match wins
+ * - extension mappings are looked up in a hash map, the longest extension wins
+ *
+ * The lookup order is the same as the order defined by sorting the resolvers
+ * (see {@link PathResolver#compareTo(Object)}).
+ * If the index encounters an unknown resolver implementation, it falls back
+ * to testing all resolvers in order.
+ */
+public final class PathResolverIndex
+{
+    public static final PathResolverIndex EMPTY = new PathResolverIndex(Collections.<PathResolver> emptyList());
+
+    /** Exact matchers and exact and path matchers by path. */
+    private final Map<String, PathResolver> exactMatchers = new HashMap<String, PathResolver>();
+
+    /** Prefix trie for the exact and path matchers (only used for the http service context). */
+    private final Node exactAndPathMatchers = new Node();
+
+    /** Prefix trie for the path matchers. */
+    private final Node pathMatchers = new Node();
+
+    /** Extension matchers by extension, including the leading dot. */
+    private final Map<String, PathResolver> extensionMatchers = new HashMap<String, PathResolver>();
+
+    private PathResolver rootMatcher;
+
+    private PathResolver defaultMatcher;
+
+    /** If not null, the index can't be used and resolvers are tested in order. */
+    private final List<PathResolver> fallback;
+
+    /**
+     * Create a new index
+     * @param resolvers The sorted list of active resolvers
+     */
+    public PathResolverIndex(@NotNull final List<PathResolver> resolvers)
+    {
+        boolean useFallback = false;
+        for(final PathResolver resolver : resolvers)
+        {
+            if ( resolver instanceof ExactMatcher )
+            {
+                this.exactMatchers.put(resolver.getPattern(), resolver);
+            }
+            else if ( resolver instanceof ExactAndPathMatcher )
+            {
+                this.exactMatchers.put(resolver.getPattern(), resolver);
+                this.exactAndPathMatchers.add(resolver.getPattern(), resolver);
+            }
+            else if ( resolver instanceof PathMatcher )
+            {
+                final String pattern = resolver.getPattern();
+                this.pathMatchers.add(pattern.substring(0, pattern.length() - 2), resolver);
+            }
+            else if ( resolver instanceof ExtensionMatcher )
+            {
+                this.extensionMatchers.put(resolver.getPattern().substring(1), resolver);
+            }
+            else if ( resolver instanceof RootMatcher )
+            {
+                this.rootMatcher = resolver;
+            }
+            else if ( resolver instanceof DefaultMatcher )
+            {
+                this.defaultMatcher = resolver;
+            }
+            else
+            {
+                useFallback = true;
+            }
+        }
+        this.fallback = useFallback ? resolvers : null;
+    }
+
+    /**
+     * Resolve a request uri
+     *
+     * @param uri The request uri
+     * @return A path resolution if a servlet matched, {@code null} otherwise
+     */
+    public @Nullable PathResolution resolve(@NotNull final String uri)
+    {
+        if ( this.fallback != null )
+        {
+            for(final PathResolver entry : this.fallback)
+            {
+                final PathResolution pr = entry.resolve(uri);
+                if ( pr != null )
+                {
+                    pr.patterns = new String[] {entry.getPattern()};
+                    return pr;
+                }
+            }
+            return null;
+        }
+        final PathResolver resolver = this.find(uri);
+        if ( resolver != null )
+        {
+            final PathResolution pr = resolver.resolve(uri);
+            if ( pr != null )
+            {
+                pr.patterns = new String[] {resolver.getPattern()};
+            }
+            return pr;
+        }
+        return null;
+    }
+
+    private @Nullable PathResolver find(@NotNull final String uri)
+    {
+        PathResolver resolver = this.exactMatchers.get(uri);
+        if ( resolver == null )
+        {
+            resolver = this.exactAndPathMatchers.find(uri);
+        }
+        if ( resolver == null )
+        {
+            resolver = this.pathMatchers.find(uri);
+        }
+        if ( resolver == null && !this.extensionMatchers.isEmpty() )
+        {
+            // the leftmost dot gives the longest extension
+            int pos = uri.indexOf('.');
+            while ( resolver == null && pos != -1 )
+            {
+                resolver = this.extensionMatchers.get(uri.substring(pos));
+                pos = uri.indexOf('.', pos + 1);
+            }
+        }
+        if ( resolver == null && this.rootMatcher != null && (uri.length() == 0 || uri.equals("/")) )
+        {
+            resolver = this.rootMatcher;
+        }
+        if ( resolver == null )
+        {
+            resolver = this.defaultMatcher;
+        }
+        return resolver;
+    }
+
+    /**
+     * A node in the segment trie. A path is split into its segments at
+     * each slash, the path "/a/b" is stored as the segments "", "a" and "b".
+     * A path matches a uri if its segments are a prefix of the uri's segments,
+     * which is equivalent to the uri being equal to the path or starting with
+     * the path followed by a slash.
+     */
+    private static final class Node
+    {
+        private Map<String, Node> children;
+
+        private PathResolver resolver;
+
+        void add(final String path, final PathResolver resolver)
+        {
+            Node node = this;
+            int start = 0;
+            while ( true )
+            {
+                final int end = path.indexOf('/', start);
+                final String segment = end == -1 ? path.substring(start) : path.substring(start, end);
+                if ( node.children == null )
+                {
+                    node.children = new HashMap<String, Node>();
+                }
+                Node child = node.children.get(segment);
+                if ( child == null )
+                {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+                node = child;
+                if ( end == -1 )
+                {
+                    break;
+                }
+                start = end + 1;
+            }
+            node.resolver = resolver;
+        }
+
+        PathResolver find(final String uri)
+        {
+            PathResolver result = null;
+            Node node = this;
+            int start = 0;
+            while ( node.children != null )
+            {
+                final int end = uri.indexOf('/', start);
+                final String segment = end == -1 ? uri.substring(start) : uri.substring(start, end);
+                node = node.children.get(segment);
+                if ( node == null )
+                {
+                    break;
+                }
+                if ( node.resolver != null )
+                {
+                    result = node.resolver;
+                }
+                if ( end == -1 )
+                {
+                    break;
+                }
+                start = end + 1;
+            }
+            return result;
+        }
+    }
+}
@@ -205,6 +205,7 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
     {
         this.servletRegistry.addServlet(handler);
         this.errorPageRegistry.addServlet(handler);
+        this.filterRegistry.servletsChanged();
     }
 
     /**
@@ -216,6 +217,7 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
     {
         this.servletRegistry.removeServlet(servletInfo, destroy);
         this.errorPageRegistry.removeServlet(servletInfo, destroy);
+        this.filterRegistry.servletsChanged();
     }
 
     /**
@@ -53,6 +53,9 @@ public final class ServletRegistry
 
     private volatile List<PathResolver> activeResolvers = Collections.emptyList();
 
+    /** Index over the active resolvers, recreated whenever the active resolvers change. */
+    private volatile PathResolverIndex activeIndex = PathResolverIndex.EMPTY;
+
     private final Map<String, List<ServletHandler>> inactiveServletMappings = new HashMap<String, List<ServletHandler>>();
 
     private final Map<String, List<ServletHandler>> servletsByName = new ConcurrentHashMap<String, List<ServletHandler>>();
@@ -73,18 +76,7 @@ public final class ServletRegistry
      */
     public PathResolution resolve(@NotNull final String relativeRequestURI)
     {
-        final List<PathResolver> resolvers = this.activeResolvers;
-        for(final PathResolver entry : resolvers)
-        {
-            final PathResolution pr = entry.resolve(relativeRequestURI);
-            if ( pr != null )
-            {
-                // TODO - we should have all patterns under which this servlet is actively registered
-                pr.patterns = new String[] {entry.getPattern()};
-                return pr;
-            }
-        }
-        return null;
+        return this.activeIndex.resolve(relativeRequestURI);
     }
 
     private PathResolver findResolver(final List<PathResolver> resolvers, final String pattern)
@@ -174,6 +166,7 @@ public final class ServletRegistry
             }
             Collections.sort(resolvers);
             this.activeResolvers = resolvers;
+            this.activeIndex = new PathResolverIndex(resolvers);
             this.mapping = newMap;
         }
         else if ( !handler.getServletInfo().isResource() && handler.getServletInfo().getName() != null )
@@ -340,6 +333,7 @@ public final class ServletRegistry
 
             Collections.sort(resolvers);
             this.activeResolvers = resolvers;
+            this.activeIndex = new PathResolverIndex(resolvers);
             this.mapping = newMap;
 
             if ( cleanupHandler != null )
@@ -367,6 +361,7 @@ public final class ServletRegistry
     public synchronized void cleanup()
     {
         this.activeResolvers = Collections.emptyList();
+        this.activeIndex = PathResolverIndex.EMPTY;
         this.inactiveServletMappings.clear();
         this.servletsByName.clear();
         this.mapping = Collections.emptyMap();
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.dispatch;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Servlet;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.felix.http.base.internal.context.ExtServletContext;
+import org.apache.felix.http.base.internal.handler.HttpServiceServletHandler;
+import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.apache.felix.http.base.internal.registry.HandlerRegistry;
+import org.apache.felix.http.base.internal.runtime.ServletInfo;
+import org.apache.felix.http.base.internal.whiteboard.WhiteboardManager;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.service.http.whiteboard.Preprocessor;
+
+/**
+ * JMH benchmark driving the {@link Dispatcher} with mock requests against
+ * a registry containing a configurable number of servlets.
+ *
+ * The requests and the servlets are Mockito mocks, therefore the absolute numbers
+ * include the mock overhead. The benchmark is meant to compare the cost of the
+ * dispatching code between changes, for example with the GC profiler:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; \
+ *      org.apache.felix.http.base.internal.dispatch.DispatcherBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark
+{
+    @Param({"10", "500"})
+    public int servlets;
+
+    private HandlerRegistry registry;
+
+    private Dispatcher dispatcher;
+
+    private HttpServletRequest request;
+
+    private HttpServletRequest sessionRequest;
+
+    private HttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        this.registry = new HandlerRegistry();
+        this.registry.init();
+
+        final ExtServletContext context = Mockito.mock(ExtServletContext.class);
+        for(int i = 0; i < this.servlets; i++)
+        {
+            final ServletInfo info = new ServletInfo("servlet" + i, "/path" + i, Collections.<String, String> emptyMap());
+            final ServletHandler handler = new HttpServiceServletHandler(context, info, Mockito.mock(Servlet.class));
+            this.registry.getRegistry(handler.getContextServiceId()).registerServlet(handler);
+        }
+
+        this.dispatcher = new Dispatcher(this.registry);
+
+        // no preprocessors registered: directly invoke the dispatching preprocessor
+        final WhiteboardManager mgr = Mockito.mock(WhiteboardManager.class);
+        Mockito.doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                final Preprocessor dispatching = (Preprocessor) invocation.getArguments()[2];
+                dispatching.doFilter((ServletRequest) invocation.getArguments()[0],
+                        (ServletResponse) invocation.getArguments()[1], null);
+                return null;
+            }
+        }).when(mgr).invokePreprocessors(Mockito.any(HttpServletRequest.class),
+                Mockito.any(HttpServletResponse.class),
+                Mockito.any(Preprocessor.class));
+        this.dispatcher.setWhiteboardManager(mgr);
+
+        final String path = "/path" + (this.servlets / 2);
+        this.request = createRequest(path, null);
+        this.sessionRequest = createRequest(path, "sessionid");
+        this.response = Mockito.mock(HttpServletResponse.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.registry.shutdown();
+    }
+
+    private static HttpServletRequest createRequest(final String path, final String sessionId)
+    {
+        final HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(req.getServletPath()).thenReturn("");
+        Mockito.when(req.getPathInfo()).thenReturn(path);
+        Mockito.when(req.getRequestURI()).thenReturn(path);
+        Mockito.when(req.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        Mockito.when(req.getRequestedSessionId()).thenReturn(sessionId);
+        return req;
+    }
+
+    @Benchmark
+    public void dispatchSessionless() throws Exception
+    {
+        this.dispatcher.dispatch(this.request, this.response);
+    }
+
+    @Benchmark
+    public void dispatchWithSessionId() throws Exception
+    {
+        this.dispatcher.dispatch(this.sessionRequest, this.response);
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include(DispatcherBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(opt).run();
+    }
+}
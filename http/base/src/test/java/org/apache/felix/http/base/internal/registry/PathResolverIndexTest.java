@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PathResolverIndexTest {
+
+    private static final String[] URIS = new String[] {
+        "", "/", "/foo", "/foo/", "/foo/bar", "/foo/bar/", "/foo/bar/baz", "/foobar",
+        "/foo/bar.jsp", "/a.tar.gz", "/x/y.gz", "/lib", "/lib/", "/lib/a", "/libs",
+        "/app/index.html", "/app", "/app.html", "/other/bla", "foo", "/foo//bar"
+    };
+
+    private static List<PathResolver> createResolvers(final String... patterns)
+    {
+        final List<PathResolver> resolvers = new ArrayList<PathResolver>();
+        for(final String pattern : patterns)
+        {
+            resolvers.add(PathResolverFactory.createPatternMatcher(null, pattern));
+        }
+        Collections.sort(resolvers);
+        return resolvers;
+    }
+
+    /**
+     * Resolve the uri by testing each resolver in order.
+     */
+    private static PathResolution resolveLinear(final List<PathResolver> resolvers, final String uri)
+    {
+        for(final PathResolver entry : resolvers)
+        {
+            final PathResolution pr = entry.resolve(uri);
+            if ( pr != null )
+            {
+                pr.patterns = new String[] {entry.getPattern()};
+                return pr;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameResolution(final List<PathResolver> resolvers)
+    {
+        final PathResolverIndex index = new PathResolverIndex(resolvers);
+        for(final String uri : URIS)
+        {
+            final PathResolution expected = resolveLinear(resolvers, uri);
+            final PathResolution actual = index.resolve(uri);
+            if ( expected == null )
+            {
+                assertNull(uri, actual);
+            }
+            else
+            {
+                assertEquals(uri, expected.patterns[0], actual.patterns[0]);
+                assertEquals(uri, expected.servletPath, actual.servletPath);
+                assertEquals(uri, expected.pathInfo, actual.pathInfo);
+                assertEquals(uri, expected.requestURI, actual.requestURI);
+            }
+        }
+    }
+
+    @Test public void testEmpty()
+    {
+        assertNull(PathResolverIndex.EMPTY.resolve("/foo"));
+        assertSameResolution(createResolvers());
+    }
+
+    @Test public void testExactMatches()
+    {
+        assertSameResolution(createResolvers("/foo", "/foo/bar", "/app.html"));
+    }
+
+    @Test public void testPathMatches()
+    {
+        assertSameResolution(createResolvers("/foo/*", "/foo/bar/*", "/lib/*", "/*"));
+        assertSameResolution(createResolvers("/foo/bar/*", "/foo/"));
+    }
+
+    @Test public void testExtensionMatches()
+    {
+        assertSameResolution(createResolvers("*.jsp", "*.gz", "*.tar.gz", "*.html"));
+    }
+
+    @Test public void testRootAndDefault()
+    {
+        assertSameResolution(createResolvers("", "/"));
+        assertSameResolution(createResolvers("", "*.html"));
+    }
+
+    @Test public void testExactAndPathMatches()
+    {
+        final List<PathResolver> resolvers = new ArrayList<PathResolver>();
+        resolvers.add(new PathResolverFactory.ExactAndPathMatcher(null, "/lib"));
+        resolvers.add(new PathResolverFactory.ExactAndPathMatcher(null, "/foo/bar"));
+        resolvers.add(PathResolverFactory.createPatternMatcher(null, "/foo/bar/baz"));
+        resolvers.add(PathResolverFactory.createPatternMatcher(null, "/foo/*"));
+        Collections.sort(resolvers);
+        assertSameResolution(resolvers);
+    }
+
+    @Test public void testMixed()
+    {
+        assertSameResolution(createResolvers("", "/", "/*", "/foo", "/foo/*", "/foo/bar/*",
+                "*.jsp", "*.html", "/app", "/lib/*", "/other/bla"));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.felix.httplite.servlet.HttpServletResponseImpl;
+
+/**
+ * Sends files to a connection accepted through a channel with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which
+ * allows the operating system to copy the file to the socket without
+ * passing it through the heap.
+**/
+class ChannelFileTransfer implements FileTransfer
+{
+    private final WritableByteChannel m_channel;
+
+    /**
+     * @param channel channel of the client connection, must be in blocking mode
+    **/
+    ChannelFileTransfer(final WritableByteChannel channel)
+    {
+        m_channel = channel;
+    }
+
+    public boolean transfer(final URL resource, final HttpServletResponseImpl response,
+        final boolean close) throws IOException
+    {
+        File file = getFile(resource);
+        if (file == null)
+        {
+            return false;
+        }
+
+        FileInputStream input = new FileInputStream(file);
+        try
+        {
+            FileChannel fileChannel = input.getChannel();
+            long size = fileChannel.size();
+
+            // Headers are flushed to the socket before the file is transferred.
+            response.writeHeaders(size, close);
+
+            long position = 0;
+            while (position < size)
+            {
+                position += fileChannel.transferTo(position, size - position, m_channel);
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+        return true;
+    }
+
+    /**
+     * @param resource URL of a resource
+     * @return the file of a <tt>file:</tt> resource, or <tt>null</tt> if the
+     *         resource is not a regular file.
+    **/
+    static File getFile(final URL resource)
+    {
+        if ("file".equals(resource.getProtocol()))
+        {
+            try
+            {
+                // The path of the URL is percent-encoded, the URI decodes it.
+                File file = new File(new URI(resource.toExternalForm()));
+                if (file.isFile())
+                {
+                    return file;
+                }
+            }
+            catch (URISyntaxException ex)
+            {
+                // Not a valid URI, the resource is streamed instead.
+            }
+            catch (IllegalArgumentException ex)
+            {
+                // Not a hierarchical file URI, e.g. with an authority.
+            }
+        }
+        return null;
+    }
+}
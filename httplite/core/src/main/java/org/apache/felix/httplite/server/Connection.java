@@ -59,6 +59,8 @@ public class Connection
     private final int m_requestLimit;
     private final ServiceRegistrationResolver m_resolver;
     private final Logger m_logger;
+    private FileTransfer m_fileTransfer;
+    private ConnectionAcceptor m_acceptor;
 
     /**
      * Constructs a connection with a default inactivity timeout and request limit.
@@ -136,6 +138,34 @@ public class Connection
         }
     }
 
+    /**
+     * Sets the transfer used to send static files of this connection, if it
+     * can send them without going through the output stream.
+     * @param fileTransfer file transfer of the connection.
+     */
+    void setFileTransfer(final FileTransfer fileTransfer)
+    {
+        m_fileTransfer = fileTransfer;
+    }
+
+    /**
+     * Sets the acceptor which takes back this connection while it is idle
+     * between two requests, rather than having a thread wait for the next request.
+     * @param acceptor acceptor of the connection.
+     */
+    void setAcceptor(final ConnectionAcceptor acceptor)
+    {
+        m_acceptor = acceptor;
+    }
+
+    /**
+     * @return the socket of this connection.
+     */
+    Socket getSocket()
+    {
+        return m_socket;
+    }
+
     /**
      * Performs the actual servicing of the connection and its subsequent requests.
      * This method will be called by threads in the thread pool. This method
@@ -143,7 +173,8 @@ public class Connection
      * connection close, the inactivity timeout expires, the maximum request
      * limit was reached, or an I/O error occurred. When this method returns,
      * the associated socket will be closed, regardless of whether or not an
-     * expection was thrown.
+     * expection was thrown, unless the connection was handed back to its
+     * acceptor to wait for the next request.
      * @throws java.net.SocketTimeoutException If the inactivity timeout expired
      *         while trying to read from the socket.
      * @throws java.io.IOException If any I/O error occurs.
@@ -151,15 +182,22 @@ public class Connection
     **/
     public void process() throws IOException, ServletException
     {
-        HttpServletRequestImpl request = m_resolver.getServletRequest(m_socket);
-        HttpServletResponseImpl response = m_resolver.getServletResponse(m_os);
-
+        boolean parked = false;
         try
         {
             // Loop until we close the connection.
             boolean close = false;
             while (!close)
             {
+                // A persistent connection may be closed by the client between requests.
+                if ((m_requestCount > 0) && isEndOfStream())
+                {
+                    break;
+                }
+
+                HttpServletRequestImpl request = m_resolver.getServletRequest(m_socket);
+                HttpServletResponseImpl response = m_resolver.getServletResponse(m_os);
+
                 // Read the next request.
                 try
                 {
@@ -198,7 +236,8 @@ public class Connection
                 // then set close flag to exit the loop rather than trying to read
                 // more requests.
                 String v = request.getHeader(HttpConstants.HEADER_CONNECTION);
-                if ((request.getProtocol().equals(HttpConstants.HTTP10_VERSION) && ((v == null) || (!v.equalsIgnoreCase(HttpConstants.KEEPALIVE_CONNECTION))))
+                boolean http10 = request.getProtocol().equals(HttpConstants.HTTP10_VERSION);
+                if ((http10 && ((v == null) || (!v.equalsIgnoreCase(HttpConstants.KEEPALIVE_CONNECTION))))
                     || ((v != null) && v.equalsIgnoreCase(HttpConstants.CLOSE_CONNECTION)))
                 {
                     close = true;
@@ -212,12 +251,25 @@ public class Connection
                     close = true;
                     response.setConnectionType("close");
                 }
+                // Without an acceptor to take it back, an idle persistent connection
+                // would hold a pool thread until the inactivity timeout expires.
+                else if (m_acceptor == null)
+                {
+                    close = true;
+                    response.setConnectionType("close");
+                }
+                // An HTTP/1.0 client only keeps the connection if the response says so.
+                else if (http10)
+                {
+                    response.setConnectionType(HttpConstants.KEEPALIVE_CONNECTION);
+                }
 
                 // We do not support OPTIONS method so send
                 // a "not implemented" error in that case.
                 if (!HttpServletRequestImpl.isSupportedMethod(request.getMethod()))
                 {
                     error = true;
+                    close = true;
                     response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
                     response.sendNotImplementedResponse();
                 }
@@ -228,6 +280,7 @@ public class Connection
                     && (request.getHeader(HttpConstants.HOST_HEADER) == null))
                 {
                     error = true;
+                    close = true;
                     response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
                     response.sendMissingHostResponse();
                 }
@@ -243,13 +296,25 @@ public class Connection
 
                     if (processor != null)
                     {
+                        if ((m_fileTransfer != null) && (processor instanceof ResourceHandler))
+                        {
+                            ((ResourceHandler) processor).setFileTransfer(m_fileTransfer);
+                        }
                         processor.handle(close);
 
                         m_logger.log(Logger.LOG_DEBUG, "Processed " + request.toString());
 
-                        // TODO: Adding next line to make test cases pass, but not sure if it is correct
-                        // and needs further investigation.
-                        close = true;
+                        // Rather than waiting for the next request, hand an idle
+                        // connection back to the acceptor, unless it is closed.
+                        if (!close && (m_is.available() == 0))
+                        {
+                            parked = m_acceptor.park(this);
+                            if (parked)
+                            {
+                                return;
+                            }
+                            close = true;
+                        }
                         continue;
                     }
 
@@ -261,30 +326,58 @@ public class Connection
         }
         finally
         {
-            try
-            {
-                m_is.close();
-            }
-            catch (IOException ex)
-            {
-                m_logger.log(Logger.LOG_ERROR, "Error closing socket input stream.", ex);
-            }
-            try
-            {
-                m_os.close();
-            }
-            catch (IOException ex)
-            {
-                m_logger.log(Logger.LOG_ERROR, "Error closing socket output stream.", ex);
-            }
-            try
-            {
-                m_socket.close();
-            }
-            catch (IOException ex)
+            if (!parked)
             {
-                m_logger.log(Logger.LOG_ERROR, "Error closing socket.", ex);
+                close();
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether the client closed the connection, without consuming
+     * any data of the next request.
+     * @return <tt>true</tt> if the end of the stream was reached.
+     * @throws IOException If any I/O error occurs.
+     */
+    private boolean isEndOfStream() throws IOException
+    {
+        m_is.mark(1);
+        if (m_is.read() < 0)
+        {
+            return true;
+        }
+        m_is.reset();
+        return false;
+    }
+
+    /**
+     * Closes the streams and the socket of this connection.
+     */
+    void close()
+    {
+        try
+        {
+            m_is.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket input stream.", ex);
+        }
+        try
+        {
+            m_os.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket output stream.", ex);
+        }
+        try
+        {
+            m_socket.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket.", ex);
+        }
+    }
+}
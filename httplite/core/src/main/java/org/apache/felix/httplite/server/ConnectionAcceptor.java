@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.apache.felix.httplite.osgi.Logger;
+import org.apache.felix.httplite.osgi.ServiceRegistrationResolver;
+
+/**
+ * An alternative to the blocking accept loop of the server. The
+ * implementation, {@link ConnectionSelector}, uses NIO and is only loaded by
+ * name when <tt>org.apache.felix.http.nio.enable</tt> is true, so that the
+ * server classes do not link NIO on runtimes which lack it.
+**/
+interface ConnectionAcceptor
+{
+    /**
+     * Binds the acceptor to the specified address and port.
+     * @param bindAddr The address to bind to or <tt>null</tt> for all interfaces.
+     * @param port The port to listen on.
+     * @param threadPool The thread pool servicing readable connections.
+     * @param connectionTimeout The inactivity timeout of connections in milliseconds.
+     * @param connectionRequestLimit The maximum number of consecutive requests per connection.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     * @throws java.io.IOException If the acceptor cannot be bound.
+    **/
+    void open(InetAddress bindAddr, int port, ThreadPool threadPool,
+        int connectionTimeout, int connectionRequestLimit,
+        ServiceRegistrationResolver resolver, Logger logger) throws IOException;
+
+    /**
+     * Accepts connections until {@link #close()} is called. This method is
+     * only ever called by the server thread.
+    **/
+    void run();
+
+    /**
+     * Stops accepting connections.
+    **/
+    void close();
+
+    /**
+     * Takes back a persistent connection, which has no further request
+     * pending, until the client sends the next request. This method is
+     * called by the thread servicing the connection, which must not use
+     * the connection any more if the connection was taken back.
+     * @param connection The idle connection.
+     * @return <tt>true</tt> if the acceptor took the connection, <tt>false</tt>
+     *         if it is closed.
+    **/
+    boolean park(Connection connection);
+}
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.felix.httplite.osgi.Logger;
+import org.apache.felix.httplite.osgi.ServiceRegistrationResolver;
+
+/**
+ * This class accepts connections using a selector rather than a blocking
+ * accept loop. Accepted connections are parked in the selector without
+ * holding a thread until the client sends data; only then is the connection
+ * switched to blocking mode and handed to the thread pool for servicing.
+ * Persistent connections are parked again when they are idle after a
+ * request. With the blocking accept loop, every idle client holds a pool
+ * thread until its inactivity timeout expires. Parked connections that do
+ * not send any data within the connection timeout are closed.
+ *
+ * This class is only loaded by name when NIO is enabled, see
+ * {@link ConnectionAcceptor}.
+**/
+class ConnectionSelector implements ConnectionAcceptor
+{
+    /**
+     * Interval in milliseconds at which parked connections are checked for inactivity.
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+
+    private ServerSocketChannel m_serverChannel;
+    private Selector m_selector;
+    private ThreadPool m_threadPool;
+    private int m_connectionTimeout;
+    private int m_connectionRequestLimit;
+    private ServiceRegistrationResolver m_resolver;
+    private Logger m_logger;
+    // Idle connections handed back by pool threads, registered by the selector loop.
+    private final List m_parked = new ArrayList();
+
+    private volatile boolean m_closed = false;
+
+    /**
+     * Opens the server channel and binds it to the specified address and port.
+     * @param bindAddr The address to bind to or <tt>null</tt> for all interfaces.
+     * @param port The port to listen on.
+     * @param threadPool The thread pool servicing readable connections.
+     * @param connectionTimeout The inactivity timeout of connections in milliseconds.
+     * @param connectionRequestLimit The maximum number of consecutive requests per connection.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     * @throws java.io.IOException If the channel cannot be opened or bound.
+    **/
+    public void open(final InetAddress bindAddr, final int port, final ThreadPool threadPool,
+        final int connectionTimeout, final int connectionRequestLimit,
+        final ServiceRegistrationResolver resolver, final Logger logger) throws IOException
+    {
+        m_threadPool = threadPool;
+        m_connectionTimeout = connectionTimeout;
+        m_connectionRequestLimit = connectionRequestLimit;
+        m_resolver = resolver;
+        m_logger = logger;
+
+        m_serverChannel = ServerSocketChannel.open();
+        try
+        {
+            m_serverChannel.socket().bind(new InetSocketAddress(bindAddr, port));
+            m_serverChannel.configureBlocking(false);
+            m_selector = Selector.open();
+            m_serverChannel.register(m_selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException ex)
+        {
+            m_serverChannel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Stops the selector loop. The loop closes the server channel and all
+     * parked connections before it exits.
+    **/
+    public void close()
+    {
+        m_closed = true;
+        m_selector.wakeup();
+    }
+
+    /**
+     * Queues an idle persistent connection to be parked by the selector loop,
+     * as a channel can't be registered while the selector is blocked.
+     * @param connection The idle connection.
+     * @return <tt>false</tt> if the selector is closed.
+    **/
+    public boolean park(final Connection connection)
+    {
+        synchronized (m_parked)
+        {
+            if (m_closed)
+            {
+                return false;
+            }
+            m_parked.add(connection);
+        }
+        m_selector.wakeup();
+        return true;
+    }
+
+    /**
+     * This method is the selector loop. It is only ever called by the server
+     * thread and returns once {@link #close()} is called or the selector fails.
+    **/
+    public void run()
+    {
+        m_logger.log(Logger.LOG_DEBUG, "Waiting for connections.");
+
+        long lastSweep = System.currentTimeMillis();
+        final List readable = new ArrayList();
+        try
+        {
+            while (!m_closed)
+            {
+                m_selector.select(SWEEP_INTERVAL);
+
+                registerParkedConnections();
+
+                for (Iterator i = m_selector.selectedKeys().iterator(); i.hasNext();)
+                {
+                    SelectionKey key = (SelectionKey) i.next();
+                    i.remove();
+                    if (!key.isValid())
+                    {
+                        continue;
+                    }
+                    if (key.isAcceptable())
+                    {
+                        acceptConnections();
+                    }
+                    else if (key.isReadable())
+                    {
+                        key.cancel();
+                        readable.add(key);
+                    }
+                }
+
+                if (!readable.isEmpty())
+                {
+                    // Flush the cancelled keys, a channel can only be switched
+                    // to blocking mode once it is no longer registered.
+                    m_selector.selectNow();
+                    for (int i = 0; i < readable.size(); i++)
+                    {
+                        SelectionKey key = (SelectionKey) readable.get(i);
+                        dispatch((SocketChannel) key.channel(),
+                            ((Idle) key.attachment()).m_connection);
+                    }
+                    readable.clear();
+                }
+
+                long now = System.currentTimeMillis();
+                if ((now - lastSweep) >= SWEEP_INTERVAL)
+                {
+                    closeIdleConnections(now);
+                    lastSweep = now;
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            if (!m_closed)
+            {
+                m_logger.log(Logger.LOG_ERROR, "The selector terminated with an exception.", ex);
+            }
+        }
+        finally
+        {
+            closeAll();
+        }
+    }
+
+    /**
+     * Accepts all pending connections and parks them in the selector until
+     * they become readable.
+    **/
+    private void acceptConnections()
+    {
+        SocketChannel channel;
+        while (true)
+        {
+            try
+            {
+                channel = m_serverChannel.accept();
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_ERROR, "The call to accept() terminated with an exception.", ex);
+                return;
+            }
+            if (channel == null)
+            {
+                return;
+            }
+            try
+            {
+                channel.configureBlocking(false);
+                channel.register(m_selector, SelectionKey.OP_READ,
+                    new Idle(null, System.currentTimeMillis()));
+                m_logger.log(Logger.LOG_DEBUG, "Accepted a new connection.");
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_ERROR, "Error registering connection.", ex);
+                closeChannel(channel);
+            }
+        }
+    }
+
+    /**
+     * Registers the connections handed back by pool threads with the selector.
+    **/
+    private void registerParkedConnections()
+    {
+        Object[] parked;
+        synchronized (m_parked)
+        {
+            if (m_parked.isEmpty())
+            {
+                return;
+            }
+            parked = m_parked.toArray();
+            m_parked.clear();
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < parked.length; i++)
+        {
+            Connection connection = (Connection) parked[i];
+            SocketChannel channel = connection.getSocket().getChannel();
+            try
+            {
+                channel.configureBlocking(false);
+                channel.register(m_selector, SelectionKey.OP_READ, new Idle(connection, now));
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_ERROR, "Error registering connection.", ex);
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Switches a readable connection to blocking mode and adds it to the thread pool.
+     * @param channel The readable connection.
+     * @param connection The connection of the channel if it was parked after
+     *        a request, otherwise <tt>null</tt>.
+    **/
+    private void dispatch(final SocketChannel channel, Connection connection)
+    {
+        try
+        {
+            channel.configureBlocking(true);
+            if (connection == null)
+            {
+                // Create connection object and add it to the thread pool
+                // to be serviced.
+                connection = new Connection(channel.socket(), m_connectionTimeout,
+                    m_connectionRequestLimit, m_resolver, m_logger);
+                connection.setFileTransfer(new ChannelFileTransfer(channel));
+                connection.setAcceptor(this);
+            }
+            m_threadPool.addConnection(connection);
+        }
+        catch (IOException ex)
+        {
+            // If we have any difficulty creating the connection
+            // then just ignore it, because the socket will be
+            // closed in the connection constructor.
+            m_logger.log(Logger.LOG_ERROR, "Error creating connection.", ex);
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * Closes parked connections which did not send any data within the connection timeout.
+     * @param now The current time.
+    **/
+    private void closeIdleConnections(final long now)
+    {
+        if (m_connectionTimeout <= 0)
+        {
+            return;
+        }
+        for (Iterator i = m_selector.keys().iterator(); i.hasNext();)
+        {
+            SelectionKey key = (SelectionKey) i.next();
+            Object attachment = key.attachment();
+            if (key.isValid() && (attachment instanceof Idle)
+                && ((now - ((Idle) attachment).m_since) >= m_connectionTimeout))
+            {
+                m_logger.log(Logger.LOG_INFO, "Connection closed due to inactivity.");
+                key.cancel();
+                closeChannel(key.channel());
+            }
+        }
+    }
+
+    /**
+     * Closes all parked connections, the server channel and the selector.
+    **/
+    private void closeAll()
+    {
+        synchronized (m_parked)
+        {
+            m_closed = true;
+            for (int i = 0; i < m_parked.size(); i++)
+            {
+                ((Connection) m_parked.get(i)).close();
+            }
+            m_parked.clear();
+        }
+        for (Iterator i = m_selector.keys().iterator(); i.hasNext();)
+        {
+            SelectionKey key = (SelectionKey) i.next();
+            if (key.channel() != m_serverChannel)
+            {
+                closeChannel(key.channel());
+            }
+        }
+        closeChannel(m_serverChannel);
+        try
+        {
+            m_selector.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing selector.", ex);
+        }
+    }
+
+    private void closeChannel(final Channel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket.", ex);
+        }
+    }
+
+    /**
+     * Attachment of a parked connection.
+    **/
+    private static final class Idle
+    {
+        /** The connection if it was parked after a request, otherwise <tt>null</tt>. */
+        final Connection m_connection;
+        /** The time since when the connection is parked. */
+        final long m_since;
+
+        Idle(final Connection connection, final long since)
+        {
+            m_connection = connection;
+            m_since = since;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.felix.httplite.servlet.HttpServletResponseImpl;
+
+/**
+ * Sends files directly to the connection of a request. The implementation,
+ * {@link ChannelFileTransfer}, uses NIO and is only created for connections
+ * accepted by the {@link ConnectionSelector}.
+**/
+interface FileTransfer
+{
+    /**
+     * Writes the response headers and the contents of the resource if it is
+     * a regular file.
+     * @param resource resource to send
+     * @param response response of the request
+     * @param close if connection should be closed
+     * @return <tt>false</tt> if the resource is not a file and nothing was written.
+     * @throws IOException on I/O error
+    **/
+    boolean transfer(URL resource, HttpServletResponseImpl response, boolean close) throws IOException;
+}
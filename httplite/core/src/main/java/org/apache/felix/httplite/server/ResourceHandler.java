@@ -50,6 +50,7 @@ public class ResourceHandler implements ServiceRegistrationHandler
     private final String m_alias;
 	private final Logger m_logger;
     private final int m_aliasIndex;
+    private FileTransfer m_fileTransfer;
 
     /**
      * @param req HttpRequest
@@ -111,13 +112,25 @@ public class ResourceHandler implements ServiceRegistrationHandler
             	return;
             }
 
-            InputStream inputStream = resource.openStream();
             m_response.setContentType(m_httpContext.getMimeType(resourceName));
 
-            m_response.writeToOutputStream(inputStream, close);
+            // Files are sent directly to the socket if the connection was accepted through a channel.
+            if ((m_fileTransfer == null) || !m_fileTransfer.transfer(resource, m_response, close))
+            {
+                InputStream inputStream = resource.openStream();
+                m_response.writeToOutputStream(inputStream, close);
+            }
         }
     }
 
+    /**
+     * @param fileTransfer transfer sending files directly to the connection of the request.
+     */
+    void setFileTransfer(final FileTransfer fileTransfer)
+    {
+        m_fileTransfer = fileTransfer;
+    }
+
     /**
      * @param path String
      * @return resource name at given path.
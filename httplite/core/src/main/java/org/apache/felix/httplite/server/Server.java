@@ -69,6 +69,13 @@ public class Server
      * The address of the host interface to bind http to. The default is to bind to all interfaces.
      */
     public static final String CONFIG_PROPERTY_HTTP_HOST = "org.apache.felix.http.host"; 
+    /**
+     * Flag to enable the selector based connection handling, which parks idle connections
+     * without holding a thread of the thread pool. Requires NIO. The default is false.
+     */
+    public static final String CONFIG_PROPERTY_NIO_ENABLE = "org.apache.felix.http.nio.enable";
+
+    private static final String CONNECTION_SELECTOR_CLASS = "org.apache.felix.httplite.server.ConnectionSelector";
 
     /**
      * Default HTTP port to listen on.
@@ -101,7 +108,9 @@ public class Server
 
     private Thread m_serverThread;
     private ServerSocket m_serverSocket;
+    private ConnectionAcceptor m_connectionSelector;
     private final ThreadPool m_threadPool;
+    private final boolean m_nioEnabled;
 
     private final int m_connectionTimeout;
     private final int m_connectionRequestLimit;
@@ -138,6 +147,10 @@ public class Server
      *       connections after which the connection is closed; the default value
      *       is 10000 milliseconds.
      *   </li>
+     *   <li><tt>org.apache.felix.http.nio.enable</tt> - if <tt>true</tt>, connections are accepted
+     *       using a selector and only handed to the thread pool once the client sent data; the
+     *       default value is false.
+     *   </li>
      * </ul>
      * The configuration properties cannot be changed after construction. The
      * web server is not active until it is started.
@@ -163,6 +176,7 @@ public class Server
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_CONNECTION_TIMEOUT_PROP));
         m_connectionRequestLimit = (configMap.get(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP) == null) ? Connection.DEFAULT_CONNECTION_REQUESTLIMIT
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP));
+        m_nioEnabled = "true".equalsIgnoreCase((String) configMap.get(Server.CONFIG_PROPERTY_NIO_ENABLE));
     }
 
     /**
@@ -266,7 +280,14 @@ public class Server
         {
             // If inactive, then create server socket, server thread, and
             // set state to active.
-            if (m_bindAddr == null)
+            if (m_nioEnabled)
+            {
+                ConnectionAcceptor connectionSelector = createConnectionSelector();
+                connectionSelector.open(m_bindAddr, m_port, m_threadPool,
+                    m_connectionTimeout, m_connectionRequestLimit, m_resolver, m_logger);
+                m_connectionSelector = connectionSelector;
+            }
+            else if (m_bindAddr == null)
             {
                 m_serverSocket = new ServerSocket(m_port);
             }
@@ -279,7 +300,14 @@ public class Server
             {
 				public void run()
                 {
-                    acceptConnections();
+                    if (m_connectionSelector != null)
+                    {
+                        selectConnections();
+                    }
+                    else
+                    {
+                        acceptConnections();
+                    }
                 }
             }, "HttpServer");
             m_state = ACTIVE_STATE;
@@ -328,12 +356,19 @@ public class Server
 
                 // Close the server socket, which will cause the server thread
                 // to exit its accept() loop.
-                try
+                if (m_connectionSelector != null)
                 {
-                    m_serverSocket.close();
+                    m_connectionSelector.close();
                 }
-                catch (IOException ex)
+                else
                 {
+                    try
+                    {
+                        m_serverSocket.close();
+                    }
+                    catch (IOException ex)
+                    {
+                    }
                 }
             }
         }
@@ -397,6 +432,44 @@ public class Server
         shutdown();
     }
 
+    /**
+     * Loads the selector based acceptor by name, so that NIO is only linked
+     * when it is enabled.
+     * @return a new, unbound selector based acceptor.
+     * @throws java.io.IOException If NIO is not available.
+    **/
+    private static ConnectionAcceptor createConnectionSelector() throws IOException
+    {
+        try
+        {
+            return (ConnectionAcceptor) Class.forName(CONNECTION_SELECTOR_CLASS).newInstance();
+        }
+        catch (Exception ex)
+        {
+            throw new IOException("Unable to create the connection selector: " + ex);
+        }
+        catch (LinkageError ex)
+        {
+            throw new IOException("NIO is not available: " + ex);
+        }
+    }
+
+    /**
+     * This method is the main server loop when connections are accepted with
+     * a selector. This is only ever called by the server thread.
+    **/
+    private void selectConnections()
+    {
+        // Start the thread pool.
+        m_threadPool.start();
+
+        // Select connections until closed.
+        m_connectionSelector.run();
+
+        // Shutdown the server.
+        shutdown();
+    }
+
     /**
      * This method shuts down the server; it is only ever called by the
      * server thread.
@@ -427,6 +500,7 @@ public class Server
             // gate and set the state to inactive.
             m_shutdownGate.open();
             m_shutdownGate = null;
+            m_connectionSelector = null;
             m_state = INACTIVE_STATE;
         }
         m_logger.log(Logger.LOG_DEBUG, "Shutdown complete.");
@@ -166,6 +166,23 @@ public class HttpServletResponseImpl implements HttpServletResponse
         }
     }
 
+    /**
+     * Write the HTTP headers of a body of the specified length, which the caller
+     * then sends to the client directly.
+     * @param contentLength length of the body
+     * @param close if connection should be closed
+     * @throws IOException on I/O error
+     */
+    public void writeHeaders(final long contentLength, final boolean close) throws IOException
+    {
+        setHeader(HttpConstants.HEADER_CONTENT_LENGTH, Long.toString(contentLength));
+
+        if (!m_headersWritten)
+        {
+            writeHeaders(close);
+        }
+    }
+
     /**
      * Copy an input stream to an output stream.
      * 
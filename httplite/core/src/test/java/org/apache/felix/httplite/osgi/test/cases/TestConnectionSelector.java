@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.osgi.test.cases;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.util.Map;
+
+import org.apache.felix.httplite.osgi.test.AbstractHttpliteTestCase;
+import org.apache.felix.httplite.server.Server;
+import org.osgi.service.http.HttpService;
+import org.osgi.service.http.NamespaceException;
+
+
+/**
+ * Tests for connections accepted through the selector, with
+ * org.apache.felix.http.nio.enable set.
+ *
+ */
+public class TestConnectionSelector extends AbstractHttpliteTestCase
+{
+
+    protected Map getConfiguration()
+    {
+        Map config = super.getConfiguration();
+        config.put( Server.CONFIG_PROPERTY_NIO_ENABLE, "true" );
+        return config;
+    }
+
+
+    /**
+     * Test that a file resource is sent through the channel of the connection.
+     * @throws NamespaceException
+     * @throws IOException
+     */
+    public void testCanGetFileResource() throws NamespaceException, IOException
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+
+        httpService.registerResources( "/", "/webroot/", null );
+
+        HttpURLConnection client = getConnection( DEFAULT_BASE_URL + "/index.html", "GET" );
+        client.connect();
+
+        assertTrue( client.getResponseCode() == 200 );
+        String response = readInputAsString( client.getInputStream() );
+        assertNotNull( response );
+        assertTrue( response.indexOf( "boo" ) > -1 );
+    }
+
+
+    /**
+     * Test that a persistent connection serves further requests after it
+     * was parked in the selector.
+     * @throws Exception
+     */
+    public void testKeepAlive() throws Exception
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+
+        httpService.registerResources( "/", "/webroot/", null );
+
+        Socket socket = new Socket( "localhost", DEFAULT_PORT );
+        try
+        {
+            socket.setSoTimeout( 5000 );
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            for ( int i = 0; i < 3; i++ )
+            {
+                out.write( ( "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" ).getBytes() );
+                out.flush();
+
+                String response = readResponse( in );
+                assertTrue( response, response.startsWith( "HTTP/1.1 200" ) );
+                assertTrue( response, response.indexOf( "boo" ) > -1 );
+
+                // Let the connection be parked before the next request.
+                Thread.sleep( 100 );
+            }
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    /**
+     * Test that the connection of an HTTP/1.0 client is closed after the
+     * request unless it asks for keep-alive.
+     * @throws Exception
+     */
+    public void testHttp10Close() throws Exception
+    {
+        HttpService httpService = getHTTPService( registry.getBundleContext() );
+
+        httpService.registerResources( "/", "/webroot/", null );
+
+        Socket socket = new Socket( "localhost", DEFAULT_PORT );
+        try
+        {
+            socket.setSoTimeout( 5000 );
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            out.write( ( "GET /index.html HTTP/1.0\r\n\r\n" ).getBytes() );
+            out.flush();
+
+            String response = readResponse( in );
+            assertTrue( response, response.indexOf( "boo" ) > -1 );
+            assertEquals( -1, in.read() );
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    /**
+     * Reads a response with a Content-Length, skipping interim 1xx responses.
+     *
+     * @param in
+     * @return the status line, headers and body of the response
+     * @throws IOException
+     */
+    private static String readResponse( InputStream in ) throws IOException
+    {
+        while ( true )
+        {
+            StringBuffer head = new StringBuffer();
+            int contentLength = 0;
+            for ( String line = readLine( in ); line.length() > 0; line = readLine( in ) )
+            {
+                head.append( line ).append( "\n" );
+                if ( line.toLowerCase().startsWith( "content-length:" ) )
+                {
+                    contentLength = Integer.parseInt( line.substring( 15 ).trim() );
+                }
+            }
+            if ( head.toString().startsWith( "HTTP/1.1 1" ) || head.toString().startsWith( "HTTP/1.0 1" ) )
+            {
+                continue;
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for ( int i = 0; i < contentLength; i++ )
+            {
+                int b = in.read();
+                assertTrue( "Unexpected end of stream", b >= 0 );
+                body.write( b );
+            }
+            return head.toString() + "\n" + new String( body.toByteArray() );
+        }
+    }
+
+
+    private static String readLine( InputStream in ) throws IOException
+    {
+        StringBuffer line = new StringBuffer();
+        for ( int b = in.read(); b != '\n'; b = in.read() )
+        {
+            assertTrue( "Unexpected end of stream", b >= 0 );
+            if ( b != '\r' )
+            {
+                line.append( ( char ) b );
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.Channels;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.httplite.servlet.HttpServletResponseImpl;
+
+
+/**
+ * Tests for sending file resources with transferTo.
+ *
+ */
+public class ChannelFileTransferTest extends TestCase
+{
+
+    private File m_dir;
+
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        // Characters which are percent-encoded in a file URL.
+        m_dir = new File( System.getProperty( "java.io.tmpdir" ), "httplite 100%-" + System.currentTimeMillis() );
+        assertTrue( m_dir.mkdirs() );
+    }
+
+
+    protected void tearDown() throws Exception
+    {
+        File[] files = m_dir.listFiles();
+        for ( int i = 0; i < files.length; i++ )
+        {
+            files[i].delete();
+        }
+        m_dir.delete();
+
+        super.tearDown();
+    }
+
+
+    /**
+     * Test that the path of a file URL is decoded.
+     * @throws IOException
+     */
+    public void testGetFile() throws IOException
+    {
+        File file = createFile( "index page.html", "boo" );
+
+        URL url = file.toURI().toURL();
+        assertTrue( url.toExternalForm().indexOf( "%20" ) > -1 );
+
+        assertEquals( file.getAbsoluteFile(), ChannelFileTransfer.getFile( url ) );
+        assertNull( ChannelFileTransfer.getFile( m_dir.toURI().toURL() ) );
+        assertNull( ChannelFileTransfer.getFile( new URL( "http://localhost/index.html" ) ) );
+    }
+
+
+    /**
+     * Test that headers go to the response and the file to the channel.
+     * @throws IOException
+     */
+    public void testTransfer() throws IOException
+    {
+        File file = createFile( "index page.html", "<html>boo</html>" );
+
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponseImpl response = new HttpServletResponseImpl( headers );
+
+        FileTransfer transfer = new ChannelFileTransfer( Channels.newChannel( body ) );
+
+        assertTrue( transfer.transfer( file.toURI().toURL(), response, true ) );
+        assertTrue( headers.toString(), headers.toString().indexOf( "Content-Length: 16" ) > -1 );
+        assertEquals( "<html>boo</html>", body.toString() );
+    }
+
+
+    /**
+     * Test that resources which are no regular files are left to the caller.
+     * @throws IOException
+     */
+    public void testTransferNoFile() throws IOException
+    {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponseImpl response = new HttpServletResponseImpl( headers );
+
+        FileTransfer transfer = new ChannelFileTransfer( Channels.newChannel( body ) );
+
+        assertFalse( transfer.transfer( m_dir.toURI().toURL(), response, true ) );
+        assertEquals( 0, headers.size() );
+        assertEquals( 0, body.size() );
+    }
+
+
+    private File createFile( String name, String content ) throws IOException
+    {
+        File file = new File( m_dir, name );
+        FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes() );
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.felix.ipojo.manipulator.util.Constants;
+import org.apache.felix.ipojo.manipulator.util.Streams;
+import org.apache.felix.ipojo.metadata.Attribute;
+import org.apache.felix.ipojo.metadata.Element;
+
+/**
+ * A {@code ManipulationCache} keeps the result of previous manipulations in a directory,
+ * so that unchanged component classes don't have to be parsed and manipulated again.
+ * <p/>
+ * Entries are keyed by the digest of the component's bytecode. An entry also records the
+ * digests of the inner classes, it is only used if they did not change either. Each entry
+ * is a file of its own, so entries can be read and written concurrently.
+ * <p/>
+ * The manipulation of a class also depends on its super classes (to compute stack map frames),
+ * a change of the class hierarchy alone is not noticed. The cache is meant to live in the
+ * build directory and to be discarded on clean builds.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class ManipulationCache {
+
+    /**
+     * Cache entry format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Directory holding the cache entries.
+     */
+    private final File m_directory;
+
+    public ManipulationCache(File directory) {
+        m_directory = directory;
+    }
+
+    /**
+     * Computes the digest of the given bytecode.
+     * @param bytecode the bytecode
+     * @return the hexadecimal digest
+     */
+    public static String digest(byte[] bytecode) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-1
+            throw new IllegalStateException(e);
+        }
+        byte[] digest = md.digest(bytecode);
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Looks up the manipulation result of the given component class.
+     * @param bytecode the bytecode of the component class
+     * @param store the store providing the bytecode of the inner classes
+     * @return the cached entry or {@literal null} if the class, one of its inner classes or
+     *         the manipulator changed since the entry was stored
+     */
+    public Entry get(byte[] bytecode, ResourceStore store) {
+        File file = getFile(digest(bytecode));
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Entry entry;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION || !String.valueOf(Constants.getVersion()).equals(in.readUTF())) {
+                return null;
+            }
+            entry = new Entry();
+            for (int i = in.readInt(); i > 0; i--) {
+                entry.m_innerClasses.put(in.readUTF(), in.readUTF());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String path = in.readUTF();
+                byte[] resource = new byte[in.readInt()];
+                in.readFully(resource);
+                entry.m_resources.put(path, resource);
+            }
+            entry.m_classStructure = readElement(in);
+        } catch (IOException e) {
+            // Unreadable entry, manipulate again
+            return null;
+        } finally {
+            Streams.close(in);
+        }
+
+        // Inner classes must not have changed either
+        for (Map.Entry<String, String> inner : entry.m_innerClasses.entrySet()) {
+            try {
+                if (!digest(store.read(inner.getKey() + ".class")).equals(inner.getValue())) {
+                    return null;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the manipulation result of the given component class.
+     * @param bytecode the bytecode of the component class
+     * @param entry the manipulation result
+     * @throws IOException if the entry cannot be written
+     */
+    public void put(byte[] bytecode, Entry entry) throws IOException {
+        File file = getFile(digest(bytecode));
+        file.getParentFile().mkdirs();
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(String.valueOf(Constants.getVersion()));
+            out.writeInt(entry.m_innerClasses.size());
+            for (Map.Entry<String, String> inner : entry.m_innerClasses.entrySet()) {
+                out.writeUTF(inner.getKey());
+                out.writeUTF(inner.getValue());
+            }
+            out.writeInt(entry.m_resources.size());
+            for (Map.Entry<String, byte[]> resource : entry.m_resources.entrySet()) {
+                out.writeUTF(resource.getKey());
+                out.writeInt(resource.getValue().length);
+                out.write(resource.getValue());
+            }
+            writeElement(out, entry.m_classStructure);
+        } finally {
+            Streams.close(out);
+        }
+
+        // Another thread may store the same entry at the same time, both are equal
+        file.delete();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    private File getFile(String digest) {
+        return new File(new File(m_directory, digest.substring(0, 2)), digest.substring(2));
+    }
+
+    private static void writeElement(DataOutputStream out, Element element) throws IOException {
+        out.writeUTF(element.getName());
+        writeNullableUTF(out, element.getNameSpace());
+        Attribute[] attributes = element.getAttributes();
+        out.writeInt(attributes.length);
+        for (Attribute attribute : attributes) {
+            out.writeUTF(attribute.getName());
+            writeNullableUTF(out, attribute.getNameSpace());
+            writeNullableUTF(out, attribute.getValue());
+        }
+        Element[] elements = element.getElements();
+        out.writeInt(elements.length);
+        for (Element child : elements) {
+            writeElement(out, child);
+        }
+    }
+
+    private static Element readElement(DataInputStream in) throws IOException {
+        Element element = new Element(in.readUTF(), readNullableUTF(in));
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = in.readUTF();
+            String ns = readNullableUTF(in);
+            element.addAttribute(new Attribute(name, ns, readNullableUTF(in)));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            element.addElement(readElement(in));
+        }
+        return element;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * The result of the manipulation of a component class and its inner classes.
+     */
+    public static class Entry {
+
+        /**
+         * Inner class name -> digest of the inner class bytecode.
+         */
+        private final Map<String, String> m_innerClasses = new LinkedHashMap<String, String>();
+
+        /**
+         * Resource path -> manipulated bytecode, in the order the resources are visited.
+         */
+        private final Map<String, byte[]> m_resources = new LinkedHashMap<String, byte[]>();
+
+        /**
+         * The manipulation metadata.
+         */
+        private Element m_classStructure;
+
+        public void addInnerClass(String name, byte[] bytecode) {
+            m_innerClasses.put(name, digest(bytecode));
+        }
+
+        public void addResource(String path, byte[] manipulated) {
+            m_resources.put(path, manipulated);
+        }
+
+        public Map<String, byte[]> getResources() {
+            return m_resources;
+        }
+
+        public void setClassStructure(Element classStructure) {
+            m_classStructure = classStructure;
+        }
+
+        public Element getClassStructure() {
+            return m_classStructure;
+        }
+    }
+}
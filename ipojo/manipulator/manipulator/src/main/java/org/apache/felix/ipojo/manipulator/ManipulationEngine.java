@@ -23,7 +23,14 @@ import org.apache.felix.ipojo.manipulation.Manipulator;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A {@code ManipulationEngine} is responsible to drive the component's
@@ -57,6 +64,16 @@ public class ManipulationEngine {
      */
     private ManipulationVisitor m_manipulationVisitor;
 
+    /**
+     * Number of classes manipulated concurrently.
+     */
+    private int m_parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Previous manipulation results, may be {@literal null}.
+     */
+    private ManipulationCache m_cache;
+
     public ManipulationEngine(ClassLoader classLoader) {
         m_classLoader = classLoader;
     }
@@ -89,97 +106,221 @@ public class ManipulationEngine {
         m_store = store;
     }
 
+    /**
+     * Sets the number of classes manipulated concurrently.
+     * By default, one class per available processor is manipulated at a time.
+     * @param parallelism number of classes manipulated concurrently
+     */
+    public void setParallelism(int parallelism) {
+        m_parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Provides the cache of previous manipulation results, unchanged
+     * classes are not manipulated again.
+     * @param cache the cache, {@literal null} to manipulate every class.
+     */
+    public void setManipulationCache(ManipulationCache cache) {
+        m_cache = cache;
+    }
+
     /**
      * Manipulates classes of all the given component's.
+     * The classes are manipulated concurrently, the visitor is called
+     * from the calling thread in the order of the manipulation units.
      */
     public void generate() {
 
         // Iterates over the list of discovered components
         // Note that this list includes components from metadata.xml AND from annotations
 
-        for (ManipulationUnit info : m_manipulationUnits) {
-
-            byte[] bytecode;
-            try {
-                bytecode = m_store.read(info.getResourcePath());
-            } catch (IOException e) {
-                m_reporter.error("Cannot find bytecode for class '" + info.getClassName() + "': no bytecode found.");
-                return;
-            }
-
-            // Is the visitor interested in this component ?
-            ManipulationResultVisitor result = m_manipulationVisitor.visitManipulationResult(info.getComponentMetadata());
-
-            if (result != null) {
-                // Should always be the case
-
-                // Manipulation preparation
-                Manipulator manipulator = new Manipulator(m_classLoader);
-                try {
-                    manipulator.prepare(bytecode);
-                } catch (IOException e) {
-                    m_reporter.error("Cannot analyze the class " + info.getClassName() + " : " + e.getMessage());
+        int threads = Math.min(m_parallelism, m_manipulationUnits.size());
+        if (threads <= 1) {
+            for (ManipulationUnit info : m_manipulationUnits) {
+                if (!visit(info, manipulate(info))) {
                     return;
                 }
+            }
+            return;
+        }
 
-                // Inner class preparation
-                for (String inner : manipulator.getInnerClasses()) {
-                    // Get the bytecode and start manipulation
-                    String resourcePath = inner + ".class";
-                    String outerClassInternalName = info.getClassName().replace('.', '/');
-                    byte[] innerClassBytecode;
-                    try {
-                        innerClassBytecode = m_store.read(resourcePath);
-                        manipulator.prepareInnerClass(inner, innerClassBytecode);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot find or analyze inner class '" + resourcePath + "'");
-                        return;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ManipulationTask>> tasks = new ArrayList<Future<ManipulationTask>>();
+            for (final ManipulationUnit info : m_manipulationUnits) {
+                tasks.add(executor.submit(new Callable<ManipulationTask>() {
+                    public ManipulationTask call() {
+                        return manipulate(info);
                     }
-                }
+                }));
+            }
 
-                // Now manipulate the classes.
+            for (int i = 0; i < tasks.size(); i++) {
+                ManipulationTask task;
                 try {
-                    byte[] out = manipulator.manipulate(bytecode);
-                    // Call the visitor
-                    result.visitManipulatedResource(info.getResourcePath(), out);
-                } catch (IOException e) {
-                    m_reporter.error("Cannot manipulate the class " + info.getClassName() + " : " + e.getMessage());
+                    task = tasks.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    m_reporter.error("Manipulation interrupted");
+                    return;
+                } catch (ExecutionException e) {
+                    m_reporter.error("Cannot manipulate the class " + m_manipulationUnits.get(i).getClassName()
+                            + " : " + e.getCause());
                     return;
                 }
+                if (!visit(m_manipulationUnits.get(i), task)) {
+                    return;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                // Visit inner classes
-                for (String inner : manipulator.getInnerClasses()) {
-                    // Get the bytecode and start manipulation
-                    String resourcePath = inner + ".class";
-                    String outerClassInternalName = info.getClassName().replace('.', '/');
-                    byte[] innerClassBytecode;
-                    try {
-                        innerClassBytecode = m_store.read(resourcePath);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot find inner class '" + resourcePath + "'");
-                        return;
-                    }
+    /**
+     * Propagates the manipulation result of a component to the visitor.
+     * @return {@literal false} if the manipulation failed and has to be stopped
+     */
+    private boolean visit(ManipulationUnit info, ManipulationTask task) {
+        if (task.m_bytecodeError != null) {
+            m_reporter.error(task.m_bytecodeError);
+            return false;
+        }
+        if (task.m_warning != null) {
+            m_reporter.warn(task.m_warning);
+        }
 
-                    // Manipulate inner class
-                    // Notice that (for performance reason) re-use the class version information
-                    // discovered in the main class instead of re-parsing the inner class to find
-                    // its own class version
-                    try {
-                        byte[] manipulated = manipulator.manipulateInnerClass(inner, innerClassBytecode);
-                        // Propagate manipulated resource
-                        result.visitManipulatedResource(resourcePath, manipulated);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot manipulate inner class '" + resourcePath + "'");
-                        return;
-                    }
-                }
+        // Is the visitor interested in this component ?
+        ManipulationResultVisitor result = m_manipulationVisitor.visitManipulationResult(info.getComponentMetadata());
 
-                // Compute manipulation metadata
-                result.visitClassStructure(manipulator.getManipulationMetadata());
+        if (result != null) {
+            // Should always be the case
 
-                // All resources have been manipulated for this component
-                result.visitEnd();
+            if (task.m_error != null) {
+                m_reporter.error(task.m_error);
+                return false;
+            }
+
+            // Visit the component class and its inner classes
+            for (Map.Entry<String, byte[]> resource : task.m_result.getResources().entrySet()) {
+                result.visitManipulatedResource(resource.getKey(), resource.getValue());
+            }
+
+            // Compute manipulation metadata
+            result.visitClassStructure(task.m_result.getClassStructure());
+
+            // All resources have been manipulated for this component
+            result.visitEnd();
+        }
+        return true;
+    }
+
+    /**
+     * Manipulates a component class and its inner classes, without calling the visitor.
+     * This method is called concurrently for several components, so problems
+     * are recorded in the returned task and reported by {@link #visit}.
+     */
+    private ManipulationTask manipulate(ManipulationUnit info) {
+        ManipulationTask task = new ManipulationTask();
+
+        byte[] bytecode;
+        try {
+            bytecode = m_store.read(info.getResourcePath());
+        } catch (IOException e) {
+            task.m_bytecodeError = "Cannot find bytecode for class '" + info.getClassName() + "': no bytecode found.";
+            return task;
+        }
+
+        if (m_cache != null) {
+            task.m_result = m_cache.get(bytecode, m_store);
+            if (task.m_result != null) {
+                return task;
+            }
+        }
+        ManipulationCache.Entry entry = new ManipulationCache.Entry();
+
+        // Manipulation preparation
+        Manipulator manipulator = new Manipulator(m_classLoader);
+        try {
+            manipulator.prepare(bytecode);
+        } catch (IOException e) {
+            task.m_error = "Cannot analyze the class " + info.getClassName() + " : " + e.getMessage();
+            return task;
+        }
+
+        // Inner class preparation
+        Map<String, byte[]> innerClasses = new LinkedHashMap<String, byte[]>();
+        for (String inner : manipulator.getInnerClasses()) {
+            // Get the bytecode and start manipulation
+            String resourcePath = inner + ".class";
+            byte[] innerClassBytecode;
+            try {
+                innerClassBytecode = m_store.read(resourcePath);
+                manipulator.prepareInnerClass(inner, innerClassBytecode);
+            } catch (IOException e) {
+                task.m_error = "Cannot find or analyze inner class '" + resourcePath + "'";
+                return task;
+            }
+            innerClasses.put(inner, innerClassBytecode);
+            entry.addInnerClass(inner, innerClassBytecode);
+        }
+
+        // Now manipulate the classes.
+        try {
+            entry.addResource(info.getResourcePath(), manipulator.manipulate(bytecode));
+        } catch (IOException e) {
+            task.m_error = "Cannot manipulate the class " + info.getClassName() + " : " + e.getMessage();
+            return task;
+        }
+
+        // Manipulate inner classes
+        for (Map.Entry<String, byte[]> inner : innerClasses.entrySet()) {
+            String resourcePath = inner.getKey() + ".class";
+
+            // Notice that (for performance reason) re-use the class version information
+            // discovered in the main class instead of re-parsing the inner class to find
+            // its own class version
+            try {
+                entry.addResource(resourcePath, manipulator.manipulateInnerClass(inner.getKey(), inner.getValue()));
+            } catch (IOException e) {
+                task.m_error = "Cannot manipulate inner class '" + resourcePath + "'";
+                return task;
             }
         }
+
+        // Compute manipulation metadata
+        entry.setClassStructure(manipulator.getManipulationMetadata());
+        task.m_result = entry;
+
+        if (m_cache != null) {
+            try {
+                m_cache.put(bytecode, entry);
+            } catch (IOException e) {
+                task.m_warning = "Cannot cache the manipulation of " + info.getClassName() + " : " + e.getMessage();
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Outcome of the manipulation of a single component.
+     */
+    private static class ManipulationTask {
+        /**
+         * Error raised when the component's bytecode is not found.
+         */
+        private String m_bytecodeError;
+        /**
+         * Error raised during the manipulation.
+         */
+        private String m_error;
+        /**
+         * Non fatal issue, like a failure to cache the result.
+         */
+        private String m_warning;
+        /**
+         * Manipulated resources and metadata.
+         */
+        private ManipulationCache.Entry m_result;
     }
 }
@@ -63,6 +63,17 @@ public class Pojoization {
      */
     private boolean m_useLocalXSD = false;
 
+    /**
+     * Directory caching the results of previous manipulations,
+     * {@literal null} if every class is manipulated.
+     */
+    private File m_manipulationCacheDirectory;
+
+    /**
+     * Number of classes manipulated concurrently, {@literal 0} for one per processor.
+     */
+    private int m_parallelism;
+
     /**
      * Reporter for error reporting.
      */
@@ -103,6 +114,23 @@ public class Pojoization {
         m_useLocalXSD = true;
     }
 
+    /**
+     * Activates the caching of the manipulation results, unchanged classes
+     * are not manipulated again.
+     * @param directory the directory holding the cache (typically in the build directory)
+     */
+    public void setManipulationCacheDirectory(File directory) {
+        m_manipulationCacheDirectory = directory;
+    }
+
+    /**
+     * Sets the number of classes manipulated concurrently.
+     * @param parallelism number of threads, {@literal 0} for one per available processor
+     */
+    public void setParallelism(int parallelism) {
+        m_parallelism = parallelism;
+    }
+
     /**
      * @return all the errors (fatal) reported by the manipulation process.
      */
@@ -345,6 +373,12 @@ public class Pojoization {
         engine.setResourceStore(store);
         engine.setReporter(m_reporter);
         engine.setManipulationVisitor(visitor);
+        if (m_parallelism > 0) {
+            engine.setParallelism(m_parallelism);
+        }
+        if (m_manipulationCacheDirectory != null) {
+            engine.setManipulationCache(new ManipulationCache(m_manipulationCacheDirectory));
+        }
 
         try {
 
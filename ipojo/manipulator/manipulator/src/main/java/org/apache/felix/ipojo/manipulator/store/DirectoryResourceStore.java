@@ -24,6 +24,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.jar.Manifest;
 
@@ -155,6 +156,12 @@ public class DirectoryResourceStore implements ResourceStore {
             resource.getParentFile().mkdirs();
         }
 
+        // Keep the file untouched if its content did not change
+        if (resource.isFile() && resource.length() == bytecode.length
+                && Arrays.equals(Streams.readBytes(new FileInputStream(resource)), bytecode)) {
+            return;
+        }
+
         FileOutputStream fos = new FileOutputStream(resource);
         try {
             fos.write(bytecode);
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.felix.ipojo.manipulator;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.felix.ipojo.metadata.Attribute;
+import org.apache.felix.ipojo.metadata.Element;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.Mockito.when;
+
+public class ManipulationCacheTestCase extends TestCase {
+
+    private static final byte[] OUTER = new byte[] {1, 2, 3};
+    private static final byte[] INNER = new byte[] {4, 5, 6};
+
+    @Mock
+    private ResourceStore store;
+
+    private File directory;
+
+    private ManipulationCache cache;
+
+    @Override
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        directory = new File("target/manipulation-cache-" + getName());
+        FileUtils.deleteDirectory(directory);
+        cache = new ManipulationCache(directory);
+    }
+
+    public void testEntryIsRestored() throws Exception {
+        when(store.read("test/Pojo$Inner.class")).thenReturn(INNER);
+
+        cache.put(OUTER, createEntry());
+
+        ManipulationCache.Entry entry = cache.get(OUTER, store);
+        assertNotNull(entry);
+        assertEquals(2, entry.getResources().size());
+        assertEquals(9, entry.getResources().get("test/Pojo.class")[0]);
+        assertEquals(8, entry.getResources().get("test/Pojo$Inner.class")[0]);
+
+        Element structure = entry.getClassStructure();
+        assertEquals("manipulation", structure.getName());
+        assertEquals("test.Pojo", structure.getAttribute("classname"));
+        assertEquals(1, structure.getElements("field").length);
+        assertEquals("int", structure.getElements("field")[0].getAttribute("type"));
+    }
+
+    public void testChangedClassIsNotFound() throws Exception {
+        when(store.read("test/Pojo$Inner.class")).thenReturn(INNER);
+
+        cache.put(OUTER, createEntry());
+
+        assertNull(cache.get(new byte[] {1, 2, 4}, store));
+    }
+
+    public void testChangedInnerClassInvalidatesEntry() throws Exception {
+        when(store.read("test/Pojo$Inner.class")).thenReturn(new byte[] {4, 5, 7});
+
+        cache.put(OUTER, createEntry());
+
+        assertNull(cache.get(OUTER, store));
+    }
+
+    private static ManipulationCache.Entry createEntry() {
+        ManipulationCache.Entry entry = new ManipulationCache.Entry();
+        entry.addInnerClass("test/Pojo$Inner", INNER);
+        entry.addResource("test/Pojo.class", new byte[] {9});
+        entry.addResource("test/Pojo$Inner.class", new byte[] {8});
+
+        Element structure = new Element("manipulation", "");
+        structure.addAttribute(new Attribute("classname", "test.Pojo"));
+        Element field = new Element("field", "");
+        field.addAttribute(new Attribute("name", "m_value"));
+        field.addAttribute(new Attribute("type", "int"));
+        structure.addElement(field);
+        entry.setClassStructure(structure);
+        return entry;
+    }
+}
@@ -26,16 +26,22 @@ import junit.framework.TestCase;
 import org.apache.felix.ipojo.manipulator.util.Streams;
 import org.apache.felix.ipojo.manipulator.util.Strings;
 import org.apache.felix.ipojo.metadata.Element;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import test.ClusterDaemon;
+import test.DoubleArray;
 import test.PojoWithInner;
+import test.SimplePojo;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -105,6 +111,94 @@ public class ManipulationEngineTestCase extends TestCase {
 
     }
 
+    public void testParallelManipulationVisitsInOrder() throws Exception {
+
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(result);
+
+        Class<?>[] types = new Class<?>[] {ClusterDaemon.class, PojoWithInner.class, SimplePojo.class, DoubleArray.class};
+        Element[] metadata = new Element[types.length];
+        for (int i = 0; i < types.length; i++) {
+            String path = Strings.asResourcePath(types[i].getName());
+            when(store.read(path)).thenReturn(from(types[i]));
+            metadata[i] = new Element("component", "");
+            engine.addManipulationUnit(new ManipulationUnit(path, metadata[i]));
+        }
+        String innerPath = Strings.asResourcePath(PojoWithInner.MyInner.class.getName());
+        when(store.read(innerPath)).thenReturn(from(PojoWithInner.MyInner.class));
+
+        engine.setParallelism(4);
+        engine.generate();
+
+        // The results are visited in the order of the manipulation units
+        InOrder order = inOrder(visitor, result);
+        for (int i = 0; i < types.length; i++) {
+            order.verify(visitor).visitManipulationResult(metadata[i]);
+            order.verify(result).visitManipulatedResource(eq(Strings.asResourcePath(types[i].getName())), any(byte[].class));
+            if (types[i] == PojoWithInner.class) {
+                order.verify(result).visitManipulatedResource(eq(innerPath), any(byte[].class));
+            }
+            order.verify(result).visitClassStructure(any(Element.class));
+            order.verify(result).visitEnd();
+        }
+        verify(reporter, never()).error(anyString());
+    }
+
+    public void testParallelManipulationStopsOnMissingBytecode() throws Exception {
+
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(result);
+
+        String first = Strings.asResourcePath(ClusterDaemon.class.getName());
+        when(store.read(first)).thenReturn(from(ClusterDaemon.class));
+        String missing = Strings.asResourcePath(SimplePojo.class.getName());
+        when(store.read(missing)).thenThrow(new IOException("missing"));
+        String last = Strings.asResourcePath(DoubleArray.class.getName());
+        when(store.read(last)).thenReturn(from(DoubleArray.class));
+
+        Element firstMetadata = new Element("component", "");
+        Element missingMetadata = new Element("component", "");
+        Element lastMetadata = new Element("component", "");
+        engine.addManipulationUnit(new ManipulationUnit(first, firstMetadata));
+        engine.addManipulationUnit(new ManipulationUnit(missing, missingMetadata));
+        engine.addManipulationUnit(new ManipulationUnit(last, lastMetadata));
+
+        engine.setParallelism(3);
+        engine.generate();
+
+        // The units before the failing one are visited, the following ones are not
+        verify(visitor).visitManipulationResult(firstMetadata);
+        verify(reporter).error(startsWith("Cannot find bytecode for class '" + SimplePojo.class.getName() + "'"));
+        verify(visitor, never()).visitManipulationResult(missingMetadata);
+        verify(visitor, never()).visitManipulationResult(lastMetadata);
+    }
+
+    public void testParallelManipulationReportsFailedTask() throws Exception {
+
+        when(visitor.visitManipulationResult(any(Element.class))).thenReturn(result);
+
+        String first = Strings.asResourcePath(ClusterDaemon.class.getName());
+        when(store.read(first)).thenReturn(from(ClusterDaemon.class));
+        String failing = Strings.asResourcePath(SimplePojo.class.getName());
+        when(store.read(failing)).thenThrow(new IllegalStateException("broken store"));
+        String last = Strings.asResourcePath(DoubleArray.class.getName());
+        when(store.read(last)).thenReturn(from(DoubleArray.class));
+
+        Element firstMetadata = new Element("component", "");
+        Element failingMetadata = new Element("component", "");
+        Element lastMetadata = new Element("component", "");
+        engine.addManipulationUnit(new ManipulationUnit(first, firstMetadata));
+        engine.addManipulationUnit(new ManipulationUnit(failing, failingMetadata));
+        engine.addManipulationUnit(new ManipulationUnit(last, lastMetadata));
+
+        engine.setParallelism(3);
+        engine.generate();
+
+        // The exception thrown by the task is reported for its unit
+        verify(visitor).visitManipulationResult(firstMetadata);
+        verify(reporter).error(startsWith("Cannot manipulate the class " + SimplePojo.class.getName() + " : "));
+        verify(visitor, never()).visitManipulationResult(failingMetadata);
+        verify(visitor, never()).visitManipulationResult(lastMetadata);
+    }
+
     private byte[] from(Class<?> type) throws IOException {
         ClassLoader loader = type.getClassLoader();
         InputStream is = loader.getResourceAsStream(Strings.asResourcePath(type.getName()));
@@ -124,6 +124,21 @@ public class ManipulatorMojo extends AbstractMojo {
      */
     private boolean m_ignoreEmbeddedXSD;
 
+    /**
+     * Cache manipulation results in the build directory, so unchanged classes
+     * are not manipulated again.
+     *
+     * @parameter alias="cacheManipulation" expression="${ipojo.cacheManipulation}" default-value="false"
+     */
+    private boolean m_cacheManipulation;
+
+    /**
+     * Number of classes manipulated concurrently, 0 for one per available processor.
+     *
+     * @parameter alias="parallelism" expression="${ipojo.parallelism}" default-value="0"
+     */
+    private int m_parallelism;
+
     private boolean isXML() {
         return m_metadata != null && (m_metadata.indexOf('<') > -1);
     }
@@ -258,6 +273,10 @@ public class ManipulatorMojo extends AbstractMojo {
         if (!m_ignoreEmbeddedXSD) {
             pojo.setUseLocalXSD();
         }
+        if (m_cacheManipulation) {
+            pojo.setManipulationCacheDirectory(new File(m_buildDirectory, "ipojo-cache"));
+        }
+        pojo.setParallelism(m_parallelism);
 
         // Executes the pojoization.
         if (is == null) {
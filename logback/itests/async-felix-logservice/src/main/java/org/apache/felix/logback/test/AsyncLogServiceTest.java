@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.logback.test;
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.felix.logback.test.helper.LogTestHelper;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.log.Logger;
+import org.osgi.service.log.LoggerFactory;
+
+import ch.qos.logback.classic.LoggerContext;
+
+public class AsyncLogServiceTest extends LogTestHelper {
+
+    private static final String DROPPED_COUNT = "org.apache.felix.logback.async.droppedCount";
+
+    @Test
+    public void test() throws Exception {
+        long time = System.nanoTime();
+        Logger logger = getLogger(getClass());
+        if (logger.isInfoEnabled()) {
+            logger.info(time + "");
+        }
+        assertLog("INFO|" + getClass().getName() + "|" + time, 5000);
+    }
+
+    @Test
+    public void dropped() throws Exception {
+        LoggerContext context = (LoggerContext)org.slf4j.LoggerFactory.getILoggerFactory();
+        Logger logger = getLogger("org.apache.felix.logback.test.flood");
+
+        // the queue holds a single log entry, so flooding it must drop some
+        // log entries with the default DISCARD_NEWEST policy
+        long deadline = System.currentTimeMillis() + 10000;
+        int i = 0;
+        while ((getDroppedCount(context) == 0) && (System.currentTimeMillis() < deadline)) {
+            logger.info("flood " + i++);
+        }
+
+        assertTrue("No log entries dropped", getDroppedCount(context) > 0);
+
+        // the log entries which were not dropped are still appended
+        long time = System.nanoTime();
+        getLogger(getClass()).info(time + "");
+        assertLog("INFO|" + getClass().getName() + "|" + time, 5000);
+    }
+
+    private long getDroppedCount(LoggerContext context) {
+        String value = context.getProperty(DROPPED_COUNT);
+
+        return (value == null) ? 0 : Long.parseLong(value);
+    }
+
+    private Logger getLogger(String name) {
+        BundleContext bundleContext = FrameworkUtil.getBundle(getClass()).getBundleContext();
+        ServiceReference<LoggerFactory> serviceReference =
+            bundleContext.getServiceReference(LoggerFactory.class);
+        LoggerFactory loggerFactory = bundleContext.getService(serviceReference);
+        return loggerFactory.getLogger(name);
+    }
+
+}
@@ -89,6 +89,25 @@ public class LogTestHelper {
         }
     }
 
+    protected void assertLog(String record, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (true) {
+            try {
+                assertLog(record);
+
+                return;
+            }
+            catch (AssertionFailedError afe) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw afe;
+                }
+
+                Thread.sleep(50);
+            }
+        }
+    }
+
     protected static org.osgi.service.log.Logger getLogger(Class<?> clazz) {
         BundleContext bundleContext = FrameworkUtil.getBundle(clazz).getBundleContext();
         ServiceReference<org.osgi.service.log.LoggerFactory> serviceReference =
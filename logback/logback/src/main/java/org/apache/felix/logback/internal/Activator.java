@@ -22,13 +22,29 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.service.log.LogReaderService;
 import org.osgi.service.log.admin.LoggerAdmin;
 import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.LoggerFactory;
 
 public class Activator implements BundleActivator {
 
+    static final String ASYNC = "org.apache.felix.logback.async";
+    static final String ASYNC_QUEUE_SIZE = ASYNC + ".queueSize";
+    static final String ASYNC_BATCH_SIZE = ASYNC + ".batchSize";
+    static final String ASYNC_OVERFLOW_POLICY = ASYNC + ".overflowPolicy";
+
     private volatile ServiceTracker<LoggerAdmin, LRST> lat;
+    private volatile boolean async;
+    private volatile int asyncQueueSize;
+    private volatile int asyncBatchSize;
+    private volatile AsyncLogDispatcher.OverflowPolicy asyncOverflowPolicy;
 
     @Override
     public void start(final BundleContext bundleContext) throws Exception {
+        async = Boolean.parseBoolean(bundleContext.getProperty(ASYNC));
+        asyncQueueSize = getIntProperty(bundleContext, ASYNC_QUEUE_SIZE, 1024);
+        asyncBatchSize = getIntProperty(bundleContext, ASYNC_BATCH_SIZE, 64);
+        asyncOverflowPolicy = getOverflowPolicyProperty(
+            bundleContext, ASYNC_OVERFLOW_POLICY, AsyncLogDispatcher.OverflowPolicy.DISCARD_NEWEST);
+
         lat = new ServiceTracker<LoggerAdmin, LRST>(
             bundleContext, LoggerAdmin.class, null) {
 
@@ -61,6 +77,54 @@ public class Activator implements BundleActivator {
         lat.close();
     }
 
+    private int getIntProperty(BundleContext bundleContext, String key, int defaultValue) {
+        String value = bundleContext.getProperty(key);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int result = Integer.parseInt(value.trim());
+
+            if (result > 0) {
+                return result;
+            }
+        }
+        catch (NumberFormatException nfe) {
+            // fall through to the default value
+        }
+
+        warnInvalidProperty(key, value, defaultValue);
+
+        return defaultValue;
+    }
+
+    private AsyncLogDispatcher.OverflowPolicy getOverflowPolicyProperty(
+        BundleContext bundleContext, String key,
+        AsyncLogDispatcher.OverflowPolicy defaultValue) {
+
+        String value = bundleContext.getProperty(key);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return AsyncLogDispatcher.OverflowPolicy.valueOf(value.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException iae) {
+            warnInvalidProperty(key, value, defaultValue);
+
+            return defaultValue;
+        }
+    }
+
+    private void warnInvalidProperty(String key, String value, Object defaultValue) {
+        LoggerFactory.getLogger(Activator.class).warn(
+            "Invalid value {} of {}, using {} instead", value, key, defaultValue);
+    }
+
     class LRST extends ServiceTracker<LogReaderService, Pair> {
 
         public LRST(BundleContext context, LoggerAdmin loggerAdmin) {
@@ -77,6 +141,11 @@ public class Activator implements BundleActivator {
 
             LogbackLogListener logbackLogListener = new LogbackLogListener(loggerAdmin);
 
+            if (async) {
+                logbackLogListener.startAsync(
+                    asyncQueueSize, asyncBatchSize, asyncOverflowPolicy);
+            }
+
             logReaderService.addLogListener(logbackLogListener);
 
             return new Pair(logReaderService, logbackLogListener);
@@ -88,6 +157,8 @@ public class Activator implements BundleActivator {
             Pair pair) {
 
             pair.getKey().removeLogListener(pair.getValue());
+
+            pair.getValue().close();
         }
 
         private final LoggerAdmin loggerAdmin;
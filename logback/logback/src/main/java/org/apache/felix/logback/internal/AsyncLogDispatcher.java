@@ -0,0 +1,243 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.felix.logback.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.service.log.LogEntry;
+
+/**
+ * Hands off log entries from the OSGi log listener thread to a bounded queue
+ * which is drained in batches by a dedicated thread, so that slow appenders
+ * don't stall the delivery of log entries to other log listeners.
+ */
+public class AsyncLogDispatcher implements Runnable {
+
+    /**
+     * Name of the logback context property holding the total number of log
+     * entries dropped because the queue was full.
+     */
+    public static final String DROPPED_COUNT_PROPERTY = "org.apache.felix.logback.async.droppedCount";
+
+    /**
+     * What to do with a log entry when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** wait until there is room in the queue */
+        BLOCK,
+        /** drop the new log entry */
+        DISCARD_NEWEST,
+        /** drop the oldest log entry in the queue */
+        DISCARD_OLDEST
+    }
+
+    public AsyncLogDispatcher(
+        LogbackLogListener listener, int queueSize, int batchSize,
+        OverflowPolicy overflowPolicy) {
+
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<LogEntry>(queueSize);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+
+        thread = new Thread(this, "Apache Felix Logback Async Dispatcher");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the dispatching thread after it appended the queued log entries.
+     * The thread isn't interrupted, as that could land in the middle of an
+     * appender write; it notices the close on its next poll of the queue.
+     * Log entries dispatched after the thread stopped are appended by the
+     * caller, after whatever is still queued, so their order is kept.
+     */
+    public void close() {
+        closed = true;
+
+        try {
+            thread.join(CLOSE_TIMEOUT);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void dispatch(LogEntry entry) {
+        if (!closed) {
+            enqueue(entry);
+
+            if (!closed) {
+                return;
+            }
+
+            entry = null;
+        }
+
+        synchronized (flushLock) {
+            if (!terminated) {
+                // the dispatching thread still drains the queue
+                if (entry != null) {
+                    enqueue(entry);
+                }
+
+                return;
+            }
+
+            List<LogEntry> batch = new ArrayList<LogEntry>(batchSize);
+
+            while (queue.drainTo(batch, batchSize) > 0) {
+                append(batch);
+            }
+
+            if (entry != null) {
+                batch.add(entry);
+
+                append(batch);
+            }
+        }
+    }
+
+    /**
+     * @return the number of log entries dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void run() {
+        List<LogEntry> batch = new ArrayList<LogEntry>(batchSize);
+
+        try {
+            while (true) {
+                LogEntry entry;
+
+                try {
+                    entry = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException ie) {
+                    // closing is signaled through the closed flag only
+                    entry = null;
+                }
+
+                if (entry == null) {
+                    if (closed) {
+                        synchronized (flushLock) {
+                            if (queue.isEmpty()) {
+                                terminated = true;
+
+                                return;
+                            }
+                        }
+                    }
+
+                    continue;
+                }
+
+                batch.add(entry);
+
+                queue.drainTo(batch, batchSize - 1);
+
+                append(batch);
+            }
+        }
+        finally {
+            synchronized (flushLock) {
+                terminated = true;
+            }
+        }
+    }
+
+    private void enqueue(LogEntry entry) {
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    while (!queue.offer(entry, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        if (terminated) {
+                            dropped.incrementAndGet();
+
+                            return;
+                        }
+                    }
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DISCARD_OLDEST:
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            case DISCARD_NEWEST:
+            default:
+                if (!queue.offer(entry)) {
+                    dropped.incrementAndGet();
+                }
+        }
+    }
+
+    private void append(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            try {
+                listener.append(entry);
+            }
+            catch (RuntimeException re) {
+                listener.reportError("Failed to append log entry", re);
+            }
+        }
+
+        batch.clear();
+
+        long droppedCount = dropped.get();
+
+        if (droppedCount != reportedDropped) {
+            listener.reportDropped(droppedCount - reportedDropped, droppedCount);
+
+            reportedDropped = droppedCount;
+        }
+    }
+
+    private static final long CLOSE_TIMEOUT = 5000;
+    private static final long OFFER_TIMEOUT = 100;
+    private static final long POLL_TIMEOUT = 100;
+
+    private final LogbackLogListener listener;
+    private final BlockingQueue<LogEntry> queue;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread thread;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object flushLock = new Object();
+    private volatile boolean closed;
+    // set by the dispatching thread, under the flush lock, once it stopped
+    private volatile boolean terminated;
+    // accessed by the dispatching thread, then under the flush lock
+    private long reportedDropped;
+
+}
@@ -16,7 +16,6 @@ package org.apache.felix.logback.internal;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.osgi.framework.Bundle;
 import org.osgi.service.log.LogEntry;
@@ -34,6 +33,8 @@ import ch.qos.logback.classic.spi.LoggerContextListener;
 import ch.qos.logback.classic.spi.LoggerContextVO;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.classic.spi.ThrowableProxy;
+import ch.qos.logback.core.status.ErrorStatus;
+import ch.qos.logback.core.status.WarnStatus;
 
 public class LogbackLogListener implements LogListener, LoggerContextListener {
 
@@ -47,6 +48,7 @@ public class LogbackLogListener implements LogListener, LoggerContextListener {
     volatile LoggerContextVO loggerContextVO;
     final Map<String, LogLevel> initialLogLevels;
     final org.osgi.service.log.admin.LoggerContext osgiLoggerContext;
+    volatile AsyncLogDispatcher asyncLogDispatcher;
 
     public LogbackLogListener(LoggerAdmin loggerAdmin) {
         osgiLoggerContext = loggerAdmin.getLoggerContext(null);
@@ -68,28 +70,67 @@ public class LogbackLogListener implements LogListener, LoggerContextListener {
         return true;
     }
 
+    /**
+     * Hands off all further log entries to a dispatching thread, which
+     * appends them in batches.
+     */
+    public void startAsync(
+        int queueSize, int batchSize,
+        AsyncLogDispatcher.OverflowPolicy overflowPolicy) {
+
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(
+            this, queueSize, batchSize, overflowPolicy);
+
+        loggerContext.putProperty(AsyncLogDispatcher.DROPPED_COUNT_PROPERTY, "0");
+
+        dispatcher.start();
+
+        asyncLogDispatcher = dispatcher;
+    }
+
+    public void close() {
+        AsyncLogDispatcher dispatcher = asyncLogDispatcher;
+
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
     @Override
     public void logged(final LogEntry entry) {
+        AsyncLogDispatcher dispatcher = asyncLogDispatcher;
+
+        if (dispatcher != null) {
+            dispatcher.dispatch(entry);
+        }
+        else {
+            append(entry);
+        }
+    }
+
+    void append(final LogEntry entry) {
         String loggerName = entry.getLoggerName();
         String message = entry.getMessage();
         Object[] arguments = null;
         Level level = from(entry.getLogLevel());
-        final AtomicBoolean avoidCallerData = new AtomicBoolean();
+        boolean isEvent = false;
 
         if (EVENTS_BUNDLE.equals(loggerName) ||
             EVENTS_FRAMEWORK.equals(loggerName) ||
             LOG_SERVICE.equals(loggerName)) {
 
             loggerName = formatBundle(entry.getBundle(), loggerName);
-            avoidCallerData.set(true);
+            isEvent = true;
         }
         else if (EVENTS_SERVICE.equals(loggerName)) {
             loggerName = formatBundle(entry.getBundle(), loggerName);
             message = message + " {}";
             arguments = new Object[] {entry.getServiceReference()};
-            avoidCallerData.set(true);
+            isEvent = true;
         }
 
+        final boolean avoidCallerData = isEvent;
+
         Logger logger = loggerContext.getLogger(loggerName);
 
         // Check to see if there's a logger defined in our configuration and
@@ -103,7 +144,7 @@ public class LogbackLogListener implements LogListener, LoggerContextListener {
 
             @Override
             public StackTraceElement[] getCallerData() {
-                if (avoidCallerData.get() || callerData != null)
+                if (avoidCallerData || callerData != null)
                     return callerData;
                 return callerData = getCallerData0(entry.getLocation());
             }
@@ -157,6 +198,30 @@ public class LogbackLogListener implements LogListener, LoggerContextListener {
     @Override
     public void onReset(LoggerContext context) {
         onStart(context);
+
+        // resetting the context clears its properties
+        AsyncLogDispatcher dispatcher = asyncLogDispatcher;
+
+        if (dispatcher != null) {
+            context.putProperty(
+                AsyncLogDispatcher.DROPPED_COUNT_PROPERTY,
+                Long.toString(dispatcher.getDroppedCount()));
+        }
+    }
+
+    void reportDropped(long count, long total) {
+        loggerContext.putProperty(
+            AsyncLogDispatcher.DROPPED_COUNT_PROPERTY, Long.toString(total));
+
+        loggerContext.getStatusManager().add(
+            new WarnStatus(
+                "Dropped " + count + " OSGi log entries because the async queue was full, " +
+                    total + " in total",
+                this));
+    }
+
+    void reportError(String message, Throwable t) {
+        loggerContext.getStatusManager().add(new ErrorStatus(message, this, t));
     }
 
     String formatBundle(Bundle bundle, String loggerName) {
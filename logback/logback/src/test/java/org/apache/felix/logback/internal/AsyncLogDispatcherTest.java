@@ -0,0 +1,303 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.felix.logback.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.admin.LoggerAdmin;
+import org.osgi.service.log.admin.LoggerContext;
+
+public class AsyncLogDispatcherTest {
+
+    @Test
+    public void testOrderKeptAcrossClose() throws Exception {
+        final TestListener listener = new TestListener(5);
+
+        final AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(
+            listener, 1000, 10, AsyncLogDispatcher.OverflowPolicy.BLOCK);
+
+        dispatcher.start();
+
+        List<String> expected = new ArrayList<String>();
+
+        for (int i = 0; i < 50; i++) {
+            dispatcher.dispatch(entry("before-" + i));
+
+            expected.add("before-" + i);
+        }
+
+        Thread closer = new Thread() {
+
+            @Override
+            public void run() {
+                dispatcher.close();
+            }
+
+        };
+
+        closer.start();
+
+        // let the close start while the slow appender still drains the queue
+        Thread.sleep(20);
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.dispatch(entry("after-" + i));
+
+            expected.add("after-" + i);
+        }
+
+        closer.join();
+
+        // dispatched after the dispatching thread stopped
+        dispatcher.dispatch(entry("last"));
+
+        expected.add("last");
+
+        assertEquals(expected, listener.appended());
+        assertFalse(listener.interrupted);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testDiscardNewest() throws Exception {
+        TestListener listener = new TestListener(0);
+
+        listener.block();
+
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(
+            listener, 2, 10, AsyncLogDispatcher.OverflowPolicy.DISCARD_NEWEST);
+
+        dispatcher.start();
+
+        dispatcher.dispatch(entry("0"));
+
+        listener.awaitBlocked();
+
+        for (int i = 1; i < 5; i++) {
+            dispatcher.dispatch(entry(String.valueOf(i)));
+        }
+
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        listener.unblock();
+
+        dispatcher.close();
+
+        assertEquals(Arrays.asList("0", "1", "2"), listener.appended());
+        assertEquals(2, listener.droppedTotal);
+    }
+
+    @Test
+    public void testDiscardOldest() throws Exception {
+        TestListener listener = new TestListener(0);
+
+        listener.block();
+
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(
+            listener, 2, 10, AsyncLogDispatcher.OverflowPolicy.DISCARD_OLDEST);
+
+        dispatcher.start();
+
+        dispatcher.dispatch(entry("0"));
+
+        listener.awaitBlocked();
+
+        for (int i = 1; i < 5; i++) {
+            dispatcher.dispatch(entry(String.valueOf(i)));
+        }
+
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        listener.unblock();
+
+        dispatcher.close();
+
+        assertEquals(Arrays.asList("0", "3", "4"), listener.appended());
+        assertEquals(2, listener.droppedTotal);
+    }
+
+    @Test
+    public void testAppendFailureReported() throws Exception {
+        TestListener listener = new TestListener(0);
+
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(
+            listener, 10, 10, AsyncLogDispatcher.OverflowPolicy.BLOCK);
+
+        dispatcher.start();
+
+        dispatcher.dispatch(entry("0"));
+        dispatcher.dispatch(entry("fail"));
+        dispatcher.dispatch(entry("2"));
+
+        dispatcher.close();
+
+        assertEquals(Arrays.asList("0", "2"), listener.appended());
+        assertEquals(1, listener.errors.size());
+    }
+
+    static LogEntry entry(final String message) {
+        return (LogEntry)Proxy.newProxyInstance(
+            LogEntry.class.getClassLoader(), new Class<?>[] {LogEntry.class},
+            new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getMessage") ||
+                        method.getName().equals("toString")) {
+
+                        return message;
+                    }
+                    else if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    else if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+
+                    return null;
+                }
+
+            });
+    }
+
+    static LoggerAdmin loggerAdmin() {
+        final LoggerContext loggerContext = (LoggerContext)Proxy.newProxyInstance(
+            LoggerContext.class.getClassLoader(), new Class<?>[] {LoggerContext.class},
+            new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getLogLevels")) {
+                        return new HashMap<Object, Object>();
+                    }
+
+                    return null;
+                }
+
+            });
+
+        return (LoggerAdmin)Proxy.newProxyInstance(
+            LoggerAdmin.class.getClassLoader(), new Class<?>[] {LoggerAdmin.class},
+            new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getLoggerContext")) {
+                        return loggerContext;
+                    }
+
+                    return null;
+                }
+
+            });
+    }
+
+    static class TestListener extends LogbackLogListener {
+
+        TestListener(long appendDelay) {
+            super(loggerAdmin());
+
+            this.appendDelay = appendDelay;
+        }
+
+        @Override
+        void append(LogEntry entry) {
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted = true;
+            }
+
+            CountDownLatch latch = blockLatch;
+
+            if (latch != null) {
+                blockedLatch.countDown();
+
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+
+                blockLatch = null;
+            }
+
+            if (appendDelay > 0) {
+                try {
+                    Thread.sleep(appendDelay);
+                }
+                catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+
+            if ("fail".equals(entry.getMessage())) {
+                throw new IllegalStateException("fail");
+            }
+
+            appended.add(entry.getMessage());
+        }
+
+        @Override
+        void reportDropped(long count, long total) {
+            droppedTotal = total;
+        }
+
+        @Override
+        void reportError(String message, Throwable t) {
+            errors.add(t);
+        }
+
+        List<String> appended() {
+            return new ArrayList<String>(appended);
+        }
+
+        void block() {
+            blockLatch = new CountDownLatch(1);
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blockedLatch.await(5, TimeUnit.SECONDS));
+        }
+
+        void unblock() {
+            blockLatch.countDown();
+        }
+
+        private final long appendDelay;
+        private final List<String> appended = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch blockedLatch = new CountDownLatch(1);
+        private volatile CountDownLatch blockLatch;
+        volatile boolean interrupted;
+        volatile long droppedTotal;
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    }
+
+}
@@ -20,6 +20,7 @@ package org.apache.felix.main;
 
 import java.io.File;
 import java.util.*;
+import org.apache.felix.framework.Felix;
 import org.osgi.framework.*;
 import org.osgi.service.startlevel.*;
 
@@ -169,24 +170,48 @@ public class AutoProcessor
                 }
             }
 
-            // Install bundle JAR files and remember the bundle objects.
+            // Install the bundle JAR files that are not already installed
+            // as a single batch if the 'install' action is present.
+            List installList = new ArrayList();
+            Map installIndexMap = new HashMap();
+            if (actionList.contains(AUTO_DEPLOY_INSTALL_VALUE))
+            {
+                for (int i = 0; i < jarList.size(); i++)
+                {
+                    String location = ((File) jarList.get(i)).toURI().toString();
+                    if (!installedBundleMap.containsKey(location))
+                    {
+                        installIndexMap.put(location, new Integer(installList.size()));
+                        installList.add(location);
+                    }
+                }
+            }
+            Exception[] exceptions = new Exception[installList.size()];
+            Bundle[] installed = installBundles(context,
+                (String[]) installList.toArray(new String[installList.size()]), exceptions);
+
+            // Remember the bundle objects of the bundle JAR files.
             final List startBundleList = new ArrayList();
             for (int i = 0; i < jarList.size(); i++)
             {
                 // Look up the bundle by location, removing it from
                 // the map of installed bundles so the remaining bundles
                 // indicate which bundles may need to be uninstalled.
-                Bundle b = (Bundle) installedBundleMap.remove(
-                    ((File) jarList.get(i)).toURI().toString());
+                String location = ((File) jarList.get(i)).toURI().toString();
+                Bundle b = (Bundle) installedBundleMap.remove(location);
+                Integer index = (Integer) installIndexMap.get(location);
 
                 try
                 {
-                    // If the bundle is not already installed, then install it
-                    // if the 'install' action is present.
-                    if ((b == null) && actionList.contains(AUTO_DEPLOY_INSTALL_VALUE))
+                    // If the bundle was not already installed, then use
+                    // the result of installing it.
+                    if (index != null)
                     {
-                        b = context.installBundle(
-                            ((File) jarList.get(i)).toURI().toString());
+                        b = installed[index.intValue()];
+                        if (b == null)
+                        {
+                            throw exceptions[index.intValue()];
+                        }
                     }
                     // If the bundle is already installed, then update it
                     // if the 'update' action is present.
@@ -204,7 +229,7 @@ public class AutoProcessor
                         sl.setBundleStartLevel(b, startLevel);
                     }
                 }
-                catch (BundleException ex)
+                catch (Exception ex)
                 {
                     System.err.println("Auto-deploy install: "
                         + ex + ((ex.getCause() != null) ? " - " + ex.getCause() : ""));
@@ -275,7 +300,9 @@ public class AutoProcessor
         // bundles are assigned is specified by appending a ".n" to the
         // property name, where "n" is the desired start level for the list
         // of bundles. If no start level is specified, the default start
-        // level is assumed.
+        // level is assumed. All the bundles are installed as a single batch.
+        List locationList = new ArrayList();
+        List startLevelList = new ArrayList();
         for (Iterator i = configMap.keySet().iterator(); i.hasNext(); )
         {
             String key = ((String) i.next()).toLowerCase();
@@ -302,22 +329,35 @@ public class AutoProcessor
                 }
             }
 
-            // Parse and install the bundles associated with the key.
+            // Parse the bundles associated with the key.
             StringTokenizer st = new StringTokenizer((String) configMap.get(key), "\" ", true);
             for (String location = nextLocation(st); location != null; location = nextLocation(st))
             {
-                try
+                locationList.add(location);
+                startLevelList.add(new Integer(startLevel));
+            }
+        }
+
+        // Install the bundles and set their start levels.
+        String[] locations = (String[]) locationList.toArray(new String[locationList.size()]);
+        Exception[] exceptions = new Exception[locations.length];
+        Bundle[] bundles = installBundles(context, locations, exceptions);
+        for (int i = 0; i < locations.length; i++)
+        {
+            try
+            {
+                if (bundles[i] == null)
                 {
-                    Bundle b = context.installBundle(location, null);
-                    sl.setBundleStartLevel(b, startLevel);
+                    throw exceptions[i];
                 }
-                catch (Exception ex)
-                {
-                    System.err.println("Auto-properties install: " + location + " ("
-                        + ex + ((ex.getCause() != null) ? " - " + ex.getCause() : "") + ")");
+                sl.setBundleStartLevel(bundles[i], ((Integer) startLevelList.get(i)).intValue());
+            }
+            catch (Exception ex)
+            {
+                System.err.println("Auto-properties install: " + locations[i] + " ("
+                    + ex + ((ex.getCause() != null) ? " - " + ex.getCause() : "") + ")");
 if (ex.getCause() != null)
     ex.printStackTrace();
-                }
             }
         }
 
@@ -349,6 +389,45 @@ if (ex.getCause() != null)
         }
     }
 
+    /**
+     * <p>
+     * Installs the bundles at the specified locations, as a single batch
+     * when the context is the one of a Felix framework, so that the bundles
+     * are copied into the bundle cache in parallel. The exception of each
+     * bundle that could not be installed is stored in the specified array.
+     * </p>
+     */
+    private static Bundle[] installBundles(
+        BundleContext context, String[] locations, Exception[] exceptions)
+    {
+        if (context.getBundle() instanceof Felix)
+        {
+            try
+            {
+                return ((Felix) context.getBundle()).installBundles(locations, exceptions);
+            }
+            catch (BundleException ex)
+            {
+                Arrays.fill(exceptions, ex);
+                return new Bundle[locations.length];
+            }
+        }
+
+        Bundle[] bundles = new Bundle[locations.length];
+        for (int i = 0; i < locations.length; i++)
+        {
+            try
+            {
+                bundles[i] = context.installBundle(locations[i], null);
+            }
+            catch (Exception ex)
+            {
+                exceptions[i] = ex;
+            }
+        }
+        return bundles;
+    }
+
     private static String nextLocation(StringTokenizer st)
     {
         String retVal = null;
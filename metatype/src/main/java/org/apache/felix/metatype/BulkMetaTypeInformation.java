@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.metatype;
+
+
+import java.util.Map;
+
+import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+
+/**
+ * The <code>BulkMetaTypeInformation</code> interface is implemented by the
+ * <code>MetaTypeInformation</code> objects returned from the Apache Felix
+ * <code>MetaTypeService</code>. It allows clients listing the configurations
+ * of many bundles, like a configuration user interface, to get all object
+ * class definitions of a bundle in a single call.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public interface BulkMetaTypeInformation extends MetaTypeInformation
+{
+
+    /**
+     * Returns the object class definitions of all PIDs and factory PIDs of
+     * the bundle localized for the given locale.
+     * <p>
+     * PIDs for which no object class definition is available are not
+     * contained in the returned map.
+     *
+     * @param locale The locale to localize the object class definitions for
+     *      or <code>null</code> for the default locale.
+     * @return The unmodifiable map of object class definitions indexed by
+     *      PID or factory PID. This map is never <code>null</code>.
+     */
+    Map<String, ObjectClassDefinition> getObjectClassDefinitions( String locale );
+}
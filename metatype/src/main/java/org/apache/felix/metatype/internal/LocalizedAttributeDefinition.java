@@ -30,6 +30,10 @@ import org.osgi.service.metatype.AttributeDefinition;
  * calls to the underlying {@link AD} localizing the results of the following
  * methods: {@link #getName()}, {@link #getDescription()},
  * {@link #getOptionLabels()}, and {@link #validate(String)}.
+ * <p>
+ * The name, description and option labels are localized once when the
+ * instance is created, so instances are immutable snapshots which may be
+ * cached and shared.
  *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
@@ -38,6 +42,12 @@ class LocalizedAttributeDefinition extends LocalizedBase implements AttributeDef
 
     private final AD ad;
 
+    private final String name;
+
+    private final String description;
+
+    private final String[] optionLabels;
+
 
     /**
      * Creates and instance of this localizing facade.
@@ -50,6 +60,9 @@ class LocalizedAttributeDefinition extends LocalizedBase implements AttributeDef
     {
         super( resources );
         this.ad = ad;
+        this.name = localize( ad.getName() );
+        this.description = localize( ad.getDescription() );
+        this.optionLabels = localize( ad.getOptionLabels() );
     }
 
 
@@ -76,7 +89,7 @@ class LocalizedAttributeDefinition extends LocalizedBase implements AttributeDef
      */
     public String getDescription()
     {
-        return localize( ad.getDescription() );
+        return description;
     }
 
 
@@ -94,7 +107,7 @@ class LocalizedAttributeDefinition extends LocalizedBase implements AttributeDef
      */
     public String getName()
     {
-        return localize( ad.getName() );
+        return name;
     }
 
 
@@ -103,7 +116,7 @@ class LocalizedAttributeDefinition extends LocalizedBase implements AttributeDef
      */
     public String[] getOptionLabels()
     {
-        return localize( ad.getOptionLabels() );
+        return ( optionLabels == null ) ? null : ( String[] ) optionLabels.clone();
     }
 
 
@@ -116,6 +129,15 @@ class LocalizedAttributeDefinition extends LocalizedBase implements AttributeDef
     }
 
 
+    /**
+     * Returns whether the underlying {@link AD} is required.
+     */
+    boolean isRequired()
+    {
+        return ad.isRequired();
+    }
+
+
     /**
      * @see org.osgi.service.metatype.AttributeDefinition#getType()
      */
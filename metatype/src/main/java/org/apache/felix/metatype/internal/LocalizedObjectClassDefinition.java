@@ -38,15 +38,29 @@ import org.osgi.service.metatype.ObjectClassDefinition;
  * calls to the underlying {@link OCD} localizing the results of the following
  * methods: {@link #getName()}, {@link #getDescription()}, and
  * {@link #getIcon(int)}.
+ * <p>
+ * The name, description and attribute definitions are localized once when
+ * the instance is created, so instances are immutable snapshots which may be
+ * cached and shared. Icons are still resolved on request.
  *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class LocalizedObjectClassDefinition extends LocalizedBase implements ObjectClassDefinition
 {
 
-    private Bundle bundle;
+    private final Bundle bundle;
 
-    private OCD ocd;
+    private final OCD ocd;
+
+    private final String name;
+
+    private final String description;
+
+    private final AttributeDefinition[] allAttributes;
+
+    private final AttributeDefinition[] requiredAttributes;
+
+    private final AttributeDefinition[] optionalAttributes;
 
 
     /**
@@ -63,6 +77,13 @@ public class LocalizedObjectClassDefinition extends LocalizedBase implements Obj
         super( resources );
         this.bundle = bundle;
         this.ocd = ocd;
+        this.name = localize( ocd.getName() );
+        this.description = localize( ocd.getDescription() );
+
+        AttributeDefinition[] all = createAttributeDefinitions();
+        this.allAttributes = all;
+        this.requiredAttributes = selectAttributeDefinitions( all, true );
+        this.optionalAttributes = selectAttributeDefinitions( all, false );
     }
 
 
@@ -72,22 +93,37 @@ public class LocalizedObjectClassDefinition extends LocalizedBase implements Obj
      */
     public AttributeDefinition[] getAttributeDefinitions( int filter )
     {
-        if ( ocd.getAttributeDefinitions() == null )
+        AttributeDefinition[] result;
+        if ( filter == ObjectClassDefinition.ALL )
         {
-            return null;
+            result = allAttributes;
         }
-
-        Iterator adhIter = ocd.getAttributeDefinitions().values().iterator();
-        if ( filter == ObjectClassDefinition.OPTIONAL || filter == ObjectClassDefinition.REQUIRED )
+        else if ( filter == ObjectClassDefinition.REQUIRED )
         {
-            boolean required = ( filter == ObjectClassDefinition.REQUIRED );
-            adhIter = new RequiredFilterIterator( adhIter, required );
+            result = requiredAttributes;
         }
-        else if ( filter != ObjectClassDefinition.ALL )
+        else if ( filter == ObjectClassDefinition.OPTIONAL )
+        {
+            result = optionalAttributes;
+        }
+        else
+        {
+            return null;
+        }
+
+        // the caller may modify the returned array
+        return ( result == null ) ? null : ( AttributeDefinition[] ) result.clone();
+    }
+
+
+    private AttributeDefinition[] createAttributeDefinitions()
+    {
+        if ( ocd.getAttributeDefinitions() == null )
         {
             return null;
         }
 
+        Iterator adhIter = ocd.getAttributeDefinitions().values().iterator();
         if ( !adhIter.hasNext() )
         {
             return null;
@@ -103,12 +139,41 @@ public class LocalizedObjectClassDefinition extends LocalizedBase implements Obj
     }
 
 
+    /**
+     * Returns the required or optional attribute definitions of the given
+     * localized attribute definitions, in the same order.
+     */
+    private static AttributeDefinition[] selectAttributeDefinitions( AttributeDefinition[] all, boolean required )
+    {
+        if ( all == null )
+        {
+            return null;
+        }
+
+        List result = new ArrayList();
+        for ( int i = 0; i < all.length; i++ )
+        {
+            if ( ( ( LocalizedAttributeDefinition ) all[i] ).isRequired() == required )
+            {
+                result.add( all[i] );
+            }
+        }
+
+        if ( result.isEmpty() )
+        {
+            return null;
+        }
+
+        return ( AttributeDefinition[] ) result.toArray( new AttributeDefinition[result.size()] );
+    }
+
+
     /**
      * @see org.osgi.service.metatype.ObjectClassDefinition#getDescription()
      */
     public String getDescription()
     {
-        return localize( ocd.getDescription() );
+        return description;
     }
 
 
@@ -177,72 +242,6 @@ public class LocalizedObjectClassDefinition extends LocalizedBase implements Obj
      */
     public String getName()
     {
-        return localize( ocd.getName() );
-    }
-
-    private static class RequiredFilterIterator implements Iterator
-    {
-
-        private final Iterator base;
-
-        private final boolean required;
-
-        private AD next;
-
-
-        private RequiredFilterIterator( Iterator base, boolean required )
-        {
-            this.base = base;
-            this.required = required;
-            this.next = seek();
-        }
-
-
-        public boolean hasNext()
-        {
-            return next != null;
-        }
-
-
-        public Object next()
-        {
-            if ( !hasNext() )
-            {
-                throw new NoSuchElementException();
-            }
-
-            AD toReturn = next;
-            next = seek();
-            return toReturn;
-        }
-
-
-        public void remove()
-        {
-            throw new UnsupportedOperationException( "remove" );
-        }
-
-
-        private AD seek()
-        {
-            if ( base.hasNext() )
-            {
-                AD next;
-                do
-                {
-                    next = ( AD ) base.next();
-                }
-                while ( next.isRequired() != required && base.hasNext() );
-
-                if ( next.isRequired() == required )
-                {
-                    return next;
-                }
-            }
-
-            // nothing found any more
-            return null;
-        }
-
+        return name;
     }
 }
@@ -20,12 +20,17 @@ package org.apache.felix.metatype.internal;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.apache.felix.metatype.BulkMetaTypeInformation;
 import org.apache.felix.metatype.DefaultMetaTypeProvider;
 import org.apache.felix.metatype.Designate;
 import org.apache.felix.metatype.DesignateObject;
@@ -40,16 +45,23 @@ import org.osgi.service.metatype.ObjectClassDefinition;
  * The <code>MetaTypeInformationImpl</code> class implements the
  * <code>MetaTypeInformation</code> interface returned from the
  * <code>MetaTypeService</code>.
+ * <p>
+ * The localized object class definitions read from meta type documents are
+ * immutable and cached per PID and locale until the provider of the PID
+ * changes or this instance is disposed.
  *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
-public class MetaTypeInformationImpl implements MetaTypeInformation
+public class MetaTypeInformationImpl implements BulkMetaTypeInformation
 {
     private final Bundle bundle;
     private final Set pids;
     private final Set factoryPids;
     private final Map metaTypeProviders;
 
+    /** localized object class definitions indexed by locale and PID */
+    private final ConcurrentMap<String, ConcurrentMap<String, ObjectClassDefinition>> localizedOcds;
+
     private Set locales;
 
     protected MetaTypeInformationImpl(Bundle bundle)
@@ -58,6 +70,7 @@ public class MetaTypeInformationImpl implements MetaTypeInformation
         this.pids = new HashSet();
         this.factoryPids = new HashSet();
         this.metaTypeProviders = new HashMap();
+        this.localizedOcds = new ConcurrentHashMap<String, ConcurrentMap<String, ObjectClassDefinition>>();
     }
 
     void dispose()
@@ -66,6 +79,7 @@ public class MetaTypeInformationImpl implements MetaTypeInformation
         this.factoryPids.clear();
         this.locales = null;
         this.metaTypeProviders.clear();
+        this.localizedOcds.clear();
     }
 
     /*
@@ -142,7 +156,7 @@ public class MetaTypeInformationImpl implements MetaTypeInformation
             throw new IllegalArgumentException("No ObjectClassDefinition for id=" + id);
         }
 
-        ObjectClassDefinition ocd = mtp.getObjectClassDefinition(id, locale);
+        ObjectClassDefinition ocd = this.getLocalizedObjectClassDefinition(id, locale, mtp);
         if (ocd == null)
         {
             throw new IllegalArgumentException("No localized ObjectClassDefinition for id=" + id);
@@ -151,6 +165,83 @@ public class MetaTypeInformationImpl implements MetaTypeInformation
         return ocd;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.felix.metatype.BulkMetaTypeInformation#getObjectClassDefinitions(java.lang.String)
+     */
+    public Map<String, ObjectClassDefinition> getObjectClassDefinitions(String locale)
+    {
+        Map<String, ObjectClassDefinition> result = new HashMap<String, ObjectClassDefinition>();
+        this.addObjectClassDefinitions(result, this.getPids(), locale);
+        this.addObjectClassDefinitions(result, this.getFactoryPids(), locale);
+        return Collections.unmodifiableMap(result);
+    }
+
+    private void addObjectClassDefinitions(Map<String, ObjectClassDefinition> dest, String[] ids, String locale)
+    {
+        for (int i = 0; i < ids.length; i++)
+        {
+            MetaTypeProvider mtp = (MetaTypeProvider) this.metaTypeProviders.get(ids[i]);
+            if (mtp != null)
+            {
+                ObjectClassDefinition ocd = this.getLocalizedObjectClassDefinition(ids[i], locale, mtp);
+                if (ocd != null)
+                {
+                    dest.put(ids[i], ocd);
+                }
+            }
+        }
+    }
+
+    private ObjectClassDefinition getLocalizedObjectClassDefinition(String id, String locale, MetaTypeProvider mtp)
+    {
+        // only the definitions read from meta type documents are immutable,
+        // other providers may return different definitions at any time
+        if (mtp.getClass() != DefaultMetaTypeProvider.class)
+        {
+            return mtp.getObjectClassDefinition(id, locale);
+        }
+
+        final String key = (locale == null) ? Locale.getDefault().toString() : locale;
+        ConcurrentMap<String, ObjectClassDefinition> ocds = this.localizedOcds.get(key);
+        if (ocds == null)
+        {
+            ocds = new ConcurrentHashMap<String, ObjectClassDefinition>();
+            ConcurrentMap<String, ObjectClassDefinition> existing = this.localizedOcds.putIfAbsent(key, ocds);
+            if (existing != null)
+            {
+                ocds = existing;
+            }
+        }
+
+        ObjectClassDefinition ocd = ocds.get(id);
+        if (ocd == null)
+        {
+            ocd = mtp.getObjectClassDefinition(id, locale);
+            if (ocd != null)
+            {
+                ocds.put(id, ocd);
+
+                // don't keep the definition if the provider has been replaced meanwhile
+                if (this.metaTypeProviders.get(id) != mtp)
+                {
+                    ocds.remove(id, ocd);
+                }
+            }
+        }
+
+        return ocd;
+    }
+
+    private void evictObjectClassDefinitions(String id)
+    {
+        for (Iterator<ConcurrentMap<String, ObjectClassDefinition>> oi = this.localizedOcds.values().iterator(); oi.hasNext();)
+        {
+            oi.next().remove(id);
+        }
+    }
+
 
     // ---------- internal support for metadata -------------------------------
 
@@ -216,6 +307,7 @@ public class MetaTypeInformationImpl implements MetaTypeInformation
         if (key != null && mtp != null)
         {
             this.metaTypeProviders.put(key, mtp);
+            this.evictObjectClassDefinitions(key);
             this.locales = null;
         }
     }
@@ -225,7 +317,9 @@ public class MetaTypeInformationImpl implements MetaTypeInformation
         if (key != null)
         {
             this.locales = null;
-            return (MetaTypeProvider) this.metaTypeProviders.remove(key);
+            MetaTypeProvider mtp = (MetaTypeProvider) this.metaTypeProviders.remove(key);
+            this.evictObjectClassDefinitions(key);
+            return mtp;
         }
 
         return null;
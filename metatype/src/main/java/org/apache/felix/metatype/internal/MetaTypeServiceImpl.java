@@ -96,7 +96,11 @@ class MetaTypeServiceImpl implements MetaTypeService, SynchronousBundleListener
 
     public void bundleChanged( BundleEvent event )
     {
-        if ( event.getType() == BundleEvent.STOPPING )
+        // drop the information when the bundle stops and whenever its
+        // contents (meta type documents and localizations) may have changed
+        final int type = event.getType();
+        if ( type == BundleEvent.STOPPING || type == BundleEvent.UPDATED || type == BundleEvent.UNRESOLVED
+            || type == BundleEvent.UNINSTALLED )
         {
             SoftReference<MetaTypeInformationImpl> mtir = this.bundleMetaTypeInformation.remove( new Long( event.getBundle()
                 .getBundleId() ) );
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.metatype.internal;
+
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import org.apache.felix.metatype.BulkMetaTypeInformation;
+import org.apache.felix.metatype.MetaData;
+import org.apache.felix.metatype.MetaDataReader;
+import org.apache.felix.metatype.MockBundleContext;
+import org.osgi.framework.Bundle;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeProvider;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+import junit.framework.TestCase;
+
+
+/**
+ * The <code>MetaTypeInformationImplTest</code> class tests the caching of
+ * localized object class definitions by the {@link MetaTypeInformationImpl}.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class MetaTypeInformationImplTest extends TestCase
+{
+
+    private static final String XML = "<MetaData>"
+        + "<OCD id=\"ocd1\" name=\"%ocd1.name\" description=\"ocd1 description\">"
+        + "<AD id=\"a1\" type=\"String\" name=\"%a1.name\" required=\"true\" />"
+        + "<AD id=\"a2\" type=\"String\" required=\"false\" />"
+        + "<AD id=\"a3\" type=\"String\" required=\"true\" />"
+        + "</OCD>"
+        + "<OCD id=\"ocd2\" name=\"ocd2\"><AD id=\"b1\" type=\"String\" /></OCD>"
+        + "<Designate pid=\"pid1\"><Object ocdref=\"ocd1\" /></Designate>"
+        + "<Designate factoryPid=\"factory2\"><Object ocdref=\"ocd2\" /></Designate>"
+        + "</MetaData>";
+
+    private Bundle bundle;
+
+    private MetaTypeInformationImpl mti;
+
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        bundle = new MockBundleContext( 10, "org.apache.felix.metatype.Mock" ).getBundle();
+        mti = new MetaTypeInformationImpl( bundle );
+
+        MetaData md = new MetaDataReader().parse( new ByteArrayInputStream( XML.getBytes( "UTF-8" ) ) );
+        mti.addMetaData( md );
+    }
+
+
+    public void testLocalizedObjectClassDefinitionCached()
+    {
+        ObjectClassDefinition ocd = mti.getObjectClassDefinition( "pid1", "en" );
+        assertEquals( "ocd1", ocd.getID() );
+        assertEquals( "ocd1.name", ocd.getName() );
+        assertEquals( "ocd1 description", ocd.getDescription() );
+
+        assertSame( ocd, mti.getObjectClassDefinition( "pid1", "en" ) );
+        assertNotSame( ocd, mti.getObjectClassDefinition( "pid1", "de" ) );
+        assertSame( mti.getObjectClassDefinition( "pid1", null ), mti.getObjectClassDefinition( "pid1", null ) );
+    }
+
+
+    public void testAttributeDefinitions()
+    {
+        ObjectClassDefinition ocd = mti.getObjectClassDefinition( "pid1", null );
+
+        AttributeDefinition[] all = ocd.getAttributeDefinitions( ObjectClassDefinition.ALL );
+        assertEquals( 3, all.length );
+
+        AttributeDefinition[] required = ocd.getAttributeDefinitions( ObjectClassDefinition.REQUIRED );
+        assertEquals( 2, required.length );
+        assertEquals( "a1", required[0].getID() );
+        assertEquals( "a1.name", required[0].getName() );
+        assertEquals( "a3", required[1].getID() );
+
+        AttributeDefinition[] optional = ocd.getAttributeDefinitions( ObjectClassDefinition.OPTIONAL );
+        assertEquals( 1, optional.length );
+        assertEquals( "a2", optional[0].getID() );
+
+        assertNull( mti.getObjectClassDefinition( "factory2", null ).getAttributeDefinitions(
+            ObjectClassDefinition.OPTIONAL ) );
+        assertNull( ocd.getAttributeDefinitions( 42 ) );
+
+        // modifying the returned array must not affect the cached definition
+        all[0] = null;
+        assertNotNull( ocd.getAttributeDefinitions( ObjectClassDefinition.ALL )[0] );
+    }
+
+
+    public void testBulkObjectClassDefinitions()
+    {
+        assertTrue( mti instanceof BulkMetaTypeInformation );
+
+        Map<String, ObjectClassDefinition> ocds = mti.getObjectClassDefinitions( "en" );
+        assertEquals( 2, ocds.size() );
+        assertSame( mti.getObjectClassDefinition( "pid1", "en" ), ocds.get( "pid1" ) );
+        assertSame( mti.getObjectClassDefinition( "factory2", "en" ), ocds.get( "factory2" ) );
+
+        try
+        {
+            ocds.clear();
+            fail( "Expected unmodifiable map" );
+        }
+        catch ( UnsupportedOperationException uoe )
+        {
+            // expected
+        }
+    }
+
+
+    public void testCacheEvictedOnProviderChange()
+    {
+        ObjectClassDefinition ocd = mti.getObjectClassDefinition( "pid1", "en" );
+
+        final ObjectClassDefinition replacement = mti.getObjectClassDefinition( "factory2", "en" );
+        mti.addMetaTypeProvider( "pid1", new MetaTypeProvider()
+        {
+            public ObjectClassDefinition getObjectClassDefinition( String id, String locale )
+            {
+                return replacement;
+            }
+
+
+            public String[] getLocales()
+            {
+                return null;
+            }
+        } );
+
+        assertSame( replacement, mti.getObjectClassDefinition( "pid1", "en" ) );
+        assertNotSame( ocd, mti.getObjectClassDefinitions( "en" ).get( "pid1" ) );
+
+        mti.removeMetaTypeProvider( "pid1" );
+        assertNull( mti.getObjectClassDefinitions( "en" ).get( "pid1" ) );
+    }
+}
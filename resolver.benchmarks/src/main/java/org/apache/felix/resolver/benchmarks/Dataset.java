@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.felix.resolver.Util;
+import org.apache.felix.resolver.test.BigResolutionTest;
+import org.apache.felix.resolver.test.util.JsonReader;
+import org.osgi.framework.BundleException;
+import org.osgi.resource.Resource;
+
+/**
+ * The resolution contexts the resolver is benchmarked with.
+ */
+public enum Dataset
+{
+    /**
+     * The recorded resolution of <tt>BigResolutionTest</tt>: 22 Karaf
+     * features over a repository of 241 resources.
+     */
+    RESOLUTION
+    {
+        @SuppressWarnings("unchecked")
+        RepositoryContext create() throws IOException, BundleException
+        {
+            Map<String, Object> resolution = (Map<String, Object>) read("resolution.json");
+            List<Resource> repository = new ArrayList<Resource>();
+            repository.add(parseResource(
+                Arrays.asList(
+                    "osgi.ee; osgi.ee=JavaSE; version=1.5",
+                    "osgi.ee; osgi.ee=JavaSE; version=1.6",
+                    "osgi.ee; osgi.ee=JavaSE; version=1.7"),
+                Collections.<String>emptyList()));
+            repository.addAll(parseResources((Collection<Object>) resolution.get("resources")));
+            List<Resource> mandatory = parseResources((Collection<Object>) resolution.get("mandatory"));
+            return new RepositoryContext(repository, mandatory);
+        }
+    },
+
+    /**
+     * The recorded resolution of <tt>FELIX_4914_Test</tt>, which involves
+     * fragments and blueprint extenders.
+     */
+    FELIX_4914
+    {
+        @SuppressWarnings("unchecked")
+        RepositoryContext create() throws IOException, BundleException
+        {
+            Map<String, Object> resolution = (Map<String, Object>) read("felix-4914.json");
+            List<Resource> repository = parseResources((Collection<Object>) resolution.get("repository"));
+            List<Resource> mandatory = new ArrayList<Resource>();
+            for (Resource resource : repository)
+            {
+                if ("root".equals(Util.getSymbolicName(resource)))
+                {
+                    mandatory.add(resource);
+                }
+            }
+            return new RepositoryContext(repository, mandatory);
+        }
+    },
+
+    /**
+     * A synthetic graph of 10000 bundles, see {@link #createSynthetic}.
+     * Every tenth bundle has a newer alternative provider of its <tt>a</tt>
+     * package.
+     */
+    SYNTHETIC_10K
+    {
+        RepositoryContext create() throws BundleException
+        {
+            List<Resource> repository = new ArrayList<Resource>();
+            List<Resource> mandatory = new ArrayList<Resource>();
+            createSynthetic(10000, repository, mandatory);
+            return new RepositoryContext(repository, mandatory);
+        }
+    },
+
+    /**
+     * A synthetic graph where every consumer first picks API packages that
+     * conflict with the uses constraints of the libraries it imports, so
+     * that the resolver has to go through many candidate permutations.
+     */
+    USES_CONFLICT
+    {
+        RepositoryContext create() throws BundleException
+        {
+            int apis = 10;
+            int libs = 20;
+            int consumers = 60;
+            List<Resource> repository = new ArrayList<Resource>();
+            List<Resource> mandatory = new ArrayList<Resource>();
+            for (int i = 0; i < apis; i++)
+            {
+                for (int v = 1; v <= 2; v++)
+                {
+                    repository.add(parseResource(
+                        Arrays.asList(
+                            identity("api" + i + ".v" + v),
+                            "osgi.wiring.package; osgi.wiring.package=api" + i + "; version:Version=" + v + ".0.0"),
+                        Collections.<String>emptyList()));
+                }
+            }
+            for (int i = 0; i < libs; i++)
+            {
+                String api = "api" + (i % apis);
+                repository.add(parseResource(
+                    Arrays.asList(
+                        identity("lib" + i),
+                        "osgi.wiring.package; osgi.wiring.package=lib" + i + "; version:Version=1.0.0; uses:=" + api),
+                    Collections.singletonList(
+                        "osgi.wiring.package; osgi.wiring.package=" + api + "; version=\"[1.0.0,2.0.0)\"")));
+            }
+            for (int i = 0; i < consumers; i++)
+            {
+                List<String> reqs = new ArrayList<String>();
+                for (int lib = i % libs, n = 0; n < 2; lib = (lib + 1) % libs, n++)
+                {
+                    reqs.add("osgi.wiring.package; osgi.wiring.package=lib" + lib + "; version=\"[1.0.0,2.0.0)\"");
+                    // Both API versions match, the newer one is tried first
+                    reqs.add("osgi.wiring.package; osgi.wiring.package=api" + (lib % apis) + "; version=\"[1.0.0,3.0.0)\"");
+                }
+                Resource consumer = parseResource(Collections.singletonList(identity("consumer" + i)), reqs);
+                repository.add(consumer);
+                mandatory.add(consumer);
+            }
+            return new RepositoryContext(repository, mandatory);
+        }
+    };
+
+    abstract RepositoryContext create() throws IOException, BundleException;
+
+    /**
+     * Fills a synthetic graph of the given number of bundles, arranged in
+     * ten layers. Bundle <tt>i</tt> exports <tt>pkg.i.a</tt>, which uses
+     * the first package it imports, and <tt>pkg.i.b</tt>, and imports up to
+     * six packages of the previous layer, so that every bundle resolves.
+     */
+    static void createSynthetic(int bundles, List<Resource> repository, List<Resource> mandatory)
+        throws BundleException
+    {
+        Random random = new Random(bundles);
+        int layer = Math.max(1, bundles / 10);
+        for (int i = 0; i < bundles; i++)
+        {
+            int first = (i / layer - 1) * layer;
+            Set<String> pkgs = new LinkedHashSet<String>();
+            int imports = (first < 0) ? 0 : random.nextInt(7);
+            for (int n = 0; n < imports; n++)
+            {
+                pkgs.add("pkg." + (first + random.nextInt(layer)) + (random.nextBoolean() ? ".a" : ".b"));
+            }
+            List<String> reqs = new ArrayList<String>();
+            for (String pkg : pkgs)
+            {
+                reqs.add("osgi.wiring.package; osgi.wiring.package=" + pkg + "; version=\"[1.0.0,2.0.0)\"");
+            }
+            String uses = pkgs.isEmpty() ? null : pkgs.iterator().next();
+            List<String> caps = new ArrayList<String>();
+            caps.add(identity("bundle" + i));
+            caps.add(export("pkg." + i + ".a", "1.0.0", uses));
+            caps.add(export("pkg." + i + ".b", "1.0.0", null));
+            Resource resource = parseResource(caps, reqs);
+            repository.add(resource);
+            mandatory.add(resource);
+
+            if (i % 10 == 0)
+            {
+                repository.add(parseResource(
+                    Arrays.asList(identity("bundle" + i + ".alt"), export("pkg." + i + ".a", "1.1.0", uses)),
+                    reqs));
+            }
+        }
+    }
+
+    private static String identity(String name)
+    {
+        return "osgi.identity; osgi.identity=" + name + "; type=osgi.bundle; version:Version=1.0.0";
+    }
+
+    private static String export(String pkg, String version, String uses)
+    {
+        return "osgi.wiring.package; osgi.wiring.package=" + pkg + "; version:Version=" + version
+            + ((uses != null) ? "; uses:=\"" + uses + "\"" : "");
+    }
+
+    static Resource parseResource(List<String> caps, List<String> reqs) throws BundleException
+    {
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put("capabilities", caps);
+        metadata.put("requirements", reqs);
+        return BigResolutionTest.parseResource(metadata);
+    }
+
+    private static List<Resource> parseResources(Collection<Object> metadatas) throws BundleException
+    {
+        List<Resource> resources = new ArrayList<Resource>();
+        for (Object metadata : metadatas)
+        {
+            resources.add(BigResolutionTest.parseResource(metadata));
+        }
+        return resources;
+    }
+
+    private static Object read(String name) throws IOException
+    {
+        InputStream is = Dataset.class.getClassLoader().getResourceAsStream(name);
+        if (is == null)
+        {
+            throw new IOException("Resource not found: " + name);
+        }
+        try
+        {
+            return JsonReader.read(is);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+}
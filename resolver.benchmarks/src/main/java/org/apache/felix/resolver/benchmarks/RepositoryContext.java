@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.felix.resolver.test.util.CandidateComparator;
+import org.apache.felix.resolver.test.util.CapabilitySet;
+import org.apache.felix.resolver.test.util.SimpleFilter;
+import org.osgi.framework.Constants;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wiring;
+import org.osgi.service.resolver.HostedCapability;
+import org.osgi.service.resolver.ResolveContext;
+
+/**
+ * A resolve context over a fixed repository of resources.
+ *
+ * The providers of each requirement are looked up once and then copied for
+ * every call, so that the measurements are dominated by the resolver and not
+ * by the filter matching of the context.
+ */
+public class RepositoryContext extends ResolveContext
+{
+    private final Collection<Resource> m_mandatory;
+    private final Map<Resource, Wiring> m_wirings;
+    private final Map<String, CapabilitySet> m_capSets = new HashMap<String, CapabilitySet>();
+    private final ConcurrentMap<Requirement, List<Capability>> m_providers =
+        new ConcurrentHashMap<Requirement, List<Capability>>();
+
+    public RepositoryContext(Collection<Resource> repository, Collection<Resource> mandatory)
+    {
+        this(repository, mandatory, Collections.<Resource, Wiring>emptyMap());
+    }
+
+    public RepositoryContext(Collection<Resource> repository, Collection<Resource> mandatory, Map<Resource, Wiring> wirings)
+    {
+        m_mandatory = mandatory;
+        m_wirings = wirings;
+        for (Resource resource : repository)
+        {
+            for (Capability cap : resource.getCapabilities(null))
+            {
+                String ns = cap.getNamespace();
+                CapabilitySet set = m_capSets.get(ns);
+                if (set == null)
+                {
+                    set = new CapabilitySet(Collections.singletonList(ns));
+                    m_capSets.put(ns, set);
+                }
+                set.addCapability(cap);
+            }
+        }
+    }
+
+    /**
+     * Returns a context over the same repository with different mandatory
+     * resources and wirings.
+     */
+    public RepositoryContext with(Collection<Resource> mandatory, Map<Resource, Wiring> wirings)
+    {
+        RepositoryContext context = new RepositoryContext(Collections.<Resource>emptyList(), mandatory, wirings);
+        context.m_capSets.putAll(m_capSets);
+        return context;
+    }
+
+    @Override
+    public Collection<Resource> getMandatoryResources()
+    {
+        return m_mandatory;
+    }
+
+    @Override
+    public List<Capability> findProviders(Requirement requirement)
+    {
+        List<Capability> providers = m_providers.get(requirement);
+        if (providers == null)
+        {
+            providers = match(requirement);
+            m_providers.putIfAbsent(requirement, providers);
+        }
+        // The resolver modifies the returned list
+        return new ArrayList<Capability>(providers);
+    }
+
+    private List<Capability> match(Requirement requirement)
+    {
+        CapabilitySet set = m_capSets.get(requirement.getNamespace());
+        if (set == null)
+        {
+            return Collections.emptyList();
+        }
+        String filter = requirement.getDirectives().get(Constants.FILTER_DIRECTIVE);
+        SimpleFilter sf = (filter != null)
+            ? SimpleFilter.parse(filter)
+            : SimpleFilter.convert(requirement.getAttributes());
+        List<Capability> caps = new ArrayList<Capability>(set.match(sf, true));
+        Collections.sort(caps, new CandidateComparator());
+        return caps;
+    }
+
+    @Override
+    public int insertHostedCapability(List<Capability> capabilities, HostedCapability hostedCapability)
+    {
+        capabilities.add(hostedCapability);
+        return capabilities.size() - 1;
+    }
+
+    @Override
+    public boolean isEffective(Requirement requirement)
+    {
+        return true;
+    }
+
+    @Override
+    public Map<Resource, Wiring> getWirings()
+    {
+        return m_wirings;
+    }
+}
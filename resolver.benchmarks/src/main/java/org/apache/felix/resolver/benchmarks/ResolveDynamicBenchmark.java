@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.resolver.Logger;
+import org.apache.felix.resolver.ResolverImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+import org.osgi.resource.Wiring;
+
+/**
+ * JMH benchmark of {@link ResolverImpl#resolveDynamic}. A host importing
+ * one package of a synthetic graph is resolved up front, then the benchmark
+ * dynamically imports the package of the last bundle of the graph, which
+ * pulls in the unresolved bundles it depends on.
+ *
+ * See {@link ResolverBenchmark} for running the benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolveDynamicBenchmark
+{
+    @Param({"1000", "10000"})
+    public int bundles;
+
+    private ResolverImpl resolver;
+
+    private RepositoryContext context;
+
+    private Wiring hostWiring;
+
+    private Requirement dynamicRequirement;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        this.resolver = new ResolverImpl(new Logger(Logger.LOG_ERROR), 1);
+
+        List<Resource> repository = new ArrayList<Resource>();
+        Dataset.createSynthetic(this.bundles, repository, new ArrayList<Resource>());
+        Resource host = Dataset.parseResource(
+            Collections.singletonList("osgi.identity; osgi.identity=host; type=osgi.bundle; version:Version=1.0.0"),
+            Arrays.asList(
+                "osgi.wiring.package; osgi.wiring.package=pkg.0.a",
+                "osgi.wiring.package; osgi.wiring.package=pkg." + (this.bundles - 1) + ".b; resolution:=dynamic"));
+        this.dynamicRequirement = host.getRequirements(null).get(1);
+
+        RepositoryContext staticContext = new RepositoryContext(repository, Collections.singletonList(host));
+        Map<Resource, List<Wire>> wireMap = this.resolver.resolve(staticContext);
+        Map<Resource, Wiring> wirings = createWirings(wireMap);
+        this.hostWiring = wirings.get(host);
+        this.context = staticContext.with(Collections.<Resource>emptyList(), wirings);
+
+        // Fail the trial early if the dynamic import cannot be resolved
+        this.resolver.resolveDynamic(this.context, this.hostWiring, this.dynamicRequirement);
+    }
+
+    @Benchmark
+    public Map<Resource, List<Wire>> resolveDynamic() throws Exception
+    {
+        return this.resolver.resolveDynamic(this.context, this.hostWiring, this.dynamicRequirement);
+    }
+
+    private static Map<Resource, Wiring> createWirings(Map<Resource, List<Wire>> wireMap)
+    {
+        Map<Resource, List<Wire>> providedWires = new HashMap<Resource, List<Wire>>();
+        for (List<Wire> wires : wireMap.values())
+        {
+            for (Wire wire : wires)
+            {
+                List<Wire> provided = providedWires.get(wire.getProvider());
+                if (provided == null)
+                {
+                    provided = new ArrayList<Wire>();
+                    providedWires.put(wire.getProvider(), provided);
+                }
+                provided.add(wire);
+            }
+        }
+        Map<Resource, Wiring> wirings = new HashMap<Resource, Wiring>();
+        for (Map.Entry<Resource, List<Wire>> entry : wireMap.entrySet())
+        {
+            List<Wire> provided = providedWires.get(entry.getKey());
+            wirings.put(entry.getKey(), new ResolvedWiring(entry.getKey(), entry.getValue(),
+                (provided != null) ? provided : Collections.<Wire>emptyList()));
+        }
+        return wirings;
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include(ResolveDynamicBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build();
+        new Runner(opt).run();
+    }
+
+    /**
+     * The wiring of a resource that is resolved without fragments.
+     */
+    private static class ResolvedWiring implements Wiring
+    {
+        private final Resource resource;
+        private final List<Wire> requiredWires;
+        private final List<Wire> providedWires;
+
+        ResolvedWiring(Resource resource, List<Wire> requiredWires, List<Wire> providedWires)
+        {
+            this.resource = resource;
+            this.requiredWires = requiredWires;
+            this.providedWires = providedWires;
+        }
+
+        public List<Capability> getResourceCapabilities(String namespace)
+        {
+            return this.resource.getCapabilities(namespace);
+        }
+
+        public List<Requirement> getResourceRequirements(String namespace)
+        {
+            return this.resource.getRequirements(namespace);
+        }
+
+        public List<Wire> getProvidedResourceWires(String namespace)
+        {
+            return filter(this.providedWires, namespace);
+        }
+
+        public List<Wire> getRequiredResourceWires(String namespace)
+        {
+            return filter(this.requiredWires, namespace);
+        }
+
+        public Resource getResource()
+        {
+            return this.resource;
+        }
+
+        private static List<Wire> filter(List<Wire> wires, String namespace)
+        {
+            if (namespace == null)
+            {
+                return wires;
+            }
+            List<Wire> result = new ArrayList<Wire>();
+            for (Wire wire : wires)
+            {
+                if (namespace.equals(wire.getCapability().getNamespace()))
+                {
+                    result.add(wire);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.resolver.Logger;
+import org.apache.felix.resolver.ResolverImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+/**
+ * JMH benchmark of {@link ResolverImpl#resolve} over the {@link Dataset}s,
+ * either on the calling thread or with a thread pool shared by all resolves.
+ *
+ * Run all benchmarks of this module with the allocation profiler and a JSON
+ * report, which can be compared between changes:
+ *
+ * <pre>
+ * mvn package
+ * java -jar target/benchmarks.jar -prof gc -rf json -rff target/jmh-result.json
+ * </pre>
+ *
+ * The <tt>gc.alloc.rate.norm</tt> result is the number of bytes allocated
+ * per resolve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolverBenchmark
+{
+    @Param({"RESOLUTION", "FELIX_4914", "SYNTHETIC_10K", "USES_CONFLICT"})
+    public Dataset dataset;
+
+    @Param({"single", "parallel"})
+    public String executor;
+
+    private ExecutorService executorService;
+
+    private ResolverImpl resolver;
+
+    private RepositoryContext context;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        this.context = this.dataset.create();
+        Logger logger = new Logger(Logger.LOG_ERROR);
+        if ("parallel".equals(this.executor))
+        {
+            this.executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            this.resolver = new ResolverImpl(logger, this.executorService);
+        }
+        else
+        {
+            this.resolver = new ResolverImpl(logger, 1);
+        }
+        // Fail the trial early if the dataset does not resolve
+        this.resolver.resolve(this.context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (this.executorService != null)
+        {
+            this.executorService.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Map<Resource, List<Wire>> resolve() throws Exception
+    {
+        return this.resolver.resolve(this.context);
+    }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include(ResolverBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -63,6 +63,17 @@ class Candidates
     private final OpenHashMapSet<Requirement, Capability> m_delta;
     private final AtomicBoolean m_candidateSelectorsUnmodifiable;
 
+    // Once prepared, the requirements with candidates are given dense ids and
+    // their candidates are stored by id, shared by all permutations; each
+    // permutation only holds the position of the current candidate of each
+    // requirement, in pages shared with the permutation it was copied from.
+    private OpenHashMap<Requirement, Integer> m_requirementIds;
+    private Capability[][] m_candidates;
+    private CopyOnWriteIntArray m_positions;
+
+    // Position of the requirements removed from a permutation.
+    private static final int REMOVED = -1;
+
     /**
      * Private copy constructor used by the copy() method.
      */
@@ -74,7 +85,10 @@ class Candidates
         Map<Resource, WrappedResource> wrappedHosts,
         OpenHashMap<Resource, PopulateResult> populateResultCache,
         Map<Capability, Requirement> substitutableMap,
-        OpenHashMapSet<Requirement, Capability> delta)
+        OpenHashMapSet<Requirement, Capability> delta,
+        OpenHashMap<Requirement, Integer> requirementIds,
+        Capability[][] candidates,
+        CopyOnWriteIntArray positions)
     {
         m_session = session;
         m_candidateSelectorsUnmodifiable = candidateSelectorsUnmodifiable;
@@ -84,6 +98,9 @@ class Candidates
         m_populateResultCache = populateResultCache;
         m_subtitutableMap = substitutableMap;
         m_delta = delta;
+        m_requirementIds = requirementIds;
+        m_candidates = candidates;
+        m_positions = positions;
     }
 
     /**
@@ -348,13 +365,15 @@ class Candidates
             {
                 for (Requirement dependent : dependents)
                 {
-                    CandidateSelector candidates = m_candidateMap.get(dependent);
-                    if (candidates != null)
+                    int id = getRequirementId(dependent);
+                    int pos = getPosition(id);
+                    if (pos != REMOVED)
                     {
+                        Capability[] candidates = m_candidates[id];
                         candidates:
-                        while (!candidates.isEmpty())
+                        while (pos < candidates.length)
                         {
-                            Capability candidate = candidates.getCurrentCandidate();
+                            Capability candidate = candidates[pos];
                             Integer candidateStatus = substituteStatuses.get(candidate);
                             if (candidateStatus == null)
                             {
@@ -368,16 +387,17 @@ class Candidates
                                 case SUBSTITUTED:
                                 default:
                                     // Need to remove any substituted that comes before an exported candidate
-                                    candidates.removeCurrentCandidate();
+                                    pos++;
                                     // continue to next candidate
                                     break;
                             }
                         }
-                        if (candidates.isEmpty())
+                        m_positions.set(id, pos);
+                        if (pos >= candidates.length)
                         {
                             if (Util.isOptional(dependent))
                             {
-                                m_candidateMap.remove(dependent);
+                                m_positions.set(id, REMOVED);
                             }
                             else
                             {
@@ -422,10 +442,10 @@ class Candidates
         // mark as processing to detect cycles
         substituteStatuses.put(substitutableCap, PROCESSING);
         // discover possible substitutes
-        CandidateSelector substitutes = m_candidateMap.get(substitutableReq);
+        List<Capability> substitutes = getCandidates(substitutableReq);
         if (substitutes != null)
         {
-            for (Capability substituteCandidate : substitutes.getRemainingCandidates())
+            for (Capability substituteCandidate : substitutes)
             {
                 if (substituteCandidate.getResource().equals(substitutableCap.getResource()))
                 {
@@ -692,33 +712,44 @@ class Candidates
      */
     public List<Capability> getCandidates(Requirement req)
     {
-        CandidateSelector candidates = m_candidateMap.get(req);
-        if (candidates != null)
+        int id = getRequirementId(req);
+        int pos = getPosition(id);
+        if (pos != REMOVED)
         {
-            return candidates.getRemainingCandidates();
+            Capability[] candidates = m_candidates[id];
+            return Collections.unmodifiableList(
+                Arrays.asList(candidates).subList(pos, candidates.length));
         }
         return null;
     }
 
     public Capability getFirstCandidate(Requirement req)
     {
-        CandidateSelector candidates = m_candidateMap.get(req);
-        if (candidates != null && !candidates.isEmpty())
+        int id = getRequirementId(req);
+        int pos = getPosition(id);
+        if (pos != REMOVED && pos < m_candidates[id].length)
         {
-            return candidates.getCurrentCandidate();
+            return m_candidates[id][pos];
         }
         return null;
     }
 
     public void removeFirstCandidate(Requirement req)
     {
-        CandidateSelector candidates = m_candidateMap.get(req);
+        int id = getRequirementId(req);
+        int pos = getPosition(id);
+        if (pos == REMOVED)
+        {
+            return;
+        }
+        Capability[] candidates = m_candidates[id];
         // Remove the conflicting candidate.
-        Capability cap = candidates.removeCurrentCandidate();
-        if (candidates.isEmpty())
+        Capability cap = null;
+        if (pos < candidates.length)
         {
-            m_candidateMap.remove(req);
+            cap = candidates[pos++];
         }
+        m_positions.set(id, (pos < candidates.length) ? pos : REMOVED);
         // Update the delta with the removed capability
         CopyOnWriteSet<Capability> capPath = m_delta.getOrCompute(req);
         capPath.add(cap);
@@ -726,14 +757,35 @@ class Candidates
 
     public CandidateSelector clearMultipleCardinalityCandidates(Requirement req, Collection<Capability> caps)
     {
-        // this is a special case where we need to completely replace the CandidateSelector
+        // this is a special case where we need to completely replace the candidates
         // this method should never be called from normal Candidates permutations
-        CandidateSelector candidates = m_candidateMap.get(req);
-        List<Capability> remaining = new ArrayList<Capability>(candidates.getRemainingCandidates());
+        int id = getRequirementId(req);
+        if (getPosition(id) == REMOVED)
+        {
+            return null;
+        }
+        List<Capability> remaining = new ArrayList<Capability>(getCandidates(req));
         remaining.removeAll(caps);
-        candidates = new CandidateSelector(remaining, m_candidateSelectorsUnmodifiable);
-        m_candidateMap.put(req, candidates);
-        return candidates;
+        // The candidates are shared with the other permutations
+        m_candidates = m_candidates.clone();
+        m_candidates[id] = remaining.toArray(new Capability[remaining.size()]);
+        m_positions.set(id, 0);
+        return new CandidateSelector(remaining, m_candidateSelectorsUnmodifiable);
+    }
+
+    private int getRequirementId(Requirement req)
+    {
+        if (m_requirementIds == null)
+        {
+            throw new IllegalStateException("The candidates have not been prepared");
+        }
+        Integer id = m_requirementIds.get(req);
+        return (id != null) ? id : -1;
+    }
+
+    private int getPosition(int id)
+    {
+        return (id >= 0) ? m_positions.get(id) : REMOVED;
     }
 
     /**
@@ -962,6 +1014,18 @@ class Candidates
 
         // mark the selectors as unmodifiable now
         m_candidateSelectorsUnmodifiable.set(true);
+
+        // Index the candidates for the permutations.
+        m_requirementIds = new OpenHashMap<Requirement, Integer>(m_candidateMap.size());
+        m_candidates = new Capability[m_candidateMap.size()][];
+        int id = 0;
+        for (Entry<Requirement, CandidateSelector> entry : m_candidateMap.fast())
+        {
+            List<Capability> candidates = entry.getValue().getRemainingCandidates();
+            m_candidates[id] = candidates.toArray(new Capability[candidates.size()]);
+            m_requirementIds.put(entry.getKey(), id++);
+        }
+        m_positions = new CopyOnWriteIntArray(id);
         return null;
     }
 
@@ -1140,21 +1204,23 @@ class Candidates
                 m_session,
                 m_candidateSelectorsUnmodifiable,
                 m_dependentMap,
-                m_candidateMap.deepClone(),
+                m_candidateMap,
                 m_allWrappedHosts,
                 m_populateResultCache,
                 m_subtitutableMap,
-                m_delta.deepClone());
+                m_delta.deepClone(),
+                m_requirementIds,
+                m_candidates,
+                m_positions.copy());
     }
 
     public void dump(ResolveContext rc)
     {
         // Create set of all revisions from requirements.
         Set<Resource> resources = new CopyOnWriteSet<Resource>();
-        for (Entry<Requirement, CandidateSelector> entry
-            : m_candidateMap.entrySet())
+        for (Requirement req : m_requirementIds.keySet())
         {
-            resources.add(entry.getKey().getResource());
+            resources.add(req.getResource());
         }
         // Now dump the revisions.
         System.out.println("=== BEGIN CANDIDATE MAP ===");
@@ -1168,7 +1234,7 @@ class Candidates
                 : resource.getRequirements(null);
             for (Requirement req : reqs)
             {
-                CandidateSelector candidates = m_candidateMap.get(req);
+                List<Capability> candidates = getCandidates(req);
                 if ((candidates != null) && (!candidates.isEmpty()))
                 {
                     System.out.println("    " + req + ": " + candidates);
@@ -1179,7 +1245,7 @@ class Candidates
                 : Util.getDynamicRequirements(resource.getRequirements(null));
             for (Requirement req : reqs)
             {
-                CandidateSelector candidates = m_candidateMap.get(req);
+                List<Capability> candidates = getCandidates(req);
                 if ((candidates != null) && (!candidates.isEmpty()))
                 {
                     System.out.println("    " + req + ": " + candidates);
@@ -1202,10 +1268,10 @@ class Candidates
 
     public boolean canRemoveCandidate(Requirement req)
     {
-        CandidateSelector candidates = m_candidateMap.get(req);
+        List<Capability> candidates = getCandidates(req);
         if (candidates != null)
         {
-            Capability current = candidates.getCurrentCandidate();
+            Capability current = candidates.isEmpty() ? null : candidates.get(0);
             if (current != null)
             {
                 // IMPLEMENTATION NOTE:
@@ -1236,15 +1302,14 @@ class Candidates
                     {
                         for (Requirement dependent : dependents)
                         {
-                            CandidateSelector dependentSelector = m_candidateMap.get(
-                                    dependent);
-                            // If the dependent selector only has one capability left then check if
-                            // the current candidate is the selector's current candidate.
-                            if (dependentSelector != null
-                                    && dependentSelector.getRemainingCandidateCount() <= 1)
+                            List<Capability> dependentCandidates = getCandidates(dependent);
+                            // If the dependent only has one capability left then check if
+                            // the current candidate is the dependent's current candidate.
+                            if (dependentCandidates != null
+                                    && dependentCandidates.size() <= 1)
                             {
                                 if (current.equals(
-                                        dependentSelector.getCurrentCandidate()))
+                                        getFirstCandidate(dependent)))
                                 {
                                     // return false since we do not want to allow this requirement
                                     // to substitute the capability
@@ -1255,7 +1320,7 @@ class Candidates
                     }
                 }
             }
-            return candidates.getRemainingCandidateCount() > 1 || Util.isOptional(req);
+            return candidates.size() > 1 || Util.isOptional(req);
         }
         return false;
     }
@@ -131,4 +131,28 @@ public class Logger
     {
         // do nothing by default
     }
+
+    /**
+     * Called once the package spaces of a candidate permutation are calculated.
+     * The package spaces of resources not affected by the changes since the
+     * previously checked permutation are reused instead of being recomputed.
+     *
+     * @param resources the number of resources in the package spaces
+     * @param recomputed the number of package spaces that were recomputed
+     */
+    public void logPackageSpaces(int resources, int recomputed)
+    {
+        // do nothing by default
+    }
+
+    /**
+     * Called once a resolve operation is done, whether it succeeded or not.
+     *
+     * @param resources the number of resources for which candidates were populated
+     * @param permutations the number of candidate permutations that were checked
+     */
+    public void logResolveStatistics(int resources, int permutations)
+    {
+        // do nothing by default
+    }
 }
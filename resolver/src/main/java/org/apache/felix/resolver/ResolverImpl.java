@@ -46,6 +46,13 @@ public class ResolverImpl implements Resolver
 
     private final Executor m_executor;
 
+    private final int m_permutationLimit;
+
+    // The maximum number of known uses conflicts kept per resolve operation
+    static final int DEFAULT_CONFLICT_LIMIT = 32;
+
+    private final int m_conflictLimit;
+
     enum PermutationType {
         USES,
         IMPORT,
@@ -92,6 +99,16 @@ public class ResolverImpl implements Resolver
         private final ConcurrentMap<String, List<String>> m_usesCache = new ConcurrentHashMap<String, List<String>>();
         private ResolutionError m_currentError;
         volatile private CancellationException m_isCancelled = null;
+        // Statistics reported to the logger once the resolve is done
+        private int m_resourceCount = 0;
+        private int m_permutationCount = 0;
+        private int m_skippedPermutationCount = 0;
+        // Uses conflicts found in checked permutations, so that permutations
+        // keeping the candidate selections of a conflict can be skipped
+        private final List<UsesConflict> m_conflicts = new ArrayList<UsesConflict>();
+        // The package spaces calculated for the last checked permutation,
+        // so that the next permutation only recomputes the affected ones
+        private PackageSpaces m_packageSpaces;
 
         static ResolveSession createSession(ResolveContext resolveContext, Executor executor, Resource dynamicHost, Requirement dynamicReq, List<Capability> dynamicCandidates)
         {
@@ -216,6 +233,7 @@ public class ResolverImpl implements Resolver
                 }
             }
             while(!m_processedDeltas.add(next.getDelta()));
+            m_permutationCount++;
             // Null out each time a new permutation is attempted.
             // We only use this to store a valid permutation which is a
             // delta of the current permutation.
@@ -226,6 +244,63 @@ public class ResolverImpl implements Resolver
             return next;
         }
 
+        void setResourceCount(int resourceCount)
+        {
+            m_resourceCount = resourceCount;
+        }
+
+        int getResourceCount()
+        {
+            return m_resourceCount;
+        }
+
+        int getCheckedPermutationCount()
+        {
+            return m_permutationCount - m_skippedPermutationCount;
+        }
+
+        int getAttemptedPermutationCount()
+        {
+            return m_permutationCount;
+        }
+
+        void skipPermutation()
+        {
+            m_skippedPermutationCount++;
+        }
+
+        List<UsesConflict> getConflicts()
+        {
+            return m_conflicts;
+        }
+
+        /**
+         * Adds a conflict, dropping the oldest one if more than the given
+         * number of conflicts would be kept.
+         */
+        void addConflict(UsesConflict conflict, int limit)
+        {
+            if (limit <= 0)
+            {
+                return;
+            }
+            if (m_conflicts.size() >= limit)
+            {
+                m_conflicts.remove(0);
+            }
+            m_conflicts.add(conflict);
+        }
+
+        PackageSpaces getPackageSpaces()
+        {
+            return m_packageSpaces;
+        }
+
+        void setPackageSpaces(PackageSpaces packageSpaces)
+        {
+            m_packageSpaces = packageSpaces;
+        }
+
         void clearPermutations() {
             m_usesPermutations.clear();
             m_importPermutations.clear();
@@ -233,6 +308,8 @@ public class ResolverImpl implements Resolver
             m_multipleCardCandidates = null;
             m_processedDeltas.clear();
             m_currentError = null;
+            m_packageSpaces = null;
+            m_conflicts.clear();
         }
 
         boolean checkMultiple(
@@ -359,13 +436,39 @@ public class ResolverImpl implements Resolver
         this.m_logger = logger;
         this.m_parallelism = parallelism;
         this.m_executor = null;
+        this.m_permutationLimit = 0;
+        this.m_conflictLimit = DEFAULT_CONFLICT_LIMIT;
     }
 
     public ResolverImpl(Logger logger, Executor executor)
+    {
+        this(logger, executor, 0);
+    }
+
+    /**
+     * Creates a resolver which gives up on a resolve operation once it has
+     * tried the given number of candidate permutations without finding a
+     * consistent one.
+     *
+     * @param permutationLimit the maximum number of candidate permutations
+     *        tried per resolve operation, or zero for no limit
+     */
+    public ResolverImpl(Logger logger, Executor executor, int permutationLimit)
+    {
+        this(logger, executor, permutationLimit, DEFAULT_CONFLICT_LIMIT);
+    }
+
+    /**
+     * @param conflictLimit the maximum number of known uses conflicts used to
+     *        skip permutations, or zero to check every permutation
+     */
+    ResolverImpl(Logger logger, Executor executor, int permutationLimit, int conflictLimit)
     {
         this.m_logger = logger;
         this.m_parallelism = -1;
         this.m_executor = executor;
+        this.m_permutationLimit = permutationLimit;
+        this.m_conflictLimit = conflictLimit;
     }
 
     public Map<Resource, List<Wire>> resolve(ResolveContext rc) throws ResolutionException
@@ -422,6 +525,17 @@ public class ResolverImpl implements Resolver
     }
 
     private Map<Resource, List<Wire>> doResolve(ResolveSession session) throws ResolutionException {
+        try
+        {
+            return doResolveSession(session);
+        }
+        finally
+        {
+            m_logger.logResolveStatistics(session.getResourceCount(), session.getCheckedPermutationCount());
+        }
+    }
+
+    private Map<Resource, List<Wire>> doResolveSession(ResolveSession session) throws ResolutionException {
         Map<Resource, List<Wire>> wireMap = new HashMap<Resource, List<Wire>>();
         boolean retry;
         do
@@ -444,6 +558,12 @@ public class ResolverImpl implements Resolver
                 // again; otherwise, m_currentError the resolve exception.
                 if (session.getCurrentError() != null)
                 {
+                    if (session.getCurrentError() instanceof PermutationLimitError)
+                    {
+                        // The limit applies to the whole resolve operation,
+                        // so do not retry without the faulty resources.
+                        throw session.getCurrentError().toException();
+                    }
                     Set<Resource> resourceKeys = faultyResources.keySet();
                     retry = (session.getOptionalResources().removeAll(resourceKeys));
                     for (Resource faultyResource : resourceKeys)
@@ -552,6 +672,7 @@ public class ResolverImpl implements Resolver
         else
         {
             // Record the initial candidate permutation.
+            session.setResourceCount(initialCandidates.getNbResources());
             session.addPermutation(PermutationType.USES, initialCandidates);
         }
     }
@@ -566,16 +687,34 @@ public class ResolverImpl implements Resolver
             {
                 break;
             }
+            if ((m_permutationLimit > 0)
+                && (session.getAttemptedPermutationCount() > m_permutationLimit))
+            {
+                // Give up with the error of the last checked permutation.
+                session.skipPermutation();
+                session.setCurrentError(
+                    new PermutationLimitError(m_permutationLimit, session.getCurrentError()));
+                break;
+            }
 
 //allCandidates.dump();
 
+            // Skip the consistency check of the hosts depending on a conflict
+            // found in a previous permutation if this permutation keeps all its
+            // candidate selections, it would fail the same way. Only add the
+            // permutations the check would have added to resolve the conflict.
+            Map<Resource, Requirement> dependencies = new HashMap<Resource, Requirement>();
+            UsesConflict conflict = findKnownConflict(session, allCandidates, dependencies);
+
             Map<Resource, ResolutionError> currentFaultyResources = new HashMap<Resource, ResolutionError>();
 
             session.setCurrentError(
                     checkConsistency(
                             session,
                             allCandidates,
-                            currentFaultyResources
+                            currentFaultyResources,
+                            conflict,
+                            (conflict != null) ? dependencies.get(conflict.m_resource) : null
                     )
             );
 
@@ -602,7 +741,9 @@ public class ResolverImpl implements Resolver
     private ResolutionError checkConsistency(
         ResolveSession session,
         Candidates allCandidates,
-        Map<Resource, ResolutionError> currentFaultyResources)
+        Map<Resource, ResolutionError> currentFaultyResources,
+        UsesConflict conflict,
+        Requirement conflictDependency)
     {
         ResolutionError rethrow = allCandidates.checkSubstitutes();
         if (rethrow != null)
@@ -610,18 +751,52 @@ public class ResolverImpl implements Resolver
             return rethrow;
         }
         Map<Resource, Resource> allhosts = allCandidates.getRootHosts();
+        // The hosts depending on the known conflict fail with it
+        ResolutionError conflictError = null;
+        Set<Resource> conflictHosts = Collections.emptySet();
+        List<Resource> hosts = new ArrayList<Resource>(allhosts.values());
+        if (conflict != null)
+        {
+            conflictError = permuteKnownConflict(session, allCandidates, conflict, conflictDependency);
+            conflictHosts = new HashSet<Resource>();
+            for (Resource host : allhosts.values())
+            {
+                if (dependsOn(allCandidates, host, conflict.m_resource))
+                {
+                    conflictHosts.add(host);
+                }
+            }
+            hosts.removeAll(conflictHosts);
+            if (hosts.isEmpty())
+            {
+                session.skipPermutation();
+            }
+        }
         // Calculate package spaces
-        Map<Resource, Packages> resourcePkgMap =
-            calculatePackageSpaces(session, allCandidates, allhosts.values());
+        Map<Resource, Packages> resourcePkgMap = Collections.emptyMap();
+        if (!hosts.isEmpty())
+        {
+            PackageSpaces packageSpaces =
+                calculatePackageSpaces(session, allCandidates, hosts);
+            resourcePkgMap = packageSpaces.m_packages;
+            m_logger.logPackageSpaces(resourcePkgMap.size(), packageSpaces.m_recomputed);
+        }
         ResolutionError error = null;
         // Check package consistency
         Map<Resource, Object> resultCache =
                 new OpenHashMap<Resource, Object>(resourcePkgMap.size());
         for (Entry<Resource, Resource> entry : allhosts.entrySet())
         {
-            rethrow = checkPackageSpaceConsistency(
-                    session, entry.getValue(),
-                    allCandidates, session.isDynamic(), resourcePkgMap, resultCache);
+            if (conflictHosts.contains(entry.getValue()))
+            {
+                rethrow = conflictError;
+            }
+            else
+            {
+                rethrow = checkPackageSpaceConsistency(
+                        session, entry.getValue(),
+                        allCandidates, session.isDynamic(), resourcePkgMap, resultCache);
+            }
             if (session.isCancelled()) {
                 return null;
             }
@@ -1119,7 +1294,7 @@ public class ResolverImpl implements Resolver
         }
     }
 
-    private static Map<Resource, Packages> calculatePackageSpaces(
+    private static PackageSpaces calculatePackageSpaces(
             final ResolveSession session,
             final Candidates allCandidates,
             Collection<Resource> hosts)
@@ -1162,10 +1337,20 @@ public class ResolverImpl implements Resolver
             executor.await();
         }
 
+        // Only recompute the package spaces affected by the changes since the
+        // previous permutation, the other ones are reused as they are
+        final PackageSpaces previous = session.getPackageSpaces();
+        final Set<Resource> recompute = getAffectedResources(allWireCandidates, previous);
+
         // Parallel get all exported packages
         final OpenHashMap<Resource, Packages> allPackages = new OpenHashMap<Resource, Packages>(allCandidates.getNbResources());
         for (final Resource resource : allWireCandidates.keySet())
         {
+            if (!recompute.contains(resource))
+            {
+                allPackages.put(resource, previous.m_packages.get(resource));
+                continue;
+            }
             final Packages packages = new Packages(resource);
             allPackages.put(resource, packages);
             executor.execute(new Runnable()
@@ -1180,7 +1365,7 @@ public class ResolverImpl implements Resolver
         executor.await();
 
         // Parallel compute package lists
-        for (final Resource resource : allWireCandidates.keySet())
+        for (final Resource resource : recompute)
         {
             executor.execute(new Runnable()
             {
@@ -1200,7 +1385,7 @@ public class ResolverImpl implements Resolver
         {
             final Resource resource = entry.getKey();
             final Packages packages = entry.getValue();
-            if (!packages.m_requiredPkgs.isEmpty())
+            if (recompute.contains(resource) && !packages.m_requiredPkgs.isEmpty())
             {
                 getPackageSourcesInternal(session, allPackages, resource, packages);
             }
@@ -1211,7 +1396,7 @@ public class ResolverImpl implements Resolver
         {
             final Resource resource = entry.getKey();
             final Packages packages = entry.getValue();
-            if (packages.m_sources.isEmpty())
+            if (recompute.contains(resource) && packages.m_sources.isEmpty())
             {
                 executor.execute(new Runnable()
                 {
@@ -1225,7 +1410,7 @@ public class ResolverImpl implements Resolver
         executor.await();
 
         // Parallel compute uses
-        for (final Resource resource : allWireCandidates.keySet())
+        for (final Resource resource : recompute)
         {
             executor.execute(new Runnable()
             {
@@ -1237,7 +1422,65 @@ public class ResolverImpl implements Resolver
         }
         executor.await();
 
-        return allPackages;
+        PackageSpaces packageSpaces = new PackageSpaces(allWireCandidates, allPackages, recompute.size());
+        session.setPackageSpaces(packageSpaces);
+        return packageSpaces;
+    }
+
+    /**
+     * Returns the resources whose package space must be computed: the ones
+     * whose wire candidates differ from the previous permutation and all the
+     * resources wired to them, directly or transitively, since their package
+     * spaces are built from the package spaces of their providers.
+     */
+    private static Set<Resource> getAffectedResources(
+            Map<Resource, List<WireCandidate>> allWireCandidates,
+            PackageSpaces previous)
+    {
+        if (previous == null)
+        {
+            return allWireCandidates.keySet();
+        }
+        Map<Resource, List<Resource>> dependents = new HashMap<Resource, List<Resource>>(allWireCandidates.size());
+        List<Resource> changed = new ArrayList<Resource>();
+        for (Entry<Resource, List<WireCandidate>> entry : allWireCandidates.entrySet())
+        {
+            Resource resource = entry.getKey();
+            if (!entry.getValue().equals(previous.m_wireCandidates.get(resource)))
+            {
+                changed.add(resource);
+            }
+            for (WireCandidate w : entry.getValue())
+            {
+                Resource provider = w.capability.getResource();
+                if (!provider.equals(resource))
+                {
+                    List<Resource> list = dependents.get(provider);
+                    if (list == null)
+                    {
+                        list = new ArrayList<Resource>();
+                        dependents.put(provider, list);
+                    }
+                    list.add(resource);
+                }
+            }
+        }
+        Set<Resource> affected = new HashSet<Resource>(changed);
+        while (!changed.isEmpty())
+        {
+            List<Resource> list = dependents.get(changed.remove(changed.size() - 1));
+            if (list != null)
+            {
+                for (Resource dependent : list)
+                {
+                    if (affected.add(dependent))
+                    {
+                        changed.add(dependent);
+                    }
+                }
+            }
+        }
+        return affected;
     }
 
     private static List<String> parseUses(String s) {
@@ -1448,26 +1691,19 @@ public class ResolverImpl implements Resolver
                 // for the conflicting uses constraint.
                 if (rethrow != null)
                 {
-                    // Add uses permutation if we m_mutated any candidates.
-                    if (!mutated.isEmpty())
-                    {
-                        session.addPermutation(PermutationType.USES, permRef1.get());
-                        session.addPermutation(PermutationType.USES, permRef2.get());
-                    }
+                    addImportConflictPermutations(session, allCandidates,
+                            requirementBlames, permRef1, permRef2, mutated);
 
-                    // Try to permutate the candidate for the original
-                    // import requirement; only permutate it if we haven't
-                    // done so already.
-                    for (Blame requirementBlame : requirementBlames)
+                    // Remember the conflict if it only depends on the candidate
+                    // selections, so that later permutations keeping them can be skipped.
+                    if (!session.isDynamic() && (requirementBlames.size() == 1)
+                        && (rethrow instanceof UseConstraintError))
                     {
-                        Requirement req = requirementBlame.m_reqs.get(0);
-                        if (!mutated.contains(req))
+                        UsesConflict conflict = UsesConflict.create(
+                                allCandidates, resource, pkgName, (UseConstraintError) rethrow);
+                        if (conflict != null)
                         {
-                            // Since there may be lots of uses constraint violations
-                            // with existing import decisions, we may end up trying
-                            // to permutate the same import a lot of times, so we should
-                            // try to check if that the case and only permutate it once.
-                            session.permutateIfNeeded(PermutationType.IMPORT, req, allCandidates);
+                            session.addConflict(conflict, m_conflictLimit);
                         }
                     }
 
@@ -1550,40 +1786,186 @@ public class ResolverImpl implements Resolver
                 }
             }
 
-            // Create a candidate permutation that eliminates all candidates
-            // that conflict with existing selected candidates going from direct requirement -> root
-            Candidates perm1 = permRef1.get();
-            if (perm1 == null)
+            permuteUsedBlame(allCandidates, usedBlame, permRef1, permRef2, mutated);
+        }
+        return rethrow;
+    }
+
+    private void permuteUsedBlame(Candidates allCandidates, Blame usedBlame,
+          AtomicReference<Candidates> permRef1, AtomicReference<Candidates> permRef2,
+          Set<Requirement> mutated)
+    {
+        // Create a candidate permutation that eliminates all candidates
+        // that conflict with existing selected candidates going from direct requirement -> root
+        Candidates perm1 = permRef1.get();
+        if (perm1 == null)
+        {
+            perm1 = allCandidates.copy();
+            permRef1.set(perm1);
+        }
+        for (int reqIdx = usedBlame.m_reqs.size() - 1; reqIdx >= 0; reqIdx--)
+        {
+            Requirement req = usedBlame.m_reqs.get(reqIdx);
+            if (permuteUsedBlameRequirement(req, mutated, perm1))
             {
-                perm1 = allCandidates.copy();
-                permRef1.set(perm1);
+                break;
             }
-            for (int reqIdx = usedBlame.m_reqs.size() - 1; reqIdx >= 0; reqIdx--)
+        }
+        // Create a candidate permutation that eliminates all candidates
+        // that conflict with existing selected candidates going from root -> direct requirement
+        Candidates perm2 = permRef2.get();
+        if (perm2 == null)
+        {
+            perm2 = allCandidates.copy();
+            permRef2.set(perm2);
+        }
+        for (int reqIdx = 0; reqIdx < usedBlame.m_reqs.size(); reqIdx++)
+        {
+            Requirement req = usedBlame.m_reqs.get(reqIdx);
+            if (permuteUsedBlameRequirement(req, mutated, perm2))
             {
-                Requirement req = usedBlame.m_reqs.get(reqIdx);
-                if (permuteUsedBlameRequirement(req, mutated, perm1))
+                break;
+            }
+        }
+    }
+
+    private void addImportConflictPermutations(ResolveSession session, Candidates allCandidates,
+          List<Blame> requirementBlames, AtomicReference<Candidates> permRef1,
+          AtomicReference<Candidates> permRef2, Set<Requirement> mutated)
+    {
+        // Add uses permutation if we m_mutated any candidates.
+        if (!mutated.isEmpty())
+        {
+            session.addPermutation(PermutationType.USES, permRef1.get());
+            session.addPermutation(PermutationType.USES, permRef2.get());
+        }
+
+        // Try to permutate the candidate for the original
+        // import requirement; only permutate it if we haven't
+        // done so already.
+        for (Blame requirementBlame : requirementBlames)
+        {
+            Requirement req = requirementBlame.m_reqs.get(0);
+            if (!mutated.contains(req))
+            {
+                // Since there may be lots of uses constraint violations
+                // with existing import decisions, we may end up trying
+                // to permutate the same import a lot of times, so we should
+                // try to check if that the case and only permutate it once.
+                session.permutateIfNeeded(PermutationType.IMPORT, req, allCandidates);
+            }
+        }
+    }
+
+    /**
+     * Returns a conflict found in a previous permutation whose candidate
+     * selections are all kept by the given permutation and whose resource
+     * is still part of the resolution, or null. The resources depended on
+     * are collected with the requirement they are reached through, which is
+     * null for the root hosts.
+     */
+    private static UsesConflict findKnownConflict(ResolveSession session,
+          Candidates allCandidates, Map<Resource, Requirement> dependencies)
+    {
+        for (UsesConflict conflict : session.getConflicts())
+        {
+            if (!conflict.isSelected(allCandidates))
+            {
+                continue;
+            }
+            if (dependencies.isEmpty())
+            {
+                LinkedList<Resource> queue = new LinkedList<Resource>();
+                for (Resource host : allCandidates.getRootHosts().values())
                 {
-                    break;
+                    if (!dependencies.containsKey(host))
+                    {
+                        dependencies.put(host, null);
+                        queue.add(host);
+                    }
+                }
+                while (!queue.isEmpty())
+                {
+                    Resource resource = queue.removeFirst();
+                    for (Requirement req : resource.getRequirements(null))
+                    {
+                        Capability cap = allCandidates.getFirstCandidate(req);
+                        if ((cap != null) && !dependencies.containsKey(cap.getResource()))
+                        {
+                            dependencies.put(cap.getResource(), req);
+                            queue.add(cap.getResource());
+                        }
+                    }
                 }
             }
-            // Create a candidate permutation that eliminates all candidates
-            // that conflict with existing selected candidates going from root -> direct requirement
-            Candidates perm2 = permRef2.get();
-            if (perm2 == null)
+            if (dependencies.containsKey(conflict.m_resource))
             {
-                perm2 = allCandidates.copy();
-                permRef2.set(perm2);
+                return conflict;
             }
-            for (int reqIdx = 0; reqIdx < usedBlame.m_reqs.size(); reqIdx++)
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the given resource is reached from the host through
+     * the selected candidates.
+     */
+    private static boolean dependsOn(Candidates allCandidates, Resource host, Resource resource)
+    {
+        Set<Resource> visited = new HashSet<Resource>();
+        LinkedList<Resource> queue = new LinkedList<Resource>();
+        visited.add(host);
+        queue.add(host);
+        while (!queue.isEmpty())
+        {
+            Resource current = queue.removeFirst();
+            if (current.equals(resource))
             {
-                Requirement req = usedBlame.m_reqs.get(reqIdx);
-                if (permuteUsedBlameRequirement(req, mutated, perm2))
+                return true;
+            }
+            for (Requirement req : current.getRequirements(null))
+            {
+                Capability cap = allCandidates.getFirstCandidate(req);
+                if ((cap != null) && visited.add(cap.getResource()))
                 {
-                    break;
+                    queue.add(cap.getResource());
                 }
             }
         }
-        return rethrow;
+        return false;
+    }
+
+    /**
+     * Adds the permutations the consistency check of the given permutation
+     * would add for the known conflict, and returns the conflict error.
+     */
+    private ResolutionError permuteKnownConflict(ResolveSession session,
+          Candidates allCandidates, UsesConflict conflict, Requirement dependency)
+    {
+        UseConstraintError error = new UseConstraintError(
+                session.getContext(), allCandidates, conflict.m_resource,
+                conflict.m_pkgName, conflict.m_requirementBlame, conflict.m_usedBlame);
+        long permCount = session.getPermutationCount();
+        AtomicReference<Candidates> permRef1 = new AtomicReference<Candidates>();
+        AtomicReference<Candidates> permRef2 = new AtomicReference<Candidates>();
+        Set<Requirement> mutated = new HashSet<Requirement>();
+        permuteUsedBlame(allCandidates, conflict.m_usedBlame, permRef1, permRef2, mutated);
+        addImportConflictPermutations(session, allCandidates,
+                Collections.singletonList(conflict.m_requirementBlame), permRef1, permRef2, mutated);
+        // Backtrack on the candidate selection of the dependent resource,
+        // as the check of that resource would.
+        if ((permCount == session.getPermutationCount()) && (dependency != null))
+        {
+            session.addPermutation(PermutationType.IMPORT, allCandidates.permutate(dependency));
+        }
+        if (m_logger.isDebugEnabled())
+        {
+            m_logger.debug("Candidate permutation skipped due to a known conflict "
+                            + "between imports; will try another if possible."
+                            + " (" + error.getMessage() + ")"
+            );
+        }
+        return error;
     }
 
     private boolean permuteUsedBlameRequirement(Requirement req, Set<Requirement> mutated, Candidates permutation)
@@ -2089,6 +2471,47 @@ public class ResolverImpl implements Resolver
             this.requirement = requirement;
             this.capability = capability;
         }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof WireCandidate))
+            {
+                return false;
+            }
+            WireCandidate other = (WireCandidate) obj;
+            return requirement.equals(other.requirement)
+                && (capability == null ? other.capability == null : capability.equals(other.capability));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * requirement.hashCode() + (capability == null ? 0 : capability.hashCode());
+        }
+    }
+
+    /**
+     * The package spaces of a permutation, along with the wire candidates
+     * they were calculated from.
+     */
+    private static final class PackageSpaces
+    {
+        public final Map<Resource, List<WireCandidate>> m_wireCandidates;
+        public final Map<Resource, Packages> m_packages;
+        // The number of package spaces that were not reused from the previous permutation
+        public final int m_recomputed;
+
+        public PackageSpaces(Map<Resource, List<WireCandidate>> wireCandidates, Map<Resource, Packages> packages, int recomputed)
+        {
+            m_wireCandidates = wireCandidates;
+            m_packages = packages;
+            m_recomputed = recomputed;
+        }
     }
 
     public static class Packages
@@ -2445,6 +2868,118 @@ public class ResolverImpl implements Resolver
         }
     }
 
+    /**
+     * A uses constraint violation between an import and a used package
+     * together with the candidate selections it depends on, which are the
+     * selections of all the resources along both dependency chains. A later
+     * permutation keeping these selections fails with the same violation
+     * as long as it still depends on the resource.
+     */
+    private static final class UsesConflict
+    {
+        private final Resource m_resource;
+        private final String m_pkgName;
+        private final Blame m_requirementBlame;
+        private final Blame m_usedBlame;
+        private final Map<Requirement, Capability> m_selections;
+
+        private UsesConflict(Resource resource, String pkgName, Blame requirementBlame,
+            Blame usedBlame, Map<Requirement, Capability> selections)
+        {
+            m_resource = resource;
+            m_pkgName = pkgName;
+            m_requirementBlame = requirementBlame;
+            m_usedBlame = usedBlame;
+            m_selections = selections;
+        }
+
+        /**
+         * Returns the conflict of the given error, or null if the violation
+         * may depend on more than the candidate selections of the resources
+         * along the chains: fragments, required bundles and multiple
+         * cardinality requirements are not tracked.
+         */
+        static UsesConflict create(Candidates allCandidates, Resource resource,
+            String pkgName, UseConstraintError error)
+        {
+            if (error.m_blame2 == null)
+            {
+                return null;
+            }
+            Set<Resource> resources = new LinkedHashSet<Resource>();
+            resources.add(resource);
+            for (Blame blame : Arrays.asList(error.m_blame1, error.m_blame2))
+            {
+                for (Requirement req : blame.m_reqs)
+                {
+                    resources.add(req.getResource());
+                }
+                resources.add(blame.m_cap.getResource());
+            }
+            Map<Requirement, Capability> selections = new HashMap<Requirement, Capability>();
+            for (Resource res : resources)
+            {
+                if (res instanceof WrappedResource)
+                {
+                    return null;
+                }
+                for (Requirement req : res.getRequirements(null))
+                {
+                    if (Util.isMultiple(req)
+                        || BundleNamespace.BUNDLE_NAMESPACE.equals(req.getNamespace()))
+                    {
+                        return null;
+                    }
+                    Capability cap = allCandidates.getFirstCandidate(req);
+                    if (cap != null)
+                    {
+                        selections.put(req, cap);
+                    }
+                }
+            }
+            return new UsesConflict(resource, pkgName, error.m_blame1, error.m_blame2, selections);
+        }
+
+        boolean isSelected(Candidates allCandidates)
+        {
+            for (Entry<Requirement, Capability> entry : m_selections.entrySet())
+            {
+                if (!entry.getValue().equals(allCandidates.getFirstCandidate(entry.getKey())))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class PermutationLimitError extends ResolutionError {
+
+        private final int m_limit;
+        private final ResolutionError m_lastError;
+
+        public PermutationLimitError(int limit, ResolutionError lastError) {
+            this.m_limit = limit;
+            this.m_lastError = lastError;
+        }
+
+        public String getMessage() {
+            return "Unable to find a consistent class space after trying "
+                    + m_limit + " candidate permutations. The last permutation failed with:\n\n"
+                    + m_lastError.getMessage();
+        }
+
+        public Collection<Requirement> getUnresolvedRequirements() {
+            return m_lastError.getUnresolvedRequirements();
+        }
+
+        @Override
+        public ResolutionException toException() {
+            return new ReasonException(ReasonException.Reason.UseConstraint, getMessage(),
+                    m_lastError.toException(), getUnresolvedRequirements());
+        }
+    }
+
     private static class EnhancedExecutor
     {
         private final Executor executor;
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size array of ints, initially all zero, split in pages which are
+ * shared with its copies until written. Copying the array only copies the
+ * page table, so the memory used by the copies scales with the number of
+ * pages they modify rather than with the size of the array.
+ * <p>
+ * An array may be copied by several threads at the same time, but it must
+ * not be written while it is read or copied.
+ */
+public class CopyOnWriteIntArray {
+
+    private static final int SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << SHIFT;
+    private static final int MASK = PAGE_SIZE - 1;
+
+    // Page of all the entries which have never been written, never modified.
+    private static final int[] ZERO_PAGE = new int[PAGE_SIZE];
+
+    private final int size;
+    private final int[][] pages;
+    // Pages which are not shared with another array and can be written in place.
+    private final boolean[] owned;
+    // Set once the pages have been shared with a copy: the owned flags are
+    // then stale and all pages are copied before they are written.
+    private volatile boolean shared;
+
+    public CopyOnWriteIntArray(int size) {
+        this.size = size;
+        this.pages = new int[(size + MASK) >>> SHIFT][];
+        this.owned = new boolean[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = ZERO_PAGE;
+        }
+    }
+
+    private CopyOnWriteIntArray(CopyOnWriteIntArray array) {
+        this.size = array.size;
+        this.pages = array.pages.clone();
+        this.owned = new boolean[pages.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return pages[index >>> SHIFT][index & MASK];
+    }
+
+    public void set(int index, int value) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        if (shared) {
+            Arrays.fill(owned, false);
+            shared = false;
+        }
+        int page = index >>> SHIFT;
+        if (!owned[page]) {
+            pages[page] = pages[page].clone();
+            owned[page] = true;
+        }
+        pages[page][index & MASK] = value;
+    }
+
+    /**
+     * Returns a copy of this array. The pages are shared by both arrays
+     * from now on, so they are copied before either array writes them.
+     */
+    public CopyOnWriteIntArray copy() {
+        shared = true;
+        return new CopyOnWriteIntArray(this);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.resolver.ResolverImpl.ResolveSession;
+import org.apache.felix.resolver.test.util.PackageCapability;
+import org.apache.felix.resolver.test.util.PackageRequirement;
+import org.apache.felix.resolver.test.util.ResolveContextImpl;
+import org.apache.felix.resolver.test.util.ResourceImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wiring;
+
+public class CandidatesTest
+{
+    private List<Capability> exports;
+    private Requirement importFoo;
+    private Candidates candidates;
+
+    @Before
+    public void setUp()
+    {
+        exports = new ArrayList<Capability>();
+        for (String name : new String[] { "A", "B", "C" })
+        {
+            ResourceImpl exporter = new ResourceImpl(name);
+            exporter.addCapability(new PackageCapability(exporter, "foo"));
+            exports.add(exporter.getCapabilities(null).get(0));
+        }
+        ResourceImpl importer = new ResourceImpl("D");
+        importFoo = new PackageRequirement(importer, "foo");
+        importer.addRequirement(importFoo);
+
+        Map<Requirement, List<Capability>> candMap = new HashMap<Requirement, List<Capability>>();
+        candMap.put(importFoo, exports);
+        List<Resource> mandatory = Collections.<Resource> singletonList(importer);
+        ResolveContextImpl rci = new ResolveContextImpl(
+            new HashMap<Resource, Wiring>(), candMap, mandatory, Collections.<Resource> emptyList());
+
+        ResolveSession session = ResolveSession.createSession(rci, new ResolverImpl.DumbExecutor(), null, null, null);
+        candidates = new Candidates(session);
+        candidates.populate(mandatory);
+    }
+
+    @Test
+    public void testNotPrepared()
+    {
+        try
+        {
+            candidates.getCandidates(importFoo);
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCopyAndRemove()
+    {
+        assertNull(candidates.prepare());
+        assertEquals(exports, candidates.getCandidates(importFoo));
+
+        Candidates copy1 = candidates.copy();
+        Candidates copy2 = candidates.copy();
+        copy1.removeFirstCandidate(importFoo);
+        assertEquals(exports.subList(1, 3), copy1.getCandidates(importFoo));
+        assertEquals(exports.get(1), copy1.getFirstCandidate(importFoo));
+        assertEquals(exports, copy2.getCandidates(importFoo));
+        assertEquals(exports, candidates.getCandidates(importFoo));
+
+        // the source can still be changed without affecting its copies
+        candidates.removeFirstCandidate(importFoo);
+        candidates.removeFirstCandidate(importFoo);
+        assertEquals(exports.subList(2, 3), candidates.getCandidates(importFoo));
+        assertEquals(exports.subList(1, 3), copy1.getCandidates(importFoo));
+        assertEquals(exports, copy2.getCandidates(importFoo));
+
+        // removing the last candidate removes the requirement
+        candidates.removeFirstCandidate(importFoo);
+        assertNull(candidates.getCandidates(importFoo));
+        assertNull(candidates.getFirstCandidate(importFoo));
+        candidates.removeFirstCandidate(importFoo);
+        assertNull(candidates.getCandidates(importFoo));
+
+        Candidates perm = copy1.permutate(importFoo);
+        assertEquals(exports.subList(2, 3), perm.getCandidates(importFoo));
+        assertEquals(exports.subList(1, 3), copy1.getCandidates(importFoo));
+    }
+
+    @Test
+    public void testUnknownRequirement()
+    {
+        assertNull(candidates.prepare());
+        Requirement unknown = new PackageRequirement(new ResourceImpl("E"), "bar");
+        assertNull(candidates.getCandidates(unknown));
+        assertNull(candidates.getFirstCandidate(unknown));
+        candidates.removeFirstCandidate(unknown);
+        assertNull(candidates.getCandidates(unknown));
+        assertNull(candidates.clearMultipleCardinalityCandidates(unknown, Collections.<Capability> emptyList()));
+        assertEquals(exports, candidates.getCandidates(importFoo));
+    }
+}
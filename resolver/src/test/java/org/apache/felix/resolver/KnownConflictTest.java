@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.felix.resolver.test.util.PackageCapability;
+import org.apache.felix.resolver.test.util.PackageRequirement;
+import org.apache.felix.resolver.test.util.ResolveContextImpl;
+import org.apache.felix.resolver.test.util.ResourceImpl;
+import org.junit.Test;
+import org.osgi.framework.Version;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+import org.osgi.resource.Wiring;
+import org.osgi.service.resolver.ResolutionException;
+
+/**
+ * Checks that skipping the permutations keeping a known uses conflict does
+ * not change the outcome of a resolve operation.
+ */
+public class KnownConflictTest
+{
+    private static final Executor EXECUTOR = new Executor()
+    {
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testResolvable() throws Exception
+    {
+        ResolveContextImpl rci = createContext(true);
+
+        CountingLogger pruned = new CountingLogger();
+        Map<Resource, List<Wire>> wires = new ResolverImpl(pruned, EXECUTOR, 0).resolve(rci);
+        CountingLogger unpruned = new CountingLogger();
+        Map<Resource, List<Wire>> expected = new ResolverImpl(unpruned, EXECUTOR, 0, 0).resolve(rci);
+
+        assertTrue(pruned.skipped > 0);
+        assertEquals(0, unpruned.skipped);
+        assertTrue(pruned.checked < unpruned.checked);
+        assertEquals(toString(expected), toString(wires));
+    }
+
+    @Test
+    public void testUnresolvable() throws Exception
+    {
+        ResolveContextImpl rci = createContext(false);
+
+        CountingLogger pruned = new CountingLogger();
+        String message = resolveFailure(new ResolverImpl(pruned, EXECUTOR, 0), rci);
+        CountingLogger unpruned = new CountingLogger();
+        String expected = resolveFailure(new ResolverImpl(unpruned, EXECUTOR, 0, 0), rci);
+
+        assertTrue(pruned.skipped > 0);
+        assertEquals(0, unpruned.skipped);
+        assertEquals(expected, message);
+        assertEquals(unpruned.violations, pruned.violations);
+    }
+
+    private static String resolveFailure(ResolverImpl resolver, ResolveContextImpl rci)
+    {
+        try
+        {
+            resolver.resolve(rci);
+            fail("Should have thrown a resolution exception");
+            return null;
+        }
+        catch (ResolutionException re)
+        {
+            return re.getMessage();
+        }
+    }
+
+    /**
+     * Creates a host importing api, x and m. The first candidates of x and
+     * api conflict, and the first candidate of m can never resolve, so both
+     * permutations of the host conflict keep the conflict of m. If allowed,
+     * the host falls back to the second candidate of m, which uses the oldest
+     * api, so only the permutation skipped in the pruned run can resolve.
+     */
+    private static ResolveContextImpl createContext(boolean fallback)
+    {
+        Map<Requirement, List<Capability>> candMap = new HashMap<Requirement, List<Capability>>();
+
+        List<Capability> apiCands = new ArrayList<Capability>();
+        for (String version : new String[] { "2", "1" })
+        {
+            ResourceImpl api = new ResourceImpl("api", "osgi.bundle", new Version(version));
+            apiCands.add(addExport(api, "api", null));
+        }
+
+        List<Capability> xCands = new ArrayList<Capability>();
+        for (String version : new String[] { "1", "2" })
+        {
+            ResourceImpl x = new ResourceImpl("x", "osgi.bundle", new Version(version));
+            addImport(x, "api", candMap, apiCands.get(2 - Integer.parseInt(version)));
+            xCands.add(addExport(x, "x", "api"));
+        }
+
+        ResourceImpl n = new ResourceImpl("n");
+        addImport(n, "api", candMap, apiCands.get(1));
+        Capability nCap = addExport(n, "n", "api");
+
+        List<Capability> mCands = new ArrayList<Capability>();
+        ResourceImpl m1 = new ResourceImpl("m", "osgi.bundle", new Version("1"));
+        addImport(m1, "api", candMap, apiCands.get(0));
+        addImport(m1, "n", candMap, nCap);
+        mCands.add(addExport(m1, "m", null));
+        if (fallback)
+        {
+            ResourceImpl m2 = new ResourceImpl("m", "osgi.bundle", new Version("2"));
+            addImport(m2, "api", candMap, apiCands.get(1));
+            mCands.add(addExport(m2, "m", "api"));
+        }
+
+        ResourceImpl host = new ResourceImpl("host");
+        addImport(host, "api", candMap, apiCands.toArray(new Capability[0]));
+        addImport(host, "x", candMap, xCands.toArray(new Capability[0]));
+        addImport(host, "m", candMap, mCands.toArray(new Capability[0]));
+
+        return new ResolveContextImpl(new HashMap<Resource, Wiring>(), candMap,
+            Collections.<Resource> singletonList(host), Collections.<Resource> emptyList());
+    }
+
+    private static Capability addExport(ResourceImpl resource, String pkgName, String uses)
+    {
+        PackageCapability cap = new PackageCapability(resource, pkgName);
+        if (uses != null)
+        {
+            cap.addDirective(PackageNamespace.CAPABILITY_USES_DIRECTIVE, uses);
+        }
+        resource.addCapability(cap);
+        return cap;
+    }
+
+    private static void addImport(ResourceImpl resource, String pkgName,
+        Map<Requirement, List<Capability>> candMap, Capability... candidates)
+    {
+        Requirement req = new PackageRequirement(resource, pkgName);
+        resource.addRequirement(req);
+        candMap.put(req, new ArrayList<Capability>(Arrays.asList(candidates)));
+    }
+
+    private static List<String> toString(Map<Resource, List<Wire>> wireMap)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<Resource, List<Wire>> entry : wireMap.entrySet())
+        {
+            for (Wire wire : entry.getValue())
+            {
+                result.add(entry.getKey() + ": " + wire.getRequirement() + " -> " + wire.getCapability().getResource());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static class CountingLogger extends Logger
+    {
+        int skipped;
+        int checked;
+        final List<String> violations = new ArrayList<String>();
+
+        CountingLogger()
+        {
+            super(Logger.LOG_DEBUG);
+        }
+
+        @Override
+        protected void doLog(int level, String msg, Throwable throwable)
+        {
+            if (msg.startsWith("Candidate permutation skipped due to a known conflict"))
+            {
+                skipped++;
+            }
+            else if (msg.startsWith("Candidate permutation failed due to a conflict"))
+            {
+                checked++;
+            }
+        }
+
+        @Override
+        public void logUsesConstraintViolation(Resource resource, ResolutionError error)
+        {
+            violations.add(resource + ": " + error.getMessage());
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.felix.resolver.Logger;
 import org.apache.felix.resolver.ResolverImpl;
@@ -226,6 +227,71 @@ public class ResolverTest
         assertTrue(foundD);
     }
 
+    @Test
+    public void testScenario3PackageSpacesReused() throws Exception
+    {
+        final List<int[]> packageSpaces = new ArrayList<int[]>();
+        Resolver resolver = new ResolverImpl(new Logger(Logger.LOG_DEBUG)
+        {
+            @Override
+            public void logPackageSpaces(int resources, int recomputed)
+            {
+                packageSpaces.add(new int[] { resources, recomputed });
+            }
+        });
+
+        Map<Resource, Wiring> wirings = new HashMap<Resource, Wiring>();
+        Map<Requirement, List<Capability>> candMap = new HashMap<Requirement, List<Capability>>();
+        List<Resource> mandatory = populateScenario3(wirings, candMap);
+        ResolveContextImpl rci = new ResolveContextImpl(wirings, candMap, mandatory, Collections.<Resource> emptyList());
+
+        Map<Resource, List<Wire>> wireMap = resolver.resolve(rci);
+        assertEquals(3, wireMap.size());
+
+        // The first permutation wires E to B, which conflicts with the uses
+        // constraint of D; the second one only changes the wires of E, so the
+        // package spaces of C and D are reused.
+        assertEquals(2, packageSpaces.size());
+        assertEquals(4, packageSpaces.get(0)[0]);
+        assertEquals(4, packageSpaces.get(0)[1]);
+        assertEquals(3, packageSpaces.get(1)[0]);
+        assertEquals(1, packageSpaces.get(1)[1]);
+    }
+
+    @Test
+    public void testScenario3PermutationLimit() throws Exception
+    {
+        Executor executor = new Executor()
+        {
+            public void execute(Runnable command)
+            {
+                command.run();
+            }
+        };
+
+        Map<Resource, Wiring> wirings = new HashMap<Resource, Wiring>();
+        Map<Requirement, List<Capability>> candMap = new HashMap<Requirement, List<Capability>>();
+        List<Resource> mandatory = populateScenario3(wirings, candMap);
+        ResolveContextImpl rci = new ResolveContextImpl(wirings, candMap, mandatory, Collections.<Resource> emptyList());
+
+        // The second permutation resolves, see testScenario3PackageSpacesReused
+        Resolver resolver = new ResolverImpl(new Logger(Logger.LOG_DEBUG), executor, 1);
+        try
+        {
+            resolver.resolve(rci);
+            fail("Should have thrown a resolution exception as only one permutation may be tried.");
+        }
+        catch (ResolutionException re)
+        {
+            assertTrue(re.getMessage().contains("after trying 1 candidate permutations"));
+            assertTrue(re.getCause() instanceof ResolutionException);
+            assertTrue(re.getCause().getMessage().startsWith("Uses constraint violation."));
+        }
+
+        resolver = new ResolverImpl(new Logger(Logger.LOG_DEBUG), executor, 2);
+        assertEquals(3, resolver.resolve(rci).size());
+    }
+
     @Test
     public void testScenario4() throws Exception
     {
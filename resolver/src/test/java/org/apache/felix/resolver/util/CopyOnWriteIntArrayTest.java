@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.resolver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class CopyOnWriteIntArrayTest
+{
+    @Test
+    public void testGetSet()
+    {
+        CopyOnWriteIntArray array = new CopyOnWriteIntArray(200);
+        assertEquals(200, array.size());
+        for (int i = 0; i < array.size(); i++)
+        {
+            assertEquals(0, array.get(i));
+        }
+        array.set(0, 1);
+        array.set(64, 2);
+        array.set(199, 3);
+        assertEquals(1, array.get(0));
+        assertEquals(2, array.get(64));
+        assertEquals(3, array.get(199));
+        assertEquals(0, array.get(1));
+        assertEquals(0, array.get(63));
+    }
+
+    @Test
+    public void testOutOfBounds()
+    {
+        CopyOnWriteIntArray array = new CopyOnWriteIntArray(10);
+        try
+        {
+            array.get(10);
+            fail("Expected ArrayIndexOutOfBoundsException");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            // expected
+        }
+        try
+        {
+            array.set(-1, 0);
+            fail("Expected ArrayIndexOutOfBoundsException");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCopiesAreIndependent()
+    {
+        CopyOnWriteIntArray source = new CopyOnWriteIntArray(100);
+        source.set(1, 1);
+        source.set(70, 70);
+
+        CopyOnWriteIntArray copy1 = source.copy();
+        CopyOnWriteIntArray copy2 = source.copy();
+        copy1.set(1, 10);
+        copy2.set(1, 20);
+        copy2.set(70, 700);
+
+        assertEquals(1, source.get(1));
+        assertEquals(70, source.get(70));
+        assertEquals(10, copy1.get(1));
+        assertEquals(70, copy1.get(70));
+        assertEquals(20, copy2.get(1));
+        assertEquals(700, copy2.get(70));
+
+        // writing the source after sharing its pages does not change the copies
+        source.set(1, 2);
+        source.set(70, 71);
+        assertEquals(2, source.get(1));
+        assertEquals(71, source.get(70));
+        assertEquals(10, copy1.get(1));
+        assertEquals(70, copy1.get(70));
+        assertEquals(700, copy2.get(70));
+
+        // a copy of a copy
+        CopyOnWriteIntArray copy3 = copy1.copy();
+        copy1.set(1, 11);
+        assertEquals(10, copy3.get(1));
+        assertEquals(11, copy1.get(1));
+    }
+
+    @Test
+    public void testConcurrentCopies() throws Exception
+    {
+        final CopyOnWriteIntArray source = new CopyOnWriteIntArray(1000);
+        for (int i = 0; i < source.size(); i++)
+        {
+            source.set(i, i);
+        }
+        final CopyOnWriteIntArray[] copies = new CopyOnWriteIntArray[8];
+        Thread[] threads = new Thread[copies.length];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int index = t;
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    CopyOnWriteIntArray copy = source.copy();
+                    for (int i = 0; i < copy.size(); i++)
+                    {
+                        copy.set(i, copy.get(i) + index);
+                    }
+                    copies[index] = copy;
+                }
+            };
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        for (int i = 0; i < source.size(); i++)
+        {
+            assertEquals(i, source.get(i));
+            for (int t = 0; t < copies.length; t++)
+            {
+                assertEquals(i + t, copies[t].get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.systemready.impl;
+
+import java.util.Objects;
+
+import org.apache.felix.systemready.CheckStatus;
+
+/**
+ * A check status together with the state of the system it has been computed for.
+ * SCR implementations supporting the service.changecount property update it
+ * whenever the component DTOs change, so a status computed from the DTOs stays
+ * valid as long as the change count (and the other inputs) are unchanged.
+ */
+class CachedStatus {
+
+    /** Service property of the ServiceComponentRuntime which is updated on DTO changes */
+    static final String SERVICE_CHANGECOUNT = "service.changecount";
+
+    private final Object key;
+
+    final CheckStatus status;
+
+    CachedStatus(Object key, CheckStatus status) {
+        this.key = key;
+        this.status = status;
+    }
+
+    /**
+     * @param key the current state, {@code null} if unknown
+     * @return true if the status has been computed for the given state
+     */
+    boolean isValid(Object key) {
+        return key != null && Objects.equals(this.key, key);
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.felix.systemready.rootcause.DSComp;
 import org.apache.felix.systemready.rootcause.DSRootCause;
 import org.apache.felix.systemready.rootcause.RootCausePrinter;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
@@ -71,6 +72,11 @@ public class ComponentsCheck implements SystemReadyCheck {
     @Reference
     ServiceComponentRuntime scr;
 
+    @Reference(name = "scrReference", service = ServiceComponentRuntime.class)
+    ServiceReference<ServiceComponentRuntime> scrReference;
+
+    /** The last status and the change count of the SCR it has been computed for */
+    private volatile CachedStatus cached;
 
     @Activate
     public void activate(final BundleContext ctx, final Config config) throws InterruptedException {
@@ -86,6 +92,18 @@ public class ComponentsCheck implements SystemReadyCheck {
 
     @Override
     public CheckStatus getStatus() {
+        // the component DTOs only change if the change count of the SCR changes
+        final Object changeCount = scrReference.getProperty(CachedStatus.SERVICE_CHANGECOUNT);
+        final CachedStatus current = this.cached;
+        if (current != null && current.isValid(changeCount)) {
+            return current.status;
+        }
+        final CheckStatus status = computeStatus();
+        this.cached = new CachedStatus(changeCount, status);
+        return status;
+    }
+
+    private CheckStatus computeStatus() {
         StringBuilder details = new StringBuilder();
         List<DSComp> watchedComps = scr.getComponentDescriptionDTOs().stream()
             .filter(desc -> componentsList.contains(desc.name))
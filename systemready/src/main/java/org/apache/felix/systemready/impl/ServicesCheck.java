@@ -22,6 +22,7 @@ import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,7 @@ import org.apache.felix.systemready.rootcause.DSComp;
 import org.apache.felix.systemready.rootcause.DSRootCause;
 import org.apache.felix.systemready.rootcause.RootCausePrinter;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
@@ -78,6 +80,11 @@ public class ServicesCheck implements SystemReadyCheck {
     @Reference
     private ServiceComponentRuntime scr;
 
+    @Reference(name = "scrReference", service = ServiceComponentRuntime.class)
+    private ServiceReference<ServiceComponentRuntime> scrReference;
+
+    /** The last status and the tracking counts (and SCR change count) it has been computed for */
+    private volatile CachedStatus cached;
 
     @Activate
     public void activate(final BundleContext ctx, final Config config) throws InterruptedException {
@@ -102,6 +109,39 @@ public class ServicesCheck implements SystemReadyCheck {
 
     @Override
     public CheckStatus getStatus() {
+        final Object key = getCacheKey();
+        final CachedStatus current = this.cached;
+        if (current != null && current.isValid(key)) {
+            return current.status;
+        }
+        final CheckStatus status = computeStatus();
+        this.cached = new CachedStatus(key, status);
+        return status;
+    }
+
+    /**
+     * The status changes with the tracked services and - for the root cause
+     * of missing services - with the DS components.
+     * @return the key or {@code null} if the status can't be cached
+     */
+    private Object getCacheKey() {
+        final List<Object> key = new ArrayList<>();
+        boolean allPresent = true;
+        for (Tracker tracker : trackers.values()) {
+            key.add(tracker.getTrackingCount());
+            allPresent &= tracker.present();
+        }
+        if (!allPresent) {
+            final Object changeCount = scrReference.getProperty(CachedStatus.SERVICE_CHANGECOUNT);
+            if (changeCount == null) {
+                return null;
+            }
+            key.add(changeCount);
+        }
+        return key;
+    }
+
+    private CheckStatus computeStatus() {
         boolean allPresent = trackers.values().stream().allMatch(Tracker::present);
         // TODO: RED on timeouts
         final CheckStatus.State state = State.fromBoolean(allPresent);
@@ -23,9 +23,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -37,11 +40,15 @@ import org.apache.felix.systemready.SystemReadyCheck;
 import org.apache.felix.systemready.SystemReadyMonitor;
 import org.apache.felix.systemready.SystemStatus;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
@@ -63,24 +70,33 @@ public class SystemReadyMonitorImpl implements SystemReadyMonitor {
     public @interface Config {
 
         @AttributeDefinition(name = "Poll interval",
-                description = "Number of milliseconds between subsequents updates of all the checks")
+                description = "Number of milliseconds between subsequents updates of all the checks. "
+                        + "In addition the checks are updated on service, bundle and framework events.")
         long poll_interval() default 5000;
 
     }
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    @Reference(policyOption = ReferencePolicyOption.GREEDY, policy = ReferencePolicy.DYNAMIC)
-    private volatile List<SystemReadyCheck> checks;
+    private final List<SystemReadyCheck> checks = new CopyOnWriteArrayList<>();
 
     private BundleContext context;
 
     private ServiceRegistration<SystemReady> sreg;
 
-    private ScheduledExecutorService executor;
+    private volatile ScheduledExecutorService executor;
     
     private AtomicReference<Collection<CheckStatus>> curStates;
 
+    /** Set while an update of the checks is scheduled but not yet started */
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+    private final ServiceListener serviceListener = event -> scheduleCheck();
+
+    private final BundleListener bundleListener = event -> scheduleCheck();
+
+    private final FrameworkListener frameworkListener = event -> scheduleCheck();
+
     public SystemReadyMonitorImpl() {
     	CheckStatus checkStatus = new CheckStatus("dummy", StateType.READY, State.YELLOW, "");
         this.curStates = new AtomicReference<>(Collections.singleton(checkStatus));
@@ -91,14 +107,49 @@ public class SystemReadyMonitorImpl implements SystemReadyMonitor {
         this.context = context;
         this.executor = Executors.newSingleThreadScheduledExecutor();
         this.executor.scheduleAtFixedRate(this::check, 0, config.poll_interval(), TimeUnit.MILLISECONDS);
-        log.info("Activated. Running checks every {} ms.", config.poll_interval());
+        // the checks depend on services, bundles and the framework start level: update them on changes
+        context.addServiceListener(serviceListener);
+        context.addBundleListener(bundleListener);
+        context.addFrameworkListener(frameworkListener);
+        log.info("Activated. Running checks on changes and every {} ms.", config.poll_interval());
     }
 
     @Deactivate
     public void deactivate() {
+        context.removeServiceListener(serviceListener);
+        context.removeBundleListener(bundleListener);
+        context.removeFrameworkListener(frameworkListener);
         executor.shutdown();
     }
 
+    /**
+     * Schedule an update of the checks. Events arriving before the update
+     * starts are coalesced into this update.
+     */
+    private void scheduleCheck() {
+        final ScheduledExecutorService executor = this.executor;
+        if (executor != null && updateScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::check);
+            } catch (RejectedExecutionException e) {
+                // deactivated
+                updateScheduled.set(false);
+            }
+        }
+    }
+
+    @Reference(policyOption = ReferencePolicyOption.GREEDY, policy = ReferencePolicy.DYNAMIC,
+            cardinality = ReferenceCardinality.MULTIPLE)
+    protected void bindCheck(SystemReadyCheck check) {
+        checks.add(check);
+        scheduleCheck();
+    }
+
+    protected void unbindCheck(SystemReadyCheck check) {
+        checks.remove(check);
+        scheduleCheck();
+    }
+
     @Override
     /**
      * Returns a map of the statuses of all the checks
@@ -111,6 +162,7 @@ public class SystemReadyMonitorImpl implements SystemReadyMonitor {
     }
 
     private void check() {
+        updateScheduled.set(false);
         CheckStatus.State prevState = getStatus(StateType.READY).getState();
         List<SystemReadyCheck> currentChecks = new ArrayList<>(checks);
         List<String> checkNames = currentChecks.stream().map(check -> check.getName()).collect(Collectors.toList());
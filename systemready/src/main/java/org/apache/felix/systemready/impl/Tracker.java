@@ -45,6 +45,13 @@ class Tracker implements Closeable {
         return this.stracker.getTrackingCount() > 0;
     }
 
+    /**
+     * @return the tracking count, which changes whenever a tracked service is added, modified or removed
+     */
+    public int getTrackingCount() {
+        return this.stracker.getTrackingCount();
+    }
+
     @Override
     public void close() {
         stracker.close();
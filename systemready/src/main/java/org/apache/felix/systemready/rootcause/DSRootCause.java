@@ -41,17 +41,18 @@ public class DSRootCause {
     }
     
     public Optional<DSComp> getRootCause(String iface) {
-        return scr.getComponentDescriptionDTOs().stream()
+        Descriptions descriptions = new Descriptions();
+        return descriptions.get().stream()
             .filter(desc -> offersInterface(desc, iface))
-            .map(this::getRootCause)
+            .map(desc -> getRootCause(desc, descriptions, 0))
             .findFirst();
     }
     
     public DSComp getRootCause(ComponentDescriptionDTO desc) {
-        return getRootCause(desc, 0);
+        return getRootCause(desc, new Descriptions(), 0);
     }
 
-    private DSComp getRootCause(ComponentDescriptionDTO desc, int level) {
+    private DSComp getRootCause(ComponentDescriptionDTO desc, Descriptions descriptions, int level) {
         if (level > MAX_RECURSION) {
             throw new IllegalStateException("Aborting after because of cyclic references");
         }
@@ -65,7 +66,7 @@ public class DSRootCause {
             for (UnsatisfiedReferenceDTO ref : instance.unsatisfiedReferences) {
                 ReferenceDTO refdef = getReference(desc, ref.name);
                 DSRef unresolvedRef = createRef(ref, refdef);
-                unresolvedRef.candidates = getCandidates(ref, refdef, level + 1);
+                unresolvedRef.candidates = getCandidates(refdef, descriptions, level + 1);
                 dsComp.unsatisfied.add(unresolvedRef);
             }
         }
@@ -80,16 +81,30 @@ public class DSRootCause {
         return ref;
     }
 
-    private List<DSComp> getCandidates(UnsatisfiedReferenceDTO ref, ReferenceDTO refdef, int level) {
-        return scr.getComponentDescriptionDTOs().stream()
+    private List<DSComp> getCandidates(ReferenceDTO refdef, Descriptions descriptions, int level) {
+        return descriptions.get().stream()
                 .filter(desc -> offersInterface(desc, refdef.interfaceName))
-                .map(desc -> getRootCause(desc, level)).collect(Collectors.toList());
+                .map(desc -> getRootCause(desc, descriptions, level)).collect(Collectors.toList());
     }
 
     private boolean offersInterface(ComponentDescriptionDTO desc, String interfaceName) {
         return Arrays.asList(desc.serviceInterfaces).contains(interfaceName);
     }
 
+    /**
+     * The component descriptions, retrieved at most once per analysis
+     */
+    private class Descriptions {
+        private Collection<ComponentDescriptionDTO> descs;
+
+        Collection<ComponentDescriptionDTO> get() {
+            if (descs == null) {
+                descs = scr.getComponentDescriptionDTOs();
+            }
+            return descs;
+        }
+    }
+
     private ReferenceDTO getReference(ComponentDescriptionDTO desc, String name) {
         return Arrays.asList(desc.references).stream().filter(ref -> ref.name.equals(name)).findFirst().get();
     }
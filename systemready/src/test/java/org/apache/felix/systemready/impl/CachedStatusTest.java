@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.systemready.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.apache.felix.systemready.CheckStatus;
+import org.apache.felix.systemready.StateType;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.runtime.ServiceComponentRuntime;
+import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
+
+public class CachedStatusTest {
+
+    private ServiceComponentRuntime scr;
+
+    private ServiceReference<ServiceComponentRuntime> scrReference;
+
+    private ComponentsCheck check;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws InterruptedException {
+        scr = mock(ServiceComponentRuntime.class);
+        when(scr.getComponentDescriptionDTOs()).thenReturn(Collections.<ComponentDescriptionDTO>emptyList());
+        scrReference = mock(ServiceReference.class);
+
+        ComponentsCheck.Config config = mock(ComponentsCheck.Config.class);
+        when(config.components_list()).thenReturn(new String[0]);
+        when(config.type()).thenReturn(StateType.READY);
+
+        check = new ComponentsCheck();
+        check.scr = scr;
+        check.scrReference = scrReference;
+        check.activate(null, config);
+    }
+
+    @Test
+    public void testValid() {
+        CachedStatus cached = new CachedStatus(1L, null);
+        assertThat(cached.isValid(1L), equalTo(true));
+        assertThat(cached.isValid(2L), equalTo(false));
+        assertThat(cached.isValid(null), equalTo(false));
+        assertThat(new CachedStatus(null, null).isValid(null), equalTo(false));
+    }
+
+    @Test
+    public void testNotRecomputedWhileChangeCountUnchanged() {
+        when(scrReference.getProperty(CachedStatus.SERVICE_CHANGECOUNT)).thenReturn(1L);
+        CheckStatus first = check.getStatus();
+        CheckStatus second = check.getStatus();
+        assertThat(second, sameInstance(first));
+        verify(scr, times(1)).getComponentDescriptionDTOs();
+
+        when(scrReference.getProperty(CachedStatus.SERVICE_CHANGECOUNT)).thenReturn(2L);
+        CheckStatus third = check.getStatus();
+        assertThat(third.getState(), equalTo(CheckStatus.State.GREEN));
+        verify(scr, times(2)).getComponentDescriptionDTOs();
+    }
+
+    @Test
+    public void testRecomputedWithoutChangeCount() {
+        check.getStatus();
+        check.getStatus();
+        verify(scr, times(2)).getComponentDescriptionDTOs();
+    }
+
+}
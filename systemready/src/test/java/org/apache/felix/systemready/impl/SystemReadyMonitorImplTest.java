@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.systemready.impl;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.systemready.CheckStatus.State;
+import org.apache.felix.systemready.StateType;
+import org.apache.felix.systemready.SystemReady;
+import org.apache.felix.systemready.osgi.examples.TestSystemReadyCheck;
+import org.awaitility.core.ConditionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+
+public class SystemReadyMonitorImplTest {
+
+    /** Much longer than the test runs, so only events update the checks */
+    private static final long POLL_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private final ConditionFactory wait = await().atMost(5, TimeUnit.SECONDS);
+
+    private SystemReadyMonitorImpl monitor;
+
+    private ServiceListener serviceListener;
+
+    private BundleListener bundleListener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        BundleContext context = mock(BundleContext.class);
+        ServiceRegistration<SystemReady> registration = mock(ServiceRegistration.class);
+        when(context.registerService(eq(SystemReady.class), any(SystemReady.class), any(Dictionary.class)))
+            .thenReturn(registration);
+        SystemReadyMonitorImpl.Config config = mock(SystemReadyMonitorImpl.Config.class);
+        when(config.poll_interval()).thenReturn(POLL_INTERVAL);
+
+        monitor = new SystemReadyMonitorImpl();
+        monitor.activate(context, config);
+
+        ArgumentCaptor<ServiceListener> serviceCaptor = ArgumentCaptor.forClass(ServiceListener.class);
+        verify(context).addServiceListener(serviceCaptor.capture());
+        serviceListener = serviceCaptor.getValue();
+        ArgumentCaptor<BundleListener> bundleCaptor = ArgumentCaptor.forClass(BundleListener.class);
+        verify(context).addBundleListener(bundleCaptor.capture());
+        bundleListener = bundleCaptor.getValue();
+
+        // the initial update without any checks
+        wait.until(this::getState, is(State.GREEN));
+    }
+
+    @After
+    public void tearDown() {
+        monitor.deactivate();
+    }
+
+    @Test
+    public void testUpdatedOnEvents() throws InterruptedException {
+        TestSystemReadyCheck check = new TestSystemReadyCheck();
+        monitor.bindCheck(check);
+        wait.until(this::getState, is(State.YELLOW));
+
+        // without an event the change is only picked up by the poll
+        check.setInternalState(State.GREEN);
+        Thread.sleep(200);
+        assertThat(getState(), is(State.YELLOW));
+
+        serviceListener.serviceChanged(null);
+        wait.until(this::getState, is(State.GREEN));
+
+        check.setInternalState(State.YELLOW);
+        bundleListener.bundleChanged(null);
+        wait.until(this::getState, is(State.YELLOW));
+
+        monitor.unbindCheck(check);
+        wait.until(this::getState, is(State.GREEN));
+    }
+
+    private State getState() {
+        return monitor.getStatus(StateType.READY).getState();
+    }
+
+}
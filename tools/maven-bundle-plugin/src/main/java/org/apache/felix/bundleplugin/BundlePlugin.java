@@ -1630,6 +1630,24 @@ public class BundlePlugin extends AbstractMojo
             list.add( new Jar( ".", getOutputDirectory() ) );
         }
 
+        for ( Artifact artifact : getClasspathArtifacts( currentProject, dependencyGraph ) )
+        {
+            Jar jar = new Jar( artifact.getArtifactId(), getFile( artifact ) );
+            list.add( jar );
+        }
+        Jar[] cp = new Jar[list.size()];
+        list.toArray( cp );
+        return cp;
+    }
+
+
+    /**
+     * Get the dependencies which are put on the class path, without the ones which have no file
+     */
+    protected List<Artifact> getClasspathArtifacts( MavenProject currentProject, DependencyNode dependencyGraph ) throws MojoExecutionException
+    {
+        List<Artifact> list = new ArrayList<Artifact>();
+
         final Collection<Artifact> artifacts = getSelectedDependencies( dependencyGraph, currentProject.getArtifacts() );
         for ( Iterator<Artifact> it = artifacts.iterator(); it.hasNext(); )
         {
@@ -1644,13 +1662,10 @@ public class BundlePlugin extends AbstractMojo
                             + currentProject.getArtifact() );
                     continue;
                 }
-                Jar jar = new Jar( artifact.getArtifactId(), file );
-                list.add( jar );
+                list.add( artifact );
             }
         }
-        Jar[] cp = new Jar[list.size()];
-        list.toArray( cp );
-        return cp;
+        return list;
     }
 
 
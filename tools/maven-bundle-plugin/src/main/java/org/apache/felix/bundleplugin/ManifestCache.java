@@ -0,0 +1,595 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundleplugin;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+
+/**
+ * Remembers a fingerprint of the inputs of the last manifest generation, so the BND analysis can be
+ * skipped as long as none of them changed.
+ * <p>
+ * BND always analyzes the whole class path, hence the fingerprint covers the content of every class
+ * path entry together with the configuration of the goal. To avoid reading unchanged files again, the
+ * content digest of each file is cached along with its size and last modification time. The digests
+ * of files outside of the project, like dependency JARs, are additionally shared between all projects
+ * of a (parallel) build, until another build session starts.
+ * <p>
+ * A dependency JAR whose classes are not inlined only contributes its {@link JarSummary}, that is its
+ * headers, packages and package versions, so rebuilding it without changing them does not cause a
+ * manifest generation. The summaries are cached and shared by JAR digest.
+ * <p>
+ * Every project keeps its cache in its own build directory, so projects built in parallel never write
+ * to the same file.
+ */
+public class ManifestCache
+{
+    static final String CACHE_FILE = "maven-bundle-plugin/manifest.cache";
+
+    private static final int VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    /** maximum number of shared digests or summaries, reaching it clears them */
+    static final int MAX_SHARED_ENTRIES = 10000;
+
+    /** headers which change whenever a JAR is rebuilt */
+    private static final Set<String> VOLATILE_HEADERS = new HashSet<String>( Arrays.asList( "Bnd-LastModified",
+        "Build-Jdk", "Build-Jdk-Spec", "Built-By", "Created-By", "Tool" ) );
+
+    private static final ConcurrentMap<String, FileDigest> SHARED_DIGESTS = new ConcurrentHashMap<String, FileDigest>();
+
+    private static final ConcurrentMap<String, JarSummary> SHARED_SUMMARIES = new ConcurrentHashMap<String, JarSummary>();
+
+    private static Object sharedSession;
+
+    private final File cacheFile;
+
+    private final Map<String, FileDigest> previousDigests = new HashMap<String, FileDigest>();
+
+    private final Map<String, FileDigest> currentDigests = new HashMap<String, FileDigest>();
+
+    private final Map<String, JarSummary> previousSummaries = new HashMap<String, JarSummary>();
+
+    private final Map<String, JarSummary> currentSummaries = new HashMap<String, JarSummary>();
+
+    private String fingerprint;
+
+
+    public ManifestCache( File cacheFile )
+    {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+
+    /**
+     * Clears the digests and summaries shared between projects if they were computed in another build
+     * session, since files outside of the project may have changed in between.
+     *
+     * @param session identifies the build session, compared by identity
+     */
+    public static synchronized void startSession( Object session )
+    {
+        if ( sharedSession != session )
+        {
+            sharedSession = session;
+            SHARED_DIGESTS.clear();
+            SHARED_SUMMARIES.clear();
+        }
+    }
+
+
+    /**
+     * @return the fingerprint stored with the last manifest generation, or null if there is none
+     */
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+
+    public Fingerprint newFingerprint()
+    {
+        return new Fingerprint();
+    }
+
+
+    /**
+     * Stores the given fingerprint together with the digests of the files read since this cache was loaded.
+     */
+    public void save( String newFingerprint ) throws IOException
+    {
+        cacheFile.getParentFile().mkdirs();
+        File tmpFile = new File( cacheFile.getParentFile(), cacheFile.getName() + ".tmp" );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+        try
+        {
+            out.writeInt( VERSION );
+            out.writeUTF( newFingerprint );
+            out.writeInt( currentDigests.size() );
+            for ( Map.Entry<String, FileDigest> entry : currentDigests.entrySet() )
+            {
+                FileDigest digest = entry.getValue();
+                out.writeUTF( entry.getKey() );
+                out.writeLong( digest.length );
+                out.writeLong( digest.lastModified );
+                out.writeUTF( digest.digest );
+            }
+            out.writeInt( currentSummaries.size() );
+            for ( Map.Entry<String, JarSummary> entry : currentSummaries.entrySet() )
+            {
+                JarSummary summary = entry.getValue();
+                out.writeUTF( entry.getKey() );
+                out.writeUTF( summary.value );
+                out.writeInt( summary.packages.size() );
+                for ( String pkg : summary.packages )
+                {
+                    out.writeUTF( pkg );
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        Files.move( tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        fingerprint = newFingerprint;
+    }
+
+
+    private void load()
+    {
+        if ( !cacheFile.isFile() )
+        {
+            return;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( cacheFile ) ) );
+            try
+            {
+                if ( in.readInt() != VERSION )
+                {
+                    return;
+                }
+                String storedFingerprint = in.readUTF();
+                for ( int i = in.readInt(); i > 0; i-- )
+                {
+                    String path = in.readUTF();
+                    previousDigests.put( path, new FileDigest( in.readLong(), in.readLong(), in.readUTF() ) );
+                }
+                for ( int i = in.readInt(); i > 0; i-- )
+                {
+                    String digest = in.readUTF();
+                    String value = in.readUTF();
+                    Set<String> packages = new TreeSet<String>();
+                    for ( int j = in.readInt(); j > 0; j-- )
+                    {
+                        packages.add( in.readUTF() );
+                    }
+                    previousSummaries.put( digest, new JarSummary( value, packages ) );
+                }
+                fingerprint = storedFingerprint;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // unreadable cache, start over
+            previousDigests.clear();
+            previousSummaries.clear();
+        }
+    }
+
+
+    String getDigest( File file, boolean shared ) throws IOException
+    {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        FileDigest digest = currentDigests.get( path );
+        if ( digest == null || !digest.matches( length, lastModified ) )
+        {
+            digest = previousDigests.get( path );
+            if ( ( digest == null || !digest.matches( length, lastModified ) ) && shared )
+            {
+                digest = SHARED_DIGESTS.get( path );
+            }
+            if ( digest == null || !digest.matches( length, lastModified ) )
+            {
+                digest = new FileDigest( length, lastModified, computeDigest( file ) );
+                if ( shared )
+                {
+                    putShared( SHARED_DIGESTS, path, digest );
+                }
+            }
+            currentDigests.put( path, digest );
+        }
+        return digest.digest;
+    }
+
+
+    /**
+     * @param shared whether the summary may be shared with other projects
+     * @return the summary of the given JAR
+     */
+    public JarSummary getJarSummary( File jar, boolean shared ) throws IOException
+    {
+        String digest = getDigest( jar, shared );
+        JarSummary summary = currentSummaries.get( digest );
+        if ( summary == null )
+        {
+            summary = previousSummaries.get( digest );
+            if ( summary == null && shared )
+            {
+                summary = SHARED_SUMMARIES.get( digest );
+            }
+            if ( summary == null )
+            {
+                summary = JarSummary.create( jar );
+                if ( shared )
+                {
+                    putShared( SHARED_SUMMARIES, digest, summary );
+                }
+            }
+            currentSummaries.put( digest, summary );
+        }
+        return summary;
+    }
+
+
+    private static <T> void putShared( ConcurrentMap<String, T> map, String key, T value )
+    {
+        if ( map.size() >= MAX_SHARED_ENTRIES )
+        {
+            map.clear();
+        }
+        map.put( key, value );
+    }
+
+
+    static int getSharedSize()
+    {
+        return SHARED_DIGESTS.size() + SHARED_SUMMARIES.size();
+    }
+
+
+    private static String computeDigest( File file ) throws IOException
+    {
+        return computeDigest( new FileInputStream( file ) );
+    }
+
+
+    private static String computeDigest( InputStream in ) throws IOException
+    {
+        MessageDigest md = newMessageDigest();
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ( ( n = in.read( buffer ) ) != -1 )
+            {
+                md.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return toHex( md.digest() );
+    }
+
+
+    private static MessageDigest newMessageDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException( e );
+        }
+    }
+
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder buf = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            buf.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+            buf.append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return buf.toString();
+    }
+
+
+    /**
+     * Builds the fingerprint of the inputs of a manifest generation.
+     */
+    public class Fingerprint
+    {
+        private final MessageDigest md = newMessageDigest();
+
+
+        public void add( String name, String value )
+        {
+            update( name );
+            update( value );
+        }
+
+
+        public void add( String name, Map<?, ?> values )
+        {
+            update( name );
+            Map<String, String> sorted = new TreeMap<String, String>();
+            if ( values != null )
+            {
+                for ( Map.Entry<?, ?> entry : values.entrySet() )
+                {
+                    sorted.put( String.valueOf( entry.getKey() ), String.valueOf( entry.getValue() ) );
+                }
+            }
+            updateInt( sorted.size() );
+            for ( Map.Entry<String, String> entry : sorted.entrySet() )
+            {
+                update( entry.getKey() );
+                update( entry.getValue() );
+            }
+        }
+
+
+        /**
+         * Adds the summary of a JAR instead of its content.
+         */
+        public void add( String name, JarSummary summary )
+        {
+            update( name );
+            update( "summary" );
+            update( summary.value );
+        }
+
+
+        /**
+         * Adds the content of a file or of all files below a directory.
+         *
+         * @param shared whether the digest of the file may be shared with other projects
+         */
+        public void addFile( String name, File file, boolean shared ) throws IOException
+        {
+            update( name );
+            if ( file == null || !file.exists() )
+            {
+                update( null );
+            }
+            else if ( file.isDirectory() )
+            {
+                update( "dir" );
+                addDirectory( file, "" );
+            }
+            else
+            {
+                update( "file" );
+                update( getDigest( file, shared ) );
+            }
+        }
+
+
+        private void addDirectory( File dir, String prefix ) throws IOException
+        {
+            File[] files = dir.listFiles();
+            if ( files == null )
+            {
+                throw new IOException( "Cannot list directory " + dir );
+            }
+            Arrays.sort( files );
+            for ( File file : files )
+            {
+                String path = prefix + file.getName();
+                if ( file.isDirectory() )
+                {
+                    addDirectory( file, path + '/' );
+                }
+                else
+                {
+                    update( path );
+                    update( getDigest( file, false ) );
+                }
+            }
+        }
+
+
+        public String getValue()
+        {
+            return toHex( md.digest() );
+        }
+
+
+        private void update( String value )
+        {
+            if ( value == null )
+            {
+                md.update( ( byte ) 0 );
+            }
+            else
+            {
+                byte[] bytes = value.getBytes( UTF8 );
+                md.update( ( byte ) 1 );
+                updateInt( bytes.length );
+                md.update( bytes );
+            }
+        }
+
+
+        private void updateInt( int value )
+        {
+            md.update( ( byte ) ( value >>> 24 ) );
+            md.update( ( byte ) ( value >>> 16 ) );
+            md.update( ( byte ) ( value >>> 8 ) );
+            md.update( ( byte ) value );
+        }
+    }
+
+
+    /**
+     * What a manifest generation uses from a JAR on the class path whose classes are not inlined: its
+     * main manifest headers, the packages it contains and their version files.
+     */
+    public static final class JarSummary
+    {
+        final String value;
+
+        final Set<String> packages;
+
+
+        JarSummary( String value, Set<String> packages )
+        {
+            this.value = value;
+            this.packages = Collections.unmodifiableSet( packages );
+        }
+
+
+        /**
+         * @return the packages of the JAR
+         */
+        public Set<String> getPackages()
+        {
+            return packages;
+        }
+
+
+        static JarSummary create( File file ) throws IOException
+        {
+            Map<String, String> headers = new TreeMap<String, String>();
+            Map<String, String> versionFiles = new TreeMap<String, String>();
+            Set<String> packages = new TreeSet<String>();
+            JarFile jar = new JarFile( file );
+            try
+            {
+                Manifest manifest = jar.getManifest();
+                if ( manifest != null )
+                {
+                    for ( Map.Entry<Object, Object> entry : manifest.getMainAttributes().entrySet() )
+                    {
+                        String name = ( ( Attributes.Name ) entry.getKey() ).toString();
+                        if ( !VOLATILE_HEADERS.contains( name ) )
+                        {
+                            headers.put( name, String.valueOf( entry.getValue() ) );
+                        }
+                    }
+                }
+                for ( Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); )
+                {
+                    JarEntry entry = e.nextElement();
+                    String path = entry.getName();
+                    int idx = path.lastIndexOf( '/' );
+                    if ( entry.isDirectory() || idx <= 0 || path.startsWith( "META-INF/" ) )
+                    {
+                        continue;
+                    }
+                    packages.add( path.substring( 0, idx ).replace( '/', '.' ) );
+                    String name = path.substring( idx + 1 );
+                    if ( "packageinfo".equals( name ) || "package-info.class".equals( name ) )
+                    {
+                        versionFiles.put( path, computeDigest( jar.getInputStream( entry ) ) );
+                    }
+                }
+            }
+            finally
+            {
+                jar.close();
+            }
+
+            MessageDigest md = newMessageDigest();
+            for ( Map.Entry<String, String> entry : headers.entrySet() )
+            {
+                md.update( ( entry.getKey() + ": " + entry.getValue() + "\n" ).getBytes( UTF8 ) );
+            }
+            for ( String pkg : packages )
+            {
+                md.update( ( "package " + pkg + "\n" ).getBytes( UTF8 ) );
+            }
+            for ( Map.Entry<String, String> entry : versionFiles.entrySet() )
+            {
+                md.update( ( entry.getKey() + " " + entry.getValue() + "\n" ).getBytes( UTF8 ) );
+            }
+            return new JarSummary( toHex( md.digest() ), packages );
+        }
+    }
+
+
+    private static final class FileDigest
+    {
+        final long length;
+
+        final long lastModified;
+
+        final String digest;
+
+
+        FileDigest( long length, long lastModified, String digest )
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+
+
+        boolean matches( long otherLength, long otherLastModified )
+        {
+            return length == otherLength && lastModified == otherLastModified;
+        }
+    }
+}
@@ -25,6 +25,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -33,6 +35,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.jar.Manifest;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
@@ -77,9 +80,182 @@ public class ManifestPlugin extends BundlePlugin
     @Parameter( property = "supportIncrementalBuild" )
     private boolean supportIncrementalBuild;
 
+    /**
+     * When true, a fingerprint of the class path and the configuration is kept in the build directory
+     * and the manifest generation is skipped as long as the fingerprint does not change. Files which are
+     * neither on the class path nor included with the <code>_include</code> instruction are not part of
+     * the fingerprint.
+     */
+    @Parameter( property = "manifestCache" )
+    private boolean manifestCache;
+
     @Component
     private BuildContext buildContext;
 
+    @Override
+    protected void execute( MavenProject project, DependencyNode dependencyGraph, Map<String, String> instructions, Properties properties )
+        throws MojoExecutionException
+    {
+        if ( !manifestCache || buildContext.isIncremental() )
+        {
+            super.execute( project, dependencyGraph, instructions, properties );
+            return;
+        }
+
+        ManifestCache.startSession( session != null ? session.getRequest() : null );
+        ManifestCache cache = new ManifestCache( new File( getBuildDirectory(), ManifestCache.CACHE_FILE ) );
+        try
+        {
+            if ( getFingerprint( cache, project, dependencyGraph, instructions, properties ).equals( cache.getFingerprint() ) )
+            {
+                getLog().info( "Skipping manifest generation because the class path and configuration did not change since last build." );
+                return;
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error calculating manifest fingerprint for project " + project, e );
+        }
+
+        super.execute( project, dependencyGraph, instructions, properties );
+
+        // the fingerprint also covers the generated files, so any later change to them is noticed
+        try
+        {
+            cache.save( getFingerprint( cache, project, dependencyGraph, instructions, properties ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Cannot write manifest cache: " + e.getLocalizedMessage() );
+        }
+    }
+
+    private String getFingerprint( ManifestCache cache, MavenProject project, DependencyNode dependencyGraph,
+        Map<String, String> instructions, Properties properties ) throws IOException, MojoExecutionException
+    {
+        ManifestCache.Fingerprint fingerprint = cache.newFingerprint();
+
+        fingerprint.addFile( "plugin", getCodeSource( ManifestPlugin.class ), true );
+        fingerprint.addFile( "bnd", getCodeSource( Analyzer.class ), true );
+        fingerprint.add( "instructions", instructions );
+        fingerprint.add( "properties", properties );
+        fingerprint.add( "projectProperties", project.getProperties() );
+        fingerprint.add( "settings", "rebuildBundle=" + rebuildBundle + ",unpackBundle=" + unpackBundle + ",niceManifest="
+            + niceManifest + ",exportScr=" + exportScr + ",scrLocation=" + scrLocation + ",manifestLocation=" + manifestLocation );
+
+        for ( MavenProject current = project; current != null; current = current.getParent() )
+        {
+            fingerprint.add( "project", current.getId() );
+            fingerprint.addFile( "pom", current.getFile(), false );
+        }
+
+        String include = instructions.get( "_include" );
+        if ( include == null )
+        {
+            include = instructions.get( "-include" );
+        }
+        if ( include != null )
+        {
+            for ( String path : include.split( "," ) )
+            {
+                path = path.trim();
+                while ( path.startsWith( "~" ) || path.startsWith( "-" ) )
+                {
+                    path = path.substring( 1 );
+                }
+                File file = new File( path );
+                fingerprint.addFile( "include", file.isAbsolute() ? file : new File( project.getBasedir(), path ), false );
+            }
+        }
+
+        fingerprint.addFile( "manifest", new File( manifestLocation, "MANIFEST.MF" ), false );
+        fingerprint.addFile( "classes", getOutputDirectory(), false );
+
+        // only the summary of a dependency matters unless its classes end up in the bundle
+        Instructions inlined = getInlinedPackages( instructions );
+        for ( Artifact artifact : getClasspathArtifacts( project, dependencyGraph ) )
+        {
+            fingerprint.add( "artifact", artifact.getId() );
+            File file = getFile( artifact );
+            if ( inlined != null && file != null && file.isFile() )
+            {
+                try
+                {
+                    ManifestCache.JarSummary summary = cache.getJarSummary( file, true );
+                    if ( !isInlined( inlined, summary ) )
+                    {
+                        fingerprint.add( "artifact", summary );
+                        continue;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // not a JAR, use its content
+                }
+            }
+            fingerprint.addFile( "artifact", file, true );
+        }
+
+        return fingerprint.getValue();
+    }
+
+    /**
+     * @return the instructions selecting the packages of the class path copied into the bundle, or null if
+     *         whole dependencies or resources may be copied
+     */
+    private static Instructions getInlinedPackages( Map<String, String> instructions )
+    {
+        StringBuilder packages = new StringBuilder();
+        for ( Map.Entry<String, String> entry : instructions.entrySet() )
+        {
+            String key = entry.getKey().startsWith( "_" ) ? '-' + entry.getKey().substring( 1 ) : entry.getKey();
+            if ( key.equals( DependencyEmbedder.EMBED_DEPENDENCY ) || key.equals( Analyzer.INCLUDE_RESOURCE )
+                || key.equals( Analyzer.INCLUDERESOURCE ) || key.equals( Analyzer.CONDITIONAL_PACKAGE ) )
+            {
+                return null;
+            }
+            if ( key.equals( Analyzer.EXPORT_PACKAGE ) || key.equals( Analyzer.PRIVATE_PACKAGE )
+                || key.equals( Analyzer.PRIVATEPACKAGE ) || key.equals( Analyzer.EXPORT_CONTENTS ) )
+            {
+                packages.append( packages.length() > 0 ? "," : "" ).append( entry.getValue() );
+            }
+        }
+        return new Instructions( packages.toString() );
+    }
+
+    private static boolean isInlined( Instructions inlined, ManifestCache.JarSummary summary )
+    {
+        if ( inlined.isEmpty() )
+        {
+            return false;
+        }
+        for ( String pkg : summary.getPackages() )
+        {
+            if ( inlined.matches( pkg ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static File getCodeSource( Class<?> clazz )
+    {
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if ( codeSource == null || !"file".equals( codeSource.getLocation().getProtocol() ) )
+        {
+            return null;
+        }
+        try
+        {
+            return new File( codeSource.getLocation().toURI() );
+        }
+        catch ( URISyntaxException e )
+        {
+            return null;
+        }
+    }
+
     @Override
     protected void execute( MavenProject project, DependencyNode dependencyGraph, Map<String, String> instructions, Properties properties, Jar[] classpath )
         throws MojoExecutionException
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundleplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+public class ManifestCacheTest extends TestCase
+{
+
+    private File dir;
+
+
+    protected void setUp() throws Exception
+    {
+        dir = File.createTempFile( "manifestcache", "" );
+        dir.delete();
+        new File( dir, "classes/org/example" ).mkdirs();
+    }
+
+
+    protected void tearDown() throws Exception
+    {
+        delete( dir );
+    }
+
+
+    public void testFingerprintIsPersisted() throws Exception
+    {
+        write( "classes/org/example/A.class", "A" );
+
+        ManifestCache cache = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+        assertNull( cache.getFingerprint() );
+
+        String fingerprint = fingerprint( cache );
+        cache.save( fingerprint );
+
+        ManifestCache loaded = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+        assertEquals( fingerprint, loaded.getFingerprint() );
+        assertEquals( fingerprint, fingerprint( loaded ) );
+    }
+
+
+    public void testFingerprintChangesWithContent() throws Exception
+    {
+        File file = write( "classes/org/example/A.class", "A" );
+
+        ManifestCache cache = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+        String fingerprint = fingerprint( cache );
+
+        write( "classes/org/example/A.class", "B" );
+        file.setLastModified( file.lastModified() + 2000 );
+        assertFalse( fingerprint.equals( fingerprint( cache ) ) );
+
+        write( "classes/org/example/A.class", "A" );
+        file.setLastModified( file.lastModified() + 4000 );
+        assertEquals( fingerprint, fingerprint( cache ) );
+
+        write( "classes/org/example/B.class", "B" );
+        assertFalse( fingerprint.equals( fingerprint( cache ) ) );
+    }
+
+
+    public void testFingerprintChangesWithConfiguration() throws Exception
+    {
+        ManifestCache cache = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+
+        ManifestCache.Fingerprint fingerprint = cache.newFingerprint();
+        fingerprint.add( "instructions", Collections.singletonMap( "Export-Package", "org.example" ) );
+        String exported = fingerprint.getValue();
+
+        fingerprint = cache.newFingerprint();
+        fingerprint.add( "instructions", Collections.singletonMap( "Private-Package", "org.example" ) );
+        assertFalse( exported.equals( fingerprint.getValue() ) );
+    }
+
+
+    public void testJarSummaryIgnoresRebuild() throws Exception
+    {
+        File jar = new File( dir, "dep.jar" );
+        writeJar( jar, "1", "org.example.api", "org/example/api/A.class", "org/example/impl/B.class" );
+        long lastModified = jar.lastModified();
+
+        ManifestCache cache = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+        ManifestCache.JarSummary summary = cache.getJarSummary( jar, false );
+        assertEquals( 2, summary.getPackages().size() );
+        assertTrue( summary.getPackages().contains( "org.example.impl" ) );
+        String fingerprint = summaryFingerprint( cache, summary );
+
+        // rebuilt with other class files and build headers
+        writeJar( jar, "2", "org.example.api", "org/example/api/A.class", "org/example/impl/B.class" );
+        jar.setLastModified( lastModified + 2000 );
+        assertFalse( summary == cache.getJarSummary( jar, false ) );
+        assertEquals( fingerprint, summaryFingerprint( cache, cache.getJarSummary( jar, false ) ) );
+
+        // other exports
+        writeJar( jar, "2", "org.example.impl", "org/example/api/A.class", "org/example/impl/B.class" );
+        jar.setLastModified( lastModified + 4000 );
+        assertFalse( fingerprint.equals( summaryFingerprint( cache, cache.getJarSummary( jar, false ) ) ) );
+
+        // other packages
+        writeJar( jar, "2", "org.example.api", "org/example/api/A.class", "org/example/spi/B.class" );
+        jar.setLastModified( lastModified + 6000 );
+        assertFalse( fingerprint.equals( summaryFingerprint( cache, cache.getJarSummary( jar, false ) ) ) );
+    }
+
+
+    public void testJarSummaryIsPersisted() throws Exception
+    {
+        File jar = new File( dir, "dep.jar" );
+        writeJar( jar, "1", "org.example.api", "org/example/api/A.class" );
+
+        ManifestCache cache = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+        ManifestCache.JarSummary summary = cache.getJarSummary( jar, false );
+        cache.save( "fingerprint" );
+
+        // the summary is loaded with the cache
+        ManifestCache loaded = new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) );
+        ManifestCache.JarSummary loadedSummary = loaded.getJarSummary( jar, false );
+        assertEquals( summary.getPackages(), loadedSummary.getPackages() );
+        assertEquals( summaryFingerprint( cache, summary ), summaryFingerprint( loaded, loadedSummary ) );
+    }
+
+
+    public void testSharedDigestsClearedPerSession() throws Exception
+    {
+        File jar = new File( dir, "dep.jar" );
+        writeJar( jar, "1", "org.example.api", "org/example/api/A.class" );
+
+        ManifestCache.startSession( "first" );
+        new ManifestCache( new File( dir, ManifestCache.CACHE_FILE ) ).getJarSummary( jar, true );
+        assertEquals( 2, ManifestCache.getSharedSize() );
+
+        ManifestCache.startSession( "first" );
+        assertEquals( 2, ManifestCache.getSharedSize() );
+
+        ManifestCache.startSession( "second" );
+        assertEquals( 0, ManifestCache.getSharedSize() );
+    }
+
+
+    private String summaryFingerprint( ManifestCache cache, ManifestCache.JarSummary summary )
+    {
+        ManifestCache.Fingerprint fingerprint = cache.newFingerprint();
+        fingerprint.add( "artifact", summary );
+        return fingerprint.getValue();
+    }
+
+
+    private void writeJar( File jar, String build, String exports, String... entries ) throws IOException
+    {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue( "Manifest-Version", "1.0" );
+        manifest.getMainAttributes().putValue( "Export-Package", exports );
+        manifest.getMainAttributes().putValue( "Bnd-LastModified", build );
+        JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ), manifest );
+        try
+        {
+            for ( String entry : entries )
+            {
+                out.putNextEntry( new ZipEntry( entry ) );
+                out.write( build.getBytes( "UTF-8" ) );
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    private String fingerprint( ManifestCache cache ) throws IOException
+    {
+        ManifestCache.Fingerprint fingerprint = cache.newFingerprint();
+        fingerprint.addFile( "classes", new File( dir, "classes" ), false );
+        return fingerprint.getValue();
+    }
+
+
+    private File write( String path, String content ) throws IOException
+    {
+        File file = new File( dir, path );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+
+    private static void delete( File file )
+    {
+        File[] files = file.listFiles();
+        if ( files != null )
+        {
+            for ( File child : files )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
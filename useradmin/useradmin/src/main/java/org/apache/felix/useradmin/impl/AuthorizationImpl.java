@@ -17,9 +17,7 @@
 
 package org.apache.felix.useradmin.impl;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Set;
 
 import org.osgi.service.useradmin.Authorization;
 import org.osgi.service.useradmin.Role;
@@ -27,13 +25,15 @@ import org.osgi.service.useradmin.User;
 
 /**
  * Provides an implementation for {@link Authorization}.
+ * <p>
+ * The implied groups are obtained from the {@link MembershipIndex} of the
+ * role repository, which caches the implied groups per user.
+ * </p>
  */
 public class AuthorizationImpl implements Authorization {
 
     private final String m_name;
-    private final User m_user;
     private final RoleRepository m_roleManager;
-    private final RoleChecker m_roleChecker;
 
     /**
      * Creates a new {@link AuthorizationImpl} instance for the given {@link User}.
@@ -51,10 +51,8 @@ public class AuthorizationImpl implements Authorization {
      * @param roleManager the role manager to use for obtaining the roles, cannot be <code>null</code>.
      */
     public AuthorizationImpl(User user, RoleRepository roleManager) {
-        m_user = user;
         m_roleManager = roleManager;
         m_name = (user != null) ? user.getName() : null;
-        m_roleChecker = new RoleChecker();
     }
 
     /**
@@ -68,28 +66,38 @@ public class AuthorizationImpl implements Authorization {
      * {@inheritDoc}
      */
     public boolean hasRole(String name) {
-        Role role = m_roleManager.getRoleByName(name);
-        if (role == null) {
-            // No role found, so it is never implied...
-            return false;
+        if (m_roleManager.getMembershipIndex().isGroupImpliedBy(name, m_name)) {
+            return true;
+        }
+        if (Role.USER_ANYONE.equals(name)) {
+            // Always implied...
+            return true;
         }
-        return m_roleChecker.isImpliedBy(role, m_user);
+        // Any other role than a group is only implied by the user itself...
+        return (name != null) && name.equals(m_name) && isExistingRole(name);
     }
 
     /**
      * {@inheritDoc}
      */
     public String[] getRoles() {
-        List result = new ArrayList();
-
-        Iterator rolesIter = m_roleManager.getRoles(null /* filter */).iterator();
-        while (rolesIter.hasNext()) {
-            Role role = (Role) rolesIter.next();
-            if (!Role.USER_ANYONE.equals(role.getName()) && m_roleChecker.isImpliedBy(role, m_user)) {
-                result.add(role.getName());
-            }
+        Set result = m_roleManager.getMembershipIndex().getImpliedGroups(m_name);
+        if ((m_name != null) && !result.contains(m_name) && isExistingRole(m_name)) {
+            result.add(m_name);
         }
+        result.remove(Role.USER_ANYONE);
 
         return result.isEmpty() ? null : (String[]) result.toArray(new String[result.size()]);
     }
+
+    /**
+     * Returns whether the role with the given name exists and is not a group.
+     * 
+     * @param name the name of the role to check, cannot be <code>null</code>.
+     * @return <code>true</code> if the role exists and is not a group, <code>false</code> otherwise.
+     */
+    private boolean isExistingRole(String name) {
+        Role role = m_roleManager.getRoleByName(name);
+        return (role != null) && (role.getType() != Role.GROUP);
+    }
 }
@@ -0,0 +1,468 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+
+/**
+ * Provides an index of all group memberships, used to determine the groups
+ * implied by a user without walking the group hierarchy for each check.
+ * <p>
+ * The index keeps the (required) members of all groups by name, and for each
+ * role the groups it is a member of. From this, the transitive set of groups
+ * implied by a user is computed in a single pass over the groups reachable
+ * from that user. These closures are kept in a LRU-cache of limited size.
+ * </p>
+ * <p>
+ * The index is built lazily upon the first query and is maintained from the
+ * role change events of the {@link RoleRepository}: a change in the members
+ * of a group only updates the entry of that group and only drops the cached
+ * closures that might be affected by this change.
+ * </p>
+ */
+final class MembershipIndex implements RoleChangeListener {
+
+    /**
+     * Provides the members of a single group.
+     */
+    static final class Entry {
+        /** whether or not the group is contained by the repository. */
+        final boolean m_stored;
+        final Set m_basicRoles = new HashSet();
+        final Set m_basicGroups = new HashSet();
+        final Set m_requiredRoles = new HashSet();
+        final Set m_requiredGroups = new HashSet();
+
+        Entry(boolean stored) {
+            m_stored = stored;
+        }
+    }
+
+    /** The default number of closures to cache. */
+    static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** The key used for caching the closure of the anonymous user. */
+    private static final String ANONYMOUS = "";
+
+    private final RoleRepository m_roleRepository;
+    private final Map m_closures;
+    /** group name -> Entry, <code>null</code> as long as the index is not built. */
+    private Map m_groups;
+    /** group name -> set of group names the group is a (required) member of. */
+    private final Map m_groupEdges;
+    /** role name -> set of group names the role is a (required) member of. */
+    private final Map m_roleEdges;
+
+    /**
+     * Creates a new {@link MembershipIndex} instance.
+     *
+     * @param roleRepository the repository to obtain the groups from, cannot be <code>null</code>.
+     */
+    public MembershipIndex(RoleRepository roleRepository) {
+        this(roleRepository, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new {@link MembershipIndex} instance.
+     *
+     * @param roleRepository the repository to obtain the groups from, cannot be <code>null</code>;
+     * @param cacheSize the maximum number of closures to cache, &gt; 0.
+     */
+    public MembershipIndex(RoleRepository roleRepository, final int cacheSize) {
+        m_roleRepository = roleRepository;
+        m_closures = new LinkedHashMap(16, 0.75f, true /* accessOrder */) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > cacheSize;
+            }
+        };
+        m_groupEdges = new HashMap();
+        m_roleEdges = new HashMap();
+    }
+
+    /**
+     * Returns the names of all groups implied by the given user.
+     *
+     * @param userName the name of the user, can be <code>null</code> for the anonymous user.
+     * @return the names of the implied groups that are contained by the repository, never <code>null</code>.
+     */
+    public synchronized Set getImpliedGroups(String userName) {
+        Set closure = getClosure(userName);
+        Set result = new HashSet(closure.size());
+        Iterator iter = closure.iterator();
+        while (iter.hasNext()) {
+            String name = (String) iter.next();
+            if (isStoredGroup(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the given group is implied by the given user.
+     *
+     * @param groupName the name of the group to check, cannot be <code>null</code>;
+     * @param userName the name of the user, can be <code>null</code> for the anonymous user.
+     * @return <code>true</code> if the group is contained by the repository and implied by the user, <code>false</code> otherwise.
+     */
+    public synchronized boolean isGroupImpliedBy(String groupName, String userName) {
+        return getClosure(userName).contains(groupName) && isStoredGroup(groupName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyAdded(Role role, Object key, Object value) {
+        membersChanged(role);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyChanged(Role role, Object key, Object oldValue, Object newValue) {
+        // Members are only added or removed...
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyRemoved(Role role, Object key) {
+        membersChanged(role);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void roleAdded(Role role) {
+        if ((m_groups != null) && (role instanceof Group)) {
+            updateGroup((Group) role);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void roleRemoved(Role role) {
+        if (m_groups == null) {
+            return;
+        }
+
+        String name = role.getName();
+        // The store does not necessarily report the removal of the role from
+        // all groups it was member of, so do this ourselves...
+        removeMemberFromGroups(name, (Set) m_roleEdges.remove(name));
+        removeMemberFromGroups(name, (Set) m_groupEdges.remove(name));
+
+        Entry entry = (Entry) m_groups.remove(name);
+        if (entry != null) {
+            unlink(name, entry);
+        }
+
+        m_closures.clear();
+    }
+
+    /**
+     * Returns the number of cached closures, for testing purposes only.
+     */
+    synchronized int getCacheSize() {
+        return m_closures.size();
+    }
+
+    /**
+     * Called for all changes in the properties of a role, including changes
+     * in the members of a group.
+     *
+     * @param role the changed role, cannot be <code>null</code>.
+     */
+    private synchronized void membersChanged(Role role) {
+        if ((m_groups != null) && (role instanceof Group)) {
+            updateGroup((Group) role);
+        }
+    }
+
+    /**
+     * Computes the transitive set of groups implied by the given user, that is,
+     * the least set of groups for which all required members and at least one
+     * basic member are implied.
+     *
+     * @param userName the name of the user, can be <code>null</code> for the anonymous user.
+     * @return the names of all implied groups, never <code>null</code>.
+     */
+    private Set getClosure(String userName) {
+        String key = (userName == null) ? ANONYMOUS : userName;
+
+        Set closure = (Set) m_closures.get(key);
+        if (closure != null) {
+            return closure;
+        }
+
+        if (m_groups == null) {
+            buildIndex();
+        }
+
+        Map unsatisfied = new HashMap();
+        Set basicSatisfied = new HashSet();
+        Set implied = new HashSet();
+        LinkedList queue = new LinkedList();
+
+        satisfy(Role.USER_ANYONE, false, unsatisfied, basicSatisfied, implied, queue);
+        if ((userName != null) && !Role.USER_ANYONE.equals(userName)) {
+            satisfy(userName, false, unsatisfied, basicSatisfied, implied, queue);
+        }
+        while (!queue.isEmpty()) {
+            satisfy((String) queue.removeFirst(), true, unsatisfied, basicSatisfied, implied, queue);
+        }
+
+        closure = Collections.unmodifiableSet(implied);
+        m_closures.put(key, closure);
+        return closure;
+    }
+
+    /**
+     * Marks the given member as implied in all groups it is a member of.
+     * <p>
+     * Like {@link RoleChecker}, a member that is a group is only implied by its
+     * own members, while any other member is implied by its name.
+     * </p>
+     */
+    private void satisfy(String member, boolean isGroup, Map unsatisfied, Set basicSatisfied, Set implied, LinkedList queue) {
+        Set groups = (Set) (isGroup ? m_groupEdges : m_roleEdges).get(member);
+        if (groups == null) {
+            return;
+        }
+
+        Iterator iter = groups.iterator();
+        while (iter.hasNext()) {
+            String groupName = (String) iter.next();
+            Entry entry = (Entry) m_groups.get(groupName);
+            if (entry == null) {
+                continue;
+            }
+
+            Set required = isGroup ? entry.m_requiredGroups : entry.m_requiredRoles;
+            Set basic = isGroup ? entry.m_basicGroups : entry.m_basicRoles;
+
+            Integer count = (Integer) unsatisfied.get(groupName);
+            int remaining = (count != null) ? count.intValue() : entry.m_requiredRoles.size() + entry.m_requiredGroups.size();
+            if (required.contains(member)) {
+                remaining--;
+                unsatisfied.put(groupName, new Integer(remaining));
+            }
+            if (basic.contains(member)) {
+                basicSatisfied.add(groupName);
+            }
+
+            if ((remaining == 0) && basicSatisfied.contains(groupName) && implied.add(groupName)) {
+                queue.add(groupName);
+            }
+        }
+    }
+
+    /**
+     * Builds the index from all groups in the repository.
+     */
+    private void buildIndex() {
+        m_groups = new HashMap();
+        m_groupEdges.clear();
+        m_roleEdges.clear();
+
+        Iterator iter = m_roleRepository.getRoles(null /* filter */).iterator();
+        while (iter.hasNext()) {
+            Role role = (Role) iter.next();
+            if (role instanceof Group) {
+                String name = role.getName();
+                Entry entry = createEntry((Group) role, true /* stored */);
+                // Replaces the entry created when the group was seen as member of another group...
+                Entry oldEntry = (Entry) m_groups.put(name, entry);
+                if (oldEntry != null) {
+                    unlink(name, oldEntry);
+                }
+                link(name, entry);
+            }
+        }
+    }
+
+    /**
+     * Updates the entry of the given group and drops all cached closures affected by its changes.
+     *
+     * @param group the (possibly) changed group, cannot be <code>null</code>.
+     */
+    private void updateGroup(Group group) {
+        String name = group.getName();
+
+        Entry newEntry = createEntry(group, true /* stored */);
+        Entry oldEntry = (Entry) m_groups.put(name, newEntry);
+        if (oldEntry != null) {
+            unlink(name, oldEntry);
+        }
+        link(name, newEntry);
+
+        if (oldEntry == null || !oldEntry.m_stored) {
+            m_closures.clear();
+        } else if (!newEntry.m_requiredRoles.containsAll(oldEntry.m_requiredRoles) || !newEntry.m_requiredGroups.containsAll(oldEntry.m_requiredGroups)) {
+            // Less required members can make the group implied for any user...
+            m_closures.clear();
+        } else {
+            if (!oldEntry.m_requiredRoles.containsAll(newEntry.m_requiredRoles)
+                || !oldEntry.m_requiredGroups.containsAll(newEntry.m_requiredGroups)
+                || !newEntry.m_basicRoles.containsAll(oldEntry.m_basicRoles)
+                || !newEntry.m_basicGroups.containsAll(oldEntry.m_basicGroups)) {
+                // Only users that implied this group can be affected...
+                invalidateImplying(name, true);
+            }
+            invalidateImplyingAll(newEntry.m_basicRoles, oldEntry.m_basicRoles, false);
+            invalidateImplyingAll(newEntry.m_basicGroups, oldEntry.m_basicGroups, true);
+        }
+    }
+
+    /**
+     * Drops the cached closures of all users that imply one of the given members that are not in the given set of old members.
+     */
+    private void invalidateImplyingAll(Set members, Set oldMembers, boolean isGroup) {
+        Iterator iter = members.iterator();
+        while (iter.hasNext()) {
+            String member = (String) iter.next();
+            if (!oldMembers.contains(member)) {
+                invalidateImplying(member, isGroup);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached closures of all users that imply the given member.
+     */
+    private void invalidateImplying(String member, boolean isGroup) {
+        if (!isGroup && Role.USER_ANYONE.equals(member)) {
+            m_closures.clear();
+            return;
+        }
+
+        Iterator iter = m_closures.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry closure = (Map.Entry) iter.next();
+            if (isGroup ? ((Set) closure.getValue()).contains(member) : member.equals(closure.getKey())) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Creates a new entry for the given group. Member groups that are not
+     * known to the index are added as well, as their members are needed to
+     * determine whether they are implied.
+     */
+    private Entry createEntry(Group group, boolean stored) {
+        Entry entry = new Entry(stored);
+        addMembers(group.getMembers(), entry.m_basicRoles, entry.m_basicGroups);
+        addMembers(group.getRequiredMembers(), entry.m_requiredRoles, entry.m_requiredGroups);
+        return entry;
+    }
+
+    private void addMembers(Role[] members, Set roles, Set groups) {
+        for (int i = 0; (members != null) && (i < members.length); i++) {
+            Role member = members[i];
+            String name = member.getName();
+            if (member instanceof Group) {
+                groups.add(name);
+                if (!m_groups.containsKey(name)) {
+                    Entry entry = new Entry(false /* stored */);
+                    m_groups.put(name, entry);
+                    Group group = (Group) member;
+                    addMembers(group.getMembers(), entry.m_basicRoles, entry.m_basicGroups);
+                    addMembers(group.getRequiredMembers(), entry.m_requiredRoles, entry.m_requiredGroups);
+                    link(name, entry);
+                }
+            } else {
+                roles.add(name);
+            }
+        }
+    }
+
+    private void link(String groupName, Entry entry) {
+        addEdges(m_roleEdges, groupName, entry.m_basicRoles);
+        addEdges(m_roleEdges, groupName, entry.m_requiredRoles);
+        addEdges(m_groupEdges, groupName, entry.m_basicGroups);
+        addEdges(m_groupEdges, groupName, entry.m_requiredGroups);
+    }
+
+    private void unlink(String groupName, Entry entry) {
+        removeEdges(m_roleEdges, groupName, entry.m_basicRoles);
+        removeEdges(m_roleEdges, groupName, entry.m_requiredRoles);
+        removeEdges(m_groupEdges, groupName, entry.m_basicGroups);
+        removeEdges(m_groupEdges, groupName, entry.m_requiredGroups);
+    }
+
+    private void addEdges(Map edges, String groupName, Set members) {
+        Iterator iter = members.iterator();
+        while (iter.hasNext()) {
+            Object member = iter.next();
+            Set groups = (Set) edges.get(member);
+            if (groups == null) {
+                groups = new HashSet();
+                edges.put(member, groups);
+            }
+            groups.add(groupName);
+        }
+    }
+
+    private void removeEdges(Map edges, String groupName, Set members) {
+        Iterator iter = members.iterator();
+        while (iter.hasNext()) {
+            Object member = iter.next();
+            Set groups = (Set) edges.get(member);
+            if (groups != null) {
+                groups.remove(groupName);
+                if (groups.isEmpty()) {
+                    edges.remove(member);
+                }
+            }
+        }
+    }
+
+    private void removeMemberFromGroups(String member, Set groups) {
+        if (groups == null) {
+            return;
+        }
+        Iterator iter = groups.iterator();
+        while (iter.hasNext()) {
+            Entry entry = (Entry) m_groups.get(iter.next());
+            if (entry != null) {
+                entry.m_basicRoles.remove(member);
+                entry.m_basicGroups.remove(member);
+                entry.m_requiredRoles.remove(member);
+                entry.m_requiredGroups.remove(member);
+            }
+        }
+    }
+
+    private boolean isStoredGroup(String name) {
+        Entry entry = (Entry) m_groups.get(name);
+        return (entry != null) && entry.m_stored;
+    }
+}
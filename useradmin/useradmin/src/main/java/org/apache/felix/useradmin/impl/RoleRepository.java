@@ -95,6 +95,7 @@ public final class RoleRepository {
     private final RoleRepositoryStore m_store;
     private final CopyOnWriteArrayList m_listeners;
     private final RoleChangeReflector m_roleChangeReflector;
+    private final MembershipIndex m_membershipIndex;
     
     /**
      * Creates a new {@link RoleRepository} instance.
@@ -106,6 +107,9 @@ public final class RoleRepository {
         
         m_listeners = new CopyOnWriteArrayList();
         m_roleChangeReflector = new RoleChangeReflector();
+
+        m_membershipIndex = new MembershipIndex(this);
+        m_listeners.add(m_membershipIndex);
     }
 
     /**
@@ -152,6 +156,15 @@ public final class RoleRepository {
         m_listeners.addIfAbsent(listener);
     }
 
+    /**
+     * Returns the index of all group memberships of the roles in this repository.
+     * 
+     * @return the membership index, never <code>null</code>.
+     */
+    final MembershipIndex getMembershipIndex() {
+        return m_membershipIndex;
+    }
+
     /**
      * Returns the by its given name.
      * 
@@ -0,0 +1,188 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.impl;
+
+import junit.framework.TestCase;
+
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+
+/**
+ * Test cases for {@link MembershipIndex}.
+ */
+public class MembershipIndexTest extends TestCase {
+
+    private RoleRepository m_roleRepository;
+    private MembershipIndex m_index;
+    private Role m_anyone;
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        m_roleRepository = new RoleRepository(new MemoryRoleRepositoryStore());
+        m_index = m_roleRepository.getMembershipIndex();
+
+        m_anyone = m_roleRepository.getRoleByName(Role.USER_ANYONE);
+    }
+
+    /**
+     * Tests that a group reachable via multiple paths is implied if one of these paths implies it.
+     */
+    public void testDiamondShapedGroupsOk() {
+        User user1 = createUser("user1");
+        User user2 = createUser("user2");
+
+        Group shared = createGroup("shared");
+        shared.addMember(user1);
+
+        Group other = createGroup("other");
+        other.addMember(user2);
+
+        // shared is implied, but other is not...
+        Group left = createGroup("left");
+        left.addRequiredMember(shared);
+        left.addRequiredMember(other);
+        left.addMember(m_anyone);
+
+        Group right = createGroup("right");
+        right.addMember(shared);
+
+        Group top = createGroup("top");
+        top.addMember(left);
+        top.addMember(right);
+
+        assertTrue(m_index.isGroupImpliedBy("shared", "user1"));
+        assertFalse(m_index.isGroupImpliedBy("left", "user1"));
+        assertTrue(m_index.isGroupImpliedBy("right", "user1"));
+        assertTrue(m_index.isGroupImpliedBy("top", "user1"));
+
+        assertFalse(m_index.isGroupImpliedBy("shared", "user2"));
+        assertFalse(m_index.isGroupImpliedBy("top", "user2"));
+    }
+
+    /**
+     * Tests that groups that are member of each other are not implied by themselves.
+     */
+    public void testCyclicGroupsOk() {
+        User user = createUser("user");
+
+        Group group1 = createGroup("group1");
+        Group group2 = createGroup("group2");
+        group1.addMember(group2);
+        group2.addMember(group1);
+
+        assertFalse(m_index.isGroupImpliedBy("group1", "user"));
+        assertFalse(m_index.isGroupImpliedBy("group2", "user"));
+
+        group2.addMember(user);
+
+        assertTrue(m_index.isGroupImpliedBy("group1", "user"));
+        assertTrue(m_index.isGroupImpliedBy("group2", "user"));
+    }
+
+    /**
+     * Tests that adding and removing (required) members is reflected in the implied groups.
+     */
+    public void testMembershipChangesOk() {
+        User user = createUser("user");
+        User other = createUser("other");
+
+        Group group = createGroup("group");
+        Group parent = createGroup("parent");
+        parent.addMember(group);
+
+        assertFalse(m_index.isGroupImpliedBy("parent", "user"));
+        assertEquals(0, m_index.getImpliedGroups("user").size());
+
+        group.addMember(user);
+        assertTrue(m_index.isGroupImpliedBy("group", "user"));
+        assertTrue(m_index.isGroupImpliedBy("parent", "user"));
+
+        parent.addRequiredMember(other);
+        assertFalse(m_index.isGroupImpliedBy("parent", "user"));
+        assertTrue(m_index.isGroupImpliedBy("group", "user"));
+
+        parent.removeMember(other);
+        assertTrue(m_index.isGroupImpliedBy("parent", "user"));
+
+        group.removeMember(user);
+        assertFalse(m_index.isGroupImpliedBy("group", "user"));
+        assertFalse(m_index.isGroupImpliedBy("parent", "user"));
+    }
+
+    /**
+     * Tests that the anonymous user only implies groups with the predefined role as member.
+     */
+    public void testAnonymousUserOk() {
+        Group group = createGroup("group");
+        group.addMember(createUser("user"));
+
+        assertFalse(m_index.isGroupImpliedBy("group", null));
+
+        group.addMember(m_anyone);
+
+        assertTrue(m_index.isGroupImpliedBy("group", null));
+        assertTrue(m_index.isGroupImpliedBy("group", "someone"));
+    }
+
+    /**
+     * Tests that removing a role from the repository is reflected in the implied groups.
+     */
+    public void testRemoveRoleOk() {
+        User user = createUser("user");
+
+        Group group = createGroup("group");
+        group.addMember(user);
+        Group parent = createGroup("parent");
+        parent.addMember(group);
+
+        assertTrue(m_index.isGroupImpliedBy("parent", "user"));
+
+        assertTrue(m_roleRepository.removeRole("group"));
+
+        assertFalse(m_index.isGroupImpliedBy("group", "user"));
+        assertFalse(m_index.isGroupImpliedBy("parent", "user"));
+    }
+
+    /**
+     * Tests that only a limited number of closures is cached.
+     */
+    public void testCacheSizeIsLimitedOk() {
+        MembershipIndex index = new MembershipIndex(m_roleRepository, 2);
+
+        Group group = createGroup("group");
+        group.addMember(m_anyone);
+
+        assertTrue(index.isGroupImpliedBy("group", "user1"));
+        assertTrue(index.isGroupImpliedBy("group", "user2"));
+        assertTrue(index.isGroupImpliedBy("group", "user3"));
+
+        assertEquals(2, index.getCacheSize());
+    }
+
+    private Group createGroup(String name) {
+        return (Group) m_roleRepository.addRole(name, Role.GROUP);
+    }
+
+    private User createUser(String name) {
+        return (User) m_roleRepository.addRole(name, Role.USER);
+    }
+}
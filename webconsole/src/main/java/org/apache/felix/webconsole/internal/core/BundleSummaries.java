@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+
+
+/**
+ * The <code>BundleSummaries</code> keeps the {@link BundleSummary summaries}
+ * of the installed bundles per locale, so that listing the bundles does not
+ * need to query the framework for the (localized) headers of every bundle.
+ * <p>
+ * The summary of a bundle is discarded on any event of the bundle. The
+ * listener is synchronous, so the bundle list rendered after a bundle
+ * operation already reflects its outcome.
+ * <p>
+ * Only the summaries of the {@link #MAX_LOCALES} most recently used locales
+ * are kept, since every client may send a different locale.
+ */
+abstract class BundleSummaries implements SynchronousBundleListener
+{
+
+    private final BundleContext bundleContext;
+
+    /** incremented on every bundle event, to detect summaries created concurrently to an event */
+    private final AtomicLong modCount = new AtomicLong();
+
+    /** the maximum number of locales for which the summaries are kept */
+    static final int MAX_LOCALES = 4;
+
+    /** the summaries per locale, in access order; all access must be synchronized on the map */
+    private final Map<String, ConcurrentMap<Long, BundleSummary>> summaries = new LinkedHashMap<String, ConcurrentMap<Long, BundleSummary>>( 16, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry( final Map.Entry<String, ConcurrentMap<Long, BundleSummary>> eldest )
+        {
+            return size() > MAX_LOCALES;
+        }
+    };
+
+    private volatile Bundle[] bundles;
+
+
+    BundleSummaries( final BundleContext bundleContext )
+    {
+        this.bundleContext = bundleContext;
+    }
+
+
+    void open()
+    {
+        bundleContext.addBundleListener( this );
+    }
+
+
+    void close()
+    {
+        bundleContext.removeBundleListener( this );
+        synchronized ( summaries )
+        {
+            summaries.clear();
+        }
+        bundles = null;
+    }
+
+
+    /**
+     * Creates the summary of the bundle for the given locale.
+     */
+    protected abstract BundleSummary createSummary( Bundle bundle, Locale locale );
+
+
+    /**
+     * Returns the summaries of all installed bundles, in no particular order.
+     */
+    List<BundleSummary> getSummaries( final Locale locale )
+    {
+        final long stamp = modCount.get();
+
+        Bundle[] all = this.bundles;
+        if ( all == null )
+        {
+            all = bundleContext.getBundles();
+            this.bundles = all;
+            if ( modCount.get() != stamp )
+            {
+                this.bundles = null;
+            }
+        }
+
+        final String key = locale == null ? "" : locale.toString();
+        ConcurrentMap<Long, BundleSummary> localeSummaries;
+        synchronized ( summaries )
+        {
+            localeSummaries = summaries.get( key );
+            if ( localeSummaries == null )
+            {
+                localeSummaries = new ConcurrentHashMap<Long, BundleSummary>();
+                summaries.put( key, localeSummaries );
+            }
+        }
+
+        final List<BundleSummary> result = new ArrayList<BundleSummary>( all.length );
+        for ( int i = 0; i < all.length; i++ )
+        {
+            final Long id = new Long( all[i].getBundleId() );
+            BundleSummary summary = localeSummaries.get( id );
+            if ( summary == null )
+            {
+                summary = createSummary( all[i], locale );
+                localeSummaries.put( id, summary );
+
+                // don't keep the summary if the bundle might have changed meanwhile
+                if ( modCount.get() != stamp )
+                {
+                    localeSummaries.remove( id, summary );
+                }
+            }
+            result.add( summary );
+        }
+        return result;
+    }
+
+
+    public void bundleChanged( final BundleEvent event )
+    {
+        modCount.incrementAndGet();
+
+        if ( event.getType() == BundleEvent.INSTALLED || event.getType() == BundleEvent.UNINSTALLED )
+        {
+            bundles = null;
+        }
+
+        final Long id = new Long( event.getBundle().getBundleId() );
+        synchronized ( summaries )
+        {
+            for ( Iterator<ConcurrentMap<Long, BundleSummary>> i = summaries.values().iterator(); i.hasNext(); )
+            {
+                i.next().remove( id );
+            }
+        }
+    }
+}
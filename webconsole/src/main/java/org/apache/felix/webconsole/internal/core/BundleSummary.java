@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Dictionary;
+
+import org.apache.felix.utils.json.JSONWriter;
+import org.osgi.framework.Version;
+
+
+/**
+ * The <code>BundleSummary</code> holds the information of a bundle shown in
+ * the bundle list, for a given locale. Instances are immutable and kept by
+ * {@link BundleSummaries} until the bundle changes.
+ */
+final class BundleSummary
+{
+
+    /** orders by name, with the system bundle first, then by version and id */
+    static final Comparator<BundleSummary> BY_NAME = new Comparator<BundleSummary>()
+    {
+        public int compare( BundleSummary s1, BundleSummary s2 )
+        {
+            if ( s1.id == s2.id )
+            {
+                return 0;
+            }
+
+            // special case for system bundle, which always is first
+            if ( s1.id == 0 )
+            {
+                return -1;
+            }
+            else if ( s2.id == 0 )
+            {
+                return 1;
+            }
+
+            int comp = s1.name.compareToIgnoreCase( s2.name );
+            if ( comp == 0 )
+            {
+                comp = s1.parsedVersion.compareTo( s2.parsedVersion );
+            }
+            return comp != 0 ? comp : compareIds( s1, s2 );
+        }
+    };
+
+    private static final Comparator<BundleSummary> BY_ID = new Comparator<BundleSummary>()
+    {
+        public int compare( BundleSummary s1, BundleSummary s2 )
+        {
+            return compareIds( s1, s2 );
+        }
+    };
+
+    private static final Comparator<BundleSummary> BY_SYMBOLIC_NAME = new Comparator<BundleSummary>()
+    {
+        public int compare( BundleSummary s1, BundleSummary s2 )
+        {
+            final String n1 = s1.symbolicName == null ? "" : s1.symbolicName;
+            final String n2 = s2.symbolicName == null ? "" : s2.symbolicName;
+            final int comp = n1.compareTo( n2 );
+            return comp != 0 ? comp : BY_NAME.compare( s1, s2 );
+        }
+    };
+
+    private static final Comparator<BundleSummary> BY_VERSION = new Comparator<BundleSummary>()
+    {
+        public int compare( BundleSummary s1, BundleSummary s2 )
+        {
+            final int comp = s1.parsedVersion.compareTo( s2.parsedVersion );
+            return comp != 0 ? comp : BY_NAME.compare( s1, s2 );
+        }
+    };
+
+    private static final Comparator<BundleSummary> BY_STATE = new Comparator<BundleSummary>()
+    {
+        public int compare( BundleSummary s1, BundleSummary s2 )
+        {
+            final int comp = s1.state.compareTo( s2.state );
+            return comp != 0 ? comp : BY_NAME.compare( s1, s2 );
+        }
+    };
+
+    private static final Comparator<BundleSummary> BY_CATEGORY = new Comparator<BundleSummary>()
+    {
+        public int compare( BundleSummary s1, BundleSummary s2 )
+        {
+            final int comp = s1.category.compareToIgnoreCase( s2.category );
+            return comp != 0 ? comp : BY_NAME.compare( s1, s2 );
+        }
+    };
+
+    final long id;
+    final String name;
+    final boolean fragment;
+    final int stateRaw;
+    final String state;
+    final String version;
+    final String symbolicName;
+    final String category;
+
+    /** the localized headers, used to filter the bundles */
+    final Dictionary<String, String> headers;
+
+    private final Version parsedVersion;
+
+
+    BundleSummary( final long id, final String name, final boolean fragment, final int stateRaw, final String state,
+        final String version, final String symbolicName, final String category, final Dictionary<String, String> headers )
+    {
+        this.id = id;
+        this.name = name;
+        this.fragment = fragment;
+        this.stateRaw = stateRaw;
+        this.state = state;
+        this.version = version;
+        this.symbolicName = symbolicName;
+        this.category = category;
+        this.headers = headers;
+
+        Version v;
+        try
+        {
+            v = Version.parseVersion( version );
+        }
+        catch ( IllegalArgumentException iae )
+        {
+            v = Version.emptyVersion;
+        }
+        this.parsedVersion = v;
+    }
+
+
+    /**
+     * Returns the comparator for the given sort key of the bundle list.
+     *
+     * @param sort the sort key, one of <code>id</code>, <code>name</code>,
+     *      <code>symbolicName</code>, <code>version</code>, <code>state</code>
+     *      or <code>category</code>
+     * @return the comparator or <code>null</code> if the sort key is unknown
+     */
+    static Comparator<BundleSummary> getComparator( final String sort )
+    {
+        if ( sort == null || "name".equals( sort ) )
+        {
+            return BY_NAME;
+        }
+        else if ( "id".equals( sort ) )
+        {
+            return BY_ID;
+        }
+        else if ( "symbolicName".equals( sort ) )
+        {
+            return BY_SYMBOLIC_NAME;
+        }
+        else if ( "version".equals( sort ) )
+        {
+            return BY_VERSION;
+        }
+        else if ( "state".equals( sort ) )
+        {
+            return BY_STATE;
+        }
+        else if ( "category".equals( sort ) )
+        {
+            return BY_CATEGORY;
+        }
+        return null;
+    }
+
+
+    /**
+     * Writes the summary as JSON object, with the same properties as
+     * the bundle list entries written by the {@link BundlesServlet}.
+     */
+    void write( final JSONWriter writer ) throws IOException
+    {
+        writer.object();
+        writer.key( "id" ).value( id );
+        writer.key( "name" ).value( name );
+        writer.key( "fragment" ).value( fragment );
+        writer.key( "stateRaw" ).value( stateRaw );
+        writer.key( "state" ).value( state );
+        writer.key( "version" ).value( version );
+        if ( symbolicName != null )
+        {
+            writer.key( "symbolicName" ).value( symbolicName );
+        }
+        writer.key( "category" ).value( category );
+        writer.endObject();
+    }
+
+
+    private static int compareIds( final BundleSummary s1, final BundleSummary s2 )
+    {
+        return s1.id < s2.id ? -1 : ( s1.id == s2.id ? 0 : 1 );
+    }
+}
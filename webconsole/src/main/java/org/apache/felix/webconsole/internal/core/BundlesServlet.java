@@ -26,6 +26,7 @@ import java.lang.reflect.Array;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Dictionary;
@@ -94,6 +95,12 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
     // an LDAP filter, that is used to search manifest headers, see FELIX-1441
     private static final String FILTER_PARAM = "filter";
 
+    // paging and sorting of the bundle list
+    private static final String SORT_PARAM = "sort";
+    private static final String ORDER_PARAM = "order";
+    private static final String OFFSET_PARAM = "offset";
+    private static final String LIMIT_PARAM = "limit";
+
     private static final String FIELD_STARTLEVEL = "bundlestartlevel";
 
     private static final String FIELD_START = "bundlestart";
@@ -116,6 +123,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
 
     private ServiceRegistration configurationPrinter;
     private ServiceTracker bundleInfoTracker;
+    private volatile BundleSummaries bundleSummaries;
 
     // templates
     private final String TEMPLATE_MAIN;
@@ -140,6 +148,16 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         bundleInfoTracker = new ServiceTracker( bundleContext, BundleInfoProvider.class.getName(), null);
         bundleInfoTracker.open();
 
+        bundleSummaries = new BundleSummaries( BundleContextUtil.getWorkingBundleContext( bundleContext ) )
+        {
+            @Override
+            protected BundleSummary createSummary( Bundle bundle, Locale locale )
+            {
+                return bundleSummary( bundle, locale );
+            }
+        };
+        bundleSummaries.open();
+
         // bootdelegation property parsing from Apache Felix R4SearchPolicyCore
         String bootDelegation = bundleContext.getProperty( Constants.FRAMEWORK_BOOTDELEGATION );
         bootDelegation = ( bootDelegation == null ) ? "java.*" : bootDelegation + ",java.*";
@@ -182,6 +200,12 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
             bundleInfoTracker = null;
         }
 
+        if ( bundleSummaries != null )
+        {
+            bundleSummaries.close();
+            bundleSummaries = null;
+        }
+
         super.deactivate();
     }
 
@@ -296,7 +320,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
             final String servicesRoot = getServicesRoot( request );
             try
             {
-                this.renderJSON(response, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), null );
+                this.renderJSON(response, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), new ListRequest(request), null );
             }
             catch (InvalidSyntaxException e)
             {
@@ -424,7 +448,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
             final String servicesRoot = getServicesRoot( req );
             try
             {
-                this.renderJSON( resp, null, pluginRoot, servicesRoot, req.getLocale(), req.getParameter(FILTER_PARAM), bundleException );
+                this.renderJSON( resp, null, pluginRoot, servicesRoot, req.getLocale(), req.getParameter(FILTER_PARAM), new ListRequest(req), bundleException );
             }
             catch (InvalidSyntaxException e)
             {
@@ -524,7 +548,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         StringWriter w = new StringWriter();
         try
         {
-            writeJSON(w, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), null );
+            writeJSON(w, reqInfo.bundle, pluginRoot, servicesRoot, request.getLocale(), request.getParameter(FILTER_PARAM), new ListRequest(request), null );
         }
         catch (InvalidSyntaxException e)
         {
@@ -536,31 +560,107 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         response.getWriter().print(TEMPLATE_MAIN);
     }
 
-    private void renderJSON( final HttpServletResponse response, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final BundleException be )
+    private void renderJSON( final HttpServletResponse response, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final ListRequest listRequest, final BundleException be )
             throws IOException, InvalidSyntaxException
     {
+        // parse the filter before anything is written
+        final Filter f = filter == null ? null : getBundleContext().createFilter(filter);
+
         response.setContentType( "application/json" );
         response.setCharacterEncoding( "UTF-8" );
 
         final PrintWriter pw = response.getWriter();
-        writeJSON(pw, bundle, pluginRoot, servicesRoot, locale, filter, be);
+        writeJSON(pw, bundle, pluginRoot, servicesRoot, locale, f, listRequest, be);
     }
 
 
-    private void writeJSON( final Writer pw, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final BundleException be )
+    private void writeJSON( final Writer pw, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final String filter, final ListRequest listRequest, final BundleException be )
             throws IOException, InvalidSyntaxException
     {
-        final Map<String, Object> map = createObjectStructure( bundle, pluginRoot, servicesRoot, false, locale, filter, be );
+        final Filter f = filter == null ? null : getBundleContext().createFilter(filter);
+        writeJSON(pw, bundle, pluginRoot, servicesRoot, locale, f, listRequest, be);
+    }
+
+
+    /**
+     * Writes the bundle list (or the details of a single bundle) directly to the writer.
+     * The list entries are taken from the {@link BundleSummaries}, so unless a single
+     * bundle is requested, the framework is not queried for the bundle headers.
+     */
+    private void writeJSON( final Writer pw, final Bundle bundle, final String pluginRoot, final String servicesRoot, final Locale locale, final Filter filter, final ListRequest listRequest, final BundleException be )
+            throws IOException
+    {
+        final List<BundleSummary> allBundles = getBundleSummaries( locale );
+        final List<Object> status = getStatusLine( allBundles );
+        final String statusLine = (String) status.remove(5);
+
         final JSONWriter writer = new JSONWriter(pw);
+        writer.object();
 
-        writer.value(map);
+        if (null != be)
+        {
+            final StringWriter s = new StringWriter();
+            final Throwable t = be.getNestedException() != null ? be.getNestedException() : be;
+            t.printStackTrace( new PrintWriter(s) );
+            writer.key("error").value(s.toString());
+        }
+
+        writer.key("status").value(statusLine);
+
+        // add raw status
+        writer.key("s").value(status.toArray());
+
+        writer.key("data").array();
+        if ( bundle != null )
+        {
+            writer.value( bundleInfo( bundle, true, pluginRoot, servicesRoot, locale ) );
+        }
+        else
+        {
+            // filter bundles by headers
+            final List<BundleSummary> bundles;
+            if ( filter != null )
+            {
+                bundles = new ArrayList<BundleSummary>( allBundles.size() );
+                for ( BundleSummary summary : allBundles )
+                {
+                    if ( filter.match( summary.headers ) )
+                    {
+                        bundles.add( summary );
+                    }
+                }
+            }
+            else
+            {
+                bundles = allBundles;
+            }
+
+            final int total = bundles.size();
+            for ( BundleSummary summary : listRequest.page( bundles ) )
+            {
+                summary.write( writer );
+            }
+            writer.endArray();
+
+            if ( listRequest.paged )
+            {
+                writer.key("total").value(total);
+                writer.key("offset").value(Math.min( listRequest.offset, total ));
+            }
+            writer.endObject();
+            writer.flush();
+            return;
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
     }
 
     private Map<String, Object> createObjectStructure( final Bundle bundle, final String pluginRoot,
             final String servicesRoot, final boolean fullDetails, final Locale locale, final String filter, final BundleException be ) throws IOException, InvalidSyntaxException
     {
         final Bundle[] allBundles = this.getBundles();
-        final List<Object> status = getStatusLine(allBundles);
+        final List<Object> status = getStatusLine(getBundleSummaries(locale));
         final String statusLine = (String) status.remove(5);
         // filter bundles by headers
         final Bundle[] bundles;
@@ -615,13 +715,45 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         return map;
     }
 
-    private List<Object> getStatusLine(final Bundle[] bundles)
+    private List<BundleSummary> getBundleSummaries( final Locale locale )
+    {
+        final BundleSummaries summaries = this.bundleSummaries;
+        if ( summaries != null )
+        {
+            return summaries.getSummaries( locale );
+        }
+
+        // not activated
+        final Bundle[] bundles = this.getBundles();
+        final List<BundleSummary> result = new ArrayList<BundleSummary>( bundles.length );
+        for ( int i = 0; i < bundles.length; i++ )
+        {
+            result.add( bundleSummary( bundles[i], locale ) );
+        }
+        return result;
+    }
+
+    private BundleSummary bundleSummary( final Bundle bundle, final Locale locale )
+    {
+        final Dictionary<String, String> headers = bundle.getHeaders( locale == null ? null : locale.toString() );
+        return new BundleSummary( bundle.getBundleId(),
+            Util.getName( bundle, locale ),
+            isFragmentBundle( bundle ),
+            bundle.getState(),
+            toStateString( bundle ),
+            Util.getHeaderValue( bundle, Constants.BUNDLE_VERSION ),
+            bundle.getSymbolicName(),
+            Util.getHeaderValue( bundle, Constants.BUNDLE_CATEGORY ),
+            headers );
+    }
+
+    private List<Object> getStatusLine(final List<BundleSummary> bundles)
     {
         List<Object> ret = new ArrayList<Object>();
         int active = 0, installed = 0, resolved = 0, fragments = 0;
-        for ( int i = 0; i < bundles.length; i++ )
+        for ( BundleSummary bundle : bundles )
         {
-            switch ( bundles[i].getState() )
+            switch ( bundle.stateRaw )
             {
             case Bundle.ACTIVE:
                 active++;
@@ -630,7 +762,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
                 installed++;
                 break;
             case Bundle.RESOLVED:
-                if ( isFragmentBundle( bundles[i] ) )
+                if ( bundle.fragment )
                 {
                     fragments++;
                 }
@@ -643,11 +775,11 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         }
         final StringBuffer buffer = new StringBuffer();
         buffer.append("Bundle information: ");
-        appendBundleInfoCount(buffer, "in total", bundles.length);
-        if ( active == bundles.length || active + fragments == bundles.length )
+        appendBundleInfoCount(buffer, "in total", bundles.size());
+        if ( active == bundles.size() || active + fragments == bundles.size() )
         {
             buffer.append(" - all ");
-            appendBundleInfoCount(buffer, "active.", bundles.length);
+            appendBundleInfoCount(buffer, "active.", bundles.size());
         }
         else
         {
@@ -673,7 +805,7 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
             }
             buffer.append('.');
         }
-        ret.add(new Integer(bundles.length));
+        ret.add(new Integer(bundles.size()));
         ret.add(new Integer(active));
         ret.add(new Integer(fragments));
         ret.add(new Integer(resolved));
@@ -1436,6 +1568,70 @@ public class BundlesServlet extends SimpleWebConsolePlugin implements OsgiManage
         t.start();
     }
 
+    /**
+     * The sorting and paging parameters of a bundle list request. Without
+     * parameters, the whole list is returned, ordered by bundle name.
+     */
+    static final class ListRequest
+    {
+        public final Comparator<BundleSummary> comparator;
+        public final int offset;
+        public final int limit;
+        public final boolean paged;
+
+        ListRequest( final HttpServletRequest request )
+        {
+            this( request.getParameter( SORT_PARAM ), request.getParameter( ORDER_PARAM ),
+                request.getParameter( OFFSET_PARAM ), request.getParameter( LIMIT_PARAM ) );
+        }
+
+        ListRequest( final String sort, final String order, final String offset, final String limit )
+        {
+            Comparator<BundleSummary> c = BundleSummary.getComparator( sort );
+            if ( c == null )
+            {
+                c = BundleSummary.BY_NAME;
+            }
+            if ( "desc".equalsIgnoreCase( order ) )
+            {
+                c = Collections.reverseOrder( c );
+            }
+            this.comparator = c;
+            this.offset = getIntParameter( offset, 0 );
+            this.limit = getIntParameter( limit, Integer.MAX_VALUE );
+            this.paged = offset != null || limit != null;
+        }
+
+        /**
+         * Sorts the bundles in place and returns the requested page of them.
+         */
+        List<BundleSummary> page( final List<BundleSummary> bundles )
+        {
+            Collections.sort( bundles, comparator );
+
+            final int total = bundles.size();
+            final int from = Math.min( offset, total );
+            final int to = (int) Math.min( (long) from + limit, total );
+            return bundles.subList( from, to );
+        }
+
+        private static int getIntParameter( final String value, final int defaultValue )
+        {
+            if ( value != null )
+            {
+                try
+                {
+                    return Math.max( 0, Integer.parseInt( value ) );
+                }
+                catch ( NumberFormatException nfe )
+                {
+                    // ignore and use default
+                }
+            }
+            return defaultValue;
+        }
+    }
+
     private final class RequestInfo
     {
         public final String extension;
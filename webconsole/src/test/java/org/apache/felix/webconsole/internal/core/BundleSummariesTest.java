@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+
+
+public class BundleSummariesTest extends TestCase
+{
+
+    private Bundle[] bundles;
+
+    private TestSummaries summaries;
+
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        bundles = new Bundle[]
+            { bundle( 0 ), bundle( 1 ), bundle( 2 ) };
+        summaries = new TestSummaries( bundleContext() );
+        summaries.open();
+    }
+
+
+    public void test_getSummaries_cached()
+    {
+        final List<BundleSummary> first = summaries.getSummaries( Locale.ENGLISH );
+        assertEquals( 3, first.size() );
+        assertEquals( 3, summaries.created.size() );
+
+        final List<BundleSummary> second = summaries.getSummaries( Locale.ENGLISH );
+        assertEquals( 3, summaries.created.size() );
+        for ( int i = 0; i < first.size(); i++ )
+        {
+            assertSame( first.get( i ), second.get( i ) );
+        }
+    }
+
+
+    public void test_bundleChanged_discards_summary()
+    {
+        final List<BundleSummary> first = summaries.getSummaries( Locale.ENGLISH );
+
+        summaries.bundleChanged( new BundleEvent( BundleEvent.STARTED, bundles[1] ) );
+
+        final List<BundleSummary> second = summaries.getSummaries( Locale.ENGLISH );
+        assertEquals( 4, summaries.created.size() );
+        assertEquals( new Long( 1 ), summaries.created.get( 3 ) );
+        assertSame( first.get( 0 ), second.get( 0 ) );
+        assertNotSame( first.get( 1 ), second.get( 1 ) );
+        assertSame( first.get( 2 ), second.get( 2 ) );
+    }
+
+
+    public void test_bundleChanged_installed_uninstalled()
+    {
+        assertEquals( 3, summaries.getSummaries( null ).size() );
+
+        final Bundle installed = bundle( 3 );
+        bundles = new Bundle[]
+            { bundles[0], bundles[1], bundles[2], installed };
+        summaries.bundleChanged( new BundleEvent( BundleEvent.INSTALLED, installed ) );
+        assertEquals( 4, summaries.getSummaries( null ).size() );
+
+        final Bundle uninstalled = bundles[1];
+        bundles = new Bundle[]
+            { bundles[0], bundles[2], bundles[3] };
+        summaries.bundleChanged( new BundleEvent( BundleEvent.UNINSTALLED, uninstalled ) );
+        final List<BundleSummary> result = summaries.getSummaries( null );
+        assertEquals( 3, result.size() );
+        for ( BundleSummary summary : result )
+        {
+            assertTrue( summary.id != 1 );
+        }
+    }
+
+
+    public void test_getSummaries_locales_bounded()
+    {
+        summaries.getSummaries( Locale.ENGLISH );
+        for ( int i = 0; i < BundleSummaries.MAX_LOCALES - 1; i++ )
+        {
+            summaries.getSummaries( new Locale( "l" + i ) );
+        }
+        assertEquals( 3 * BundleSummaries.MAX_LOCALES, summaries.created.size() );
+
+        // the most recently used locales are kept
+        summaries.getSummaries( Locale.ENGLISH );
+        assertEquals( 3 * BundleSummaries.MAX_LOCALES, summaries.created.size() );
+
+        // one more locale evicts the least recently used locale
+        summaries.getSummaries( Locale.GERMAN );
+        summaries.getSummaries( Locale.ENGLISH );
+        assertEquals( 3 * ( BundleSummaries.MAX_LOCALES + 1 ), summaries.created.size() );
+        summaries.getSummaries( new Locale( "l0" ) );
+        assertEquals( 3 * ( BundleSummaries.MAX_LOCALES + 2 ), summaries.created.size() );
+    }
+
+
+    private BundleContext bundleContext()
+    {
+        return ( BundleContext ) Proxy.newProxyInstance( getClass().getClassLoader(), new Class[]
+            { BundleContext.class }, new InvocationHandler()
+        {
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                if ( "getBundles".equals( method.getName() ) )
+                {
+                    return bundles;
+                }
+                return null;
+            }
+        } );
+    }
+
+
+    private Bundle bundle( final long id )
+    {
+        return ( Bundle ) Proxy.newProxyInstance( getClass().getClassLoader(), new Class[]
+            { Bundle.class }, new InvocationHandler()
+        {
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                if ( "getBundleId".equals( method.getName() ) )
+                {
+                    return new Long( id );
+                }
+                return null;
+            }
+        } );
+    }
+
+    private static class TestSummaries extends BundleSummaries
+    {
+        /** the ids of the bundles for which a summary was created */
+        final List<Long> created = new ArrayList<Long>();
+
+
+        TestSummaries( final BundleContext bundleContext )
+        {
+            super( bundleContext );
+        }
+
+
+        protected BundleSummary createSummary( final Bundle bundle, final Locale locale )
+        {
+            created.add( new Long( bundle.getBundleId() ) );
+            return new BundleSummary( bundle.getBundleId(), "b" + bundle.getBundleId(), false, Bundle.ACTIVE,
+                "Active", "1.0.0", null, "", null );
+        }
+    }
+}
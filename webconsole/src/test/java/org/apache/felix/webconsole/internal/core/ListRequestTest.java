@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.webconsole.internal.core;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.Bundle;
+
+
+public class ListRequestTest extends TestCase
+{
+
+    private List<BundleSummary> bundles;
+
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        bundles = new ArrayList<BundleSummary>();
+        bundles.add( summary( 3, "charlie", "1.0.0", "Active" ) );
+        bundles.add( summary( 1, "Bravo", "2.0.0", "Resolved" ) );
+        bundles.add( summary( 0, "system", "5.0.0", "Active" ) );
+        bundles.add( summary( 4, "alpha", "1.0.0", "Installed" ) );
+        bundles.add( summary( 2, "bravo", "1.5.0", "Active" ) );
+    }
+
+
+    public void test_default()
+    {
+        final BundlesServlet.ListRequest request = new BundlesServlet.ListRequest( null, null, null, null );
+        assertFalse( request.paged );
+
+        // by name, system bundle first, same names by version
+        assertIds( new long[]
+            { 0, 4, 2, 1, 3 }, request.page( bundles ) );
+    }
+
+
+    public void test_sort()
+    {
+        assertIds( new long[]
+            { 0, 1, 2, 3, 4 }, new BundlesServlet.ListRequest( "id", null, null, null ).page( bundles ) );
+        assertIds( new long[]
+            { 4, 3, 2, 1, 0 }, new BundlesServlet.ListRequest( "id", "desc", null, null ).page( bundles ) );
+        assertIds( new long[]
+            { 4, 3, 2, 1, 0 }, new BundlesServlet.ListRequest( "version", null, null, null ).page( bundles ) );
+        assertIds( new long[]
+            { 0, 2, 3, 4, 1 }, new BundlesServlet.ListRequest( "state", null, null, null ).page( bundles ) );
+
+        // unknown sort keys sort by name
+        assertIds( new long[]
+            { 0, 4, 2, 1, 3 }, new BundlesServlet.ListRequest( "unknown", null, null, null ).page( bundles ) );
+    }
+
+
+    public void test_page()
+    {
+        final BundlesServlet.ListRequest request = new BundlesServlet.ListRequest( "id", null, "1", "2" );
+        assertTrue( request.paged );
+        assertIds( new long[]
+            { 1, 2 }, request.page( bundles ) );
+
+        assertIds( new long[]
+            { 3, 4 }, new BundlesServlet.ListRequest( "id", null, "3", "10" ).page( bundles ) );
+        assertIds( new long[] {}, new BundlesServlet.ListRequest( "id", null, "10", "2" ).page( bundles ) );
+        assertIds( new long[]
+            { 0, 1 }, new BundlesServlet.ListRequest( "id", null, null, "2" ).page( bundles ) );
+    }
+
+
+    public void test_page_invalid()
+    {
+        // negative values are treated as 0, invalid values are ignored
+        assertIds( new long[] {}, new BundlesServlet.ListRequest( "id", null, "-1", "-1" ).page( bundles ) );
+        assertIds( new long[]
+            { 0, 1, 2, 3, 4 }, new BundlesServlet.ListRequest( "id", null, "x", "y" ).page( bundles ) );
+    }
+
+
+    private static void assertIds( final long[] expected, final List<BundleSummary> actual )
+    {
+        assertEquals( expected.length, actual.size() );
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( expected[i], actual.get( i ).id );
+        }
+    }
+
+
+    private static BundleSummary summary( final long id, final String name, final String version, final String state )
+    {
+        return new BundleSummary( id, name, false, Bundle.ACTIVE, state, version, name, "", null );
+    }
+}